@@ -18,12 +18,22 @@
  */
 package generatormods;
 
+import generatormods.buildings.PathBuffers;
 import generatormods.commands.CommandBuild;
+import generatormods.commands.CommandGenStats;
+import generatormods.commands.CommandStructures;
 import generatormods.commands.CommandScan;
+import generatormods.metrics.MetricsDumper;
 import generatormods.modules.CARuins;
 import generatormods.modules.GreatWall;
 import generatormods.modules.WalledCity;
+import generatormods.placement.BuildExecutor;
+import generatormods.placement.PendingChunkHandler;
+import generatormods.planning.PlanningPipeline;
 import generatormods.util.ModUpdateDetectorWrapper;
+import generatormods.util.build.BlockProperties;
+import generatormods.world.WorldContextHandler;
+import cpw.mods.fml.common.FMLCommonHandler;
 import cpw.mods.fml.common.Mod.EventHandler;
 import cpw.mods.fml.common.Mod.Instance;
 import cpw.mods.fml.common.Mod;
@@ -31,9 +41,12 @@ import cpw.mods.fml.common.event.FMLInitializationEvent;
 import cpw.mods.fml.common.event.FMLPostInitializationEvent;
 import cpw.mods.fml.common.event.FMLPreInitializationEvent;
 import cpw.mods.fml.common.event.FMLServerStartingEvent;
+import cpw.mods.fml.common.event.FMLServerStoppingEvent;
 import cpw.mods.fml.common.registry.GameRegistry;
 import java.io.File;
 
+import net.minecraftforge.common.MinecraftForge;
+
 @Mod(modid = GeneratorMods.modId, name = "Formivore's GeneratorMods", version = "${version}",
         dependencies = "after:ExtraBiomes,BiomesOPlenty", acceptableRemoteVersions = "*")
 public class GeneratorMods {
@@ -48,6 +61,10 @@ public class GeneratorMods {
     protected CARuins caRuins;
     protected GreatWall greatWall;
     protected WalledCity walledCity;
+    protected PendingChunkHandler pendingChunkHandler;
+    protected BuildExecutor buildExecutor;
+    protected PlanningPipeline planningPipeline;
+    protected MetricsDumper metricsDumper;
 
     @EventHandler
     public void preInit(FMLPreInitializationEvent event) {
@@ -82,15 +99,59 @@ public class GeneratorMods {
             GameRegistry.registerWorldGenerator(greatWall, 1);
         if (!walledCity.isDisabled())
             GameRegistry.registerWorldGenerator(walledCity, 0);
+        // Keeps what is known about each loaded world, such as the city locations
+        MinecraftForge.EVENT_BUS.register(new WorldContextHandler());
+
+        // Places the parts of structures that were waiting for their chunk to be populated
+        pendingChunkHandler = new PendingChunkHandler(modId);
+        GameRegistry.registerWorldGenerator(pendingChunkHandler,
+                PendingChunkHandler.GENERATION_WEIGHT);
+        MinecraftForge.EVENT_BUS.register(pendingChunkHandler);
+        FMLCommonHandler.instance().bus().register(pendingChunkHandler);
+
+        // Places the blocks of structures built with the TICKED placement mode
+        buildExecutor = new BuildExecutor(modId);
+        BuildExecutor.instance = buildExecutor;
+        MinecraftForge.EVENT_BUS.register(buildExecutor);
+        FMLCommonHandler.instance().bus().register(buildExecutor);
+
+        // Plans structures on worker threads, for modules with Plan Off Thread set. Leave a core
+        // for the server thread.
+        planningPipeline =
+                new PlanningPipeline(modId, Math.max(1,
+                        Math.min(4, Runtime.getRuntime().availableProcessors() - 1)));
+        PlanningPipeline.instance = planningPipeline;
+        MinecraftForge.EVENT_BUS.register(planningPipeline);
+        FMLCommonHandler.instance().bus().register(planningPipeline);
+
+        // Writes the generation metrics into the world save every few minutes
+        metricsDumper = new MetricsDumper(modId);
+        MetricsDumper.instance = metricsDumper;
+        FMLCommonHandler.instance().bus().register(metricsDumper);
     }
 
     @EventHandler
     public void postInit(FMLPostInitializationEvent event) {
+        // All mods have registered their blocks by now
+        BlockProperties.buildTable();
     }
 
     @EventHandler
     public void serverStarting(FMLServerStartingEvent event) {
+        // The block ids may have been remapped for this save
+        BlockProperties.buildTable();
         event.registerServerCommand(new CommandBuild());
         event.registerServerCommand(new CommandScan(configDir));
+        event.registerServerCommand(new CommandGenStats());
+        event.registerServerCommand(new CommandStructures());
+    }
+
+    @EventHandler
+    public void serverStopping(FMLServerStoppingEvent event) {
+        // Do not lose half-built structures, the worlds are saved after this
+        planningPipeline.finishAll();
+        buildExecutor.finishAll();
+        metricsDumper.dumpIfChanged();
+        PathBuffers.clearPool();
     }
 }
@@ -19,14 +19,30 @@
 package generatormods.builders;
 
 import generatormods.buildings.IBuildingConfig;
+import generatormods.buildings.PathBuffers;
+import generatormods.catalog.StructureCatalog;
 import generatormods.config.chests.ChestContentsSpec;
 import generatormods.config.chests.ChestType;
-import generatormods.walledcity.CityDataManager;
+import generatormods.metrics.GenerationMetrics;
+import generatormods.metrics.PlanStage;
+import generatormods.metrics.RejectReason;
+import generatormods.placement.CountingBlockPlacer;
+import generatormods.placement.IBlockPlacer;
+import generatormods.placement.PlacementMode;
+import generatormods.placement.RelightMode;
+import generatormods.placement.ResyncingBlockPlacer;
+import generatormods.placement.WorldBlockPlacer;
+import generatormods.planning.Blueprint;
+import generatormods.planning.TerrainProbe;
+import generatormods.walledcity.City;
 import generatormods.walledcity.ILayoutGenerator;
+import generatormods.world.WorldContext;
 
 import java.util.Map;
 import java.util.Random;
 
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
 import net.minecraft.world.World;
 import net.minecraft.world.biome.BiomeGenBase;
 
@@ -34,7 +50,6 @@ import org.apache.logging.log4j.Logger;
 
 import static generatormods.util.WorldUtil.HIT_WATER;
 import static generatormods.util.WorldUtil.WORLD_MAX_Y;
-import static generatormods.util.WorldUtil.findSurfaceJ;
 
 /**
  * Builders manage the effort involved in constructing a larger structure, or set of structures.
@@ -58,11 +73,23 @@ import static generatormods.util.WorldUtil.findSurfaceJ;
  * <ul>
  * <li>The entire structure is built all at once, causing a negative impact on performance when a
  * large structure is built (such as a greatwall or walledcity).</li>
- * <li>Currently, if the generated structure builds far enough into chunks loaded by a client, then
- * the client sees visual glitches where not all the blocks of the building are loaded by the
- * client. This synchronization issue currently requires the client reconnecting to the server to
- * reload the chunks.</li>
+ * <li>If the generated structure builds far enough into chunks loaded by a client, then the client
+ * used to see visual glitches where not all the blocks of the building were loaded by the client.
+ * Builders now place through a ResyncingBlockPlacer, which sends every changed chunk to the
+ * clients once the structure is done, instead of every block.</li>
  * </ul>
+ * <p>
+ * With {@link PlacementMode#CHUNK_DEFERRED}, a Builder still plans and builds the whole structure
+ * at once, but only the blocks that land in already populated chunks are placed right away. The
+ * rest are recorded per chunk and placed when that chunk is populated (see
+ * generatormods.placement.PendingChunkHandler), which spreads the cost over chunk generation.
+ * <p>
+ * Builders are split into plan(), which only reads the terrain, and build(), which places the
+ * planned structure. This lets the generatormods.planning.PlanningPipeline run the planning on a
+ * worker thread against a TerrainSnapshot, and only build on the server thread.
+ * <p>
+ * Each site is planned from a seed of its own, so a plan can be saved as a Blueprint and built
+ * later with replay(), see generatormods.planning.BlueprintReplayer.
  */
 public abstract class AbstractBuilder implements IBuildingConfig {
     public final Logger logger;
@@ -84,6 +111,31 @@ public abstract class AbstractBuilder implements IBuildingConfig {
     public final Map<ChestType, ChestContentsSpec> chestItems;
     /* All WorldGeneratorThreads will have these, even if not used. */
 	public int backtrackLength = 9;
+    /*
+     * Where the buildings put their blocks. This is the probe, which hands everything on to the
+     * placer for the PlacementMode.
+     */
+    protected final IBlockPlacer placer;
+    /* Remembers surface heights and biomes for this builder */
+    protected final TerrainProbe probe;
+    /* Every structure built so far in this dimension, sites that overlap one are rejected */
+    protected final StructureCatalog catalog;
+    /* The probe's target from before beginPlanning() */
+    private IBlockPlacer buildPlacer;
+    private PlacementMode placementMode = PlacementMode.IMMEDIATE;
+    private RelightMode relightMode = RelightMode.IMMEDIATE;
+    private int tickBudgetMillis = 0;
+    private GenerationMetrics metrics;
+    /* How deep in timed plan() and build() calls this builder is, only the outermost is timed */
+    private int timingDepth = 0;
+    /* Whether run() and generate() stop after planning */
+    private boolean dryRun = false;
+    /* The site that the last successful plan() was for, and the seed it was planned from */
+    private int[] plannedSite;
+    private long siteSeed;
+    /* The walls of the blueprint that replay() is planning, see getPlannedWalls() */
+    private NBTTagList replayWalls;
+    private final PathBuffers pathBuffers = new PathBuffers();
 
     public AbstractBuilder(World world, Random random,
             int chunkI, int chunkK, int TriesPerChunk, double ChunkTryProb, Logger logger,
@@ -97,11 +149,199 @@ public abstract class AbstractBuilder implements IBuildingConfig {
         this.logger = logger;
         this.chestItems = chestItems;
 		max_spawn_height = WORLD_MAX_Y;
+        catalog = WorldContext.forWorld(world).getStructureCatalog();
+        probe = new TerrainProbe(new WorldBlockPlacer(world));
+        placer = probe;
+        updatePlacer();
 	}
 
-	public abstract boolean generate(int i0, int j0, int k0);
+    /**
+     * Decides whether and what to build at the given point. This must only read the world through
+     * the placer, and must not change anything outside of this builder, so that it can run on a
+     * worker thread.
+     */
+    public abstract boolean plan(int i0, int j0, int k0);
+
+    /**
+     * Builds what the last successful call to plan() planned. Runs on the server thread, and may
+     * still reject the plan.
+     */
+    public abstract boolean build();
+
+    public boolean generate(int i0, int j0, int k0) {
+        return planTimed(i0, j0, k0) && (dryRun || buildPlanned());
+    }
+
+    /**
+     * Calls build(), and records it with the GenerationMetrics. Use this rather than build() to
+     * build what planSite() planned.
+     */
+    public boolean buildPlanned() {
+        if (metrics == null)
+            return build();
+        boolean outermost = timingDepth++ == 0;
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            success = build();
+        } finally {
+            timingDepth--;
+        }
+        metrics.addBuild(outermost ? System.nanoTime() - start : 0, success);
+        return success;
+    }
+
+    /*
+     * Calls plan() with a new seed for the site. Sites inside an earlier structure are rejected
+     * before plan() probes any terrain.
+     */
+    private boolean planTimed(int i0, int j0, int k0) {
+        if (catalog.contains(i0, j0, k0))
+            return reject(RejectReason.OVERLAPS_STRUCTURE);
+        return planSeeded(i0, j0, k0, random.nextLong());
+    }
+
+    /*
+     * Sets the Random to the seed, calls plan(), and records it with the GenerationMetrics. A
+     * structure that plans more of itself while it is being built has that time counted as build
+     * time.
+     */
+    private boolean planSeeded(int i0, int j0, int k0, long seed) {
+        plannedSite = null;
+        random.setSeed(seed);
+        boolean planned;
+        if (metrics == null) {
+            planned = plan(i0, j0, k0);
+        } else {
+            boolean outermost = timingDepth++ == 0;
+            long start = System.nanoTime();
+            try {
+                planned = plan(i0, j0, k0);
+            } finally {
+                timingDepth--;
+            }
+            metrics.addPlan(outermost ? System.nanoTime() - start : 0);
+        }
+        if (planned) {
+            plannedSite = new int[] {i0, j0, k0};
+            siteSeed = seed;
+        }
+        return planned;
+    }
+
+    /**
+     * Writes what the last successful plan() decided, for a Blueprint. Two plans of the same site
+     * from the same seed must write the same tag, unless the terrain changed in between. Walls
+     * written with Blueprint.writeWall() to a list named "Walls" keep their paths in a replay.
+     */
+    protected void writePlan(NBTTagCompound tag) {
+    }
+
+    /**
+     * Restores the choices that a plan was made with, but that were not made by plan() itself from
+     * the site's seed. Called by replay() before planning the site again.
+     */
+    protected void readPlan(NBTTagCompound tag) {
+    }
+
+    /**
+     * Returns a Blueprint of the last successful plan(), or null if there is none. Must be called
+     * before the plan is built.
+     *
+     * @param kind How BlueprintReplayer can make a builder like this one again.
+     */
+    public Blueprint getBlueprint(String kind) {
+        if (plannedSite == null)
+            return null;
+        NBTTagCompound plan = new NBTTagCompound();
+        writePlan(plan);
+        return new Blueprint(0, kind, world.provider.dimensionId, plannedSite[0], plannedSite[1],
+                plannedSite[2], siteSeed, plan);
+    }
+
+    /**
+     * Plans the site of the blueprint again from its seed, with the walls taking their saved paths
+     * instead of planning them, and builds it if the plan came out the same. Plans that differ,
+     * because the terrain under the walls or the config changed, are rejected.
+     *
+     * @return Whether the structure was built.
+     */
+    public boolean replay(Blueprint blueprint) {
+        probe.setBounds(blueprint.i0 >> 4, blueprint.k0 >> 4, getPlanningChunkRadius());
+        NBTTagCompound saved = blueprint.getPlan();
+        readPlan(saved);
+        boolean built = false;
+        boolean planned = false;
+        if (catalog.contains(blueprint.i0, blueprint.j0, blueprint.k0)) {
+            reject(RejectReason.OVERLAPS_STRUCTURE);
+        } else {
+            replayWalls = saved.getTagList("Walls", 10);
+            try {
+                planned = planSeeded(blueprint.i0, blueprint.j0, blueprint.k0, blueprint.seed);
+            } finally {
+                replayWalls = null;
+            }
+        }
+        if (planned) {
+            NBTTagCompound plan = new NBTTagCompound();
+            writePlan(plan);
+            if (blueprint.matches(plan)) {
+                built = buildPlanned();
+            } else {
+                logger.warn("Blueprint {} no longer matches its site at ({},{},{})",
+                        blueprint.id, blueprint.i0, blueprint.j0, blueprint.k0);
+                reject(RejectReason.BLUEPRINT_CHANGED);
+            }
+        }
+        finishJob();
+        return built;
+    }
+
+    /**
+     * Records that a site went through a stage of plan(), which started at startNanos, and returns
+     * whether it passed.
+     */
+    protected boolean endStage(PlanStage stage, long startNanos, boolean passed) {
+        if (metrics != null)
+            metrics.addStage(stage, System.nanoTime() - startNanos, passed);
+        return passed;
+    }
+
+    /* Records why plan() or build() gave up, and returns false so that they can return it. */
+    protected boolean reject(RejectReason reason) {
+        if (metrics != null)
+            metrics.reject(reason);
+        return false;
+    }
 
 	public void run() {
+        trySites(true);
+        finishJob();
+	}
+
+    /**
+     * Ends the generation job once everything is built: finishes the placer and hands the wall
+     * path buffers back, see PathBuffers.release().
+     */
+    public void finishJob() {
+        placer.finish();
+        if (metrics != null)
+            metrics.addPathBuffers(pathBuffers.getAllocatedInts(), pathBuffers.getReusedInts());
+        pathBuffers.release();
+    }
+
+    /**
+     * Looks for a site the same way run() does, but only plans the structure. Call
+     * buildPlanned() afterwards to build it.
+     *
+     * @return Whether a structure was planned.
+     */
+    public boolean planSite() {
+        return trySites(false);
+    }
+
+    private boolean trySites(boolean build) {
+        probe.setBounds(chunkI >> 4, chunkK >> 4, getPlanningChunkRadius());
 		boolean success = false;
 		int tries = 0, j0 = 0, i0, k0;
 		do {
@@ -109,15 +349,16 @@ public abstract class AbstractBuilder implements IBuildingConfig {
 				i0 = chunkI + this.random.nextInt(16);
 				k0 = chunkK + this.random.nextInt(16);
 				if (spawn_surface) {
-                    j0 = findSurfaceJ(this.world, i0, k0, WORLD_MAX_Y, true, 3) + 1;
+                    j0 = probe.findSurfaceJ(i0, k0, WORLD_MAX_Y, true, 3) + 1;
 				} else {
 					j0 = min_spawn_height + this.random.nextInt(max_spawn_height - min_spawn_height + 1);
 				}
-				if (j0 > 0 && world.getBiomeGenForCoordsBody(i0, k0) != BiomeGenBase.ocean)
-					success = generate(i0, j0, k0);
+				if (j0 > 0 && placer.getBiomeId(i0, k0) != BiomeGenBase.ocean.biomeID)
+					success = build ? generate(i0, j0, k0) : planTimed(i0, j0, k0);
 			}
 			tries++;
         } while (!success && tries < triesPerChunk && j0 != HIT_WATER);
+        return success;
 	}
 
 	//****************************  FUNCTION - setSpawnHeight *************************************************************************************//
@@ -127,18 +368,94 @@ public abstract class AbstractBuilder implements IBuildingConfig {
 		spawn_surface = spawn_surface_;
 	}
 
+    /**
+     * Selects how blocks are placed. Must be called before run().
+     *
+     * @param tickBudgetMillis Milliseconds per tick to spend placing blocks with PlacementMode.TICKED,
+     *        or relighting with RelightMode.DEFERRED_TICKED.
+     */
+    public void setPlacementMode(PlacementMode mode, int tickBudgetMillis) {
+        this.placementMode = mode;
+        this.tickBudgetMillis = tickBudgetMillis;
+        updatePlacer();
+    }
+
+    /* Selects when the lighting is updated. Must be called before run(). */
+    public void setRelightMode(RelightMode mode) {
+        this.relightMode = mode;
+        updatePlacer();
+    }
+
+    /**
+     * Makes run() and generate() stop once a site is planned, without building anything. The plan
+     * can then be saved with getBlueprint().
+     */
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    /* Selects where attempts, timings and blocks are counted. Must be called before run(). */
+    public void setMetrics(GenerationMetrics metrics) {
+        this.metrics = metrics;
+        updatePlacer();
+    }
+
+    public GenerationMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void updatePlacer() {
+        IBlockPlacer target = new ResyncingBlockPlacer(relightMode.wrap(
+                placementMode.createPlacer(world, tickBudgetMillis), tickBudgetMillis, logger));
+        probe.setTarget(metrics == null ? target : new CountingBlockPlacer(target, metrics));
+    }
+
+    /**
+     * Makes this builder, and every building it creates, read from planningPlacer until
+     * endPlanning() is called. May be called again to switch to another planning placer.
+     */
+    public void beginPlanning(IBlockPlacer planningPlacer) {
+        if (buildPlacer == null)
+            buildPlacer = probe.getTarget();
+        probe.setTarget(planningPlacer);
+    }
+
+    /* Switches back to the placer that was in use before beginPlanning(). */
+    public void endPlanning() {
+        if (buildPlacer != null)
+            probe.setTarget(buildPlacer);
+    }
+
+    /**
+     * How many chunks around the chunk being generated plan() is likely to read. Only loaded chunks
+     * are copied into a TerrainSnapshot up front, any others are loaded when plan() needs them.
+     */
+    public int getPlanningChunkRadius() {
+        return 4;
+    }
+
     @Override
     public int getBacktrackLength() {
         return backtrackLength;
     }
 
+    @Override
+    public IBlockPlacer getBlockPlacer() {
+        return placer;
+    }
+
+    @Override
+    public TerrainProbe getTerrainProbe() {
+        return probe;
+    }
+
     @Override
     public Map<ChestType, ChestContentsSpec> getChestConfigs() {
         return chestItems;
     }
 
     @Override
-    public CityDataManager getCityDataManager() {
+    public City getCity() {
         return null;
     }
 
@@ -147,6 +464,16 @@ public abstract class AbstractBuilder implements IBuildingConfig {
         return null;
     }
 
+    @Override
+    public PathBuffers getPathBuffers() {
+        return pathBuffers;
+    }
+
+    @Override
+    public NBTTagList getPlannedWalls() {
+        return replayWalls;
+    }
+
     @Override
     public Logger getLogger() {
         return logger;
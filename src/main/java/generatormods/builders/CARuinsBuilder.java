@@ -29,18 +29,20 @@ import generatormods.caruins.seeds.LinearSeed;
 import generatormods.caruins.seeds.SymmetricSeed;
 import generatormods.config.CARuinsConfig;
 import generatormods.config.templates.TemplateRule;
+import generatormods.metrics.RejectReason;
 import generatormods.util.build.Dir;
 import generatormods.util.build.Handedness;
+import generatormods.util.exceptions.ParseError;
 
 import java.util.Random;
 
+import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.world.World;
 import net.minecraft.util.WeightedRandom;
 
 import org.apache.logging.log4j.Logger;
 
 import static generatormods.util.WorldUtil.WORLD_MAX_Y;
-import static generatormods.util.WorldUtil.findSurfaceJ;
 
 /**
  * Generates 1 or more CARuins. It starts by attempting to build a single ruin. If it succeeds, it
@@ -48,65 +50,101 @@ import static generatormods.util.WorldUtil.findSurfaceJ;
  * then also trigger their own recursive building attempts).
  */
 public class CARuinsBuilder extends AbstractBuilder {
+    /* Picked once, so that the ruins that a ruin recurses into share its rule */
 	private CARule caRule = null;
 
     private final CARuinsConfig config;
+    /* The result of plan() */
+    private BuildingCellularAutomaton bca;
+    private int[] origin;
 
     public CARuinsBuilder(World world, Random random, int chunkI, int chunkK, Logger logger,
             CARuinsConfig config) {
         super(world, random, chunkI, chunkK, config.getTriesPerChunk(),
                 config.getGlobalFrequency(), logger, config.getChestConfigs());
         this.config = config;
+        caRule = ((WeightedCARule) WeightedRandom.getRandomItem(random, config.caRules)).getRule();
 	}
 
 	@Override
-	public boolean generate(int i0, int j0, int k0) {
-        logger.debug("Attempting to generate CARuins near ({},{},{})", i0, j0, k0);
+	public boolean plan(int i0, int j0, int k0) {
+        if (logger.isDebugEnabled())
+            logger.debug("Attempting to generate CARuins near ({},{},{})", i0, j0, k0);
         int ContainerWidth = config.getContainerWidth();
         int ContainerLength = config.getContainerLength();
 
         int th =
                 config.getMinHeight()
                         + random.nextInt(config.getMaxHeight() - config.getMinHeight() + 1);
-        if (caRule == null) //if we haven't picked in an earlier generate call
-            caRule = ((WeightedCARule)WeightedRandom.getRandomItem(world.rand, config.caRules)).getRule();
         if (caRule == null)
-            return false;
+            return reject(RejectReason.NO_STYLE);
         ISeed seed = pickSeed();
-        TemplateRule blockRule =
-                config.blockRules[world.getBiomeGenForCoordsBody(i0, k0).biomeID + 1];
+        TemplateRule blockRule = config.blockRules[placer.getBiomeId(i0, k0) + 1];
         //can use this to test out new Building classes
         //BuildingSpiralStaircase bss=new BuildingSpiralStaircase(this,blockRule,random.nextInt(4),2*random.nextInt(2)-1,false,-(random.nextInt(10)+1),new int[]{i0,j0,k0});
         //bss.build(0,0);
         //bss.bottomIsFloor();
         //return true;
-        BuildingCellularAutomaton bca =
-                new BuildingCellularAutomaton(this, blockRule, Dir.randomDir(random),
-                        Handedness.R_HAND, false, ContainerWidth, th, ContainerLength,
-                        seed, caRule, null, new int[] {i0, j0, k0});
-        if (bca.plan(true, config.getMinHeightBeforeOscillation()) && bca.queryCanBuild(0, true)) {
-            logger.info("Building CARuin at ({},{},{})", i0, j0, k0);
-            bca.build(config.getSmoothWithStairs(), config.getMakeFloors());
-            if (config.getGlobalFrequency() < 0.05 && random.nextInt(2) != 0) {
-				for (int tries = 0; tries < 10; tries++) {
-					int[] pt = new int[] { i0 + (2 * random.nextInt(2) - 1) * (ContainerWidth + random.nextInt(ContainerWidth)), 0,
-							k0 + (2 * random.nextInt(2) - 1) * (ContainerWidth + random.nextInt(ContainerWidth)) };
-					pt[1] = findSurfaceJ(world, pt[0], pt[2], WORLD_MAX_Y, true, 3) + 1;
-                    logger.debug("Recursing");
-					if (generate(pt[0], pt[1], pt[2])) {
-                        logger.debug("Successfully Recursed");
-						break;
-					}
+        bca = new BuildingCellularAutomaton(this, blockRule, Dir.randomDir(random),
+                Handedness.R_HAND, false, ContainerWidth, th, ContainerLength, seed, caRule, null,
+                new int[] {i0, j0, k0});
+        if (!bca.plan(true, config.getMinHeightBeforeOscillation()))
+            return bca.rejectReason == null ? false : reject(bca.rejectReason);
+        if (catalog.overlaps(bca.getBounds()))
+            return reject(RejectReason.OVERLAPS_STRUCTURE);
+        if (bca.queryCanBuild(0, true)) {
+            origin = new int[] {i0, j0, k0};
+            return true;
+        }
+        return bca.rejectReason == null ? false : reject(bca.rejectReason);
+	}
+
+	@Override
+	public boolean build() {
+        int i0 = origin[0], k0 = origin[2];
+        int ContainerWidth = config.getContainerWidth();
+        logger.info("Building CARuin at ({},{},{})", i0, origin[1], k0);
+        bca.build(config.getSmoothWithStairs(), config.getMakeFloors());
+        catalog.add("CARuins", caRule.toString(), bca.getBounds());
+        if (config.getGlobalFrequency() < 0.05 && random.nextInt(2) != 0) {
+			for (int tries = 0; tries < 10; tries++) {
+				int[] pt = new int[] { i0 + (2 * random.nextInt(2) - 1) * (ContainerWidth + random.nextInt(ContainerWidth)), 0,
+						k0 + (2 * random.nextInt(2) - 1) * (ContainerWidth + random.nextInt(ContainerWidth)) };
+				pt[1] = probe.findSurfaceJ(pt[0], pt[2], WORLD_MAX_Y, true, 3) + 1;
+                logger.debug("Recursing");
+				if (generate(pt[0], pt[1], pt[2])) {
+                    logger.debug("Successfully Recursed");
+					break;
 				}
 			}
-			return true;
 		}
-		return false;
+		return true;
 	}
 
+    @Override
+    protected void writePlan(NBTTagCompound tag) {
+        tag.setString("Rule", caRule.toString());
+        tag.setIntArray("Bounds", bca.getBounds());
+    }
+
+    /* The rule was picked when the builder was made, before the site's seed */
+    @Override
+    protected void readPlan(NBTTagCompound tag) {
+        try {
+            caRule = new CARule(tag.getString("Rule"));
+        } catch (ParseError e) {
+            logger.warn("Could not read the rule of a blueprint: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public int getPlanningChunkRadius() {
+        return Math.max(config.getContainerWidth(), config.getContainerLength()) / 16 + 1;
+    }
+
     private ISeed pickSeed() {
         SeedType seedCode =
-                ((SeedType.Weighted) WeightedRandom.getRandomItem(world.rand,
+                ((SeedType.Weighted) WeightedRandom.getRandomItem(random,
                         config.getWeightedSeeds())).getSeedType();
         if (caRule.isFourRule()) // only use symmetric for 4-rules
             seedCode = SeedType.SYMMETRIC_SEED;
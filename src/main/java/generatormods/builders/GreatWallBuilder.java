@@ -19,9 +19,12 @@
 package generatormods.builders;
 
 import generatormods.buildings.BuildingDoubleWall;
+import generatormods.buildings.BuildingWall;
 import generatormods.config.chests.ChestContentsSpec;
 import generatormods.config.chests.ChestType;
 import generatormods.config.templates.TemplateWall;
+import generatormods.metrics.RejectReason;
+import generatormods.planning.Blueprint;
 import generatormods.util.build.Dir;
 import generatormods.util.build.Handedness;
 
@@ -29,6 +32,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
 import net.minecraft.world.World;
 
 import org.apache.logging.log4j.Logger;
@@ -38,8 +43,14 @@ import org.apache.logging.log4j.Logger;
  * BuildingDoubleWall. It also checks curviness and length.
  */
 public class GreatWallBuilder extends AbstractBuilder {
+    /* How much of the wall each of its boxes in the StructureCatalog covers */
+    private final static int WALL_STRETCH = 32;
 	private List<TemplateWall> wallStyles;
     private double curveBias;
+    /* The result of plan() */
+    private TemplateWall ws;
+    private BuildingDoubleWall dw;
+    private int[] origin;
 
     public GreatWallBuilder(World world, Random random, int chunkI, int chunkK, int triesPerChunk,
             double chunkTryProb, Logger logger, Map<ChestType, ChestContentsSpec> chestConfigs,
@@ -50,17 +61,24 @@ public class GreatWallBuilder extends AbstractBuilder {
 	}
 
 	@Override
-	public boolean generate(int i0, int j0, int k0) {
-        logger.debug("Attempting to generate GreatWall near ({},{},{})", i0, j0, k0);
-        TemplateWall ws = TemplateWall.pickBiomeWeightedWallStyle(wallStyles, world, i0, k0, world.rand, false);
+	public boolean plan(int i0, int j0, int k0) {
+        if (logger.isDebugEnabled())
+            logger.debug("Attempting to generate GreatWall near ({},{},{})", i0, j0, k0);
+        ws = TemplateWall.pickBiomeWeightedWallStyle(wallStyles, placer.getBiomeId(i0, k0),
+                random, false);
 		if (ws == null)
-			return false;
-        BuildingDoubleWall dw =
-                new BuildingDoubleWall(10 * (random.nextInt(9000) + 1000), this, ws,
-                        Dir.randomDir(random), Handedness.R_HAND, new int[] {i0, j0, k0});
-		if (!dw.plan())
-			return false;
-        logger.info("Building GreatWall at ({},{},{})", i0, j0, k0);
+			return reject(RejectReason.NO_STYLE);
+        dw = new BuildingDoubleWall(10 * (random.nextInt(9000) + 1000), this, ws,
+                Dir.randomDir(random), Handedness.R_HAND, new int[] {i0, j0, k0});
+        if (!dw.plan()) {
+            // Blame the half that came up shorter
+            BuildingWall shorter = dw.wall1.bLength < dw.wall2.bLength ? dw.wall1 : dw.wall2;
+            return reject(RejectReason.forWallFail(shorter.failCode));
+        }
+        for (int[] box : getBounds())
+            if (catalog.overlaps(box))
+                return reject(RejectReason.OVERLAPS_STRUCTURE);
+        origin = new int[] {i0, j0, k0};
 		//calculate the integrated curvature
 		if (curveBias > 0.01) {
 			//Perform a probabilistic test
@@ -88,11 +106,43 @@ public class GreatWallBuilder extends AbstractBuilder {
 			if (random.nextFloat() > p && curviness != 0) {
                 logger.debug("Rejected great wall, curviness: {}, length:{}, P:{}", curviness,
                         (dw.wall1.bLength + dw.wall1.bLength - 1), p);
-				return false;
+				return reject(RejectReason.TOO_STRAIGHT);
 			}
 		}
+		return true;
+	}
+
+	@Override
+	public boolean build() {
+        logger.info("Building GreatWall at ({},{},{})", origin[0], origin[1], origin[2]);
         dw.build();
 		dw.buildTowers(true, true, ws.MakeGatehouseTowers, false, false);
+        List<int[]> boxes = getBounds();
+        catalog.add("GreatWall", ws.name, boxes.toArray(new int[boxes.size()][]));
 		return true;
 	}
+
+    @Override
+    protected void writePlan(NBTTagCompound tag) {
+        tag.setString("Style", ws.name);
+        NBTTagList wallTags = new NBTTagList();
+        wallTags.appendTag(Blueprint.writeWall(dw.wall1));
+        wallTags.appendTag(Blueprint.writeWall(dw.wall2));
+        tag.setTag("Walls", wallTags);
+    }
+
+    private List<int[]> getBounds() {
+        List<int[]> boxes = dw.wall1.getBounds(WALL_STRETCH);
+        boxes.addAll(dw.wall2.getBounds(WALL_STRETCH));
+        return boxes;
+    }
+
+    @Override
+    public int getPlanningChunkRadius() {
+        // The two halves of a wall head off in opposite directions, each up to MaxL / 2 long
+        int maxLength = 0;
+        for (TemplateWall style : wallStyles)
+            maxLength = Math.max(maxLength, style.MaxL / 2);
+        return maxLength / 16 + 1;
+    }
 }
@@ -23,12 +23,14 @@ import generatormods.buildings.BuildingUndergroundEntranceway;
 import generatormods.config.chests.ChestContentsSpec;
 import generatormods.config.chests.ChestType;
 import generatormods.config.templates.TemplateWall;
+import generatormods.metrics.RejectReason;
 import generatormods.modules.WalledCity;
 import generatormods.util.WorldUtil;
 import generatormods.util.build.BlockProperties;
 import generatormods.util.build.Dir;
 import generatormods.util.build.Handedness;
 import generatormods.util.build.Shape;
+import generatormods.walledcity.City;
 import generatormods.walledcity.CityDataManager;
 import generatormods.walledcity.WalledCityChatHandler;
 
@@ -39,6 +41,7 @@ import java.util.Random;
 
 import net.minecraft.block.Block;
 import net.minecraft.init.Blocks;
+import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.MathHelper;
 import net.minecraft.world.World;
 
@@ -46,7 +49,6 @@ import org.apache.logging.log4j.Logger;
 
 import static generatormods.util.WorldUtil.IGNORE_WATER;
 import static generatormods.util.WorldUtil.WORLD_MAX_Y;
-import static generatormods.util.WorldUtil.findSurfaceJ;
 
 /**
  * Generates a city in a large underground cavern. The cavern is made from many recursively created
@@ -62,6 +64,9 @@ public class UndergroundCityBuilder extends AbstractBuilder {
 	private List<BuildingDoubleWall> streets = new ArrayList<BuildingDoubleWall>();
 	private double cavernMass = 0.0, cavernMass_i = 0.0, cavernMass_k = 0.0;
 	TemplateWall pws;
+    private int[] origin;
+    /* The city being built, once build() registered it */
+    private City city;
 
     private WalledCityChatHandler chatHandler;
     private CityDataManager cityDataManager;
@@ -78,21 +83,41 @@ public class UndergroundCityBuilder extends AbstractBuilder {
 	}
 
 	@Override
-	public boolean generate(int i0, int j0, int k0) {
-        logger.debug("Attempting to generate UndergroundCity near ({},{},{})", i0, j0, k0);
-        pws = TemplateWall.pickBiomeWeightedWallStyle(undergroundCityStyles, world, i0, k0, world.rand, true);
+	public boolean plan(int i0, int j0, int k0) {
+        if (logger.isDebugEnabled())
+            logger.debug("Attempting to generate UndergroundCity near ({},{},{})", i0, j0, k0);
+        pws = TemplateWall.pickBiomeWeightedWallStyle(undergroundCityStyles,
+                placer.getBiomeId(i0, k0), random, true);
 		if (pws == null)
-			return false;
+			return reject(RejectReason.NO_STYLE);
         if (!cityDataManager.isCitySeparated(world, i0, k0, WalledCity.CITY_TYPE_UNDERGROUND)) {
             logger.debug("Too close to another UndergroundCity");
-			return false;
+			return reject(RejectReason.TOO_CLOSE_TO_CITY);
         }
+        origin = new int[] {i0, j0, k0};
+        return true;
+    }
+
+    /**
+     * Carves out the cavern and fills it. Finding out whether there is enough room for a cavern
+     * means carving it, so this is where an underground city can still fail.
+     */
+    @Override
+    public boolean build() {
+        int i0 = origin[0], j0 = origin[1], k0 = origin[2];
 		//make hollows recursively
 		hollow(i0, j0, k0, MAX_DIAM);
 		if (hollows.size() == 0)
-			return false;
-        cityDataManager.addCity(world, i0, k0, WalledCity.CITY_TYPE_UNDERGROUND);
-        cityDataManager.saveCityLocations(world);
+			return reject(RejectReason.NO_ROOM_FOR_CAVERN);
+        city = cityDataManager.addCity(world, i0, k0, WalledCity.CITY_TYPE_UNDERGROUND);
+        int[][] boxes = new int[hollows.size()][];
+        for (int n = 0; n < boxes.length; n++) {
+            int[] h = hollows.get(n);
+            boxes[n] =
+                    new int[] {h[0], h[1], h[2], h[0] + h[3] - 1, h[1] + h[3] - 1,
+                            h[2] + h[3] - 1};
+        }
+        catalog.add("UndergroundCity", pws.name, boxes);
         logger.debug("Building: {} UndergroundCity with {} hollows at ({},{},{})", pws.name,
                 hollows.size(), i0, k0, k0);
 		List<BuildingUndergroundEntranceway> entranceways = buildEntranceways();
@@ -107,9 +132,16 @@ public class UndergroundCityBuilder extends AbstractBuilder {
 		for (BuildingDoubleWall street : streets) {
 			street.buildTowers(true, true, false, pws.StreetDensity > TemplateWall.MAX_STREET_DENSITY / 2, false);
 		}
+        city.createVillages(world);
 		return true;
 	}
 
+    /* The cavern is only carved out by build(), so the plan is just the style */
+    @Override
+    protected void writePlan(NBTTagCompound tag) {
+        tag.setString("Style", pws.name);
+    }
+
 	//****************************  FUNCTION - buildEntranceways *************************************************************************************//
 	private List<BuildingUndergroundEntranceway> buildEntranceways() {
 		if (!pws.MakeUndergroundEntranceways)
@@ -167,9 +199,9 @@ public class UndergroundCityBuilder extends AbstractBuilder {
 				pt[0] += hollow[0];
 				pt[2] += hollow[2];
                 pt[1] =
-                        findSurfaceJ(world, pt[0], pt[2], hollow[1] - (hollow[3] + 1) / 2, false,
+                        probe.findSurfaceJ(pt[0], pt[2], hollow[1] - (hollow[3] + 1) / 2, false,
                                 IGNORE_WATER) + 1;
-				TemplateWall sws = TemplateWall.pickBiomeWeightedWallStyle(pws.streets, world, pt[0], pt[2], world.rand, true);
+				TemplateWall sws = TemplateWall.pickBiomeWeightedWallStyle(pws.streets, world, pt[0], pt[2], random, true);
 				sws.MergeWalls = true;
                 BuildingDoubleWall street =
                         new BuildingDoubleWall(tries, this, sws, Dir.randomDir(random),
@@ -178,7 +210,8 @@ public class UndergroundCityBuilder extends AbstractBuilder {
                     street.build();
 					streets.add(street);
 					successes++;
-				}
+                } else
+                    street.releasePaths();
 				if (successes > Math.min(hollows.size() * pws.StreetDensity, 4 * pws.StreetDensity))
 					break;
 			}
@@ -205,7 +238,7 @@ public class UndergroundCityBuilder extends AbstractBuilder {
 		if (diam < MIN_DIAM)
 			return false;
         if (j - diam / 2 < 10
-                || j + diam / 2 > findSurfaceJ(world, i + diam / 2, k + diam / 2, WORLD_MAX_Y,
+                || j + diam / 2 > probe.findSurfaceJ(i + diam / 2, k + diam / 2, WORLD_MAX_Y,
                         false, IGNORE_WATER) - 3)
 			return false;
 		hollows.add(new int[] { i, j, k, diam, 0 });
@@ -221,8 +254,8 @@ public class UndergroundCityBuilder extends AbstractBuilder {
 			for (int y1 = 0; y1 < top_diam; y1++) {
 				for (int x1 = 0; x1 < top_diam; x1++) {
                     if (Shape.CIRCLE_SHAPE[top_diam][x1][y1] >= 0) {
-                        WorldUtil.setBlockAndMetaNoLighting(world, i + offset + x1, j + z1, k
-                                + offset + y1, Blocks.air, 0, 2);
+                        placer.setBlockNoLighting(i + offset + x1, j + z1, k + offset + y1,
+                                Blocks.air, 0, 2);
                     }
 				}
 			}
@@ -231,8 +264,8 @@ public class UndergroundCityBuilder extends AbstractBuilder {
                     if (Shape.CIRCLE_SHAPE[top_diam][x1][y1] >= 0) {
 						//keep gravel and water from pouring in
 						for (int z2 = z1 + 1; z2 <= z1 + 3; z2++)
-							if (BlockProperties.get(world.getBlock(i + offset + x1, j + z2, k + offset + y1)).isFlowing) {
-								world.setBlock(i + offset + x1, j + z2, k + offset + y1, Blocks.stone, 0, 2);
+							if (BlockProperties.isFlowing(placer.getBlock(i + offset + x1, j + z2, k + offset + y1))) {
+								placer.setBlock(i + offset + x1, j + z2, k + offset + y1, Blocks.stone, 0, 2);
 							}
                     }
 				}
@@ -244,17 +277,17 @@ public class UndergroundCityBuilder extends AbstractBuilder {
 				for (int y1 = 0; y1 < bottom_diam; y1++) {
 					for (int x1 = 0; x1 < bottom_diam; x1++) {
                         if (Shape.CIRCLE_SHAPE[bottom_diam][x1][y1] >= 0) {
-                            WorldUtil.setBlockAndMetaNoLighting(world, i + offset + x1, j - z1, k
-                                    + offset + y1, Blocks.air, 0, 2);
+                            placer.setBlockNoLighting(i + offset + x1, j - z1, k + offset + y1,
+                                    Blocks.air, 0, 2);
                         }
 					}
 				}
 				for (int y1 = 0; y1 < bottom_diam; y1++) {
 					for (int x1 = 0; x1 < bottom_diam; x1++) {
                         if (Shape.CIRCLE_SHAPE[bottom_diam][x1][y1] >= 0) {
-							Block blockId = world.getBlock(i + offset + x1, j - z1 - 1, k + offset + y1);
-							if (BlockProperties.get(blockId).isOre && blockId != Blocks.coal_ore)
-								world.setBlock(i + offset + x1, j - z1 - 1, k + offset + y1, Blocks.stone, 0, 2);
+							Block blockId = placer.getBlock(i + offset + x1, j - z1 - 1, k + offset + y1);
+							if (BlockProperties.isOre(blockId) && blockId != Blocks.coal_ore)
+								placer.setBlock(i + offset + x1, j - z1 - 1, k + offset + y1, Blocks.stone, 0, 2);
                         }
 					}
 				}
@@ -290,7 +323,7 @@ public class UndergroundCityBuilder extends AbstractBuilder {
     }
 
     @Override
-    public CityDataManager getCityDataManager() {
-        return cityDataManager;
+    public City getCity() {
+        return city;
     }
 }
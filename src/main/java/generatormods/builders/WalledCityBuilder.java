@@ -22,16 +22,24 @@ import generatormods.buildings.Building;
 import generatormods.buildings.BuildingDoubleWall;
 import generatormods.buildings.BuildingTower;
 import generatormods.buildings.BuildingWall;
+import generatormods.catalog.StructureRecord;
 import generatormods.config.chests.ChestContentsSpec;
 import generatormods.config.chests.ChestType;
 import generatormods.config.templates.TemplateWall;
+import generatormods.metrics.PlanStage;
+import generatormods.metrics.RejectReason;
+import generatormods.planning.Blueprint;
 import generatormods.util.WorldUtil;
 import generatormods.util.build.BlockProperties;
 import generatormods.util.build.Dir;
 import generatormods.util.build.Handedness;
+import generatormods.walledcity.City;
 import generatormods.walledcity.CityDataManager;
+import generatormods.walledcity.EnclosureMask;
+import generatormods.walledcity.FreeCellSampler;
 import generatormods.walledcity.ILayoutGenerator;
 import generatormods.walledcity.LayoutCode;
+import generatormods.walledcity.LayoutGrid;
 import generatormods.walledcity.WalledCityChatHandler;
 
 import java.io.BufferedWriter;
@@ -46,8 +54,11 @@ import java.util.Random;
 
 import net.minecraft.block.Block;
 import net.minecraft.init.Blocks;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
 import net.minecraft.util.ChunkCoordinates;
 import net.minecraft.world.World;
+import net.minecraft.world.biome.BiomeGenBase;
 
 import org.apache.logging.log4j.Logger;
 
@@ -55,7 +66,6 @@ import static generatormods.util.WorldUtil.HIT_WATER;
 import static generatormods.util.WorldUtil.IGNORE_WATER;
 import static generatormods.util.WorldUtil.SEA_LEVEL;
 import static generatormods.util.WorldUtil.WORLD_MAX_Y;
-import static generatormods.util.WorldUtil.findSurfaceJ;
 
 /**
  * Generates walled cities in the Minecraft world. Walled cities are composed of 4 wall template
@@ -68,6 +78,11 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
 	private final static int MIN_CITY_LENGTH = 40;
 	private final static int MIN_SIDE_LENGTH = 10; //can be less than MIN_CITY_LENGTH due to squiggles
 	private final static float MAX_WATER_PERCENTAGE = 0.4f;
+    /* The survey samples a SURVEY_SAMPLES square grid, and only rejects sites that are clearly wet */
+    private final static int SURVEY_SAMPLES = 8;
+    private final static float SURVEY_MAX_WATER_PERCENTAGE = 0.6f;
+    /* How many free columns randInteriorPoint() tries before giving up on a wet city */
+    private final static int MAX_SEED_TRIES = 20;
 
 	//**** WORKING VARIABLES **** 
 	private TemplateWall ows, sws;
@@ -75,9 +90,26 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
     private Handedness axXHand;
     private Dir[] dir = null;
 	private int Lmean, jmean;
+    /* The style's MinL, but at least MIN_CITY_LENGTH. The style is shared, so it is not changed. */
+    private int minLength;
 	private final int cityType;
 	private int corner1[], corner2[], mincorner[];
-    public LayoutCode[][] layout;
+    /* The box around the city walls, for the StructureCatalog */
+    private int[] cityBounds;
+    /* The city being built, once build() registered it */
+    private City city;
+    /* The interiors of the planned walls, by buffer, see getEnclosure() */
+    private final Map<Integer, EnclosureMask> enclosures = new HashMap<Integer, EnclosureMask>();
+    /* The unclaimed parts of the enclosures, by buffer, see randInteriorPoint() */
+    private final Map<Integer, FreeCellSampler> streetSeeds =
+            new HashMap<Integer, FreeCellSampler>();
+    /* The direction that a replayed blueprint was planned in, see readPlan() */
+    private Dir replayDir;
+    private Handedness replayHand;
+    /* The ID and origin picked by plan() */
+    private int cityID;
+    private int[] origin;
+    public LayoutGrid layout;
 
     private WalledCityChatHandler chatHandler;
     public CityDataManager cityDataManager;
@@ -99,50 +131,108 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
 	}
 
 	@Override
-	public boolean generate(int i0, int j0, int k0) {
-        logger.debug("Attempting to generate WalledCity near ({},{},{})", i0, j0, k0);
-        ows = TemplateWall.pickBiomeWeightedWallStyle(cityStyles, world, i0, k0, world.rand, false);
+	public boolean plan(int i0, int j0, int k0) {
+        if (logger.isDebugEnabled())
+            logger.debug("Attempting to generate WalledCity near ({},{},{})", i0, j0, k0);
+        int biomeId = placer.getBiomeId(i0, k0);
+        ows = TemplateWall.pickBiomeWeightedWallStyle(cityStyles, biomeId, random, false);
 		if (ows == null)
-			return false;
-		sws = TemplateWall.pickBiomeWeightedWallStyle(ows.streets, world, i0, k0, world.rand, false);
+			return reject(RejectReason.NO_STYLE);
+		sws = TemplateWall.pickBiomeWeightedWallStyle(ows.streets, biomeId, random, false);
 		if (sws == null)
-			return false;
-        if (!cityDataManager.isCitySeparated(world, i0, k0, cityType)) {
-            logger.debug("Too close to another WalledCity");
-			return false;
-        }
+			return reject(RejectReason.NO_STYLE);
 		int ID = (random.nextInt(9000) + 1000) * 100;
         int minJ = ows.LevelInterior ? SEA_LEVEL - 1 : BuildingWall.NO_MIN_J;
 		//boolean circular=random.nextFloat() < ows.CircularProb;
 		chooseDirection(i0 >> 4, k0 >> 4);
 		//==========================      outer walls    ====================================================
-        if (ows.MinL < MIN_CITY_LENGTH)
-            ows.MinL = MIN_CITY_LENGTH;
+        minLength = Math.max(ows.MinL, MIN_CITY_LENGTH);
+        int length0 = minLength + random.nextInt(ows.MaxL - minLength);
+        int length1 = minLength + random.nextInt(ows.MaxL - minLength);
+        // Cheapest stages first, see PlanStage
+        long start = System.nanoTime();
+        if (!endStage(PlanStage.SURVEY, start, surveySite(ID, i0, k0, length0, length1)))
+            return false;
+        start = System.nanoTime();
+        if (!endStage(PlanStage.WALLS, start, planWalls(ID, i0, j0, k0, minJ, length0, length1)))
+            return false;
+        start = System.nanoTime();
+        if (!endStage(PlanStage.SITE_CHECKS, start, checkSite(ID)))
+            return false;
+        cityID = ID;
+        origin = new int[] {i0, j0, k0};
+        return true;
+    }
+
+    /*
+     * Samples the square that the first two walls are headed to enclose, before planning them: the
+     * projected corners have to be far enough from other cities, and unless the interior is
+     * levelled, not much more of it than MAX_WATER_PERCENTAGE may be ocean or water.
+     */
+    private boolean surveySite(int ID, int i0, int k0, int length0, int length1) {
+        int[][] corners = new int[4][];
+        corners[0] = new int[] {i0, k0};
+        corners[1] = new int[] {i0 + dir[0].i * length0, k0 + dir[0].k * length0};
+        corners[2] =
+                new int[] {corners[1][0] + dir[1].i * length1, corners[1][1] + dir[1].k * length1};
+        corners[3] = new int[] {i0 + dir[1].i * length1, k0 + dir[1].k * length1};
+        for (int[] corner : corners) {
+            if (!cityDataManager.isCitySeparated(world, corner[0], corner[1], cityType)) {
+                logger.debug("City {} would be too close to another WalledCity", ID);
+                return reject(RejectReason.TOO_CLOSE_TO_CITY);
+            }
+        }
+        if (ows.LevelInterior)
+            return true;
+        int water = 0;
+        for (int a = 0; a < SURVEY_SAMPLES; a++) {
+            for (int b = 0; b < SURVEY_SAMPLES; b++) {
+                // The middle of each cell of a SURVEY_SAMPLES by SURVEY_SAMPLES grid
+                int along0 = (2 * a + 1) * length0 / (2 * SURVEY_SAMPLES);
+                int along1 = (2 * b + 1) * length1 / (2 * SURVEY_SAMPLES);
+                int i = i0 + dir[0].i * along0 + dir[1].i * along1;
+                int k = k0 + dir[0].k * along0 + dir[1].k * along1;
+                int biomeId = placer.getBiomeId(i, k);
+                if (biomeId == BiomeGenBase.ocean.biomeID
+                        || biomeId == BiomeGenBase.deepOcean.biomeID
+                        || probe.findSurfaceJ(i, k, WORLD_MAX_Y, true, 3) == HIT_WATER)
+                    water++;
+            }
+        }
+        if (water > SURVEY_MAX_WATER_PERCENTAGE * SURVEY_SAMPLES * SURVEY_SAMPLES) {
+            logger.debug("Rejected: {}, city: {}, survey found {} of {} samples in water", ows.name,
+                    ID, water, SURVEY_SAMPLES * SURVEY_SAMPLES);
+            return reject(RejectReason.TOO_MUCH_WATER);
+        }
+        return true;
+    }
+
+    /* Plans and smooths the outer walls */
+    private boolean planWalls(int ID, int i0, int j0, int k0, int minJ, int length0, int length1) {
 		walls = new BuildingWall[4];
-		ows.setFixedRules(world.rand);
 		//plan walls[0]
-		walls[0] = new BuildingWall(ID, this, ows, dir[0], axXHand, ows.MinL + random.nextInt(ows.MaxL - ows.MinL), false, i0, j0, k0).setMinJ(minJ);
+		walls[0] = new BuildingWall(ID, this, ows, dir[0], axXHand, length0, false, i0, j0, k0).setMinJ(minJ);
 		walls[0].plan(1, 0, BuildingWall.DEFAULT_LOOKAHEAD, true);
-        if (walls[0].bLength < ows.MinL) {
+        if (walls[0].bLength < minLength) {
             logger.debug(
                     "Abandoning because wall[0]: {} planned length {} is less than targeted length {}. Reason: {}",
-                    walls[0].IDString(), walls[0].bLength, ows.MinL, walls[0].failString());
-			return false;
+                    walls[0].IDString(), walls[0].bLength, minLength, walls[0].failString());
+			return reject(RejectReason.forWallFail(walls[0].failCode));
         }
 		//plan walls[1]
 		walls[0].setCursor(walls[0].bLength - 1);
-		walls[1] = new BuildingWall(ID + 1, this, ows, dir[1], axXHand, ows.MinL + random.nextInt(ows.MaxL - ows.MinL), false, walls[0].getIJKPt(-1 - ows.TowerXOffset, 0, 1 + ows.TowerXOffset))
+		walls[1] = new BuildingWall(ID + 1, this, ows, dir[1], axXHand, length1, false, walls[0].getIJKPt(-1 - ows.TowerXOffset, 0, 1 + ows.TowerXOffset))
 				.setTowers(walls[0]).setMinJ(minJ);
 		if (!cityDataManager.isCitySeparated(world, walls[1].i1, walls[1].k1, cityType)) {
             logger.debug("wall[1] is too close to another WalledCity");
-			return false;
+			return reject(RejectReason.TOO_CLOSE_TO_CITY);
         }
 		walls[1].plan(1, 0, BuildingWall.DEFAULT_LOOKAHEAD, false);
-        if (walls[1].bLength < ows.MinL) {
+        if (walls[1].bLength < minLength) {
             logger.debug(
                     "Abandoning because wall[1]: {} planned length {} is less than targeted length {}. Reason: {}",
-                    walls[1].IDString(), walls[1].bLength, ows.MinL, walls[1].failString());
-			return false;
+                    walls[1].IDString(), walls[1].bLength, minLength, walls[1].failString());
+			return reject(RejectReason.forWallFail(walls[1].failCode));
         }
 		//plan walls[2]
 		walls[1].setCursor(walls[1].bLength - 1);
@@ -150,12 +240,12 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
         if (distToTarget < MIN_SIDE_LENGTH) {
             logger.debug("Rejecting because distToTarget: {} for wall[2] is less than ",
                     distToTarget, MIN_SIDE_LENGTH);
-			return false;
+			return reject(RejectReason.SIDE_TOO_SHORT);
         }
 		walls[2] = new BuildingWall(ID + 2, this, ows, dir[2], axXHand, distToTarget + 2, false, walls[1].getIJKPt(-1 - ows.TowerXOffset, 0, 1 + ows.TowerXOffset)).setTowers(walls[0]).setMinJ(minJ);
         if (!cityDataManager.isCitySeparated(world, walls[2].i1, walls[2].k1, cityType)) {
             logger.debug("wall[2] is too close to another WalledCity");
-			return false;
+			return reject(RejectReason.TOO_CLOSE_TO_CITY);
         }
 		walls[2].setCursor(0);
 		walls[2].setTarget(walls[2].getIJKPt(0, 0, distToTarget));
@@ -164,7 +254,7 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
             logger.debug(
                     "Abandoning because wall[2]: {} planned length {} is less than targeted length {}. Reason: {}",
                     walls[2].IDString(), walls[2].bLength, walls[2].y_targ, walls[2].failString());
-			return false;
+			return reject(RejectReason.forWallFail(walls[2].failCode));
 		}
 		//plan walls[3]
 		walls[2].setCursor(walls[2].bLength - 1);
@@ -172,12 +262,12 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
         if (distToTarget < MIN_SIDE_LENGTH) {
             logger.debug("Rejecting because distToTarget: {} for wall[3] is less than {}",
                     distToTarget, MIN_SIDE_LENGTH);
-			return false;
+			return reject(RejectReason.SIDE_TOO_SHORT);
         }
 		walls[3] = new BuildingWall(ID + 3, this, ows, dir[3], axXHand, distToTarget + 2, false, walls[2].getIJKPt(-1 - ows.TowerXOffset, 0, 1 + ows.TowerXOffset)).setTowers(walls[0]).setMinJ(minJ);
         if (!cityDataManager.isCitySeparated(world, walls[3].i1, walls[3].k1, cityType)) {
             logger.debug("wall[3] is too close to another WalledCity");
-			return false;
+			return reject(RejectReason.TOO_CLOSE_TO_CITY);
         }
 		walls[0].setCursor(0);
 		walls[3].setCursor(0);
@@ -187,14 +277,18 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
             logger.debug(
                     "Abandoning because wall[3]: {} planned length {} is less than targeted length {}. Reason: {}",
                     walls[3].IDString(), walls[3].bLength, walls[3].y_targ, walls[3].failString());
-			return false;
+			return reject(RejectReason.forWallFail(walls[3].failCode));
 		}
 		//smoothing
         for (BuildingWall w : walls) {
             logger.debug("Smoothing wall {}", w.IDString());
 			w.smooth(ows.ConcaveDownSmoothingScale, ows.ConcaveUpSmoothingScale, true);
         }
-		//======================= Additional site checks =======================================
+        return true;
+    }
+
+    /* Checks the site that the planned walls enclose */
+    private boolean checkSite(int ID) {
 		//calculate the corners
 		int[] xmax = new int[4];
 		for (int w = 0; w < 4; w++) {
@@ -220,64 +314,71 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
                 logger.debug(
                         "Rejected city {}, height at corner differed from mean by {}, which is greater than {}.",
                         ID, (Math.abs(w.j1 - jmean)), w.bLength / JMEAN_DEVIATION_SLOPE);
-				return false;
+				return reject(RejectReason.UNEVEN_CORNERS);
 			}
 		}
-		int cityArea = 0, waterArea = 0;
-        int incI = Integer.signum(corner2[0] - corner1[0]);
-        int incK = Integer.signum(corner2[2] - corner1[2]);
-		for (int i2 = corner1[0]; (corner2[0] - i2) * incI > 0; i2 += incI) {
-			for (int k2 = corner1[2]; (corner2[2] - k2) * incK > 0; k2 += incK) {
-				boolean enclosed = true;
-				for (BuildingWall w : walls)
-					if (w.ptIsToXHand(new int[] { i2, 0, k2 }, 1))
-						enclosed = false;
-				if (enclosed) {
-                    int j2 = findSurfaceJ(world, i2, k2, WORLD_MAX_Y, true, 3);
-					cityArea++;
-					if (j2 == HIT_WATER)
-						waterArea++;
-                    if (rejectOnPreexistingArtifacts && ows.LevelInterior && BlockProperties.get(world.getBlock(i2, j2, k2)).isArtificial) {
-                        logger.debug(
-                                "Rejected: {}, city: {}, found previous construction in city zone!",
-                                ows.name, ID);
-						return false;
-					}
-				}
-			}
+        cityBounds = walls[0].getBounds(Integer.MAX_VALUE).get(0);
+        for (int w = 1; w < 4; w++)
+            StructureRecord.union(cityBounds, walls[w].getBounds(Integer.MAX_VALUE).get(0));
+        if (catalog.overlaps(cityBounds))
+            return reject(RejectReason.OVERLAPS_STRUCTURE);
+        enclosures.clear();
+        streetSeeds.clear();
+        EnclosureMask interior = getEnclosure(1);
+		int cityArea = interior.size(), waterArea = 0;
+        for (int n = interior.next(0); n >= 0; n = interior.next(n + 1)) {
+            int i2 = interior.getI(n), k2 = interior.getK(n);
+            int j2 = probe.findSurfaceJ(i2, k2, WORLD_MAX_Y, true, 3);
+            if (j2 == HIT_WATER)
+                waterArea++;
+            if (rejectOnPreexistingArtifacts && ows.LevelInterior && BlockProperties.isArtificial(placer.getBlock(i2, j2, k2))) {
+                logger.debug(
+                        "Rejected: {}, city: {}, found previous construction in city zone!",
+                        ows.name, ID);
+                return reject(RejectReason.PREEXISTING_CONSTRUCTION);
+            }
 		}
 		if (!ows.LevelInterior && (float) waterArea / (float) cityArea > MAX_WATER_PERCENTAGE) {
             logger.debug("Rejected: {}, city: {}, too much water! City area was {}% water!",
                     ows.name, ID, (100.0f * waterArea / cityArea));
-			return false;
+			return reject(RejectReason.TOO_MUCH_WATER);
 		}
+        return true;
+    }
+
+    /**
+     * Builds the city planned by plan(), unless another city was built nearby since then.
+     */
+    @Override
+    public boolean build() {
+        int ID = cityID, i0 = origin[0], j0 = origin[1], k0 = origin[2];
 		//query the exploration handler again to see if we've built nearby cities in the meanwhile
 		for (BuildingWall w : walls) {
             if (!cityDataManager.isCitySeparated(world, w.i1, w.k1, cityType)) {
                 logger.debug("Rejected city: {} nearby city was built during planning!", ID);
-				return false;
+				return reject(RejectReason.CITY_BUILT_DURING_PLANNING);
 			}
 		}
 		//We've passed all checks, register this city site
 		walls[0].setCursor(0);
 		int[] cityCenter = new int[] { (walls[0].i1 + walls[1].i1 + walls[2].i1 + walls[3].i1) / 4, 0, (walls[0].k1 + walls[1].k1 + walls[2].k1 + walls[3].k1) / 4 };
-        cityCenter[1] = findSurfaceJ(world, cityCenter[0], cityCenter[1], WORLD_MAX_Y, false, 3);
-        cityDataManager.addCity(world, cityCenter[0], cityCenter[2], cityType);
-        cityDataManager.saveCityLocations(world);
+        cityCenter[1] = probe.findSurfaceJ(cityCenter[0], cityCenter[1], WORLD_MAX_Y, false, 3);
+        city = cityDataManager.addCity(world, cityCenter[0], cityCenter[2], cityType);
+        catalog.add("WalledCity", ows.name, cityBounds);
 		//=================================== Build it! =========================================
         logger.info("Building: {}, city: {}, in biome: {}, between: {} and {}", ows.name, ID,
                 world.getBiomeGenForCoordsBody(walls[0].i1, walls[0].k1).biomeName,
                 walls[0].localCoordString(0, 0, 0), walls[2].localCoordString(0, 0, 0));
         chatHandler.tellAllPlayers( "Building city...");
+		ows.setFixedRules(random);
 		if (ows.LevelInterior)
 			levelCity();
-		TemplateWall avenueWS = TemplateWall.pickBiomeWeightedWallStyle(ows.streets, world, i0, k0, world.rand, false);
+		TemplateWall avenueWS = TemplateWall.pickBiomeWeightedWallStyle(ows.streets, world, i0, k0, random, false);
 		LinkedList<BuildingWall> radialAvenues = new LinkedList<BuildingWall>();
 		//layout
-        layout = new LayoutCode[Math.abs(corner1[0] - corner2[0])][Math.abs(corner1[2] - corner2[2])];
-		for (int x = 0; x < layout.length; x++)
-			for (int y = 0; y < layout[0].length; y++)
-                layout[x][y] = LayoutCode.EMPTY;
+        layout =
+                new LayoutGrid(Math.abs(corner1[0] - corner2[0]),
+                        Math.abs(corner1[2] - corner2[2]));
 		for (BuildingWall w : walls)
             w.setLayoutCode(LayoutCode.WALL);
 		int gateFlankingTowers = 0;
@@ -314,7 +415,8 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
 				if (radialAvenue.bLength > 20) {
 					radialAvenue.smooth(10, 10, true);
 					radialAvenues.add(radialAvenue);
-				}
+                } else
+                    radialAvenue.releasePath();
 			}
 		}
 		//corner towers
@@ -364,30 +466,39 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
                         new BuildingDoubleWall(ID, this, sws,
                                 radialAvenue.bDir.rotate(1), Handedness.R_HAND,
                                 radialAvenue.getIJKPt(0, 0, 0));
-				if (crossAvenue.plan())
+				if (crossAvenue.plan()) {
+                    crossAvenue.setLayoutCode(LayoutCode.AVENUE);
 					crossAvenues.add(crossAvenue);
+                } else
+                    crossAvenue.releasePaths();
 			}
             radialAvenue.setLayoutCode(LayoutCode.AVENUE);
 		}
 		for (BuildingWall avenue : radialAvenues)
 			avenue.buildFromTML();
 		LinkedList<BuildingDoubleWall> plannedStreets = new LinkedList<BuildingDoubleWall>();
+        int seeded = 0;
 		for (int tries = 0; tries < maxStreetCount; tries++) {
 			int[] pt = randInteriorPoint();
 			if (pt != null) {
+                seeded++;
 				pt[1]++;//want block above surface block
-				sws = TemplateWall.pickBiomeWeightedWallStyle(ows.streets, world, i0, k0, world.rand, true);
-				if (pt[1] != -1) {
-					//streets
-                    BuildingDoubleWall street =
-                            new BuildingDoubleWall(ID + tries, this, sws, Dir.randomDir(random),
-                                    Handedness.R_HAND, pt);
-					if (street.plan()) {
-						plannedStreets.add(street);
-					}
-				}
+				sws = TemplateWall.pickBiomeWeightedWallStyle(ows.streets, world, i0, k0, random, true);
+                BuildingDoubleWall street =
+                        new BuildingDoubleWall(ID + tries, this, sws, Dir.randomDir(random),
+                                Handedness.R_HAND, pt);
+                if (street.plan()) {
+                    // Claim it now, so that later seeds avoid it
+                    street.setLayoutCode(LayoutCode.STREET);
+                    plannedStreets.add(street);
+                } else
+                    street.releasePaths();
 			}
 		}
+        logger.debug("City {} planned {} streets from {} seeds in {} tries", ID,
+                plannedStreets.size(), seeded, maxStreetCount);
+        if (getMetrics() != null)
+            getMetrics().addStreets(seeded, plannedStreets.size());
 		for (BuildingDoubleWall avenue : crossAvenues)
             avenue.build(LayoutCode.AVENUE);
 		for (BuildingDoubleWall street : plannedStreets)
@@ -405,11 +516,13 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
                 (new ChunkCoordinates(i0, j0, k0)));
 		chatHandler.chatCityBuilt(new int[] { i0, j0, k0, cityType, Lmean / 2 + 40 }, isUnderground());
 
-        cityDataManager.addCityToVillages(world, ID);
+        city.createVillages(world);
 		//printLayout(new File("layout.txt"));
 		//guard against memory leaks
 		layout = null;
 		walls = null;
+        enclosures.clear();
+        streetSeeds.clear();
 		return true;
 	}
 
@@ -420,9 +533,8 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
 				if (templateLayout[y][x]) {
                     int i = building.getI(x, y);
                     int k = building.getK(x, y);
-					if (i >= mincorner[0] && k >= mincorner[2] && i - mincorner[0] < layout.length && k - mincorner[2] < layout[0].length)
-                        if (!layoutCode.canOverride(layout[i - mincorner[0]][k - mincorner[2]]))
-							return false;
+                    if (!layout.isClear(i - mincorner[0], k - mincorner[2], layoutCode))
+						return false;
 				}
 			}
 		}
@@ -431,12 +543,8 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
 
 	@Override
     public boolean layoutIsClear(int[] pt1, int[] pt2, LayoutCode layoutCode) {
-		for (int i = Math.min(pt1[0], pt2[0]); i <= Math.max(pt1[0], pt2[0]); i++)
-			for (int k = Math.min(pt1[2], pt2[2]); k <= Math.max(pt1[2], pt2[2]); k++)
-				if (i >= mincorner[0] && k >= mincorner[2] && i - mincorner[0] < layout.length && k - mincorner[2] < layout[0].length)
-                    if (!layoutCode.canOverride(layout[i - mincorner[0]][k - mincorner[2]]))
-						return false;
-		return true;
+        return layout.isClear(pt1[0] - mincorner[0], pt1[2] - mincorner[2], pt2[0] - mincorner[0],
+                pt2[2] - mincorner[2], layoutCode);
 	}
 
 	@Override
@@ -445,8 +553,9 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
 			for (int x = 0; x < templateLayout[0].length; x++) {
 				if (templateLayout[y][x]) {
 					int i = building.getI(x, y), k = building.getK(x, y);
-					if (i >= mincorner[0] && k >= mincorner[2] && i - mincorner[0] < layout.length && k - mincorner[2] < layout[0].length)
-						layout[i - mincorner[0]][k - mincorner[2]] = layoutCode;
+                    layout.set(i - mincorner[0], k - mincorner[2], layoutCode);
+                    for (FreeCellSampler seeds : streetSeeds.values())
+                        seeds.remove(i, k);
 				}
 			}
 		}
@@ -454,18 +563,18 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
 
 	@Override
     public void setLayoutCode(int[] pt1, int[] pt2, LayoutCode layoutCode) {
-		for (int i = Math.min(pt1[0], pt2[0]); i <= Math.max(pt1[0], pt2[0]); i++)
-			for (int k = Math.min(pt1[2], pt2[2]); k <= Math.max(pt1[2], pt2[2]); k++)
-				if (i >= mincorner[0] && k >= mincorner[2] && i - mincorner[0] < layout.length && k - mincorner[2] < layout[0].length)
-					layout[i - mincorner[0]][k - mincorner[2]] = layoutCode;
+        layout.set(pt1[0] - mincorner[0], pt1[2] - mincorner[2], pt2[0] - mincorner[0],
+                pt2[2] - mincorner[2], layoutCode);
+        for (FreeCellSampler seeds : streetSeeds.values())
+            seeds.remove(pt1[0], pt1[2], pt2[0], pt2[2]);
 	}
 
 	private void chooseDirection(int chunkI, int chunkK) {
         Map<Dir, Boolean> exploredChunk = new HashMap<Dir, Boolean>();
-        exploredChunk.put(Dir.NORTH, world.blockExists(chunkI << 4, 0, (chunkK - 1) << 4));
-        exploredChunk.put(Dir.EAST,  world.blockExists((chunkI + 1) << 4, 0, chunkK << 4));
-        exploredChunk.put(Dir.SOUTH, world.blockExists(chunkI << 4, 0, (chunkK + 1) << 4));
-        exploredChunk.put(Dir.WEST,  world.blockExists((chunkI - 1) << 4, 0, chunkK << 4));
+        exploredChunk.put(Dir.NORTH, placer.isChunkLoaded(chunkI, chunkK - 1));
+        exploredChunk.put(Dir.EAST,  placer.isChunkLoaded(chunkI + 1, chunkK));
+        exploredChunk.put(Dir.SOUTH, placer.isChunkLoaded(chunkI, chunkK + 1));
+        exploredChunk.put(Dir.WEST,  placer.isChunkLoaded(chunkI - 1, chunkK));
 		//pick an explored direction if it exists
         dir = new Dir[4];
         Dir randDir = Dir.randomDir(random);
@@ -476,6 +585,11 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
 		//if RH direction explored, then turn RH; else turn LH;
 		//axXHand=2*random.nextInt(2)-1;
         axXHand = exploredChunk.get((dir[0].rotate(1))) ? Handedness.L_HAND : Handedness.R_HAND;
+        if (replayDir != null) {
+            // Which chunks are loaded is not part of the terrain, keep what the blueprint chose
+            dir[0] = replayDir;
+            axXHand = replayHand;
+        }
         dir[1] = dir[0].rotate(axXHand.opposite());
         dir[2] = dir[1].rotate(axXHand.opposite());
         dir[3] = dir[2].rotate(axXHand.opposite());
@@ -495,31 +609,24 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
                     jmin = w.yArray[n] + w.j1 + w.WalkHeight - 1;
 		}
 		int jmax = Math.max(jmean + Lmean / LEVELLING_DEVIATION_SLOPE, jmin);
-		for (pt[0] = corner1[0]; (corner2[0] - pt[0]) * incI > 0; pt[0] += incI) {
-			for (pt[2] = corner1[2]; (corner2[2] - pt[2]) * incK > 0; pt[2] += incK) {
-				boolean enclosed = true;
-				for (BuildingWall w : walls)
-					if (w.ptIsToXHand(pt, 1))
-						enclosed = false;
-				if (enclosed) {
-                    pt[1] = findSurfaceJ(world, pt[0], pt[2], WORLD_MAX_Y, false, IGNORE_WATER);
-					Block oldSurfaceBlockId = world.getBlock(pt[0], pt[1], pt[2]);
-					if (pt[1] > jmax) {
-						while (!world.isAirBlock(pt[0], pt[1] + 1, pt[2]))
-							pt[1]++; //go back up to grab any trees or whatnot
-						pt[1] += 10; //just to try to catch any overhanging blocks
-						for (; pt[1] > jmax; pt[1]--)
-							if (!world.isAirBlock(pt[0], pt[1], pt[2]))
-                                WorldUtil.setBlockAndMetaNoLighting(world, pt[0], pt[1], pt[2],
-                                        Blocks.air, 0, 2);
-						if (!world.isAirBlock(pt[0], jmax - 1, pt[2]))
-                            WorldUtil.setBlockAndMetaNoLighting(world, pt[0], jmax, pt[2],
-                                    oldSurfaceBlockId, 0, 2);
-					}
-					if (pt[1] < jmin)
-                        WorldUtil.fillDown(pt, jmin, world);
-				}
-			}
+        EnclosureMask interior = getEnclosure(1);
+        for (int n = interior.next(0); n >= 0; n = interior.next(n + 1)) {
+            pt[0] = interior.getI(n);
+            pt[2] = interior.getK(n);
+            pt[1] = probe.findSurfaceJ(pt[0], pt[2], WORLD_MAX_Y, false, IGNORE_WATER);
+            Block oldSurfaceBlockId = placer.getBlock(pt[0], pt[1], pt[2]);
+            if (pt[1] > jmax) {
+                while (!placer.isAirBlock(pt[0], pt[1] + 1, pt[2]))
+                    pt[1]++; //go back up to grab any trees or whatnot
+                pt[1] += 10; //just to try to catch any overhanging blocks
+                for (; pt[1] > jmax; pt[1]--)
+                    if (!placer.isAirBlock(pt[0], pt[1], pt[2]))
+                        placer.setBlockNoLighting(pt[0], pt[1], pt[2], Blocks.air, 0, 2);
+                if (!placer.isAirBlock(pt[0], jmax - 1, pt[2]))
+                    placer.setBlockNoLighting(pt[0], jmax, pt[2], oldSurfaceBlockId, 0, 2);
+            }
+            if (pt[1] < jmin)
+                WorldUtil.fillDown(pt, jmin, placer);
 		}
 		//update heightmap
 		for (int chunkI = corner1[0] >> 4; ((corner2[0] >> 4) - chunkI) * incI > 0; chunkI += incI)
@@ -536,9 +643,9 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
 			pw.println("   v   ");
 			pw.println("  -y   ");
 			pw.println();
-			for (int y = layout[0].length - 1; y >= 0; y--) {
-				for (int x = layout.length - 1; x >= 0; x--) {
-                    pw.print(layout[x][y].symbol);
+			for (int y = layout.length - 1; y >= 0; y--) {
+				for (int x = layout.width - 1; x >= 0; x--) {
+                    pw.print(layout.get(x, y).symbol);
 				}
 				pw.println();
 			}
@@ -548,42 +655,98 @@ public class WalledCityBuilder extends AbstractBuilder implements ILayoutGenerat
 	}
 
 	/**
-	 * @return Coordinates (i,j,k) of interior surface point, j will be -1 if
-	 *         point was water
+	 * Picks a street seed among the interior columns that no avenue, tower or street has claimed
+	 * yet. Columns that turn out to be water are dropped, so they are not picked again.
+	 *
+	 * @return Coordinates (i,j,k) of an interior surface point, or null if there is no free
+	 *         column on dry ground
 	 */
 	private int[] randInteriorPoint() {
-		int tries = 0;
-		int[] pt = new int[3];
         logger.debug(
                 "Finding random interior point for city seeded at corner ({},{},{}) walls[0]: {}",
                 walls[0].i1, walls[0].j1, walls[0].k1, walls[0].IDString());
-		while (tries < 20) {
-			pt[0] = mincorner[0] + random.nextInt(Math.abs(corner1[0] - corner2[0]));
-			pt[2] = mincorner[2] + random.nextInt(Math.abs(corner1[2] - corner2[2]));
-            pt[1] = findSurfaceJ(world, pt[0], pt[2], WORLD_MAX_Y, true, 3);
-			boolean enclosed = true;
-			for (BuildingWall w : walls)
-				if (w.ptIsToXHand(pt, -sws.WWidth))
-					enclosed = false;
-			if (enclosed)
-				return pt;
-			tries++;
-		}
-		logger.warn("Could not find point within bounds!");
-		return null;
+        FreeCellSampler seeds = streetSeeds.get(-sws.WWidth);
+        if (seeds == null) {
+            seeds = new FreeCellSampler(getEnclosure(-sws.WWidth), layout, mincorner[0],
+                    mincorner[2]);
+            streetSeeds.put(-sws.WWidth, seeds);
+        }
+        for (int tries = 0; tries < MAX_SEED_TRIES; tries++) {
+            int n = seeds.pick(random);
+            if (n < 0)
+                break;
+            int[] pt = new int[] {seeds.getI(n), 0, seeds.getK(n)};
+            pt[1] = probe.findSurfaceJ(pt[0], pt[2], WORLD_MAX_Y, true, 3);
+            if (pt[1] >= 0)
+                return pt;
+            seeds.remove(pt[0], pt[2]);
+        }
+        logger.debug("Could not find a free point on dry ground within bounds");
+        return null;
 	}
 
+    /**
+     * Returns the columns between the corners that are inside of the walls by the buffer. The masks
+     * are kept until the next plan(), since the street styles only have a few different widths.
+     */
+    private EnclosureMask getEnclosure(int buffer) {
+        EnclosureMask mask = enclosures.get(buffer);
+        if (mask == null) {
+            // The same columns as from corner1 towards corner2, without corner2
+            int minI = corner1[0] <= corner2[0] ? corner1[0] : corner2[0] + 1;
+            int minK = corner1[2] <= corner2[2] ? corner1[2] : corner2[2] + 1;
+            mask = new EnclosureMask(walls, buffer, minI, minK, Math.abs(corner2[0] - corner1[0]),
+                    Math.abs(corner2[2] - corner1[2]));
+            enclosures.put(buffer, mask);
+        }
+        return mask;
+    }
+
+    /* The direction, styles and outer walls that plan() decided */
+    @Override
+    protected void writePlan(NBTTagCompound tag) {
+        tag.setInteger("ID", cityID);
+        tag.setString("Dir", dir[0].name());
+        tag.setString("Hand", axXHand.name());
+        tag.setString("Style", ows.name);
+        tag.setString("Streets", sws.name);
+        NBTTagList wallTags = new NBTTagList();
+        for (BuildingWall wall : walls)
+            wallTags.appendTag(Blueprint.writeWall(wall));
+        tag.setTag("Walls", wallTags);
+    }
+
+    @Override
+    protected void readPlan(NBTTagCompound tag) {
+        try {
+            replayDir = Dir.valueOf(tag.getString("Dir"));
+            replayHand = Handedness.valueOf(tag.getString("Hand"));
+        } catch (IllegalArgumentException e) {
+            replayDir = null;
+            replayHand = null;
+        }
+    }
+
     protected boolean isUnderground() {
         return false;
     }
 
     @Override
-    public CityDataManager getCityDataManager() {
-        return cityDataManager;
+    public City getCity() {
+        return city;
     }
 
     @Override
     public ILayoutGenerator getLayoutGenerator() {
         return this;
     }
+
+    @Override
+    public int getPlanningChunkRadius() {
+        // The walls run from the starting point for up to MaxL blocks in two directions
+        int maxLength = 0;
+        for (TemplateWall style : cityStyles)
+            maxLength = Math.max(maxLength, style.MaxL);
+        return maxLength / 16 + 1;
+    }
 }
@@ -22,19 +22,19 @@ import generatormods.config.chests.ChestContentsSpec;
 import generatormods.config.chests.ChestItemSpec;
 import generatormods.config.chests.ChestType;
 import generatormods.config.templates.TemplateRule;
+import generatormods.placement.IBlockPlacer;
+import generatormods.planning.TerrainProbe;
 import generatormods.util.PickWeighted;
-import generatormods.util.WorldUtil;
 import generatormods.util.blocks.BlockAndMeta;
+import generatormods.util.blocks.DelayedBlockQueue;
 import generatormods.util.blocks.BlockExtended;
-import generatormods.util.blocks.PlacedBlock;
 import generatormods.util.build.BlockProperties;
 import generatormods.util.build.Dir;
 import generatormods.util.build.Handedness;
-import generatormods.walledcity.CityDataManager;
+import generatormods.walledcity.City;
 import generatormods.walledcity.ILayoutGenerator;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -48,10 +48,10 @@ import net.minecraft.tileentity.TileEntityChest;
 import net.minecraft.tileentity.TileEntityMobSpawner;
 import net.minecraft.tileentity.TileEntitySign;
 import net.minecraft.world.World;
+import net.minecraftforge.common.util.ForgeDirection;
 
 import org.apache.logging.log4j.Logger;
 
-import static generatormods.util.WorldUtil.findSurfaceJ;
 import static generatormods.util.build.DirToMetaMappings.BED_DIR_TO_META;
 import static generatormods.util.build.DirToMetaMappings.BED_META_TO_DIR;
 import static generatormods.util.build.DirToMetaMappings.BUTTON_DIR_TO_META;
@@ -104,15 +104,18 @@ import static generatormods.util.build.DirToMetaMappings.VINES_META_TO_DIR;
 public class Building {
     protected final IBuildingConfig config;
 	protected final World world;
+    /* All reads and writes of blocks go through the placer */
+    protected final IBlockPlacer placer;
+    /* Surface searches go through the probe, which remembers them */
+    protected final TerrainProbe probe;
 	protected final Random random;
     protected final Logger logger;
     protected final Map<ChestType, ChestContentsSpec> chestItems;
     protected final ILayoutGenerator layoutGenerator;
-    protected final CityDataManager cityDataManager;
 	protected TemplateRule bRule; // main structural blocktype
 	public int bWidth, bHeight, bLength;
 	public final int bID; // Building ID number
-    private final LinkedList<PlacedBlock> delayedBuildQueue;
+    private final DelayedBlockQueue delayedBuildQueue;
 
 	protected boolean centerAligned; // if true, alignPt x is the central axis of the building if false, alignPt is the origin
 
@@ -154,7 +157,8 @@ public class Building {
 	private final static int LIGHTING_INVERSE_DENSITY = 10;
 	private final static boolean[] randLightingHash = new boolean[512];
 	static {
-		Random rand = new Random();
+        // Fixed, so that a structure comes out the same every time it is built from the same seed
+		Random rand = new Random(LIGHTING_INVERSE_DENSITY);
 		for (int m = 0; m < randLightingHash.length; m++)
 			randLightingHash[m] = rand.nextInt(LIGHTING_INVERSE_DENSITY) == 0;
 	}
@@ -164,9 +168,10 @@ public class Building {
         bID = ID_;
         this.config = config;
         this.world = config.getWorld();
+        this.placer = config.getBlockPlacer();
+        this.probe = config.getTerrainProbe();
         this.random = config.getRandom();
         this.logger = config.getLogger();
-        this.cityDataManager = config.getCityDataManager();
         this.chestItems = config.getChestConfigs();
         this.layoutGenerator = config.getLayoutGenerator();
         bRule = buildingRule_;
@@ -184,7 +189,7 @@ public class Building {
             else
                 setOrigin(alignPt[0], alignPt[1], alignPt[2]);
         }
-        delayedBuildQueue = new LinkedList<PlacedBlock>();
+        delayedBuildQueue = new DelayedBlockQueue();
     }
 
     /**
@@ -224,13 +229,34 @@ public class Building {
         return pt;
     }
 
+    /**
+     * The world box that this building covers from the cursor position, as {minI, minJ, minK, maxI,
+     * maxJ, maxK}.
+     */
+    public int[] getBounds() {
+        int[] box = new int[6];
+        int[] corner = getIJKPt(0, 0, 0);
+        System.arraycopy(corner, 0, box, 0, 3);
+        System.arraycopy(corner, 0, box, 3, 3);
+        growBounds(box, getIJKPt(bWidth - 1, bHeight - 1, bLength - 1));
+        return box;
+    }
+
+    /* Grows a box from getBounds() to also cover the world point */
+    public static void growBounds(int[] box, int[] pt) {
+        for (int n = 0; n < 3; n++) {
+            box[n] = Math.min(box[n], pt[n]);
+            box[n + 3] = Math.max(box[n + 3], pt[n]);
+        }
+    }
+
     /**
      * Get the surface point (in world coordinates) based on the local building
      * coordinates (relative to the cursor position).
      */
     public final int[] getSurfaceIJKPt(int x, int z, int j, boolean wallIsSurface, int waterSurfaceBuffer) {
         int[] pt = getIJKPt(x, 0, z);
-        pt[1] = findSurfaceJ(world, pt[0], pt[2], j, wallIsSurface, waterSurfaceBuffer);
+        pt[1] = probe.findSurfaceJ(pt[0], pt[2], j, wallIsSurface, waterSurfaceBuffer);
         return pt;
     }
 
@@ -300,8 +326,8 @@ public class Building {
                 pt[0]--;
         }
         EntityPainting entitypainting = new EntityPainting(world, pt[0], pt[1], pt[2], PAINTING_DIR_TO_FACEDIR.get(dir));
-		if (!world.isRemote && entitypainting.onValidSurface())
-			world.spawnEntityInWorld(entitypainting);
+		if (!world.isRemote)
+			placer.spawnEntity(entitypainting);
 	}
 
     /**
@@ -346,8 +372,8 @@ public class Building {
 
     public void setSignOrPost(int x2, int y2, int z2, boolean post, int sDir, String[] lines) {
         int[] pt = getIJKPt(x2, y2, z2);
-		world.setBlock(pt[0], pt[1], pt[2], post ? Blocks.standing_sign : Blocks.wall_sign, sDir, 2);
-		TileEntitySign tileentitysign = (TileEntitySign) world.getTileEntity(pt[0], pt[1], pt[2]);
+		placer.setBlock(pt[0], pt[1], pt[2], post ? Blocks.standing_sign : Blocks.wall_sign, sDir, 2);
+		TileEntitySign tileentitysign = (TileEntitySign) placer.getTileEntity(pt[0], pt[1], pt[2]);
 		if (tileentitysign == null)
 			return;
         System.arraycopy(lines, 0, tileentitysign.signText, 0, Math.min(lines.length, 4));
@@ -374,11 +400,11 @@ public class Building {
 	}
 
     protected final Block getBlockIdLocal(int x, int y, int z) {
-        return world.getBlock(getI(x, z), getJ(y), getK(x, z));
+        return placer.getBlock(getI(x, z), getJ(y), getK(x, z));
 	}
 
     protected final int getBlockMetadataLocal(int x, int y, int z) {
-        return world.getBlockMetadata(getI(x, z), getJ(y), getK(x, z));
+        return placer.getBlockMetadata(getI(x, z), getJ(y), getK(x, z));
 	}
 
     /**
@@ -405,7 +431,7 @@ public class Building {
 
     protected final boolean isArtificialWallBlock(int x, int y, int z) {
         Block blockId = getBlockIdLocal(x, y, z);
-        return BlockProperties.get(blockId).isArtificial
+        return BlockProperties.isArtificial(blockId)
                 && !(blockId == Blocks.sandstone && (getBlockIdLocal(x, y + 1, z) == Blocks.sand || getBlockIdLocal(
                         x, y + 2, z) == Blocks.sand));
 	}
@@ -464,49 +490,51 @@ public class Building {
         Block blkId1 = getBlockIdLocal(x, y, z), blkId2 = getBlockIdLocal(x, y - 1, z);
 		// return ((blkId1==0 || blkId1==STEP_ID) && IS_WALL_BLOCK[blkId2] &&
 		// blkId2!=LADDER_ID);
-		return blkId1 == Blocks.air && BlockProperties.get(blkId2).isArtificial && blkId2 != Blocks.ladder;
+		return blkId1 == Blocks.air && BlockProperties.isArtificial(blkId2) && blkId2 != Blocks.ladder;
 	}
 
     protected final boolean isStairBlock(int x, int y, int z) {
         Block blkId = getBlockIdLocal(x, y, z);
-		return blkId == Blocks.stone_slab || BlockProperties.get(blkId).isStair;
+		return blkId == Blocks.stone_slab || BlockProperties.isStair(blkId);
 	}
 
     protected final boolean isWallable(int x, int y, int z) {
-        return BlockProperties.get(world.getBlock(getI(x, z), getJ(y), getK(x, z))).isWallable;
+        return BlockProperties.isWallable(placer.getBlock(getI(x, z), getJ(y), getK(x, z)));
 	}
 
 	protected final boolean isWallableIJK(int pt[]) {
-		return pt!=null && BlockProperties.get(world.getBlock(pt[0], pt[1], pt[2])).isWallable;
+		return pt!=null && BlockProperties.isWallable(placer.getBlock(pt[0], pt[1], pt[2]));
 	}
 
     protected final boolean isWallBlock(int x, int y, int z) {
-        return BlockProperties.get(world.getBlock(getI(x, z), getJ(y), getK(x, z))).isArtificial;
+        return BlockProperties.isArtificial(placer.getBlock(getI(x, z), getJ(y), getK(x, z)));
 	}
 
     public final void flushDelayed(){
-        while(delayedBuildQueue.size()>0){
-            PlacedBlock block = delayedBuildQueue.poll();
-            setDelayed(block.getBlock(), block.x, block.y, block.z, block.getMeta());
-        }
+        delayedBuildQueue.sortByChunk();
+        for (int n = 0; n < delayedBuildQueue.size(); n++)
+            setDelayed(delayedBuildQueue.getBlock(n), delayedBuildQueue.getI(n),
+                    delayedBuildQueue.getJ(n), delayedBuildQueue.getK(n),
+                    delayedBuildQueue.getMeta(n));
+        delayedBuildQueue.clear();
     }
 
 	protected void setDelayed(Block blc, int...block) {
-		if (BlockProperties.get(blc).isStair) {
+		if (BlockProperties.isStair(blc)) {
             BlockAndMeta temp = getDelayedStair(blc, block);
             blc = temp.getBlock();
             block[3] = temp.getMeta();
 		} else if (blc instanceof BlockVine) {
-			if (block[3] == 0 && !isSolidBlock(world.getBlock(block[0], block[1] + 1, block[2])))
+			if (block[3] == 0 && !isSolidBlock(placer.getBlock(block[0], block[1] + 1, block[2])))
 				block[3] = 1;
 			if (block[3] != 0) {
                 Dir dir = VINES_META_TO_DIR[block[3]];
 				while (true) {
-                    if (isSolidBlock(world.getBlock(block[0] + dir.i, block[1], block[2] + dir.k)))
+                    if (isSolidBlock(placer.getBlock(block[0] + dir.i, block[1], block[2] + dir.k)))
 						break;
                     dir = dir.rotate(1);
                     if (dir == VINES_META_TO_DIR[block[3]]) { // we've looped through everything
-						if (isSolidBlock(world.getBlock(block[0], block[1] + 1, block[2]))) {
+						if (isSolidBlock(placer.getBlock(block[0], block[1] + 1, block[2]))) {
                             dir = null;
 							break;
 						}
@@ -524,16 +552,15 @@ public class Building {
 		if (blc == Blocks.air && block[3]>=PAINTING_BLOCK_OFFSET)//Remember:Paintings are not blocks
 			setPainting(block, block[3]-PAINTING_BLOCK_OFFSET);
 		else if (blc == Blocks.torch) {
-			if (Blocks.torch.canPlaceBlockAt(world, block[0], block[1], block[2]))
-				world.setBlock(block[0], block[1], block[2], blc, block[3], 3);// force lighting update
+			if (canPlaceTorchAt(block[0], block[1], block[2]))
+				placer.setBlock(block[0], block[1], block[2], blc, block[3], 3);// force lighting update
 		} else if (blc == Blocks.glowstone)
-			world.setBlock(block[0], block[1], block[2], blc, block[3], 3);// force lighting update
+			placer.setBlock(block[0], block[1], block[2], blc, block[3], 3);// force lighting update
 		else if(blc!=null) {
             if((randLightingHash[(block[0] & 0x7) | (block[1] & 0x38) | (block[2] & 0x1c0)]))
-                world.setBlock(block[0], block[1], block[2], blc, block[3], 3);
+                placer.setBlock(block[0], block[1], block[2], blc, block[3], 3);
             else
-                WorldUtil.setBlockAndMetaNoLighting(world, block[0], block[1], block[2], blc,
-                        block[3], 3);
+                placer.setBlockNoLighting(block[0], block[1], block[2], blc, block[3], 3);
         }
 	}
 
@@ -542,11 +569,11 @@ public class Building {
         int dirX = block[0] - STAIRS_META_TO_DIR[block[3] % 4].i;
         int dirZ = block[2] - STAIRS_META_TO_DIR[block[3] % 4].k;
         if(world.getHeightValue(dirX, dirZ)>block[1]) {
-            Block adjId = world.getBlock(dirX, block[1], dirZ);
-            Block aboveID = world.getBlock(block[0], block[1] + 1, block[2]);
-            if (BlockProperties.get(aboveID).isGround && BlockProperties.get(adjId).isGround) {
+            Block adjId = placer.getBlock(dirX, block[1], dirZ);
+            Block aboveID = placer.getBlock(block[0], block[1] + 1, block[2]);
+            if (BlockProperties.isGround(aboveID) && BlockProperties.isGround(adjId)) {
                 return new BlockAndMeta(blc, block[3]).stairToSolid();
-            } else if (!BlockProperties.get(adjId).isWallable || !BlockProperties.get(aboveID).isWallable) {
+            } else if (!BlockProperties.isWallable(adjId) || !BlockProperties.isWallable(aboveID)) {
                 return new BlockAndMeta(null, 0); // solid or liquid non-wall block. In this case, just don't build the stair (aka preserve block).
             }
         }
@@ -569,20 +596,19 @@ public class Building {
 
     protected final void setBlockLocal(int x, int y, int z, Block blockID, int metadata) {
         int[] pt = getIJKPt(x, y, z);
-        if (blockID == Blocks.air && world.isAirBlock(pt[0], pt[1], pt[2]))
+        if (blockID == Blocks.air && placer.isAirBlock(pt[0], pt[1], pt[2]))
             return;
         if (!(blockID instanceof BlockChest))
             emptyIfChest(pt);
-        if (BlockProperties.get(blockID).isDelayed){
-            delayedBuildQueue.offer(new PlacedBlock(blockID, rotateMetadata(blockID, metadata),
-                    new int[] {pt[0], pt[1], pt[2]}));
+        if (BlockProperties.isDelayed(blockID)){
+            delayedBuildQueue.add(pt[0], pt[1], pt[2], blockID, rotateMetadata(blockID, metadata));
         } else if (randLightingHash[(x & 0x7) | (z & 0x38) | (y & 0x1c0)]) {
-            world.setBlock(pt[0], pt[1], pt[2], blockID, rotateMetadata(blockID, metadata), 2);
+            placer.setBlock(pt[0], pt[1], pt[2], blockID, rotateMetadata(blockID, metadata), 2);
         } else {
-            WorldUtil.setBlockAndMetaNoLighting(world, pt[0], pt[1], pt[2], blockID,
+            placer.setBlockNoLighting(pt[0], pt[1], pt[2], blockID,
                     rotateMetadata(blockID, metadata), 2);
         }
-        if (BlockProperties.get(blockID).isDoor) {
+        if (BlockProperties.isDoor(blockID)) {
             addDoorToNewListIfAppropriate(pt[0], pt[1], pt[2]);
         }
 	}
@@ -623,19 +649,18 @@ public class Building {
      */
     protected final void setBlockWithLightingLocal(int x, int y, int z, Block blockID, int metadata, boolean lighting) {
         int[] pt = getIJKPt(x, y, z);
-        if (blockID == Blocks.air && world.isAirBlock(pt[0], pt[1], pt[2]))
+        if (blockID == Blocks.air && placer.isAirBlock(pt[0], pt[1], pt[2]))
             return;
 		if (!(blockID instanceof BlockChest))
 			emptyIfChest(pt);
-		if (BlockProperties.get(blockID).isDelayed)
-            delayedBuildQueue.offer(new PlacedBlock(blockID, rotateMetadata(blockID, metadata),
-                    new int[] {pt[0], pt[1], pt[2]}));
+		if (BlockProperties.isDelayed(blockID))
+            delayedBuildQueue.add(pt[0], pt[1], pt[2], blockID, rotateMetadata(blockID, metadata));
 		else if (lighting)
-			world.setBlock(pt[0], pt[1], pt[2], blockID, rotateMetadata(blockID, metadata), 3);
+			placer.setBlock(pt[0], pt[1], pt[2], blockID, rotateMetadata(blockID, metadata), 3);
 		else
-            WorldUtil.setBlockAndMetaNoLighting(world, pt[0], pt[1], pt[2], blockID,
+            placer.setBlockNoLighting(pt[0], pt[1], pt[2], blockID,
                     rotateMetadata(blockID, metadata), 3);
-		if (BlockProperties.get(blockID).isDoor) {
+		if (BlockProperties.isDoor(blockID)) {
 			addDoorToNewListIfAppropriate(pt[0], pt[1], pt[2]);
 		}
 	}
@@ -659,20 +684,19 @@ public class Building {
         int[] pt = getIJKPt(x, y, z);
 		if (blockID instanceof BlockAir) {
             if(extra.equals(TemplateRule.SPECIAL_STAIR) && metadata<=0){
-                world.setBlock(pt[0], pt[1], pt[2], Blocks.stone_slab, rotateMetadata(Blocks.stone_slab, -metadata), 2);
+                placer.setBlock(pt[0], pt[1], pt[2], Blocks.stone_slab, rotateMetadata(Blocks.stone_slab, -metadata), 2);
                 return;
             }
             if (extra.equals(TemplateRule.SPECIAL_PAINT) && metadata>=PAINTING_BLOCK_OFFSET) {//Remember:Paintings are not blocks
-                delayedBuildQueue.offer(new PlacedBlock(blockID, metadata, new int[] {pt[0], pt[1],
-                        pt[2]}));
+                delayedBuildQueue.add(pt[0], pt[1], pt[2], blockID, metadata);
                 return;
             }
-			Block presentBlock = world.getBlock(pt[0], pt[1], pt[2]);
-			if (!presentBlock.isAir(world, pt[0], pt[1], pt[2]) && !BlockProperties.get(presentBlock).isWater) {
-				if (!(BlockProperties.get(world.getBlock(pt[0] - 1, pt[1], pt[2])).isWater || BlockProperties.get(world.getBlock(pt[0], pt[1], pt[2] - 1)).isWater
-						|| BlockProperties.get(world.getBlock(pt[0] + 1, pt[1], pt[2])).isWater || BlockProperties.get(world.getBlock(pt[0], pt[1], pt[2] + 1)).isWater || BlockProperties.get(world.getBlock(pt[0], pt[1] + 1,
-						pt[2])).isWater)) {// don't adjacent to a water block
-					world.setBlockToAir(pt[0], pt[1], pt[2]);
+			Block presentBlock = placer.getBlock(pt[0], pt[1], pt[2]);
+			if (!presentBlock.isAir(placer, pt[0], pt[1], pt[2]) && !BlockProperties.isWater(presentBlock)) {
+				if (!(BlockProperties.isWater(placer.getBlock(pt[0] - 1, pt[1], pt[2])) || BlockProperties.isWater(placer.getBlock(pt[0], pt[1], pt[2] - 1))
+						|| BlockProperties.isWater(placer.getBlock(pt[0] + 1, pt[1], pt[2])) || BlockProperties.isWater(placer.getBlock(pt[0], pt[1], pt[2] + 1)) || BlockProperties.isWater(placer.getBlock(pt[0], pt[1] + 1,
+						pt[2])))) {// don't adjacent to a water block
+					placer.setBlock(pt[0], pt[1], pt[2], Blocks.air, 0, 3);
 				}
 			}
 		}else if(blockID instanceof BlockMobSpawner){
@@ -680,14 +704,16 @@ public class Building {
         }else if(blockID instanceof BlockChest){
 			setLootChest(pt, blockID, metadata, extra);
         }else{
-			world.setBlock(pt[0], pt[1], pt[2], blockID, metadata, 2);
+			placer.setBlock(pt[0], pt[1], pt[2], blockID, metadata, 2);
 		}
 	}
 
 	private void addDoorToNewListIfAppropriate(int par1, int par2, int par3) {
-        if (cityDataManager == null)
+        // Buildings are often planned before their city, so ask for it now
+        City city = config.getCity();
+        if (city == null)
             return;
-		int l = ((BlockDoor) Blocks.wooden_door).func_150013_e(this.world, par1, par2, par3);
+		int l = ((BlockDoor) Blocks.wooden_door).func_150013_e(this.placer, par1, par2, par3);
 		int i1;
 		if (l != 0 && l != 2) {
 			i1 = 0;
@@ -702,7 +728,7 @@ public class Building {
 				}
 			}
 			if (i1 != 0) {
-                cityDataManager.addDoor(bID, par1, par2, par3, 0, i1 > 0 ? -2 : 2, 0);
+                city.addDoor(par1, par2, par3, 0, i1 > 0 ? -2 : 2);
 			}
 		} else {
 			i1 = 0;
@@ -717,7 +743,7 @@ public class Building {
 				}
 			}
 			if (i1 != 0) {
-                cityDataManager.addDoor(bID, par1, par2, par3, i1 > 0 ? -2 : 2, 0, 0);
+                city.addDoor(par1, par2, par3, i1 > 0 ? -2 : 2, 0);
 			}
 		}
 	}
@@ -726,8 +752,10 @@ public class Building {
 	// *************************************************************************************************************//
 	private void emptyIfChest(int[] pt) {
 		// if block is a chest empty it
-		if (pt != null && world.getBlock(pt[0], pt[1], pt[2]) instanceof BlockChest) {
-			TileEntityChest tileentitychest = (TileEntityChest) world.getTileEntity(pt[0], pt[1], pt[2]);
+		if (pt != null && placer.getBlock(pt[0], pt[1], pt[2]) instanceof BlockChest) {
+			TileEntityChest tileentitychest = (TileEntityChest) placer.getTileEntity(pt[0], pt[1], pt[2]);
+			if (tileentitychest == null)
+				return;
 			for (int m = 0; m < tileentitychest.getSizeInventory(); m++)
 				tileentitychest.setInventorySlotContents(m, null);
 		}
@@ -745,7 +773,7 @@ public class Building {
             weights.add(chestItemSpec.getSelectionWeight());
         }
         ChestItemSpec chosenItem =
-                PickWeighted.pickWeightedOption(world.rand, weights,
+                PickWeighted.pickWeightedOption(random, weights,
                         chestContentsSpec.getChestItems());
         logger.debug("Chose {} from chest type {}", chosenItem.toSpecString(), chestType);
         Object obj = chosenItem.getBlockOrItem();
@@ -764,14 +792,14 @@ public class Building {
 
 	private int rotateMetadata(Block blockID, int metadata) {
 		int tempdata = 0;
-		if (BlockProperties.get(blockID).isStair) {
+		if (BlockProperties.isStair(blockID)) {
 			if (metadata >= 4) {
 				tempdata += 4;
 				metadata -= 4;
 			}
             return STAIRS_DIR_TO_META.get(orientDirToBDir(STAIRS_META_TO_DIR[metadata])) + tempdata;
 		}
-		if (BlockProperties.get(blockID).isDoor) {
+		if (BlockProperties.isDoor(blockID)) {
 			// think of door metas applying to doors with hinges on the left
 			// that open in (when seen facing in)
 			// in this case, door metas match the dir in which the door opens
@@ -1173,10 +1201,10 @@ public class Building {
 
 	private void setLootChest(int[] pt, Block chestBlock, int meta, String chestType) {
         logger.debug("creating chest at ({},{},{}) with type of {}", pt[0], pt[1], pt[2], chestType);
-        if (!world.setBlock(pt[0], pt[1], pt[2], chestBlock, meta, 2)) {
+        if (!placer.setBlock(pt[0], pt[1], pt[2], chestBlock, meta, 2)) {
             return;
         }
-        TileEntityChest chest = (TileEntityChest) world.getTileEntity(pt[0], pt[1], pt[2]);
+        TileEntityChest chest = (TileEntityChest) placer.getTileEntity(pt[0], pt[1], pt[2]);
         ChestType chestTypeEnum;
         try {
             chestTypeEnum = ChestType.valueOf(chestType);
@@ -1207,8 +1235,8 @@ public class Building {
 	private void setMobSpawner(int[] pt, Block spawner, int metadata, String info) {
         logger.debug("Creating mob spawner at ({},{},{}) with info of {}", pt[0], pt[1], pt[2],
                 info);
-		if(world.setBlock(pt[0], pt[1], pt[2], spawner, metadata, 2)){
-            TileEntityMobSpawner tileentitymobspawner = (TileEntityMobSpawner) world.getTileEntity(pt[0], pt[1], pt[2]);
+		if(placer.setBlock(pt[0], pt[1], pt[2], spawner, metadata, 2)){
+            TileEntityMobSpawner tileentitymobspawner = (TileEntityMobSpawner) placer.getTileEntity(pt[0], pt[1], pt[2]);
             if (tileentitymobspawner != null){
                 if(info.equals("UPRIGHT")) {
                     if (random.nextInt(3) == 0)
@@ -1236,6 +1264,22 @@ public class Building {
         spawner.func_145881_a().setEntityName(mob);
     }
 
+    /**
+     * Same as BlockTorch.canPlaceBlockAt(), but looks at the blocks through the placer, so that it
+     * sees blocks that have not been placed in the world yet.
+     */
+    private boolean canPlaceTorchAt(int i, int j, int k) {
+        if (placer.isSideSolid(i - 1, j, k, ForgeDirection.EAST, true)
+                || placer.isSideSolid(i + 1, j, k, ForgeDirection.WEST, true)
+                || placer.isSideSolid(i, j, k - 1, ForgeDirection.SOUTH, true)
+                || placer.isSideSolid(i, j, k + 1, ForgeDirection.NORTH, true)
+                || placer.isSideSolid(i, j - 1, k, ForgeDirection.UP, true))
+            return true;
+        Block below = placer.getBlock(i, j - 1, k);
+        return below == Blocks.fence || below == Blocks.nether_brick_fence
+                || below == Blocks.glass || below == Blocks.cobblestone_wall;
+    }
+
     private boolean isSolidBlock(Block blockID) {
 		return blockID.getMaterial().isSolid();
 	}
@@ -24,6 +24,7 @@ import generatormods.caruins.seeds.ISeed;
 import generatormods.config.CARuinsConfig;
 import generatormods.config.chests.ChestType;
 import generatormods.config.templates.TemplateRule;
+import generatormods.metrics.RejectReason;
 import generatormods.util.IntUtil;
 import generatormods.util.blocks.BlockAndMeta;
 import generatormods.util.blocks.BlockExtended;
@@ -48,7 +49,6 @@ import static generatormods.util.WorldUtil.HIT_WATER;
 import static generatormods.util.WorldUtil.IGNORE_WATER;
 import static generatormods.util.WorldUtil.SEA_LEVEL;
 import static generatormods.util.WorldUtil.WORLD_MAX_Y;
-import static generatormods.util.WorldUtil.findSurfaceJ;
 import static generatormods.util.build.DirToMetaMappings.LADDER_DIR_TO_META;
 import static generatormods.util.build.DirToMetaMappings.STAIRS_DIR_TO_META;
 
@@ -60,6 +60,8 @@ public class BuildingCellularAutomaton extends Building {
 	private final static int HOLE_FLOOR_BUFFER = 2, UNREACHED = -1;
 
     private CAState[][][] layers = null;
+    /* Why plan() or queryCanBuild() last returned false */
+    public RejectReason rejectReason = null;
     public CAState[][] seed = null;
     private CAState[] birthRule = null;
     private CAState[] survivalRule = null;
@@ -170,7 +172,7 @@ public class BuildingCellularAutomaton extends Building {
             for (int z = 0; z < bLength; z++)
                 for (int x = holeLimits[z][0] + 1; x <= holeLimits[z][1] - 1; x++)
                     if (layers[y][x][z] != ALIVE
-                            && !BlockProperties.get(getBlockIdLocal(x, y, z)).isArtificial)
+                            && !BlockProperties.isArtificial(getBlockIdLocal(x, y, z)))
                         setBlockLocal(x, y, z, Blocks.air);
 			//then gradually taper hole limits...
             if (y % 2 == 0) {
@@ -307,6 +309,7 @@ public class BuildingCellularAutomaton extends Building {
                     logger.debug(
                             "Rejecting because layer {} is not alive and is less than or equal to MinHeightBeforeOscillation: {}",
                             y, MinHeightBeforeOscillation);
+                    rejectReason = RejectReason.CA_DIED;
 					return false;
                 }
                 bHeight = y;
@@ -317,6 +320,7 @@ public class BuildingCellularAutomaton extends Building {
                     logger.debug(
                             "Rejecting because layer {} is fixed and layer {} is less than or equal to MinHeightBeforeOscillation: {}",
                             y, (y - 1), MinHeightBeforeOscillation);
+                    rejectReason = RejectReason.CA_OSCILLATION;
 					return false;
                 }
                 crystallizationHeight = y - 1;
@@ -326,6 +330,7 @@ public class BuildingCellularAutomaton extends Building {
                     logger.debug(
                             "Rejecting because layer {} is period2 and layer {} is less than or equal to MinHeightBeforeOscillation: {}",
                             y, (y - 2), MinHeightBeforeOscillation);
+                    rejectReason = RejectReason.CA_OSCILLATION;
 					return false;
                 }
                 crystallizationHeight = y - 2;
@@ -335,6 +340,7 @@ public class BuildingCellularAutomaton extends Building {
                     logger.debug(
                             "Rejecting because layer {} is period3 and layer {} is less than or equal to MinHeightBeforeOscillation: {}",
                             y, (y - 3), MinHeightBeforeOscillation);
+                    rejectReason = RejectReason.CA_OSCILLATION;
 					return false;
                 }
                 crystallizationHeight = y - 3;
@@ -373,14 +379,15 @@ public class BuildingCellularAutomaton extends Building {
         //do a height check to see we are not at the edge of a cliff etc.
         if (!shiftBuidlingJDown(15)) {
             logger.debug("Rejecting because the surface below the building varies by more than 15 meters");
+            rejectReason = RejectReason.UNEVEN_GROUND;
             return false;
         }
 		boolean hitWater = false;
         if (birthRule[2] != ALIVE) { //if not a 2-rule
-			int[] heights = new int[] { findSurfaceJ(world, getI(bWidth - 1, 0), getK(bWidth - 1, 0), j0 + 10, false, 0),
-					findSurfaceJ(world, getI(0, bLength - 1), getK(0, bLength - 1), j0 + 10, false, 0),
-					findSurfaceJ(world, getI(bWidth - 1, bLength - 1), getK(bWidth - 1, bLength - 1), j0 + 10, false, 0),
-					findSurfaceJ(world, getI(bWidth / 2, bLength / 2), getK(bWidth / 2, bLength / 2), j0 + 10, false, 0) };
+			int[] heights = new int[] { probe.findSurfaceJ(getI(bWidth - 1, 0), getK(bWidth - 1, 0), j0 + 10, false, 0),
+					probe.findSurfaceJ(getI(0, bLength - 1), getK(0, bLength - 1), j0 + 10, false, 0),
+					probe.findSurfaceJ(getI(bWidth - 1, bLength - 1), getK(bWidth - 1, bLength - 1), j0 + 10, false, 0),
+					probe.findSurfaceJ(getI(bWidth / 2, bLength / 2), getK(bWidth / 2, bLength / 2), j0 + 10, false, 0) };
 			for (int height : heights)
 				hitWater |= height == HIT_WATER;
 		}
@@ -425,11 +432,13 @@ public class BuildingCellularAutomaton extends Building {
                         getIJKPt(bWidth - 1, 0, bLength - 1), layoutCode);
             else {
                 logger.debug("Cannot build because layout is not clear");
+                rejectReason = RejectReason.LAYOUT_NOT_CLEAR;
 				return false;
             }
 		} else if (nonLayoutFrameCheck) {
             if (isObstructedFrame(0, ybuffer)) {
                 logger.debug("Cannot build because the frame is obstructed");
+                rejectReason = RejectReason.OBSTRUCTED_FRAME;
 				return false;
             }
 		}
@@ -438,10 +447,10 @@ public class BuildingCellularAutomaton extends Building {
 
 	public boolean shiftBuidlingJDown(int maxShift) {
 		//try 4 corners and center
-		int[] heights = new int[] { findSurfaceJ(world, getI(bWidth - 1, 0), getK(bWidth - 1, 0), j0 + 10, false, IGNORE_WATER),
-				findSurfaceJ(world, getI(0, bLength - 1), getK(0, bLength - 1), j0 + 10, false, IGNORE_WATER),
-				findSurfaceJ(world, getI(bWidth - 1, bLength - 1), getK(bWidth - 1, bLength - 1), j0 + 10, false, IGNORE_WATER),
-				findSurfaceJ(world, getI(bWidth / 2, bLength / 2), getK(bWidth / 2, bLength / 2), j0 + 10, false, IGNORE_WATER) };
+		int[] heights = new int[] { probe.findSurfaceJ(getI(bWidth - 1, 0), getK(bWidth - 1, 0), j0 + 10, false, IGNORE_WATER),
+				probe.findSurfaceJ(getI(0, bLength - 1), getK(0, bLength - 1), j0 + 10, false, IGNORE_WATER),
+				probe.findSurfaceJ(getI(bWidth - 1, bLength - 1), getK(bWidth - 1, bLength - 1), j0 + 10, false, IGNORE_WATER),
+				probe.findSurfaceJ(getI(bWidth / 2, bLength / 2), getK(bWidth / 2, bLength / 2), j0 + 10, false, IGNORE_WATER) };
         int minHeight = IntUtil.min(heights);
         if (IntUtil.max(heights) - minHeight > maxShift)
 			return false;
@@ -453,14 +462,14 @@ public class BuildingCellularAutomaton extends Building {
     private void makeFloorAt(int x, int y, int z, boolean[][] layout) {
         if (layout[x][z])
 			return;
-        if (BlockProperties.get(getBlockIdLocal(x, y, z)).isArtificial
-                && BlockProperties.get(getBlockIdLocal(x, y + 1, z)).isArtificial) { // pillar
-            if (!BlockProperties.get(getBlockIdLocal(x, y + 2, z)).isArtificial)
+        if (BlockProperties.isArtificial(getBlockIdLocal(x, y, z))
+                && BlockProperties.isArtificial(getBlockIdLocal(x, y + 1, z))) { // pillar
+            if (!BlockProperties.isArtificial(getBlockIdLocal(x, y + 2, z)))
                 setBlockLocal(x, y + 2, z, bRule);
 			return;
 		}
-        if (!BlockProperties.get(getBlockIdLocal(x, y - 1, z)).isArtificial) { //raise to floor
-            BlockAndMeta idAndMeta = bRule.getNonAirBlock(world.rand);
+        if (!BlockProperties.isArtificial(getBlockIdLocal(x, y - 1, z))) { //raise to floor
+            BlockAndMeta idAndMeta = bRule.getNonAirBlock(random);
             setBlockWithLightingLocal(x, y - 1, z, idAndMeta, true);
 		}
         removeBlockWithLighting(x, y, z);
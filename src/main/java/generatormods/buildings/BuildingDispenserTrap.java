@@ -146,10 +146,10 @@ public class BuildingDispenserTrap extends Building {
 
     private void setItemDispenser(int x, int y, int z, Dir metaDir, ItemStack itemstack) {
         int[] pt = getIJKPt(x, y, z);
-		world.setBlock(pt[0], pt[1], pt[2], Blocks.dispenser, 0, 2);
-		world.setBlockMetadataWithNotify(pt[0], pt[1], pt[2], LADDER_DIR_TO_META.get(orientDirToBDir(metaDir)), 3);
+		placer.setBlock(pt[0], pt[1], pt[2], Blocks.dispenser, 0, 2);
+		placer.setBlockMetadata(pt[0], pt[1], pt[2], LADDER_DIR_TO_META.get(orientDirToBDir(metaDir)), 3);
 		try {
-			TileEntityDispenser tileentitychest = (TileEntityDispenser) world.getTileEntity(pt[0], pt[1], pt[2]);
+			TileEntityDispenser tileentitychest = (TileEntityDispenser) placer.getTileEntity(pt[0], pt[1], pt[2]);
 			if (itemstack != null && tileentitychest != null)
 				tileentitychest.setInventorySlotContents(random.nextInt(tileentitychest.getSizeInventory()), itemstack);
 		} catch (Exception e) {
@@ -56,6 +56,9 @@ public class BuildingDoubleWall extends Building {
 		}
 		wall1.printWall();
 		wall2.printWall();
+        // Blueprints save the paths before smoothing, so restored halves are smoothed like new ones
+        wall1.keepPlannedPath();
+        wall2.keepPlannedPath();
 		//copy to one array for smoothing
 		//
 		// [0, ... temp.... ,b-1,b,...     ...,a+b-1]
@@ -90,20 +93,30 @@ public class BuildingDoubleWall extends Building {
 		return true;
 	}
 
+    /* Hands the path buffers of both walls back, for a double wall that will not be built */
+    public void releasePaths() {
+        wall1.releasePath();
+        wall2.releasePath();
+    }
+
     public void build() {
         build(null);
     }
 
     public void build(LayoutCode layoutCode) {
-		ws.setFixedRules(world.rand);
-        if (layoutCode != null) {
-			wall1.setLayoutCode(layoutCode);
-			wall2.setLayoutCode(layoutCode);
-		}
+		ws.setFixedRules(random);
+        if (layoutCode != null)
+            setLayoutCode(layoutCode);
 		wall1.buildFromTML();
 		wall2.buildFromTML();
 	}
 
+    /* Claims the cells of both walls in the layout */
+    public void setLayoutCode(LayoutCode layoutCode) {
+        wall1.setLayoutCode(layoutCode);
+        wall2.setLayoutCode(layoutCode);
+    }
+
 	public void buildTowers(boolean lSideTowers, boolean rSideTowers, boolean gatehouseTowers, boolean overlapTowers, boolean isAvenue) {
 		wall1.makeBuildings(lSideTowers, rSideTowers, gatehouseTowers, overlapTowers, isAvenue);
 		wall2.makeBuildings(lSideTowers, rSideTowers, gatehouseTowers, overlapTowers, isAvenue);
@@ -44,7 +44,7 @@ public class BuildingTML extends Building {
 	}
 
 	public void build() {
-		tmlt.setFixedRules(world.rand);
+		tmlt.setFixedRules(random);
 		//build base
 		int[][] base = tmlt.namedLayers.get("base");
         for (int z = 0; z < bLength; z++)
@@ -53,7 +53,7 @@ public class BuildingTML extends Building {
                     buildDown(x, -1, z, tmlt.rules[base[z][x]], tmlt.leveling, 0, 0);
 				else
                     WorldUtil.fillDown(getSurfaceIJKPt(x, z, j0 - 1, true, IGNORE_WATER), j0 - 1,
-                            world);
+                            placer);
 			}
 		//clear overhead
         for (int y = bHeight; y < tmlt.cutIn + tmlt.embed; y++)
@@ -81,8 +81,8 @@ public class BuildingTML extends Building {
 		//check to see if we are underwater
 		if (tmlt.waterHeight != TemplateTML.NO_WATER_CHECK) {
 			int waterCheckHeight = tmlt.waterHeight + tmlt.embed + 1; //have to unshift by embed
-			if (BlockProperties.get(getBlockIdLocal(0, waterCheckHeight, 0)).isWater || BlockProperties.get(getBlockIdLocal(0, waterCheckHeight, bLength - 1)).isWater
-					|| BlockProperties.get(getBlockIdLocal(bWidth - 1, waterCheckHeight, 0)).isWater || BlockProperties.get(getBlockIdLocal(bWidth - 1, waterCheckHeight, bLength - 1)).isWater)
+			if (BlockProperties.isWater(getBlockIdLocal(0, waterCheckHeight, 0)) || BlockProperties.isWater(getBlockIdLocal(0, waterCheckHeight, bLength - 1))
+					|| BlockProperties.isWater(getBlockIdLocal(bWidth - 1, waterCheckHeight, 0)) || BlockProperties.isWater(getBlockIdLocal(bWidth - 1, waterCheckHeight, bLength - 1)))
 				return false;
 		}
         if (layoutGenerator != null) {
@@ -61,7 +61,7 @@ public class BuildingTower extends Building {
                 undeadTower = true;
             ghastTower =
                     roofStyle == RoofStyle.CRENEL
-                            && SpawnerRule.getBlockOrHole(world.rand).equals(
+                            && SpawnerRule.getBlockOrHole(random).equals(
                                     BlockAndMeta.GHAST_SPAWNER);
 			if (ghastTower || random.nextInt(100) > SpawnerRule.chance)
 				undeadTower = false;
@@ -87,13 +87,13 @@ public class BuildingTower extends Building {
 						if (circular && (circle_shape[x1][y1] == 1) //circular sidewalls condition
 								|| !circular && (x1 == 0 || x1 == bWidth - 1 || y1 == 0 || y1 == bLength - 1)) //rectangular sidewalls condition
 						{
-							buffer[x1 + 1][z1 + 1][y1 + 1] = bRule.getBlockOrHole(world.rand);
+							buffer[x1 + 1][z1 + 1][y1 + 1] = bRule.getBlockOrHole(random);
 						} else
                             buffer[x1 + 1][z1 + 1][y1 + 1] = BlockAndMeta.AIR_WITH_NO_LIGHTING;
 					}
 					//column above source point
 					for (int z1 = -1; z1 < baseHeight - 1; z1++)
-						buffer[x1 + 1][z1 + 1][y1 + 1] = bRule.getBlockOrHole(world.rand);
+						buffer[x1 + 1][z1 + 1][y1 + 1] = bRule.getBlockOrHole(random);
 					//column below source point, set zmin to taper overhangs
 					//int zmin=hanging && y1>=TWidth/2 && isWallable(x1,-BUILDDOWN,y1) ?  Math.max(2*(y1-TWidth/2)+3*Math.abs(x1-TWidth/2)-5*TWidth/2,-BUILDDOWN) : -BUILDDOWN;
 					buildDown(x1, -2, y1, bRule, TOWER_LEVELING, 2, (bLength - y1 - 1) / 2);
@@ -122,7 +122,7 @@ public class BuildingTower extends Building {
 					if (!circular || circle_shape[x1][y1] == 0)
                         buffer[x1 + 1][z1 + 1][y1 + 1] =
                                 bRule.primaryBlock.getBlock() == Blocks.log ? new BlockAndMeta(
-                                        Blocks.planks, 0) : bRule.getBlockOrHole(world.rand);
+                                        Blocks.planks, 0) : bRule.getBlockOrHole(random);
 						//door torches
 						if (!undeadTower && bRule.chance == 100) {
                             buffer[torchX1 + 1][z1 + 3 + 1][1 + (circular && bLength == 6 ? 1 : 0) + 1] = BlockAndMeta.NORTH_FACING_TORCH;
@@ -139,14 +139,14 @@ public class BuildingTower extends Building {
                                         buffer[x1 + 1][z1 + 1][y1 + 1] = BlockAndMeta.AIR_WITH_LIGHTING;
 							}
 						} else if (SpawnerRule != TemplateRule.RULE_NOT_PROVIDED && random.nextInt(100) < SpawnerRule.chance && !ghastTower) {
-                            BlockAndMeta spawnerBlock = SpawnerRule.getNonAirBlock(world.rand);
+                            BlockAndMeta spawnerBlock = SpawnerRule.getNonAirBlock(random);
                             if (!spawnerBlock.equals(BlockAndMeta.GHAST_SPAWNER))
 								buffer[bWidth / 2 + 1][z1 + 1 + 1][sideWindowY + 1] = spawnerBlock;
 						}
 						//chests
 						//System.out.println("checking for chest");
 						if (ChestRule != TemplateRule.RULE_NOT_PROVIDED && random.nextInt(100) < ChestRule.chance)
-							buffer[bWidth - 2 + 1][z1 + 1 + 1][sideWindowY - 1 + 1] = ChestRule.getNonAirBlock(world.rand);
+							buffer[bWidth - 2 + 1][z1 + 1 + 1][sideWindowY - 1 + 1] = ChestRule.getNonAirBlock(random);
 						else if (floorHasUndeadSpawner && random.nextInt(100) < HAUNTED_CHEST_CHANCE) //even if no chest rule, can have chests if floorIsHaunted
                             buffer[bWidth - 2 + 1][z1 + 1 + 1][sideWindowY - 1 + 1] = z1 < 15 ? BlockAndMeta.TOWER_CHEST : BlockAndMeta.HARD_CHEST;
 						if (z1 == baseHeight - 1)
@@ -162,7 +162,7 @@ public class BuildingTower extends Building {
 		//*** roof ***
 		buildRoof();
         if (undeadTower && roofStyle == RoofStyle.CRENEL)
-			buffer[1 + 1][bHeight > baseHeight + 12 ? baseHeight + 9 : bHeight + 1][sideWindowY - 1 + 1] = bRule.getBlockOrHole(world.rand);
+			buffer[1 + 1][bHeight > baseHeight + 12 ? baseHeight + 9 : bHeight + 1][sideWindowY - 1 + 1] = bRule.getBlockOrHole(random);
 		//*** run decay ***
 		int zLim = bRule.chance >= 100 ? buffer[0].length : propagateCollapse(bRule.chance);
 		//*** build from buffer ***
@@ -273,7 +273,7 @@ public class BuildingTower extends Building {
 			for (int x = 0; x < xLim; x++) {
                 for (int z = 0; z < yLim; z++) {
                     if (buffer[x][y][z].getBlock() != Blocks.air
-                            && BlockProperties.get(buffer[x][y - 1][z].getBlock()).isLoaded
+                            && BlockProperties.isLoaded(buffer[x][y - 1][z].getBlock())
                             && support[x][y - 1][z] > 0) {
                         support[x][y][z] = 2;
 						levelCollapsed = false;
@@ -287,13 +287,13 @@ public class BuildingTower extends Building {
                     for (int z = 0; z < yLim; z++) {
                         if (buffer[x][y][z].getBlock() != Blocks.air && support[x][y][z] == 0) {
 							int neighbors = 0;
-                            if (x < xLim - 1 && BlockProperties.get(buffer[x + 1][y][z].getBlock()).isLoaded)
+                            if (x < xLim - 1 && BlockProperties.isLoaded(buffer[x + 1][y][z].getBlock()))
                                 neighbors += support[x + 1][y][z];
-                            if (x > 0 && BlockProperties.get(buffer[x - 1][y][z].getBlock()).isLoaded)
+                            if (x > 0 && BlockProperties.isLoaded(buffer[x - 1][y][z].getBlock()))
                                 neighbors += support[x - 1][y][z];
-                            if (z < yLim - 1 && BlockProperties.get(buffer[x][y][z + 1].getBlock()).isLoaded)
+                            if (z < yLim - 1 && BlockProperties.isLoaded(buffer[x][y][z + 1].getBlock()))
                                 neighbors += support[x][y][z + 1];
-                            if (z > 0 && BlockProperties.get(buffer[x][y][z - 1].getBlock()).isLoaded)
+                            if (z > 0 && BlockProperties.isLoaded(buffer[x][y][z - 1].getBlock()))
                                 neighbors += support[x][y][z - 1];
 							if (neighbors > random.nextInt(4))
                                 support[x][y][z] = 1;
@@ -374,38 +374,38 @@ public class BuildingTower extends Building {
 				for (int y1 = 0; y1 < bLength; y1++) {
 					for (int x1 = 0; x1 < bWidth; x1++) {
 						if (circle_shape[x1][y1] >= 0)
-							buffer[x1 + 1][bHeight + 1][y1 + 1] = bRule.getBlockOrHole(world.rand);
+							buffer[x1 + 1][bHeight + 1][y1 + 1] = bRule.getBlockOrHole(random);
                         if (Shape.CIRCLE_CRENEL[minHorizDim][x1][y1] == 1)
-							buffer[x1 + 1][bHeight + 1 + 1][y1 + 1] = bRule.getBlockOrHole(world.rand);
+							buffer[x1 + 1][bHeight + 1 + 1][y1 + 1] = bRule.getBlockOrHole(random);
 					}
 				}
 			} else { //square
 				for (int y1 = 0; y1 < bLength; y1++)
 					for (int x1 = 0; x1 < bWidth; x1++)
-						buffer[x1 + 1][bHeight + 1][y1 + 1] = bRule.getBlockOrHole(world.rand);
+						buffer[x1 + 1][bHeight + 1][y1 + 1] = bRule.getBlockOrHole(random);
 				for (int m = 0; m < bWidth; m += 2) {
                     if (!(getBlockIdLocal(m, bHeight, -1) == bRule.primaryBlock.getBlock() || getBlockIdLocal(
                             m, bHeight - 1, -1) == bRule.primaryBlock.getBlock()))
                         buffer[m + 1][bHeight + 1 + 1][0 + 1] =
                                 (m + 1) % 2 == 0 ? BlockAndMeta.AIR_WITH_LIGHTING : bRule
-                                        .getBlockOrHole(world.rand);
+                                        .getBlockOrHole(random);
                     if (!(getBlockIdLocal(m, bHeight, bLength) == bRule.primaryBlock.getBlock() || getBlockIdLocal(
                             m, bHeight - 1, bLength) == bRule.primaryBlock.getBlock()))
                         buffer[m + 1][bHeight + 1 + 1][bLength - 1 + 1] =
                                 (m + 1) % 2 == 0 ? BlockAndMeta.AIR_WITH_LIGHTING : bRule
-                                        .getBlockOrHole(world.rand);
+                                        .getBlockOrHole(random);
 				}
 				for (int m = 0; m < bLength; m += 2) {
                     if (!(getBlockIdLocal(-1, bHeight, m) == bRule.primaryBlock.getBlock() || getBlockIdLocal(
                             -1, bHeight - 1, m) == bRule.primaryBlock.getBlock()))
                         buffer[0 + 1][bHeight + 1 + 1][m + 1] =
                                 (m + 1) % 2 == 0 ? BlockAndMeta.AIR_WITH_LIGHTING : bRule
-                                        .getBlockOrHole(world.rand);
+                                        .getBlockOrHole(random);
                     if (!(getBlockIdLocal(bWidth, bHeight, m) == bRule.primaryBlock.getBlock() || getBlockIdLocal(
                             bWidth, bHeight - 1, m) == bRule.primaryBlock.getBlock()))
                         buffer[bWidth - 1 + 1][bHeight + 1 + 1][m + 1] =
                                 (m + 1) % 2 == 0 ? BlockAndMeta.AIR_WITH_LIGHTING : bRule
-                                        .getBlockOrHole(world.rand);
+                                        .getBlockOrHole(random);
 				}
 				for (int y1 = 1; y1 < bLength - 1; y1++)
 					for (int x1 = 1; x1 < bWidth - 1; x1++)
@@ -423,51 +423,51 @@ public class BuildingTower extends Building {
 					for (int y1 = m; y1 < bLength - m; y1++) {
                         buffer[x1 + 1][bHeight + m + 1][y1 + 1] = BlockAndMeta.AIR_WITH_LIGHTING;
 						if (m == (bWidth + 1) / 2 - 1)
-							buffer[x1 + 1][bHeight + m + 1 + 1][y1 + 1] = trimRule.getBlockOrHole(world.rand);
+							buffer[x1 + 1][bHeight + m + 1 + 1][y1 + 1] = trimRule.getBlockOrHole(random);
 					}
-					buffer[x1 + 1][bHeight + m + 1][m - 1 + 1] = northStairsRule.getBlockOrHole(world.rand);
-					buffer[x1 + 1][bHeight + m + 1][bLength - m + 1] = southStairsRule.getBlockOrHole(world.rand);
-					buffer[x1 + 1][bHeight + m + 1][m + 1] = doubleStepRule.getBlockOrHole(world.rand);
-					buffer[x1 + 1][bHeight + m + 1][bLength - m - 1 + 1] = doubleStepRule.getBlockOrHole(world.rand);
+					buffer[x1 + 1][bHeight + m + 1][m - 1 + 1] = northStairsRule.getBlockOrHole(random);
+					buffer[x1 + 1][bHeight + m + 1][bLength - m + 1] = southStairsRule.getBlockOrHole(random);
+					buffer[x1 + 1][bHeight + m + 1][m + 1] = doubleStepRule.getBlockOrHole(random);
+					buffer[x1 + 1][bHeight + m + 1][bLength - m - 1 + 1] = doubleStepRule.getBlockOrHole(random);
 				}
 				for (int y1 = m; y1 < bLength - m; y1++) {
-					buffer[m - 1 + 1][bHeight + m + 1][y1 + 1] = eastStairsRule.getBlockOrHole(world.rand);
-					buffer[bWidth - m + 1][bHeight + m + 1][y1 + 1] = westStairsRule.getBlockOrHole(world.rand);
-					buffer[m + 1][bHeight + m + 1][y1 + 1] = doubleStepRule.getBlockOrHole(world.rand);
-					buffer[bWidth - m - 1 + 1][bHeight + m + 1][y1 + 1] = doubleStepRule.getBlockOrHole(world.rand);
+					buffer[m - 1 + 1][bHeight + m + 1][y1 + 1] = eastStairsRule.getBlockOrHole(random);
+					buffer[bWidth - m + 1][bHeight + m + 1][y1 + 1] = westStairsRule.getBlockOrHole(random);
+					buffer[m + 1][bHeight + m + 1][y1 + 1] = doubleStepRule.getBlockOrHole(random);
+					buffer[bWidth - m - 1 + 1][bHeight + m + 1][y1 + 1] = doubleStepRule.getBlockOrHole(random);
 				}
-				buffer[m - 1 + 1][bHeight + m + 1][m - 1 + 1] = trimRule.getBlockOrHole(world.rand);
-				buffer[m - 1 + 1][bHeight + m + 1][bLength - m + 1] = trimRule.getBlockOrHole(world.rand);
-				buffer[bWidth - m + 1][bHeight + m + 1][m - 1 + 1] = trimRule.getBlockOrHole(world.rand);
-				buffer[bWidth - m + 1][bHeight + m + 1][bLength - m + 1] = trimRule.getBlockOrHole(world.rand);
+				buffer[m - 1 + 1][bHeight + m + 1][m - 1 + 1] = trimRule.getBlockOrHole(random);
+				buffer[m - 1 + 1][bHeight + m + 1][bLength - m + 1] = trimRule.getBlockOrHole(random);
+				buffer[bWidth - m + 1][bHeight + m + 1][m - 1 + 1] = trimRule.getBlockOrHole(random);
+				buffer[bWidth - m + 1][bHeight + m + 1][bLength - m + 1] = trimRule.getBlockOrHole(random);
 			}
         } else if (roofStyle == RoofStyle.SHALLOW) { //22 degrees sloped
 			for (int z12 = -1; z12 < (minHorizDim + 1) / 2; z12++) {
 				int z1 = (z12 + 1) / 2;
 				if ((z12 + 1) % 2 == 0) {
 					for (int y1 = z12 + 1; y1 < bLength - 2 * z1; y1++) {
-						buffer[z12 + 1][z1 + bHeight + 1][y1 + 1] = stepRule.getBlockOrHole(world.rand);
-						buffer[bWidth - z12 - 1 + 1][z1 + bHeight + 1][y1 + 1] = stepRule.getBlockOrHole(world.rand);
+						buffer[z12 + 1][z1 + bHeight + 1][y1 + 1] = stepRule.getBlockOrHole(random);
+						buffer[bWidth - z12 - 1 + 1][z1 + bHeight + 1][y1 + 1] = stepRule.getBlockOrHole(random);
 					}
 					for (int x1 = z12 + 1; x1 < bWidth - 2 * z1; x1++) {
-						buffer[x1 + 1][z1 + bHeight + 1][z12 + 1] = stepRule.getBlockOrHole(world.rand);
-						buffer[x1 + 1][z1 + bHeight + 1][bLength - z12 - 1 + 1] = stepRule.getBlockOrHole(world.rand);
+						buffer[x1 + 1][z1 + bHeight + 1][z12 + 1] = stepRule.getBlockOrHole(random);
+						buffer[x1 + 1][z1 + bHeight + 1][bLength - z12 - 1 + 1] = stepRule.getBlockOrHole(random);
 					}
-					buffer[z12 + 1][z1 + bHeight + 1][z12 + 1] = doubleStepRule.getBlockOrHole(world.rand);
-					buffer[z12 + 1][z1 + bHeight + 1][bLength - z12 - 1 + 1] = doubleStepRule.getBlockOrHole(world.rand);
-					buffer[bWidth - z12 - 1 + 1][z1 + bHeight + 1][z12 + 1] = doubleStepRule.getBlockOrHole(world.rand);
-					buffer[bWidth - z12 - 1 + 1][z1 + bHeight + 1][bLength - z12 - 1 + 1] = doubleStepRule.getBlockOrHole(world.rand);
+					buffer[z12 + 1][z1 + bHeight + 1][z12 + 1] = doubleStepRule.getBlockOrHole(random);
+					buffer[z12 + 1][z1 + bHeight + 1][bLength - z12 - 1 + 1] = doubleStepRule.getBlockOrHole(random);
+					buffer[bWidth - z12 - 1 + 1][z1 + bHeight + 1][z12 + 1] = doubleStepRule.getBlockOrHole(random);
+					buffer[bWidth - z12 - 1 + 1][z1 + bHeight + 1][bLength - z12 - 1 + 1] = doubleStepRule.getBlockOrHole(random);
 				} else {
 					for (int y1 = z12; y1 < bLength - z12; y1++)
 						for (int x1 = z12; x1 < bWidth - z12; x1++)
-							buffer[x1 + 1][z1 + bHeight + 1][y1 + 1] = doubleStepRule.getBlockOrHole(world.rand);
+							buffer[x1 + 1][z1 + bHeight + 1][y1 + 1] = doubleStepRule.getBlockOrHole(random);
 					for (int y1 = z12 + 2; y1 < bLength - z12 - 2; y1++)
 						for (int x1 = z12 + 2; x1 < bWidth - z12 - 2; x1++)
                             buffer[x1 + 1][z1 + bHeight + 1][y1 + 1] = BlockAndMeta.AIR_WITH_LIGHTING;
-					buffer[z12 + 1][z1 + bHeight + 1 + 1][z12 + 1] = stepRule.getBlockOrHole(world.rand);
-					buffer[z12 + 1][z1 + bHeight + 1 + 1][bLength - z12 - 1 + 1] = stepRule.getBlockOrHole(world.rand);
-					buffer[bWidth - z12 - 1 + 1][z1 + bHeight + 1 + 1][z12 + 1] = stepRule.getBlockOrHole(world.rand);
-					buffer[bWidth - z12 - 1 + 1][z1 + bHeight + 1 + 1][bLength - z12 - 1 + 1] = stepRule.getBlockOrHole(world.rand);
+					buffer[z12 + 1][z1 + bHeight + 1 + 1][z12 + 1] = stepRule.getBlockOrHole(random);
+					buffer[z12 + 1][z1 + bHeight + 1 + 1][bLength - z12 - 1 + 1] = stepRule.getBlockOrHole(random);
+					buffer[bWidth - z12 - 1 + 1][z1 + bHeight + 1 + 1][z12 + 1] = stepRule.getBlockOrHole(random);
+					buffer[bWidth - z12 - 1 + 1][z1 + bHeight + 1 + 1][bLength - z12 - 1 + 1] = stepRule.getBlockOrHole(random);
 				}
 			}
         } else if (roofStyle == RoofStyle.DOME) { //dome
@@ -479,13 +479,13 @@ public class BuildingTower extends Building {
                             buffer[x1 + (bWidth - diam) / 2 + 1][bHeight + z1 + 1 + 1][y1
                                     + (bLength - diam) / 2 + 1] =
                                     (Shape.CIRCLE_SHAPE[diam][x1][y1] == 1 || z1 >= (minHorizDim + 1) / 2 - 2) ? roofRule
-                                            .getBlockOrHole(world.rand)
+                                            .getBlockOrHole(random)
                                             : BlockAndMeta.AIR_WITH_LIGHTING;
 									if (z1 < (minHorizDim - 1) / 2) {
                                         int nextDiam = Shape.SPHERE_SHAPE[minHorizDim][z1 + 1];
 										int x2 = x1 - (diam - nextDiam) / 2, y2 = y1 - (diam - nextDiam) / 2;
                                         if (Shape.CIRCLE_SHAPE[diam][x1][y1] == 0 && (x2 < 0 || y2 < 0 || x2 >= nextDiam || y2 >= nextDiam || Shape.CIRCLE_SHAPE[nextDiam][x2][y2] != 0))
-											buffer[x1 + (bWidth - diam) / 2 + 1][bHeight + z1 + 1 + 1][y1 + (bLength - diam) / 2 + 1] = roofRule.getBlockOrHole(world.rand);
+											buffer[x1 + (bWidth - diam) / 2 + 1][bHeight + z1 + 1 + 1][y1 + (bLength - diam) / 2 + 1] = roofRule.getBlockOrHole(random);
 									}
 					}
 				}
@@ -500,13 +500,13 @@ public class BuildingTower extends Building {
                             buffer[x1 + (bWidth - diam) / 2 + 1][bHeight + z1 + 1 + 1][y1
                                     + (bLength - diam) / 2 + 1] =
                                     Shape.CIRCLE_SHAPE[diam][x1][y1] == 1 ? roofRule
-                                            .getBlockOrHole(world.rand)
+                                            .getBlockOrHole(random)
                                             : BlockAndMeta.AIR_WITH_LIGHTING;
                         if (z1 > 0
                                 && Shape.CIRCLE_SHAPE[diam][x1][y1] != 0
                                 && Shape.CIRCLE_SHAPE[prevDiam][x1 + (prevDiam - diam) / 2][y1
                                         + (prevDiam - diam) / 2] == 0)
-								buffer[x1 + (bWidth - diam) / 2 + 1][bHeight + z1 + 1][y1 + (bLength - diam) / 2 + 1] = roofRule.getBlockOrHole(world.rand);
+								buffer[x1 + (bWidth - diam) / 2 + 1][bHeight + z1 + 1][y1 + (bLength - diam) / 2 + 1] = roofRule.getBlockOrHole(random);
 					}
 				}
 				prevDiam = diam;
@@ -516,8 +516,8 @@ public class BuildingTower extends Building {
 			//if X-axis is the major axis, rot will be false, minAxLen==bLength, maxAxLen==bWidth, and p==x1, r==y1.
 			boolean rot = bLength > minHorizDim;
 			int minAxLen = rot ? bWidth : bLength, maxAxLen = rot ? bLength : bWidth;
-			BlockAndMeta forwardsStairsRule = rot ? eastStairsRule.getBlockOrHole(world.rand) : northStairsRule.getBlockOrHole(world.rand), backwardsStirRule = rot ? westStairsRule
-					.getBlockOrHole(world.rand) : southStairsRule.getBlockOrHole(world.rand);
+			BlockAndMeta forwardsStairsRule = rot ? eastStairsRule.getBlockOrHole(random) : northStairsRule.getBlockOrHole(random), backwardsStirRule = rot ? westStairsRule
+					.getBlockOrHole(random) : southStairsRule.getBlockOrHole(random);
 					for (int m = 0; m <= minHorizDim / 2; m++) {
 						for (int p = 0; p < maxAxLen; p++) {
 							for (int r = m + 1; r < minAxLen - m - 1; r++)
@@ -525,15 +525,15 @@ public class BuildingTower extends Building {
 							buildXYRotated(p + 1, bHeight + m + 1, m - 1 + 1, forwardsStairsRule, rot);
 							buildXYRotated(p + 1, bHeight + m + 1, minAxLen - m + 1, backwardsStirRule, rot);
 							if (!(minHorizDim % 2 == 0 && m == minHorizDim / 2)) {
-								buildXYRotated(p + 1, bHeight + m + 1, m + 1, doubleStepRule.getBlockOrHole(world.rand), rot);
-								buildXYRotated(p + 1, bHeight + m + 1, minAxLen - m - 1 + 1, doubleStepRule.getBlockOrHole(world.rand), rot);
+								buildXYRotated(p + 1, bHeight + m + 1, m + 1, doubleStepRule.getBlockOrHole(random), rot);
+								buildXYRotated(p + 1, bHeight + m + 1, minAxLen - m - 1 + 1, doubleStepRule.getBlockOrHole(random), rot);
 							}
 						}
 						for (int r = m; r < minAxLen - m; r++) {
 							if (!(minHorizDim % 2 == 1 && m == minHorizDim / 2)) {
-								buildXYRotated(1, bHeight + m + 1, r + 1, (circular && circle_shape[0][r] < 0) ? doubleStepRule.getBlockOrHole(world.rand) : bRule.getBlockOrHole(world.rand), rot);
+								buildXYRotated(1, bHeight + m + 1, r + 1, (circular && circle_shape[0][r] < 0) ? doubleStepRule.getBlockOrHole(random) : bRule.getBlockOrHole(random), rot);
 								buildXYRotated(maxAxLen - 1 + 1, bHeight + m + 1, r + 1,
-										(circular && circle_shape[bLength - 1][r] < 0) ? doubleStepRule.getBlockOrHole(world.rand) : bRule.getBlockOrHole(world.rand), rot);
+										(circular && circle_shape[bLength - 1][r] < 0) ? doubleStepRule.getBlockOrHole(random) : bRule.getBlockOrHole(random), rot);
 							}
 						}
 					}
@@ -545,11 +545,11 @@ public class BuildingTower extends Building {
 			for (int x1 = 0; x1 < minHorizDim; x1++) {
 				for (int y1 = 0; y1 < minHorizDim; y1++) {
 					if (circle_shape[x1][y1] < 0)
-						buffer[x1 + 1][bHeight + 1][y1 + 1] = doubleStepRule.getBlockOrHole(world.rand);
+						buffer[x1 + 1][bHeight + 1][y1 + 1] = doubleStepRule.getBlockOrHole(random);
 					if (circle_shape[x1][y1] == 1) {
 						for (int z1 = bHeight; z1 < bHeight + minHorizDim; z1++) {
                             if (buffer[x1 + 1][z1 + 1][y1 + 1] == BlockAndMeta.AIR_WITH_LIGHTING)
-								buffer[x1 + 1][z1 + 1][y1 + 1] = bRule.getBlockOrHole(world.rand);
+								buffer[x1 + 1][z1 + 1][y1 + 1] = bRule.getBlockOrHole(random);
 							else
 								break;
 						}
@@ -564,23 +564,23 @@ public class BuildingTower extends Building {
 					if (circle_shape[x1][y1] >= 0)
                         buffer[x1 + xBuff + 1][bHeight + 1][y1 + yBuff + 1] =
                                 circle_shape[x1][y1] == 0 ? BlockAndMeta.AIR_WITH_LIGHTING
-                                        : bRule.getBlockOrHole(world.rand);
+                                        : bRule.getBlockOrHole(random);
 					else if (!circular)
-						buffer[x1 + xBuff + 1][bHeight + 1][y1 + yBuff + 1] = bRule.getBlockOrHole(world.rand);
+						buffer[x1 + xBuff + 1][bHeight + 1][y1 + yBuff + 1] = bRule.getBlockOrHole(random);
 				}
 			}
 			if (!circular) {
 				for (int y1 = 0; y1 < minHorizDim; y1++) {
 					for (int x1 = 0; x1 < xBuff; x1++)
-						buffer[x1 + 1][bHeight + 1][y1 + 1] = bRule.getBlockOrHole(world.rand);
+						buffer[x1 + 1][bHeight + 1][y1 + 1] = bRule.getBlockOrHole(random);
 					for (int x1 = xBuff + minHorizDim; x1 < bWidth; x1++)
-						buffer[x1 + 1][bHeight + 1][y1 + 1] = bRule.getBlockOrHole(world.rand);
+						buffer[x1 + 1][bHeight + 1][y1 + 1] = bRule.getBlockOrHole(random);
 				}
 				for (int x1 = 0; x1 < minHorizDim; x1++) {
 					for (int y1 = 0; y1 < yBuff; y1++)
-						buffer[x1 + 1][bHeight + 1][y1 + 1] = bRule.getBlockOrHole(world.rand);
+						buffer[x1 + 1][bHeight + 1][y1 + 1] = bRule.getBlockOrHole(random);
 					for (int y1 = yBuff + minHorizDim; y1 < bLength; y1++)
-						buffer[x1 + 1][bHeight + 1][y1 + 1] = bRule.getBlockOrHole(world.rand);
+						buffer[x1 + 1][bHeight + 1][y1 + 1] = bRule.getBlockOrHole(random);
 				}
 			}
 		}
@@ -596,8 +596,8 @@ public class BuildingTower extends Building {
 		while (true) {
             if (x1 < 1 || x1 >= bWidth - 1 || z1 < 1 || z1 >= bLength - 1 || !isFloor(x1, y, z1))
 				return;
-            if (BlockProperties.get(getBlockIdLocal(x1 + xinc, y, z1 + zinc)).isArtificial
-                    && BlockProperties.get(getBlockIdLocal(x1 + xinc, y - 1, z1 + zinc)).isArtificial
+            if (BlockProperties.isArtificial(getBlockIdLocal(x1 + xinc, y, z1 + zinc))
+                    && BlockProperties.isArtificial(getBlockIdLocal(x1 + xinc, y - 1, z1 + zinc))
                     && getBlockIdLocal(x1 + xinc, y - 1, z1 + zinc) != Blocks.ladder) {
 				break;
 			}
@@ -724,7 +724,7 @@ public class BuildingTower extends Building {
 			if (MakeDoors)
 				buildWoodDoor = true;
 		}
-        if (!BlockProperties.get(getBlockIdLocal(x, y + height - 2, z + zFace)).isWallable)
+        if (!BlockProperties.isWallable(getBlockIdLocal(x, y + height - 2, z + zFace)))
 			return;
 		if (buildWoodDoor) {
             int metadata =
@@ -51,14 +51,15 @@ public class BuildingUndergroundEntranceway extends Building {
 
 	public boolean build() {
 		for (; bLength < WORLD_MAX_Y - j0; bLength++) {
-			if (BlockProperties.get(getBlockIdLocal(0, bLength + PASSAGE_HEIGHT, bLength)).isWater)
+			if (BlockProperties.isWater(getBlockIdLocal(0, bLength + PASSAGE_HEIGHT, bLength)))
 				return false;
             if (j0 + bLength > SEA_LEVEL - 10
                     && isArtificialWallBlock(0, bLength + PASSAGE_HEIGHT, bLength))
 				return false;
             if (j0 + bLength > SEA_LEVEL
-                    && (BlockProperties.get(getBlockIdLocal(0, bLength, bLength)).isWallable || BlockProperties
-                            .get(getBlockIdLocal(PASSAGE_WIDTH - 1, bLength, bLength)).isWallable)) {
+                    && (BlockProperties.isWallable(getBlockIdLocal(0, bLength, bLength))
+                            || BlockProperties.isWallable(getBlockIdLocal(PASSAGE_WIDTH - 1,
+                                    bLength, bLength)))) {
 				bLength--;
 				break;
 			}
@@ -73,7 +74,7 @@ public class BuildingUndergroundEntranceway extends Building {
 			for (int x = -1; x <= PASSAGE_WIDTH; x++) {
                 for (int y1 = 1; y1 <= PASSAGE_HEIGHT; y1++) {
                     if (x == -1 || x == PASSAGE_WIDTH || y1 == PASSAGE_HEIGHT) {
-                        if (BlockProperties.get(getBlockIdLocal(x, y + y1, y)).isFlowing)
+                        if (BlockProperties.isFlowing(getBlockIdLocal(x, y + y1, y)))
                             setBlockLocal(x, y + y1, y, Blocks.stone);
 					} else
                         setBlockLocal(x, y + y1, y, Blocks.air);
@@ -24,6 +24,8 @@ import generatormods.caruins.seeds.SymmetricSeed;
 import generatormods.config.templates.TemplateRule;
 import generatormods.config.templates.TemplateTML;
 import generatormods.config.templates.TemplateWall;
+import generatormods.planning.Blueprint;
+import generatormods.planning.ColumnProfiles;
 import generatormods.util.IntUtil;
 import generatormods.util.PickWeighted;
 import generatormods.util.blocks.BlockAndMeta;
@@ -33,12 +35,20 @@ import generatormods.util.build.Dir;
 import generatormods.util.build.Handedness;
 import generatormods.util.build.RoofStyle;
 import generatormods.walledcity.LayoutCode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import net.minecraft.block.Block;
 import net.minecraft.init.Blocks;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
 import net.minecraft.util.ChunkCoordinates;
 
 import org.apache.logging.log4j.Logger;
 
+import static generatormods.util.WorldUtil.WORLD_MAX_Y;
 import static generatormods.util.build.DirToMetaMappings.STAIRS_META_TO_DIR;
 
 /*
@@ -58,6 +68,12 @@ public class BuildingWall extends Building {
 	public final static int OVERHEAD_CLEARENCE = 4, OVERHEAD_TREE_CLEARENCE = 8;
 	public final static int NO_GATEWAY = -1, NO_MIN_J = -1;
 	private final static int MIN_GATEWAY_ROAD_LENGTH = 20;
+    /* Limits the memory of planBeam() */
+    private final static int MAX_BEAM_NODES = 1 << 16;
+    /* The steps planBeam() tries, as returned by probeStep(): left, down, straight, up, right */
+    private final static byte[] BEAM_STEPS = {1, 3, 4, 5, 7};
+    private final static byte STRAIGHT_STEP = 4;
+    private final static int BEAM_FAIL_COST = 4, BEAM_GRADIENT_COST = 2, BEAM_TURN_COST = 1;
 	//**** WORKING VARIABLES ****
 	public int i1, j1, k1;
 	public int n0 = 0;
@@ -70,6 +86,12 @@ public class BuildingWall extends Building {
     public int x_targ, y_targ, z_targ;
 	public int minJ = NO_MIN_J;
 	private boolean hitMaxDepth = false;
+    /* Shared by a plan and its branches, null when not planning */
+    private ColumnProfiles profiles;
+    /* Where xArray and yArray come from, or null to allocate them at maxLength */
+    private PathBuffers pathBuffers;
+    /* The path as planned, before smoothing changed it, see keepPlannedPath() */
+    private int[] plannedX, plannedY;
 	public FailType failCode = FailType.NOTHING;
 	public TemplateTML endBTemplate = null; //either a template or DEFAULT_TOWER
 	public int endBLength = 0; //length of end tower
@@ -78,11 +100,16 @@ public class BuildingWall extends Building {
 	public TemplateRule towerRule, roofRule;
 	public final int Backtrack;
 
+    /*
+     * A branch for plan() to try. Branches are not registered with the PathBuffers, plan() hands
+     * their buffers back with releasePath() as soon as it is done with them.
+     */
 	public BuildingWall(BuildingWall bw, int maxLength_, int i1_, int j1_, int k1_) {
         super(bw.bID, bw.config, bw.bRule, bw.bDir, bw.bHand, false, new int[] {bw.bWidth,
                 bw.bHeight, 0}, new int[] {i1_, j1_, k1_});
 		constructorHelper(bw.ws, maxLength_, i1_, j1_, k1_);
         Backtrack = bw.Backtrack;
+        profiles = bw.profiles;
 		target = bw.target;
 		x_targ = bw.x_targ;
         y_targ = bw.y_targ;
@@ -94,6 +121,8 @@ public class BuildingWall extends Building {
         super(ID_, config, ws_.rules[ws_.template[0][0][ws_.WWidth / 2]], dir_, axXHand_, false,
                 new int[] {ws_.WWidth, ws_.WHeight, 0}, new int[] {i1_, j1_, k1_});
 		constructorHelper(ws_, maxLength_, i1_, j1_, k1_);
+        if (pathBuffers != null)
+            pathBuffers.register(this);
 		pickTowers(random.nextFloat() < ws.CircularProb, endTowers);
         Backtrack = config.getBacktrackLength();
 		if (maxLength > 0) {
@@ -107,6 +136,8 @@ public class BuildingWall extends Building {
         super(ID_, config, ws_.rules[ws_.template[0][0][ws_.WWidth / 2]], dir_, axXHand_, false,
                 new int[] {ws_.WWidth, ws_.WHeight, 0}, sourcePt);
 		constructorHelper(ws_, maxLength_, sourcePt[0], sourcePt[1], sourcePt[2]);
+        if (pathBuffers != null)
+            pathBuffers.register(this);
 		pickTowers(random.nextFloat() < ws.CircularProb, endTowers);
         Backtrack = config.getBacktrackLength();
 		if (maxLength > 0) {
@@ -174,7 +205,7 @@ public class BuildingWall extends Building {
 					boolean wallBlockPresent = isWallBlock(x1, z1, 0);
                     idAndMeta =
                             z1 < bHeight ? ws.rules[layer[z1 + ws.embed][x1]]
-                                    .getBlockOrHole(world.rand)
+                                    .getBlockOrHole(random)
                                     : BlockAndMeta.AIR_WITH_NO_LIGHTING;
 					//starting from top, preserve old wall block until we run into a non-wall block
                     if (keepWallFromAbove && wallBlockPresent && idAndMeta.getBlock() == Blocks.air) {
@@ -183,7 +214,7 @@ public class BuildingWall extends Building {
 						keepWallFromAbove = false;
                     if (idAndMeta.getBlock() == Blocks.air && idAndMeta instanceof BlockExtended
                             && ((BlockExtended) idAndMeta).info.equals(TemplateRule.SPECIAL_STAIR)) {
-						if (!wallBlockPresent && !BlockProperties.get(getBlockIdLocal(x1, z1, 0)).isWater) {
+						if (!wallBlockPresent && !BlockProperties.isWater(getBlockIdLocal(x1, z1, 0))) {
                             if (n0 > 0 && yArray[n0 - 1] > yArray[n0]) { // stairs, going down
                                 if ((n0 == 1 || yArray[n0 - 2] == yArray[n0 - 1])
                                         && (n0 == bLength - 1 || yArray[n0] == yArray[n0 + 1]))
@@ -285,7 +316,7 @@ public class BuildingWall extends Building {
                 if (curvature(yArray[n0], yArray[n0 - gateWidth / 2], yArray[n0 - gateWidth - 1], 1) == 0
                         && curvature(xArray[n0], xArray[n0 - gateWidth / 2], xArray[n0 - gateWidth
                                 - 1], 0) == 0) {
-					int tw = ws.pickTWidth(circular, world.rand), th = ws.getTMaxHeight(circular);
+					int tw = ws.pickTWidth(circular, random), th = ws.getTMaxHeight(circular);
 					if (rs != null) {
                         avenues =
                                 new BuildingWall[] {
@@ -439,6 +470,30 @@ public class BuildingWall extends Building {
 		return getIJKPt(x + xArray[n] - xArray[n0], y + yArray[n] - yArray[n0], z + n - n0);
 	}
 
+    /**
+     * The world boxes that the planned wall covers, one per stretch of wall, so that a curving wall
+     * does not cover the land beside it. See Building.getBounds().
+     */
+    public List<int[]> getBounds(int stretch) {
+        List<int[]> boxes = new ArrayList<int[]>();
+        for (int start = 0; start < bLength; start += stretch) {
+            int[] box = null;
+            int end = bLength - start > stretch ? start + stretch : bLength;
+            for (int n = start; n < end; n++) {
+                int[] pt = getIJKPtAtN(n, 0, 0, 0);
+                if (box == null) {
+                    box = new int[6];
+                    System.arraycopy(pt, 0, box, 0, 3);
+                    System.arraycopy(pt, 0, box, 3, 3);
+                }
+                growBounds(box, pt);
+                growBounds(box, getIJKPtAtN(n, bWidth - 1, bHeight - 1, 0));
+            }
+            boxes.add(box);
+        }
+        return boxes;
+    }
+
 	//****************************************  FUNCTION - makeBuildings *************************************************************************************//
 	public void makeBuildings(boolean buildOnL, boolean buildOnR, boolean makeGatehouseTowers, boolean overlapTowers, boolean isAvenue) {
 		if (ws == null) {
@@ -461,7 +516,7 @@ public class BuildingWall extends Building {
 			//use this tw for curvature even though it is incorrect since they will determine their own width.
 			//This may cause so building-over but that's OK.
 			//tw is also passed to  as the actual width for default towers inside makeBuilding().
-			int tw = ws.pickTWidth(circular, world.rand);
+			int tw = ws.pickTWidth(circular, random);
 			//towers are built from n0-2 to n0-tw-1
 			//n0 and nBack used to calculat curvature are 2 further from nMid
 			int nMid = n0 - tw / 2 - 2, nBack = n0 - tw - 3;
@@ -482,8 +537,8 @@ public class BuildingWall extends Building {
 				//FMLLog.getLogger().info("Building gatehouse for "+IDString()+" at n="+n0+" "+globalCoordString(0,0,0)+" width "+tw);
                 BuildingTower tower =
                         new BuildingTower(bID + n0, this, bDir.opposite(), bHand.opposite(), true,
-                                tw, ws.pickTHeight(circular, world.rand), circular ? tw
-                                        : ws.pickTWidth(circular, world.rand), getIJKPtAtN(nMid,
+                                tw, ws.pickTHeight(circular, random), circular ? tw
+                                        : ws.pickTWidth(circular, random), getIJKPtAtN(nMid,
                                         bWidth / 2, 0, tw / 2));
 				if (!tower.isObstructedRoof(-1)) {
                     if (layoutGenerator != null)
@@ -495,7 +550,7 @@ public class BuildingWall extends Building {
             } else if ((buildOnL && clearSide == Handedness.L_HAND)
                     || (buildOnR && clearSide == Handedness.R_HAND)) { // side towers
 				//FMLLog.getLogger().info("Building side tower for "+IDString()+" at n="+n0+" "+globalCoordString(0,0,0)+" with clearSide="+clearSide+" width "+tw);
-				TemplateTML template = ws.buildings.get(PickWeighted.pickWeightedOption(world.rand, ws.buildingWeights[0], ws.buildingWeights[1]));
+				TemplateTML template = ws.buildings.get(PickWeighted.pickWeightedOption(random, ws.buildingWeights[0], ws.buildingWeights[1]));
 				int ybuffer = -ws.TowerXOffset + (isAvenue ? 0 : 1);
 				int[] pt = getIJKPtAtN(nMid, clearSide == bHand ? (bWidth - ybuffer) : ybuffer - 1, 0, 0);
                 if (makeBuilding(template, tw, ybuffer, overlapTowers, bDir.rotate(clearSide), pt))
@@ -509,7 +564,7 @@ public class BuildingWall extends Building {
 			if (endTN < 0)
 				endTN = 0;
 			int[] pt = getIJKPtAtN(endTN, bWidth / 2, 0, 1);
-			makeBuilding(endBTemplate, ws.pickTWidth(circular, world.rand), 1, overlapTowers, bDir, pt);
+			makeBuilding(endBTemplate, ws.pickTWidth(circular, random), 1, overlapTowers, bDir, pt);
 		}
 	}
 
@@ -541,51 +596,30 @@ public class BuildingWall extends Building {
             logger.error("Bad start length at BuildingWall.plan: {}", startN);
 			return 0;
 		}
+        if (depth == 0) {
+            plannedX = null;
+            plannedY = null;
+        }
+        if (depth == 0 && startN == 1 && restorePath())
+            return bLength - startN;
+        if (depth == 0 && ws.BeamWidth > 0)
+            return planBeam(startN, lookahead, stopAtWall);
 		int fails = 0;
+        boolean ownsProfiles = profiles == null;
+        if (ownsProfiles)
+            profiles = new ColumnProfiles(placer);
         setOriginLocal(i1, j1, k1, xArray[startN - 1], yArray[startN - 1], startN);
 		bLength = startN;
-        logger.debug("BuildingWall.plan Wall: {}, depth: {}, startN: {}, maxlLength: {}, at {}",
-                IDString(), depth, startN, maxLength, (new ChunkCoordinates(i0, j0, k0)));
-		//int searchUp=Math.min(Math.max(MIN_SEARCHUP,WalkHeight+1),MAX_SEARCHUP);
-		int searchUp = MIN_SEARCHUP;
+        if (logger.isDebugEnabled())
+            logger.debug("BuildingWall.plan Wall: {}, depth: {}, startN: {}, maxlLength: {}, at {}",
+                    IDString(), depth, startN, maxLength, (new ChunkCoordinates(i0, j0, k0)));
 		int obstructionHeight = WalkHeight > 4 ? WalkHeight + 1 : bHeight + 1;
 		while (true) {
-			int gradx = 0, gradz = 0;
-			failCode = FailType.NOTHING;
-			for (int x1 = -1; x1 <= bWidth; x1++) {
-				for (int z1 = -SEARCHDOWN; z1 <= searchUp; z1++) {
-					Block blockId = getBlockIdLocal(x1, z1, 0);
-					if (!BlockProperties.get(blockId).isWallable) {
-						gradz++;
-						gradx += Integer.signum(2 * x1 - bWidth + 1);
-					} else if (BlockProperties.get(blockId).isWater)
-						gradx -= Integer.signum(2 * x1 - bWidth + 1);
-					//hit another wall, want to ignore sandstone that appears naturally in deserts
-					if ((stopAtWall || z1 < -2) && isArtificialWallBlock(x1, z1, 0))
-						failCode = FailType.HITWALL;
-				}
-				if (BlockProperties.get(getBlockIdLocal(x1, ws.waterHeight + 1, 0)).isWater)
-					failCode = FailType.UNDERWATER;
-				if (!isWallable(x1, obstructionHeight, 0) && failCode == FailType.NOTHING)
-					failCode = FailType.OBSTRUCTED;
-			}
-			gradz = (gradz + (bWidth + 2) / 2) / (bWidth + 2) - SEARCHDOWN;
-			if (failCode == FailType.HITWALL)
-				gradz = 0;
-			if (failCode == FailType.NOTHING && gradz < -1)
-				failCode = FailType.TOOSTEEPDOWN;
-			if (failCode == FailType.NOTHING && gradz > 4)
-				failCode = FailType.TOOSTEEPUP;
-			gradz = Integer.signum(gradz);
-            if (minJ != NO_MIN_J && yArray[bLength - 1] + gradz + j1 < minJ)
-				gradz = 0; //don't go below minJ
-			if (gradz == 0) {
-				int HorizForceThreshold = bWidth / 2;
-				int bias = target ? Integer.signum(xArray[bLength - 1] - x_targ) * (2 * HorizForceThreshold) : 0;
-				gradx = (gradx > HorizForceThreshold + bias ? 1 : (gradx < -HorizForceThreshold + bias ? -1 : 0));
-			} else
-				gradx = 0;
+            int step = probeStep(xArray[bLength - 1], yArray[bLength - 1], obstructionHeight,
+                    stopAtWall);
+            int gradx = step / 3 - 1, gradz = step % 3 - 1;
 			setOriginLocal(i0, j0, k0, gradx, gradz, 1);
+            ensurePathCapacity(bLength + 1);
 			xArray[bLength] = xArray[bLength - 1] + gradx;
             yArray[bLength] = yArray[bLength - 1] + gradz;
 			bLength++;
@@ -612,8 +646,9 @@ public class BuildingWall extends Building {
 					hitMaxDepth = true; //may still be able to proceed, note this so we can do so from root
 					break; //loop termination condition 3
 				} else {
-                    logger.debug("Trying branches for {}, depth: {}, at n: {}, x: {}, y: {}",
-                            IDString(), depth, bLength, xArray[bLength], yArray[bLength]);
+                    if (logger.isDebugEnabled())
+                        logger.debug("Trying branches for {}, depth: {}, at n: {}, x: {}, y: {}",
+                                IDString(), depth, bLength, xArray[bLength], yArray[bLength]);
 					int improvement, bestImprovement = 0;
 					BuildingWall branch, bestBranch = null;
 					//String[] branchNames={"Down","Minus","Straight","Plus","Up"};
@@ -621,6 +656,7 @@ public class BuildingWall extends Building {
 						for (int d = -1; d <= 1; d++) {
                             if (!(yAx == 0 && d == 0)) {
 								branch = new BuildingWall(this, maxLength, i1, j1, k1);
+                                branch.ensurePathCapacity(bLength);
 								for (int m = 0; m < Backtrack; m++) {
                                     branch.xArray[bLength - Backtrack + m] =
                                             xArray[bLength - Backtrack] + (1 - yAx) * (d * m);
@@ -629,15 +665,19 @@ public class BuildingWall extends Building {
 								}
 								improvement = branch.plan(bLength, depth + 1, lookahead, stopAtWall);
 								if (improvement > bestImprovement) {
+                                    if (bestBranch != null)
+                                        bestBranch.releasePath();
 									bestBranch = branch;
 									bestImprovement = improvement;
-								}
+                                } else
+                                    branch.releasePath();
 							}
 						}
 					}
 					if (bestImprovement + bLength > maxLength)
 						bestImprovement = maxLength - bLength;
 					if (bestImprovement > 0) {
+                        ensurePathCapacity(bLength + bestImprovement);
 						//if(DEBUG==3) System.out.println("Chose branch="+bestBranch.branchName+" for wall "+IDString()+"depth="+depth+" at n="+planL+" with added length="+bestImprovement);
 						for (int m = bLength - Backtrack; m < bLength + bestImprovement; m++) {
 							xArray[m] = bestBranch.xArray[m];
@@ -648,6 +688,8 @@ public class BuildingWall extends Building {
 						hitMaxDepth = bestBranch.hitMaxDepth;
 						bLength += bestImprovement;
 					}
+                    if (bestBranch != null)
+                        bestBranch.releasePath();
 					//else if(DEBUG) FMLLog.getLogger().info("Could not improve wall "+IDString()+" at n="+bLength+"\n");
 					if (depth == 0 && hitMaxDepth && bLength < maxLength) {
 						hitMaxDepth = false;
@@ -665,15 +707,312 @@ public class BuildingWall extends Building {
 			if (bLength < startN)
 				bLength = startN;
 		}
+        if (ownsProfiles)
+            releaseProfiles();
 		setCursor(0);
 		return bLength - startN;
 	}
 
+    /**
+     * Plans the wall like plan(), with a beam search instead of backtracking. The search advances
+     * up to ws.BeamWidth partial walls one step at a time. Each of them tries the step that plan()
+     * would take, and the other straight steps as well. The steps are scored with the same probes
+     * and fail types as plan(). Failed steps, steps away from the gradient and changes of direction
+     * cost score, and only the best walls at distinct offsets are kept for the next step. Once
+     * every wall has ended, the longest one is kept, and the best scoring among equally long ones.
+     * <p>
+     * All partial walls are kept in preallocated node arrays, which are limited to MAX_BEAM_NODES
+     * by narrowing the beam for long walls.
+     *
+     * @return Length of the new wall planned.
+     */
+    private int planBeam(int startN, int lookahead, boolean stopAtWall) {
+        boolean ownsProfiles = profiles == null;
+        if (ownsProfiles)
+            profiles = new ColumnProfiles(placer);
+        int width = Math.max(1, Math.min(ws.BeamWidth, MAX_BEAM_NODES / (maxLength - startN + 1)));
+        int capacity = width * (maxLength - startN) + 1;
+        int[] nodeX = new int[capacity], nodeY = new int[capacity], nodeParent = new int[capacity];
+        int[] nodeFails = new int[capacity], nodeScore = new int[capacity];
+        byte[] nodeStep = new byte[capacity];
+        int maxCandidates = width * BEAM_STEPS.length;
+        int[] candParent = new int[maxCandidates], candFails = new int[maxCandidates];
+        byte[] candStep = new byte[maxCandidates];
+        long[] candOrder = new long[maxCandidates];
+        /* The root is the last step planned already */
+        nodeX[0] = xArray[startN - 1];
+        nodeY[0] = yArray[startN - 1];
+        nodeParent[0] = -1;
+        nodeStep[0] = STRAIGHT_STEP;
+        int layerStart = 0, layerEnd = 1, nodeCount = 1;
+        /* The best wall so far, as the node it ends with, the step after that node if any */
+        int bestNode = 0, bestStep = -1, bestLength = startN, bestScore = Integer.MIN_VALUE;
+        FailType bestFail = FailType.NOTHING;
+        int obstructionHeight = WalkHeight > 4 ? WalkHeight + 1 : bHeight + 1;
+        for (int n = startN; layerStart < layerEnd; n++) {
+            int candidates = 0;
+            for (int node = layerStart; node < layerEnd; node++) {
+                setOriginLocal(i1, j1, k1, nodeX[node], nodeY[node], n);
+                int greedyStep = probeStep(nodeX[node], nodeY[node], obstructionHeight, stopAtWall);
+                FailType fail = failCode;
+                if (fail == FailType.HITWALL || fail == FailType.UNDERWATER) {
+                    int length = n - nodeFails[node];
+                    if (length > bestLength
+                            || length == bestLength && nodeScore[node] > bestScore) {
+                        bestNode = node;
+                        bestStep = -1;
+                        bestLength = length;
+                        bestScore = nodeScore[node];
+                        bestFail = fail;
+                    }
+                    continue;
+                }
+                int fails = fail == FailType.NOTHING ? 0 : nodeFails[node] + 1;
+                for (byte step : BEAM_STEPS) {
+                    int gradz = step % 3 - 1;
+                    if (step != greedyStep && gradz < 0 && minJ != NO_MIN_J
+                            && nodeY[node] + gradz + j1 < minJ)
+                        continue;
+                    int score = nodeScore[node] - (fail != FailType.NOTHING ? BEAM_FAIL_COST : 0)
+                            - (step != greedyStep ? BEAM_GRADIENT_COST : 0)
+                            - (step != nodeStep[node] ? BEAM_TURN_COST : 0);
+                    int length = n + 1;
+                    FailType endFail = null;
+                    if (target && length > z_targ)
+                        endFail = FailType.HITTARGET;
+                    else if (length >= maxLength)
+                        endFail = FailType.MAXLENGTH;
+                    else if (fails >= lookahead) {
+                        endFail = fail;
+                        length -= fails;
+                    }
+                    if (endFail == null) {
+                        candParent[candidates] = node;
+                        candStep[candidates] = step;
+                        candFails[candidates] = fails;
+                        candOrder[candidates] = (long) score << 32 | candidates;
+                        candidates++;
+                    } else if (length > bestLength || length == bestLength && score > bestScore) {
+                        bestNode = node;
+                        bestStep = step;
+                        bestLength = length;
+                        bestScore = score;
+                        bestFail = endFail;
+                    }
+                }
+            }
+            /* Keeps the best scoring candidates, one for each offset */
+            Arrays.sort(candOrder, 0, candidates);
+            layerStart = layerEnd;
+            for (int c = candidates - 1; c >= 0 && nodeCount - layerStart < width; c--) {
+                int cand = (int) candOrder[c], parent = candParent[cand];
+                int x = nodeX[parent] + candStep[cand] / 3 - 1;
+                int y = nodeY[parent] + candStep[cand] % 3 - 1;
+                boolean taken = false;
+                for (int node = layerStart; node < nodeCount && !taken; node++)
+                    taken = nodeX[node] == x && nodeY[node] == y;
+                if (taken)
+                    continue;
+                nodeX[nodeCount] = x;
+                nodeY[nodeCount] = y;
+                nodeParent[nodeCount] = parent;
+                nodeStep[nodeCount] = candStep[cand];
+                nodeFails[nodeCount] = candFails[cand];
+                nodeScore[nodeCount] = (int) (candOrder[c] >> 32);
+                nodeCount++;
+            }
+            layerEnd = nodeCount;
+        }
+        /* Walks back from the end of the best wall, the root is at startN - 1 */
+        ensurePathCapacity(bestLength);
+        int layer = startN - 1;
+        for (int node = bestNode; node > 0; node = nodeParent[node])
+            layer++;
+        if (bestStep >= 0 && layer + 1 < bestLength) {
+            xArray[layer + 1] = nodeX[bestNode] + bestStep / 3 - 1;
+            yArray[layer + 1] = nodeY[bestNode] + bestStep % 3 - 1;
+        }
+        for (int node = bestNode; node > 0; node = nodeParent[node], layer--) {
+            if (layer < bestLength) {
+                xArray[layer] = nodeX[node];
+                yArray[layer] = nodeY[node];
+            }
+        }
+        failCode = bestFail;
+        bLength = bestLength - endBLength;
+        if (bLength < startN)
+            bLength = startN;
+        if (logger.isDebugEnabled())
+            logger.debug("Beam search for wall {} with width {} planned {} steps in {} nodes",
+                    IDString(), width, bLength - startN, nodeCount);
+        if (ownsProfiles)
+            releaseProfiles();
+        setCursor(0);
+        return bLength - startN;
+    }
+
+    /*
+     * Takes the path of the replayed blueprint's wall that starts where this one does, instead of
+     * planning one. The replay checks the ground under it again, see Blueprint.
+     */
+    private boolean restorePath() {
+        NBTTagList walls = config.getPlannedWalls();
+        NBTTagCompound tag = walls == null ? null : Blueprint.findWall(walls, this);
+        if (tag == null)
+            return false;
+        int[] x = tag.getIntArray("X"), y = tag.getIntArray("Y");
+        ensurePathCapacity(x.length);
+        System.arraycopy(x, 0, xArray, 0, x.length);
+        System.arraycopy(y, 0, yArray, 0, y.length);
+        bLength = tag.getInteger("Length");
+        failCode = FailType.NOTHING;
+        if (logger.isDebugEnabled())
+            logger.debug("Wall {} took its path of length {} from a blueprint", IDString(),
+                    bLength);
+        setCursor(0);
+        return true;
+    }
+
+    /**
+     * Remembers the path as planned, before it is smoothed. Blueprints save that path, so that a
+     * replay smooths it the same way, and walls that start from this one's end start at the same
+     * point. Does nothing if the path has already been kept since the last plan().
+     */
+    public void keepPlannedPath() {
+        if (plannedX != null)
+            return;
+        plannedX = Arrays.copyOf(xArray, getPathLength());
+        plannedY = Arrays.copyOf(yArray, getPathLength());
+    }
+
+    /* The path as planned, before any smoothing, see keepPlannedPath() */
+    public int[] getPlannedX() {
+        return plannedX != null ? plannedX.clone() : Arrays.copyOf(xArray, getPathLength());
+    }
+
+    public int[] getPlannedY() {
+        return plannedY != null ? plannedY.clone() : Arrays.copyOf(yArray, getPathLength());
+    }
+
+    /* The length of the path including the end tower, as far as xArray holds it */
+    private int getPathLength() {
+        return Math.min(xArray.length, Math.max(0, bLength + endBLength));
+    }
+
+    /*
+     * The surface under the middle of the wall at each step, see Blueprint.writeWall(). Moves the
+     * cursor to the start of the wall.
+     */
+    public int[] getGround() {
+        int[] ground = new int[Math.max(0, bLength)];
+        setCursor(0);
+        for (int n = 0; n < ground.length; n++) {
+            int[] pt = getIJKPtAtN(n, bWidth / 2, 0, 0);
+            ground[n] = probe.findSurfaceJ(pt[0], pt[2], WORLD_MAX_Y, true, 0);
+        }
+        return ground;
+    }
+
+    /* Makes room in xArray and yArray for a path of the given length */
+    private void ensurePathCapacity(int length) {
+        if (length <= xArray.length)
+            return;
+        if (pathBuffers == null) {
+            xArray = Arrays.copyOf(xArray, length);
+            yArray = Arrays.copyOf(yArray, length);
+        } else {
+            xArray = pathBuffers.grow(xArray, length);
+            yArray = pathBuffers.grow(yArray, length);
+        }
+    }
+
+    /**
+     * Hands the path buffers of a branch, or of a wall that will not be built, back. The wall has
+     * no path afterwards.
+     */
+    public void releasePath() {
+        if (pathBuffers != null && xArray != null) {
+            pathBuffers.forget(this);
+            pathBuffers.giveBack(xArray);
+            pathBuffers.giveBack(yArray);
+        }
+        xArray = null;
+        yArray = null;
+    }
+
+    /* Swaps the path buffers for exact size copies of the path, see PathBuffers.release() */
+    void shrinkWrapPath() {
+        if (xArray == null)
+            return;
+        int length = Math.min(xArray.length, Math.max(0, bLength + endBLength));
+        int[] x = Arrays.copyOf(xArray, length), y = Arrays.copyOf(yArray, length);
+        pathBuffers.giveBack(xArray);
+        pathBuffers.giveBack(yArray);
+        xArray = x;
+        yArray = y;
+    }
+
+    private void releaseProfiles() {
+        if (logger.isDebugEnabled())
+            logger.debug("Wall {} planned from {} columns, {} lookups, {} blocks read", IDString(),
+                    profiles.getColumnCount(), profiles.getLookupCount(), profiles.getBlocksRead());
+        profiles = null;
+    }
+
+    /*
+     * Probes the ground around the origin for the step after the one planned at offsets (x, y).
+     * Sets failCode, and returns the step to take as 3 * (gradx + 1) + gradz + 1.
+     */
+    private int probeStep(int x, int y, int obstructionHeight, boolean stopAtWall) {
+		//int searchUp=Math.min(Math.max(MIN_SEARCHUP,WalkHeight+1),MAX_SEARCHUP);
+		int searchUp = MIN_SEARCHUP;
+		int gradx = 0, gradz = 0;
+		failCode = FailType.NOTHING;
+		for (int x1 = -1; x1 <= bWidth; x1++) {
+            int i = getI(x1, 0), k = getK(x1, 0);
+			for (int z1 = -SEARCHDOWN; z1 <= searchUp; z1++) {
+                int profile = profiles.get(i, getJ(z1), k);
+                if ((profile & ColumnProfiles.WALLABLE) == 0) {
+					gradz++;
+					gradx += Integer.signum(2 * x1 - bWidth + 1);
+                } else if ((profile & ColumnProfiles.WATER) != 0)
+					gradx -= Integer.signum(2 * x1 - bWidth + 1);
+				//hit another wall, want to ignore sandstone that appears naturally in deserts
+                if ((stopAtWall || z1 < -2) && (profile & ColumnProfiles.ARTIFICIAL_WALL) != 0)
+					failCode = FailType.HITWALL;
+			}
+            if (profiles.isWater(i, getJ(ws.waterHeight + 1), k))
+				failCode = FailType.UNDERWATER;
+            if (!profiles.isWallable(i, getJ(obstructionHeight), k)
+                    && failCode == FailType.NOTHING)
+				failCode = FailType.OBSTRUCTED;
+		}
+		gradz = (gradz + (bWidth + 2) / 2) / (bWidth + 2) - SEARCHDOWN;
+		if (failCode == FailType.HITWALL)
+			gradz = 0;
+		if (failCode == FailType.NOTHING && gradz < -1)
+			failCode = FailType.TOOSTEEPDOWN;
+		if (failCode == FailType.NOTHING && gradz > 4)
+			failCode = FailType.TOOSTEEPUP;
+		gradz = Integer.signum(gradz);
+        if (minJ != NO_MIN_J && y + gradz + j1 < minJ)
+			gradz = 0; //don't go below minJ
+		if (gradz == 0) {
+			int HorizForceThreshold = bWidth / 2;
+			int bias = target ? Integer.signum(x - x_targ) * (2 * HorizForceThreshold) : 0;
+			gradx = (gradx > HorizForceThreshold + bias ? 1 : (gradx < -HorizForceThreshold + bias ? -1 : 0));
+		} else
+			gradx = 0;
+		return 3 * (gradx + 1) + gradz + 1;
+	}
+
 	public void printWall() {
         printWall(0);
 	}
 
 	public void printWall(int start) {
+        if (!logger.isDebugEnabled())
+            return;
         logger.debug("Printing wall: {}, from n: {}, to n:", IDString(), start, (bLength - 1));
         String temp = "";
         for (int m = start; m < bLength; m++) {
@@ -701,15 +1040,22 @@ public class BuildingWall extends Building {
 
 	public boolean ptIsToXHand(int[] pt, int buffer) {
 		setCursor(0);
+        return getX(pt) >= getXHandLimit(getZ(pt), buffer);
+	}
+
+    /**
+     * Points at local z whose local x is at least this are to the x hand of the wall, see
+     * ptIsToXHand(). Local coordinates are from the cursor at 0.
+     */
+    public int getXHandLimit(int z, int buffer) {
 		if (ws.TowerXOffset < 0)
 			buffer -= ws.TowerXOffset;
-        int ptZ = getZ(pt);
-        if (ptZ < 0)
-			return getX(pt) >= buffer;
-        if (ptZ >= bLength)
-			return getX(pt) >= xArray[bLength - 1] + buffer;
-        return getX(pt) >= xArray[ptZ] + buffer;
-	}
+        if (z < 0)
+			return buffer;
+        if (z >= bLength)
+			return xArray[bLength - 1] + buffer;
+        return xArray[z] + buffer;
+    }
 
     public boolean queryLayout(LayoutCode layoutCode) {
 		for (int n = 0; n < bLength; n++) {
@@ -791,6 +1137,7 @@ public class BuildingWall extends Building {
 
 	//****************************************  FUNCTION - smooth  *************************************************************************************//
 	public void smooth(int convexWindow, int concaveWindow, boolean flattenEnds) {
+        keepPlannedPath();
 		smooth(logger, xArray, 0, bLength - 1, convexWindow, concaveWindow, flattenEnds);
         smooth(logger, yArray, 0, bLength - 1, convexWindow, concaveWindow, flattenEnds);
 	}
@@ -800,7 +1147,7 @@ public class BuildingWall extends Building {
 		for (int x1 = 0; x1 < bWidth; x1++)
 			for (int z1 = bHeight + OVERHEAD_CLEARENCE; z1 < bHeight + OVERHEAD_TREE_CLEARENCE; z1++) {
 				Block block = getBlockIdLocal(x1, z1, 0);
-                if (BlockProperties.get(block).isTree)
+                if (BlockProperties.isTree(block))
                     setBlockLocal(x1, z1, 0, Blocks.air); //kill trees aggressively
 			}
 	}
@@ -812,20 +1159,27 @@ public class BuildingWall extends Building {
 		ws = ws_;
 		WalkHeight = ws.WalkHeight;
 		maxLength = maxLength_;
-		xArray = new int[maxLength];
-        yArray = new int[maxLength];
+        pathBuffers = config.getPathBuffers();
+        if (pathBuffers == null) {
+            xArray = new int[maxLength];
+            yArray = new int[maxLength];
+        } else {
+            int capacity = Math.min(maxLength, PathBuffers.MIN_CAPACITY);
+            xArray = pathBuffers.lease(capacity);
+            yArray = pathBuffers.lease(capacity);
+        }
 		bLength = 0;
 		halfStairValue = bRule.primaryBlock.toStep();
 	}
 
     private boolean makeBuilding(TemplateTML template, int tw, int ybuffer, boolean overlapTowers, Dir dir, int[] pt) {
 		if (template == ws.makeDefaultTower) {
-			int maxBL = bDir == dir ? endBLength : circular ? tw : ws.pickTWidth(false, world.rand);
+			int maxBL = bDir == dir ? endBLength : circular ? tw : ws.pickTWidth(false, random);
 			//FMLLog.getLogger().info("Querying "+(circular? "circular " : "square ")+(bDir==dir ? "end" : "side")+" tower, ybuffer="+ybuffer+".");
 			for (int tl = maxBL; tl >= ws.getTMinWidth(circular); tl--) {
                 BuildingTower tower =
                         new BuildingTower(bID + n0, this, dir, Handedness.R_HAND, true,
-                                circular ? tl : tw, ws.pickTHeight(circular, world.rand), tl, pt);
+                                circular ? tl : tw, ws.pickTHeight(circular, random), tl, pt);
 				if (tower.queryCanBuild(ybuffer, overlapTowers)) {
 					tower.build(0, 0, true);
 					return true;
@@ -886,35 +1240,35 @@ public class BuildingWall extends Building {
                     halfStairValue.getMeta());
 		//clean up stairs descending into this wall
 		int[] pt = getIJKPt(-1, WalkHeight - 1, 0);
-		Block id = world.getBlock(pt[0], pt[1], pt[2]);
-		int meta = world.getBlockMetadata(pt[0], pt[1], pt[2]);
-        if (BlockProperties.get(id).isStair
+		Block id = placer.getBlock(pt[0], pt[1], pt[2]);
+		int meta = placer.getBlockMetadata(pt[0], pt[1], pt[2]);
+        if (BlockProperties.isStair(id)
                 && STAIRS_META_TO_DIR[meta < 4 ? meta : (meta - 4)] == bDir
                         .rotate(bHand.opposite())) {
             BlockAndMeta temp = new BlockAndMeta(id, meta).stairToSolid();
-            world.setBlock(pt[0], pt[1], pt[2], temp.getBlock(), temp.getMeta(), 2);
+            placer.setBlock(pt[0], pt[1], pt[2], temp.getBlock(), temp.getMeta(), 2);
         }
 		pt = getIJKPt(bWidth, WalkHeight - 1, 0);
-		id = world.getBlock(pt[0], pt[1], pt[2]);
-		meta = world.getBlockMetadata(pt[0], pt[1], pt[2]);
-        if (BlockProperties.get(id).isStair
+		id = placer.getBlock(pt[0], pt[1], pt[2]);
+		meta = placer.getBlockMetadata(pt[0], pt[1], pt[2]);
+        if (BlockProperties.isStair(id)
                 && STAIRS_META_TO_DIR[meta < 4 ? meta : (meta - 4)] == bDir.rotate(bHand)) {
             BlockAndMeta temp = new BlockAndMeta(id, meta).stairToSolid();
-            world.setBlock(pt[0], pt[1], pt[2], temp.getBlock(), temp.getMeta(), 2);
+            placer.setBlock(pt[0], pt[1], pt[2], temp.getBlock(), temp.getMeta(), 2);
         }
 	}
 
 	private void pickTowers(boolean circular_, boolean endTowers) {
 		circular = circular_;
 		if (ws != null) {
-			roofStyle = ws.pickRoofStyle(circular, world.rand);
-			towerRule = ws.TowerRule.getFixedRule(world.rand);
+			roofStyle = ws.pickRoofStyle(circular, random);
+			towerRule = ws.TowerRule.getFixedRule(random);
 			roofRule = ws.getRoofRule(circular);
 			if (roofRule != TemplateRule.RULE_NOT_PROVIDED)
-				roofRule = roofRule.getFixedRule(world.rand);
+				roofRule = roofRule.getFixedRule(random);
 			if (endTowers && ws.MakeEndTowers) {
-				endBTemplate = ws.buildings.get(PickWeighted.pickWeightedOption(world.rand, ws.buildingWeights[0], ws.buildingWeights[1]));
-				endBLength = endBTemplate == ws.makeDefaultTower ? ws.pickTWidth(circular, world.rand) + 1 //+1 allows some extra wiggle room for roof edges etc.
+				endBTemplate = ws.buildings.get(PickWeighted.pickWeightedOption(random, ws.buildingWeights[0], ws.buildingWeights[1]));
+				endBLength = endBTemplate == ws.makeDefaultTower ? ws.pickTWidth(circular, random) + 1 //+1 allows some extra wiggle room for roof edges etc.
 						: (endBTemplate == ws.makeCARuin ? ws.CARuinContainerWidth : endBTemplate.length);
 			}
 		}
@@ -938,12 +1292,17 @@ public class BuildingWall extends Building {
 			else
 				smoothStart = -1;
 			if (smoothStart >= 0) {
-                String smoothingdebugStr = "smoothing: ";
-                for (int m = smoothStart; m <= winEnd; m++)
-                    smoothingdebugStr += (arry[m] + ",");
-                logger.debug(smoothingdebugStr);
+                boolean debug = logger.isDebugEnabled();
+                if (debug) {
+                    String smoothingdebugStr = "smoothing: ";
+                    for (int m = smoothStart; m <= winEnd; m++)
+                        smoothingdebugStr += (arry[m] + ",");
+                    logger.debug(smoothingdebugStr);
+                }
 				do {
-                    logger.debug("smoothing n: {} {} {} {}", n, arry[n - 1], arry[n], arry[winEnd]);
+                    if (debug)
+                        logger.debug("smoothing n: {} {} {} {}", n, arry[n - 1], arry[n],
+                                arry[winEnd]);
 					arry[n] = arry[winEnd];
 					n--;
 				} while (n > smoothStart && arry[n] != arry[winEnd]);
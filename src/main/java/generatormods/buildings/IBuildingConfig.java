@@ -20,12 +20,15 @@ package generatormods.buildings;
 
 import generatormods.config.chests.ChestContentsSpec;
 import generatormods.config.chests.ChestType;
-import generatormods.walledcity.CityDataManager;
+import generatormods.placement.IBlockPlacer;
+import generatormods.planning.TerrainProbe;
+import generatormods.walledcity.City;
 import generatormods.walledcity.ILayoutGenerator;
 
 import java.util.Map;
 import java.util.Random;
 
+import net.minecraft.nbt.NBTTagList;
 import net.minecraft.world.World;
 
 import org.apache.logging.log4j.Logger;
@@ -34,12 +37,20 @@ import org.apache.logging.log4j.Logger;
 public interface IBuildingConfig {
     /* Returns the backtrack length */
     public int getBacktrackLength();
+    /* Returns the IBlockPlacer that all world reads and writes should go through */
+    public IBlockPlacer getBlockPlacer();
+    /* Returns the TerrainProbe that surfaces should be found with */
+    public TerrainProbe getTerrainProbe();
     /* Returns the chest configurations */
     public Map<ChestType, ChestContentsSpec> getChestConfigs();
-    /* Optional, returns either a CityDataManager or null */
-    public CityDataManager getCityDataManager();
+    /* Optional, returns the City being built, that doors are added to, or null */
+    public City getCity();
     /* Optional, returns either an ILayoutGenerator or null */
     public ILayoutGenerator getLayoutGenerator();
+    /* Optional, returns the PathBuffers of the generation job, or null */
+    public PathBuffers getPathBuffers();
+    /* Optional, returns the walls of the Blueprint being replayed, or null */
+    public NBTTagList getPlannedWalls();
     /* Returns the mod's logger */
     public Logger getLogger();
     /* Returns the current Random object */
@@ -0,0 +1,156 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.buildings;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Leases the xArray and yArray buffers of BuildingWalls for one generation job. Buffers start
+ * short and are swapped for longer ones as the wall is planned further, so a wall only holds as
+ * much path as it has planned rather than its maxLength.
+ * <p>
+ * Buffers come from a pool shared by all jobs. Branches that BuildingWall.plan() tries, and trial
+ * walls that will not be built, hand theirs back with BuildingWall.releasePath() as soon as they
+ * are done with, and are not kept track of. At the end of the job, release() hands back the
+ * buffers of every other wall. Those walls keep exact size copies of their paths, so that anything
+ * that holds on to one, like a blueprint, sees the path it had.
+ * <p>
+ * Jobs may plan on worker threads. Each job has its own instance, only the pool is shared.
+ */
+public class PathBuffers {
+    /* The shortest buffer, capacities double from there */
+    public final static int MIN_CAPACITY = 64;
+    private final static int SIZE_CLASSES = 12;
+    /* Limits the ints that the pool keeps between jobs, about 4MB */
+    private final static int MAX_POOLED_INTS = 1 << 20;
+    /* Free buffers by size class, a buffer of class c holds MIN_CAPACITY << c ints */
+    private final static List<ArrayDeque<int[]>> pool = new ArrayList<ArrayDeque<int[]>>();
+    private static int pooledInts = 0;
+    static {
+        for (int c = 0; c < SIZE_CLASSES; c++)
+            pool.add(new ArrayDeque<int[]>());
+    }
+
+    private final Set<BuildingWall> walls =
+            Collections.newSetFromMap(new IdentityHashMap<BuildingWall, Boolean>());
+    private long allocatedInts = 0, reusedInts = 0;
+
+    /**
+     * Returns a buffer of zeros that holds at least minCapacity ints.
+     */
+    public int[] lease(int minCapacity) {
+        int sizeClass = sizeClass(minCapacity);
+        if (sizeClass >= SIZE_CLASSES) {
+            allocatedInts += minCapacity;
+            return new int[minCapacity];
+        }
+        int[] buffer;
+        synchronized (pool) {
+            buffer = pool.get(sizeClass).poll();
+            if (buffer != null)
+                pooledInts -= buffer.length;
+        }
+        if (buffer != null) {
+            reusedInts += buffer.length;
+            Arrays.fill(buffer, 0);
+            return buffer;
+        }
+        allocatedInts += MIN_CAPACITY << sizeClass;
+        return new int[MIN_CAPACITY << sizeClass];
+    }
+
+    /**
+     * Returns a buffer that holds at least minCapacity ints and starts with the given buffer, which
+     * goes back to the pool.
+     */
+    public int[] grow(int[] buffer, int minCapacity) {
+        int[] grown = lease(Math.max(minCapacity, 2 * buffer.length));
+        System.arraycopy(buffer, 0, grown, 0, buffer.length);
+        giveBack(buffer);
+        return grown;
+    }
+
+    /* Puts a buffer back into the pool, unless the pool is full or the size is not one of its own */
+    public void giveBack(int[] buffer) {
+        int sizeClass = sizeClass(buffer.length);
+        if (sizeClass >= SIZE_CLASSES || buffer.length != MIN_CAPACITY << sizeClass)
+            return;
+        synchronized (pool) {
+            if (pooledInts + buffer.length > MAX_POOLED_INTS)
+                return;
+            pool.get(sizeClass).push(buffer);
+            pooledInts += buffer.length;
+        }
+    }
+
+    /* Remembers a wall, to shrink-wrap its path at release() */
+    public void register(BuildingWall wall) {
+        walls.add(wall);
+    }
+
+    /* Forgets a wall that handed its buffers back already */
+    public void forget(BuildingWall wall) {
+        walls.remove(wall);
+    }
+
+    /**
+     * Ends the job: every registered wall gets an exact size copy of its path, and hands its
+     * buffers back. Also starts the counts over.
+     */
+    public void release() {
+        for (BuildingWall wall : walls)
+            wall.shrinkWrapPath();
+        walls.clear();
+        allocatedInts = 0;
+        reusedInts = 0;
+    }
+
+    /* The ints this job allocated for buffers so far */
+    public long getAllocatedInts() {
+        return allocatedInts;
+    }
+
+    /* The ints this job got from pooled buffers so far */
+    public long getReusedInts() {
+        return reusedInts;
+    }
+
+    /* Empties the pool shared by all jobs, for when no more structures are generated for a while */
+    public static void clearPool() {
+        synchronized (pool) {
+            for (ArrayDeque<int[]> buffers : pool)
+                buffers.clear();
+            pooledInts = 0;
+        }
+    }
+
+    /* The smallest c with MIN_CAPACITY << c >= capacity */
+    private static int sizeClass(int capacity) {
+        int sizeClass = 0;
+        while (MIN_CAPACITY << sizeClass < capacity && sizeClass < SIZE_CLASSES)
+            sizeClass++;
+        return sizeClass;
+    }
+}
@@ -0,0 +1,183 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldSavedData;
+
+/**
+ * Every structure that the modules built in one dimension, stored with the world save (in the
+ * dimension's data folder). Structures are indexed in a grid of CELL_SIZE by CELL_SIZE columns,
+ * so that builders can look for earlier structures at a site without probing the world for them.
+ * Only the few structures in the cells that a query covers are tested.
+ * <p>
+ * Structures are added on the server thread, but builders may query the catalog while planning
+ * off thread.
+ */
+public class StructureCatalog extends WorldSavedData {
+    public final static String DATA_NAME = "GeneratorModsStructures";
+    private final static int CELL_SHIFT = 8;
+    public final static int CELL_SIZE = 1 << CELL_SHIFT;
+
+    private final List<StructureRecord> records = new ArrayList<StructureRecord>();
+    private final Map<Long, List<StructureRecord>> cells =
+            new HashMap<Long, List<StructureRecord>>();
+    private int nextId = 1;
+
+    public StructureCatalog(String name) {
+        super(name);
+    }
+
+    /* Returns the StructureCatalog of the world's dimension, creating it if there is none yet. */
+    public static StructureCatalog forWorld(World world) {
+        StructureCatalog catalog =
+                (StructureCatalog) world.perWorldStorage.loadData(StructureCatalog.class,
+                        DATA_NAME);
+        if (catalog == null) {
+            catalog = new StructureCatalog(DATA_NAME);
+            world.perWorldStorage.setData(DATA_NAME, catalog);
+        }
+        return catalog;
+    }
+
+    /**
+     * Records a structure that was built.
+     *
+     * @param boxes The boxes that the structure covers, see StructureRecord.
+     * @return The new record, with its catalog ID.
+     */
+    public synchronized StructureRecord add(String module, String style, int[]... boxes) {
+        StructureRecord record = new StructureRecord(nextId++, module, style, boxes);
+        index(record);
+        markDirty();
+        return record;
+    }
+
+    public synchronized int size() {
+        return records.size();
+    }
+
+    /* Whether any structure covers the point */
+    public boolean contains(int i, int j, int k) {
+        return overlaps(new int[] {i, j, k, i, j, k});
+    }
+
+    /* Whether any structure overlaps the box, which is in the same form as StructureRecord's */
+    public synchronized boolean overlaps(int[] box) {
+        for (int ci = box[0] >> CELL_SHIFT; ci <= box[3] >> CELL_SHIFT; ci++) {
+            for (int ck = box[2] >> CELL_SHIFT; ck <= box[5] >> CELL_SHIFT; ck++) {
+                List<StructureRecord> cell = cells.get(cellKey(ci, ck));
+                if (cell != null)
+                    for (StructureRecord record : cell)
+                        if (record.intersects(box))
+                            return true;
+            }
+        }
+        return false;
+    }
+
+    /* The structures that overlap the columns from (minI, minK) to (maxI, maxK) */
+    public synchronized List<StructureRecord> findOverlapping(int minI, int minK, int maxI,
+            int maxK) {
+        Set<StructureRecord> found = new LinkedHashSet<StructureRecord>();
+        for (int ci = minI >> CELL_SHIFT; ci <= maxI >> CELL_SHIFT; ci++) {
+            for (int ck = minK >> CELL_SHIFT; ck <= maxK >> CELL_SHIFT; ck++) {
+                List<StructureRecord> cell = cells.get(cellKey(ci, ck));
+                if (cell != null)
+                    for (StructureRecord record : cell)
+                        if (record.intersects(minI, minK, maxI, maxK))
+                            found.add(record);
+            }
+        }
+        return new ArrayList<StructureRecord>(found);
+    }
+
+    /* The structures within the distance of the column, nearest first */
+    public List<StructureRecord> findNear(final int i, final int k, int distance) {
+        List<StructureRecord> found = new ArrayList<StructureRecord>();
+        for (StructureRecord record : findOverlapping(i - distance, k - distance, i + distance,
+                k + distance))
+            if (record.distanceTo(i, k) <= distance)
+                found.add(record);
+        Collections.sort(found, new Comparator<StructureRecord>() {
+            @Override
+            public int compare(StructureRecord a, StructureRecord b) {
+                return Integer.compare(a.distanceTo(i, k), b.distanceTo(i, k));
+            }
+        });
+        return found;
+    }
+
+    @Override
+    public synchronized void readFromNBT(NBTTagCompound tag) {
+        records.clear();
+        cells.clear();
+        NBTTagList list = tag.getTagList("Structures", 10);
+        for (int n = 0; n < list.tagCount(); n++) {
+            StructureRecord record = StructureRecord.readFromNBT(list.getCompoundTagAt(n));
+            if (record != null)
+                index(record);
+        }
+        nextId = Math.max(tag.getInteger("NextId"), 1);
+    }
+
+    @Override
+    public synchronized void writeToNBT(NBTTagCompound tag) {
+        NBTTagList list = new NBTTagList();
+        for (StructureRecord record : records)
+            list.appendTag(record.writeToNBT());
+        tag.setTag("Structures", list);
+        tag.setInteger("NextId", nextId);
+    }
+
+    private void index(StructureRecord record) {
+        records.add(record);
+        int[] bounds = record.bounds;
+        for (int ci = bounds[0] >> CELL_SHIFT; ci <= bounds[3] >> CELL_SHIFT; ci++) {
+            for (int ck = bounds[2] >> CELL_SHIFT; ck <= bounds[5] >> CELL_SHIFT; ck++) {
+                // Only the cells that one of the boxes reaches into
+                int minI = ci << CELL_SHIFT, minK = ck << CELL_SHIFT;
+                if (!record.intersects(minI, minK, minI + CELL_SIZE - 1, minK + CELL_SIZE - 1))
+                    continue;
+                long key = cellKey(ci, ck);
+                List<StructureRecord> cell = cells.get(key);
+                if (cell == null) {
+                    cell = new ArrayList<StructureRecord>(2);
+                    cells.put(key, cell);
+                }
+                cell.add(record);
+            }
+        }
+    }
+
+    private static long cellKey(int ci, int ck) {
+        return ((long) ci << 32) | (ck & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,124 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.catalog;
+
+import java.util.Arrays;
+
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * A structure that was built: which module built it, in what style, and the boxes that it covers.
+ * Boxes are int[6] of {minI, minJ, minK, maxI, maxJ, maxK}, inclusive. Most structures are a single
+ * box, long walls are a box per stretch of wall so that they do not cover the land beside them.
+ */
+public class StructureRecord {
+    public final int id;
+    public final String module;
+    public final String style;
+    private final int[][] boxes;
+    /* The box around all of the boxes */
+    public final int[] bounds;
+
+    public StructureRecord(int id, String module, String style, int[][] boxes) {
+        this.id = id;
+        this.module = module;
+        this.style = style == null ? "" : style;
+        this.boxes = boxes;
+        this.bounds = Arrays.copyOf(boxes[0], 6);
+        for (int[] box : boxes)
+            union(bounds, box);
+    }
+
+    /* Whether any of the boxes overlaps the columns from (minI, minK) to (maxI, maxK) */
+    public boolean intersects(int minI, int minK, int maxI, int maxK) {
+        if (!intersects(bounds, minI, minK, maxI, maxK))
+            return false;
+        for (int[] box : boxes)
+            if (intersects(box, minI, minK, maxI, maxK))
+                return true;
+        return false;
+    }
+
+    /* Whether any of the boxes overlaps the other box, which is in the same form */
+    public boolean intersects(int[] other) {
+        if (!intersects(bounds, other))
+            return false;
+        for (int[] box : boxes)
+            if (intersects(box, other))
+                return true;
+        return false;
+    }
+
+    /* The horizontal distance from the column to the nearest box, 0 if it is inside one */
+    public int distanceTo(int i, int k) {
+        int distance = Integer.MAX_VALUE;
+        for (int[] box : boxes) {
+            int di = Math.max(0, Math.max(box[0] - i, i - box[3]));
+            int dk = Math.max(0, Math.max(box[2] - k, k - box[5]));
+            distance = Math.min(distance, (int) Math.ceil(Math.sqrt((double) di * di + dk * dk)));
+        }
+        return distance;
+    }
+
+    public int getBoxCount() {
+        return boxes.length;
+    }
+
+    public NBTTagCompound writeToNBT() {
+        NBTTagCompound tag = new NBTTagCompound();
+        tag.setInteger("Id", id);
+        tag.setString("Module", module);
+        tag.setString("Style", style);
+        int[] flat = new int[boxes.length * 6];
+        for (int n = 0; n < boxes.length; n++)
+            System.arraycopy(boxes[n], 0, flat, n * 6, 6);
+        tag.setIntArray("Boxes", flat);
+        return tag;
+    }
+
+    public static StructureRecord readFromNBT(NBTTagCompound tag) {
+        int[] flat = tag.getIntArray("Boxes");
+        int[][] boxes = new int[flat.length / 6][];
+        for (int n = 0; n < boxes.length; n++)
+            boxes[n] = Arrays.copyOfRange(flat, n * 6, n * 6 + 6);
+        if (boxes.length == 0)
+            return null;
+        return new StructureRecord(tag.getInteger("Id"), tag.getString("Module"),
+                tag.getString("Style"), boxes);
+    }
+
+    /* Grows bounds to also cover box */
+    public static void union(int[] bounds, int[] box) {
+        for (int n = 0; n < 3; n++) {
+            bounds[n] = Math.min(bounds[n], box[n]);
+            bounds[n + 3] = Math.max(bounds[n + 3], box[n + 3]);
+        }
+    }
+
+    private static boolean intersects(int[] box, int[] other) {
+        for (int n = 0; n < 3; n++)
+            if (box[n] > other[n + 3] || box[n + 3] < other[n])
+                return false;
+        return true;
+    }
+
+    private static boolean intersects(int[] box, int minI, int minK, int maxI, int maxK) {
+        return box[0] <= maxI && box[3] >= minI && box[2] <= maxK && box[5] >= minK;
+    }
+}
@@ -18,14 +18,16 @@
  */
 package generatormods.commands;
 
-import generatormods.builders.CARuinsBuilder;
-import generatormods.builders.GreatWallBuilder;
-import generatormods.builders.UndergroundCityBuilder;
-import generatormods.builders.WalledCityBuilder;
-import generatormods.modules.CARuins;
-import generatormods.modules.GreatWall;
-import generatormods.modules.WalledCity;
+import generatormods.builders.AbstractBuilder;
+import generatormods.placement.BuildExecutor;
+import generatormods.planning.Blueprint;
+import generatormods.planning.BlueprintReplayer;
+import generatormods.planning.BlueprintStore;
+import generatormods.planning.PlanningPipeline;
+import generatormods.world.WorldContext;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
@@ -34,13 +36,12 @@ import net.minecraft.command.ICommand;
 import net.minecraft.command.ICommandSender;
 import net.minecraft.command.WrongUsageException;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.ChatComponentText;
 import net.minecraft.world.World;
-import static generatormods.util.WorldUtil.IGNORE_WATER;
-import static generatormods.util.WorldUtil.WORLD_MAX_Y;
-import static generatormods.util.WorldUtil.findSurfaceJ;
 
 /**
- * Build command for players to try to build structures city/wall/ruin at the specified location
+ * Build command for players to try to build structures city/wall/ruin at the specified location,
+ * or to plan them and build them later from their blueprints
  */
 public class CommandBuild extends CommandBase {
 	@Override
@@ -55,7 +56,7 @@ public class CommandBuild extends CommandBase {
 
 	@Override
 	public String getCommandUsage(ICommandSender commandSender) {
-		return "/" + getCommandName() + " <ruin:wall:city:undcity> <dimensionID,default:0> <x> <z>";
+		return "/" + getCommandName() + " [plan] <ruin:wall:city:undcity> <dimensionID,default:0> <x> <z> | /" + getCommandName() + " replay <id:all> <dimensionID,default:0> | /" + getCommandName() + " status";
 	}
 
 	@Override
@@ -66,56 +67,78 @@ public class CommandBuild extends CommandBase {
 
 	@Override
 	public void processCommand(ICommandSender var1, String[] coordinate) {
-		if (coordinate.length == 4 || coordinate.length == 3) {
+        if (coordinate.length == 1 && "status".equalsIgnoreCase(coordinate[0])) {
+            BuildExecutor executor = BuildExecutor.instance;
+            if (executor != null)
+                var1.addChatMessage(new ChatComponentText("Build jobs: "
+                        + executor.getRunningJobCount() + " running, "
+                        + executor.getQueuedJobCount() + " queued, "
+                        + executor.getRemainingOperations() + " block operations left"));
+            PlanningPipeline pipeline = PlanningPipeline.instance;
+            if (pipeline != null)
+                var1.addChatMessage(new ChatComponentText("Structures being planned: "
+                        + pipeline.getJobCount()));
+            return;
+        }
+        if (coordinate.length >= 2 && "replay".equalsIgnoreCase(coordinate[0])) {
+            replay(var1, coordinate);
+            return;
+        }
+        // "plan" only plans the structure, and saves its blueprint for "replay"
+        boolean dryRun = coordinate.length > 0 && "plan".equalsIgnoreCase(coordinate[0]);
+        String[] args = dryRun ? Arrays.copyOfRange(coordinate, 1, coordinate.length) : coordinate;
+		if (args.length == 4 || args.length == 3) {
             func_152373_a(var1, this, "/build command used by " + var1.getCommandSenderName(), var1.getCommandSenderName(), coordinate);
-			int posX = parseInt(var1, coordinate[coordinate.length - 2]);
-			int posZ = parseInt(var1, coordinate[coordinate.length - 1]);
-			World world = MinecraftServer.getServer().worldServers[coordinate.length == 3 ? 0 : Integer.parseInt(coordinate[1])];
-			if ("ruin".equalsIgnoreCase(coordinate[0])) {
-                (new CARuinsBuilder(world, new Random(), posX, posZ,
-                        CARuins.instance.logger, CARuins.instance.config)).run();
-			} else if ("wall".equalsIgnoreCase(coordinate[0])) {
-                (new GreatWallBuilder(world, new Random(), posX, posZ, 1, 1.0,
-                        GreatWall.instance.logger,
-                        GreatWall.instance.config.getChestConfigs(),
-                        GreatWall.instance.wallStyles,
-                        GreatWall.instance.config.getCurveBias())).run();
-			}
-			else if ("city".equalsIgnoreCase(coordinate[0])) {
-                WalledCity cityMod = WalledCity.instance;
-                WalledCityBuilder wcb =
-                        new WalledCityBuilder(world, new Random(), posX, posZ, 1, 1.0,
-                                cityMod.logger, cityMod.config.getChestConfigs(),
-                                cityMod.chatHandler, cityMod.cityDataManager,
-                                cityMod.surfaceCityStyles,
-                                cityMod.config.getRejectOnPreexistingArtifacts());
-                wcb.run();
-			} else if ("undcity".equalsIgnoreCase(coordinate[0])) {
-                WalledCity cityMod = WalledCity.instance;
-                UndergroundCityBuilder wgt =
-                        new UndergroundCityBuilder(world, new Random(), posX, posZ, 1, 1.0,
-                                cityMod.logger, cityMod.config.getChestConfigs(),
-                                cityMod.chatHandler, cityMod.cityDataManager,
-                                cityMod.undergroundCityStyles);
-                int maxSpawnHeight =
-                        findSurfaceJ(world, posX, posZ, WORLD_MAX_Y, false, IGNORE_WATER)
-                                - UndergroundCityBuilder.MAX_DIAM / 2 - 5; // 44 at sea level
-                int minSpawnHeight =
-                        WalledCity.MAX_FOG_HEIGHT + UndergroundCityBuilder.MAX_DIAM / 2
-                                - 8; // 34, a pretty thin margin. Too thin for underocean cities?
-				if (minSpawnHeight <= maxSpawnHeight)
-					wgt.setSpawnHeight(minSpawnHeight, maxSpawnHeight, false);
-				(wgt).run();
-			}
+			int posX = parseInt(var1, args[args.length - 2]);
+			int posZ = parseInt(var1, args[args.length - 1]);
+			World world = MinecraftServer.getServer().worldServers[args.length == 3 ? 0 : Integer.parseInt(args[1])];
+            if (dryRun) {
+                Blueprint blueprint = BlueprintReplayer.plan(args[0], world, posX, posZ);
+                var1.addChatMessage(new ChatComponentText(blueprint == null
+                        ? "Could not plan a " + args[0] + " there" : "Saved blueprint "
+                                + blueprint.id + ", " + blueprint.kind + " at (" + blueprint.i0
+                                + "," + blueprint.j0 + "," + blueprint.k0 + ")"));
+                return;
+            }
+            AbstractBuilder builder =
+                    BlueprintReplayer.createBuilder(args[0], world, new Random(), posX, posZ);
+            if (builder == null)
+                throw new WrongUsageException(getCommandUsage(var1));
+            builder.run();
 		} else {
 			throw new WrongUsageException(getCommandUsage(var1));
 		}
 	}
 
+    /* Builds one saved blueprint, or all of them */
+    private void replay(ICommandSender sender, String[] args) {
+        World world =
+                MinecraftServer.getServer().worldServers[args.length == 3 ? Integer
+                        .parseInt(args[2]) : 0];
+        BlueprintStore store = WorldContext.forWorld(world).getBlueprintStore();
+        List<Blueprint> blueprints;
+        if ("all".equalsIgnoreCase(args[1])) {
+            blueprints = store.getAll();
+        } else {
+            Blueprint blueprint = store.get(parseInt(sender, args[1]));
+            if (blueprint == null) {
+                sender.addChatMessage(new ChatComponentText("No blueprint " + args[1]));
+                return;
+            }
+            blueprints = Collections.singletonList(blueprint);
+        }
+        int built = 0;
+        for (Blueprint blueprint : blueprints)
+            if (BlueprintReplayer.replay(world, blueprint))
+                built++;
+        sender.addChatMessage(new ChatComponentText("Built " + built + " of "
+                + blueprints.size() + " blueprints, " + store.size() + " left"));
+    }
+
 	@Override
     @SuppressWarnings("rawtypes")
 	public List addTabCompletionOptions(ICommandSender var1, String[] var2) {
-		return var2.length == 1 ? getListOfStringsMatchingLastWord(var2, "ruin", "wall", "city", "undcity") : null;
+		return var2.length == 1 ? getListOfStringsMatchingLastWord(var2, "ruin", "wall", "city", "undcity", "plan", "replay", "status") : null;
 	}
 
     @Override
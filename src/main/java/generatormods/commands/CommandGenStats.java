@@ -0,0 +1,112 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.commands;
+
+import generatormods.metrics.GenerationMetrics;
+import generatormods.metrics.MetricsDumper;
+import generatormods.metrics.PlanStage;
+import generatormods.metrics.RejectReason;
+
+import java.io.File;
+import java.util.List;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+
+/**
+ * Shows what the builders of each module did since the server started, or since the last reset:
+ * attempts, structures built, time spent planning and building, blocks placed, wall path buffers
+ * allocated, street seeds that became streets, why sites were rejected, and how the sites fared in
+ * each stage of planning.
+ */
+public class CommandGenStats extends CommandBase {
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public String getCommandName() {
+        return "genstats";
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender commandSender) {
+        return "/" + getCommandName() + " [reset:dump]";
+    }
+
+    @Override
+    public void processCommand(ICommandSender sender, String[] args) {
+        if (args.length == 0) {
+            for (GenerationMetrics metrics : GenerationMetrics.getAll())
+                showMetrics(sender, metrics);
+        } else if (args.length == 1 && "reset".equalsIgnoreCase(args[0])) {
+            for (GenerationMetrics metrics : GenerationMetrics.getAll())
+                metrics.reset();
+            sender.addChatMessage(new ChatComponentText("Generation metrics reset"));
+        } else if (args.length == 1 && "dump".equalsIgnoreCase(args[0])) {
+            File dir = MetricsDumper.instance == null ? null : MetricsDumper.instance.dump();
+            sender.addChatMessage(new ChatComponentText(dir == null
+                    ? "Could not write the generation metrics" : "Wrote "
+                            + MetricsDumper.CSV_FILE + " and " + MetricsDumper.JSON_FILE + " to "
+                            + dir));
+        } else {
+            throw new WrongUsageException(getCommandUsage(sender));
+        }
+    }
+
+    private static void showMetrics(ICommandSender sender, GenerationMetrics metrics) {
+        sender.addChatMessage(new ChatComponentText(metrics.module + ": "
+                + metrics.getSuccesses() + " built out of " + metrics.getAttempts()
+                + " attempts, " + metrics.getPlanNanos() / 1000000 + " ms planning, "
+                + metrics.getBuildNanos() / 1000000 + " ms building, "
+                + metrics.getBlocksPlaced() + " blocks in " + metrics.getChunksTouched()
+                + " chunks"));
+        if (metrics.getPathIntsAllocated() + metrics.getPathIntsReused() > 0)
+            sender.addChatMessage(new ChatComponentText("  wall paths: "
+                    + metrics.getPathIntsAllocated() + " ints allocated, "
+                    + metrics.getPathIntsReused() + " reused"));
+        if (metrics.getStreetSeeds() > 0)
+            sender.addChatMessage(new ChatComponentText("  streets: "
+                    + metrics.getStreetsPlanned() + " planned from " + metrics.getStreetSeeds()
+                    + " seeds (" + 100 * metrics.getStreetsPlanned() / metrics.getStreetSeeds()
+                    + "%)"));
+        for (RejectReason reason : RejectReason.values()) {
+            long count = metrics.getRejections(reason);
+            if (count > 0)
+                sender.addChatMessage(new ChatComponentText("  " + reason.description + ": "
+                        + count));
+        }
+        for (PlanStage stage : PlanStage.values()) {
+            long entered = metrics.getStageEntries(stage);
+            if (entered > 0)
+                sender.addChatMessage(new ChatComponentText("  " + stage.description + ": "
+                        + metrics.getStageRejections(stage) + " of " + entered + " rejected, "
+                        + metrics.getStageNanos(stage) / 1000000 + " ms"));
+        }
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public List addTabCompletionOptions(ICommandSender sender, String[] args) {
+        return args.length == 1 ? getListOfStringsMatchingLastWord(args, "reset", "dump") : null;
+    }
+}
@@ -0,0 +1,82 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.commands;
+
+import generatormods.catalog.StructureCatalog;
+import generatormods.catalog.StructureRecord;
+import generatormods.world.WorldContext;
+
+import java.util.List;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+import net.minecraft.util.ChunkCoordinates;
+
+/**
+ * Lists the structures in the StructureCatalog of the sender's dimension that are near the sender,
+ * nearest first.
+ */
+public class CommandStructures extends CommandBase {
+    public final static int DEFAULT_RADIUS = 512, MAX_RADIUS = 8192, MAX_LISTED = 10;
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public String getCommandName() {
+        return "structures";
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender commandSender) {
+        return "/" + getCommandName() + " near [radius]";
+    }
+
+    @Override
+    public void processCommand(ICommandSender sender, String[] args) {
+        if (args.length < 1 || args.length > 2 || !"near".equalsIgnoreCase(args[0]))
+            throw new WrongUsageException(getCommandUsage(sender));
+        int radius =
+                args.length == 2 ? parseIntBounded(sender, args[1], 0, MAX_RADIUS)
+                        : DEFAULT_RADIUS;
+        ChunkCoordinates pos = sender.getPlayerCoordinates();
+        StructureCatalog catalog =
+                WorldContext.forWorld(sender.getEntityWorld()).getStructureCatalog();
+        List<StructureRecord> near = catalog.findNear(pos.posX, pos.posZ, radius);
+        sender.addChatMessage(new ChatComponentText(near.size() + " of " + catalog.size()
+                + " structures within " + radius + " blocks"));
+        for (StructureRecord record : near.subList(0, Math.min(near.size(), MAX_LISTED))) {
+            int[] b = record.bounds;
+            sender.addChatMessage(new ChatComponentText("  #" + record.id + " " + record.module
+                    + " (" + record.style + ") from (" + b[0] + "," + b[1] + "," + b[2] + ") to ("
+                    + b[3] + "," + b[4] + "," + b[5] + "), " + record.distanceTo(pos.posX, pos.posZ)
+                    + " blocks away"));
+        }
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public List addTabCompletionOptions(ICommandSender sender, String[] args) {
+        return args.length == 1 ? getListOfStringsMatchingLastWord(args, "near") : null;
+    }
+}
@@ -20,6 +20,8 @@ package generatormods.config;
 
 import generatormods.config.chests.ChestContentsSpec;
 import generatormods.config.chests.ChestType;
+import generatormods.placement.PlacementMode;
+import generatormods.placement.RelightMode;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -43,6 +45,10 @@ public abstract class AbstractConfig {
     private int triesPerChunk;
     private List<Integer> allowedDimensions;
     private Map<ChestType, ChestContentsSpec> chestConfigs;
+    private PlacementMode placementMode;
+    private RelightMode relightMode;
+    private int tickBudgetMillis;
+    private boolean planOffThread;
 
     public AbstractConfig(File configDir, String configName, Logger logger) {
         this.configDir = configDir;
@@ -78,6 +84,34 @@ public abstract class AbstractConfig {
         for (int dimensionInt : rawAllowedDimensions) {
             allowedDimensions.add(dimensionInt);
         }
+        placementMode =
+                PlacementMode.fromString(config.get(
+                        section,
+                        "Placement Mode",
+                        PlacementMode.IMMEDIATE.name(),
+                        "How the blocks of a structure are placed. IMMEDIATE places the whole structure\nat once. CHUNK_DEFERRED only places blocks in chunks that are already populated,\nand saves the rest to be placed when their chunk gets populated. TICKED places\nthe structure over several server ticks, see Tick Budget. BATCHED places the whole\nstructure at once, but writes it chunk by chunk, which is faster.")
+                        .getString());
+        tickBudgetMillis =
+                config.get(
+                        section,
+                        "Tick Budget",
+                        5,
+                        "With the TICKED Placement Mode or the DEFERRED_TICKED Relight Mode, how many\nmilliseconds per server tick may be spent placing blocks or relighting. A tick\nlasts 50 milliseconds.",
+                        1, 1000).getInt();
+        relightMode =
+                RelightMode.fromString(config.get(
+                        section,
+                        "Relight Mode",
+                        RelightMode.IMMEDIATE.name(),
+                        "When the lighting of a structure is updated. IMMEDIATE updates it with every\nblock. DEFERRED places all blocks without lighting, then relights each changed\nchunk once and logs how long it took. DEFERRED_TICKED does the relighting over\nseveral server ticks, see Tick Budget.")
+                        .getString());
+        planOffThread =
+                config.get(
+                        section,
+                        "Plan Off Thread",
+                        false,
+                        "If true, the terrain around a structure is copied and the structure is planned\non a separate thread, and only built on the server thread. Underground cities\nare always planned on the server thread.")
+                        .getBoolean();
 
         initChestConfigs();
     }
@@ -107,4 +141,20 @@ public abstract class AbstractConfig {
     public Map<ChestType, ChestContentsSpec> getChestConfigs() {
         return chestConfigs;
     }
+
+    public PlacementMode getPlacementMode() {
+        return placementMode;
+    }
+
+    public RelightMode getRelightMode() {
+        return relightMode;
+    }
+
+    public int getTickBudgetMillis() {
+        return tickBudgetMillis;
+    }
+
+    public boolean getPlanOffThread() {
+        return planOffThread;
+    }
 }
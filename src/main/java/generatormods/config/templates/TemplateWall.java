@@ -63,6 +63,13 @@ public class TemplateWall extends TemplateTML {
 			CARuinRule = TemplateRule.RULE_NOT_PROVIDED;
 	public boolean MakeBuildings = true, MergeWalls = false, MakeEndTowers = true, MakeGatehouseTowers = true, MakeUndergroundEntranceways = true, PopulateFurniture = false, MakeDoors = false;
 	public int LateralSmoothingScale = 20, ConcaveUpSmoothingScale = 20, ConcaveDownSmoothingScale = 10;
+    /*
+     * beam_width in a wall style: 0 plans its walls by backtracking, otherwise by a beam search
+     * that keeps this many of the best paths at each step (see BuildingWall.planBeam()). Beam
+     * paths avoid dead ends that backtracking gets stuck in, at the cost of reading more terrain.
+     * The width is narrowed for long walls to bound memory. No bundled style sets it.
+     */
+    public int BeamWidth = 0;
 	public int BuildingInterval = 75;
 	private int DefaultTowerWeight = 1;
 	public int TowerXOffset = 0;
@@ -155,6 +162,9 @@ public class TemplateWall extends TemplateTML {
             ConcaveDownSmoothingScale =
                     ParseUtil.readIntParam(logger, ConcaveDownSmoothingScale, "=",
                             extraOptions.get("concave_down_smoothing_scale"));
+		if (extraOptions.containsKey("beam_width"))
+            BeamWidth =
+                    ParseUtil.readIntParam(logger, BeamWidth, "=", extraOptions.get("beam_width"));
 		//default tower variables
 		if (extraOptions.containsKey("default_tower_weight"))
             DefaultTowerWeight =
@@ -410,7 +420,13 @@ public class TemplateWall extends TemplateTML {
 
     public static TemplateWall pickBiomeWeightedWallStyle(List<TemplateWall> styles, World world,
             int i, int k, Random random, boolean ignoreBiomes) {
-        int biome = world.getBiomeGenForCoordsBody(i, k).biomeID + 1;
+        return pickBiomeWeightedWallStyle(styles, world.getBiomeGenForCoordsBody(i, k).biomeID,
+                random, ignoreBiomes);
+    }
+
+    public static TemplateWall pickBiomeWeightedWallStyle(List<TemplateWall> styles, int biomeId,
+            Random random, boolean ignoreBiomes) {
+        int biome = biomeId + 1;
         if ((biome < 0 || biome > BiomeGenBase.getBiomeGenArray().length) && !ignoreBiomes)
             return null;
         int sum = 0;
@@ -0,0 +1,193 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts what the builders of one module did: how many sites they tried and built, how long
+ * planning and building took, how many blocks they placed in how many chunks, why sites were
+ * rejected, how many sites each PlanStage saw, rejected and took how long for, how much wall
+ * path buffer they allocated, and how many street seeds turned into planned streets. Builders may
+ * plan on worker threads, so all counters are atomic.
+ * <p>
+ * There is one instance per module, see forModule().
+ */
+public class GenerationMetrics {
+    private final static Map<String, GenerationMetrics> modules =
+            new LinkedHashMap<String, GenerationMetrics>();
+
+    public final String module;
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong planNanos = new AtomicLong();
+    private final AtomicLong buildNanos = new AtomicLong();
+    private final AtomicLong blocksPlaced = new AtomicLong();
+    private final AtomicLong chunksTouched = new AtomicLong();
+    private final AtomicLongArray rejections = new AtomicLongArray(RejectReason.values().length);
+    private final AtomicLongArray stageEntries = new AtomicLongArray(PlanStage.values().length);
+    private final AtomicLongArray stageRejections = new AtomicLongArray(PlanStage.values().length);
+    private final AtomicLongArray stageNanos = new AtomicLongArray(PlanStage.values().length);
+    private final AtomicLong pathIntsAllocated = new AtomicLong();
+    private final AtomicLong pathIntsReused = new AtomicLong();
+    private final AtomicLong streetSeeds = new AtomicLong();
+    private final AtomicLong streetsPlanned = new AtomicLong();
+
+    private GenerationMetrics(String module) {
+        this.module = module;
+    }
+
+    /* Returns the metrics of the named module, creating them the first time. */
+    public static synchronized GenerationMetrics forModule(String module) {
+        GenerationMetrics metrics = modules.get(module);
+        if (metrics == null) {
+            metrics = new GenerationMetrics(module);
+            modules.put(module, metrics);
+        }
+        return metrics;
+    }
+
+    /* The metrics of every module, in the order they were created */
+    public static synchronized List<GenerationMetrics> getAll() {
+        return new ArrayList<GenerationMetrics>(modules.values());
+    }
+
+    /* Records a call to plan(), which took the given time. */
+    public void addPlan(long nanos) {
+        attempts.incrementAndGet();
+        planNanos.addAndGet(nanos);
+    }
+
+    /* Records a call to build(), which took the given time. */
+    public void addBuild(long nanos, boolean success) {
+        if (success)
+            successes.incrementAndGet();
+        buildNanos.addAndGet(nanos);
+    }
+
+    public void addPlacement(long blocks, int chunks) {
+        blocksPlaced.addAndGet(blocks);
+        chunksTouched.addAndGet(chunks);
+    }
+
+    public void reject(RejectReason reason) {
+        rejections.incrementAndGet(reason.ordinal());
+    }
+
+    /* Records a site going through a stage of plan(), which took the given time. */
+    public void addStage(PlanStage stage, long nanos, boolean passed) {
+        stageEntries.incrementAndGet(stage.ordinal());
+        if (!passed)
+            stageRejections.incrementAndGet(stage.ordinal());
+        stageNanos.addAndGet(stage.ordinal(), nanos);
+    }
+
+    /* Records the ints of wall path buffers that a job allocated, and got from the pool */
+    public void addPathBuffers(long allocatedInts, long reusedInts) {
+        pathIntsAllocated.addAndGet(allocatedInts);
+        pathIntsReused.addAndGet(reusedInts);
+    }
+
+    /* Records the street seeds that a city tried, and how many of them became planned streets */
+    public void addStreets(long seeds, long planned) {
+        streetSeeds.addAndGet(seeds);
+        streetsPlanned.addAndGet(planned);
+    }
+
+    public long getAttempts() {
+        return attempts.get();
+    }
+
+    public long getSuccesses() {
+        return successes.get();
+    }
+
+    public long getPlanNanos() {
+        return planNanos.get();
+    }
+
+    public long getBuildNanos() {
+        return buildNanos.get();
+    }
+
+    public long getBlocksPlaced() {
+        return blocksPlaced.get();
+    }
+
+    public long getChunksTouched() {
+        return chunksTouched.get();
+    }
+
+    public long getRejections(RejectReason reason) {
+        return rejections.get(reason.ordinal());
+    }
+
+    public long getStageEntries(PlanStage stage) {
+        return stageEntries.get(stage.ordinal());
+    }
+
+    public long getStageRejections(PlanStage stage) {
+        return stageRejections.get(stage.ordinal());
+    }
+
+    public long getStageNanos(PlanStage stage) {
+        return stageNanos.get(stage.ordinal());
+    }
+
+    public long getPathIntsAllocated() {
+        return pathIntsAllocated.get();
+    }
+
+    public long getPathIntsReused() {
+        return pathIntsReused.get();
+    }
+
+    public long getStreetSeeds() {
+        return streetSeeds.get();
+    }
+
+    public long getStreetsPlanned() {
+        return streetsPlanned.get();
+    }
+
+    public void reset() {
+        attempts.set(0);
+        successes.set(0);
+        planNanos.set(0);
+        buildNanos.set(0);
+        blocksPlaced.set(0);
+        chunksTouched.set(0);
+        pathIntsAllocated.set(0);
+        pathIntsReused.set(0);
+        streetSeeds.set(0);
+        streetsPlanned.set(0);
+        for (int n = 0; n < rejections.length(); n++)
+            rejections.set(n, 0);
+        for (int n = 0; n < stageEntries.length(); n++) {
+            stageEntries.set(n, 0);
+            stageRejections.set(n, 0);
+            stageNanos.set(n, 0);
+        }
+    }
+}
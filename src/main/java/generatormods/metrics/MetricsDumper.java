@@ -0,0 +1,217 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.metrics;
+
+import cpw.mods.fml.common.eventhandler.SubscribeEvent;
+import cpw.mods.fml.common.gameevent.TickEvent;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import net.minecraft.world.World;
+import net.minecraftforge.common.DimensionManager;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Writes the GenerationMetrics of every module into the world save directory every few minutes.
+ * GeneratorModsStats.csv gets a row per module for every dump, so that it can be graphed over time.
+ * When the columns change, the old file is renamed to GeneratorModsStats.<time>.csv and a new one is
+ * started. GeneratorModsStats.json is overwritten with the latest totals.
+ * <p>
+ * Nothing is written while no builder has run since the last dump. It has to be registered with the
+ * FML event bus (tick events).
+ */
+public class MetricsDumper {
+    public final static String CSV_FILE = "GeneratorModsStats.csv";
+    public final static String JSON_FILE = "GeneratorModsStats.json";
+    /* Five minutes */
+    private final static int DUMP_INTERVAL_TICKS = 5 * 60 * 20;
+
+    public static MetricsDumper instance;
+
+    private final Logger logger;
+    private int ticks = 0;
+    /* The sum of all counters at the last dump */
+    private long lastTotal = 0;
+
+    public MetricsDumper(String parentModName) {
+        this.logger = LogManager.getLogger(parentModName + ".MetricsDumper");
+    }
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || ++ticks < DUMP_INTERVAL_TICKS)
+            return;
+        ticks = 0;
+        dumpIfChanged();
+    }
+
+    /* Dumps the metrics, unless nothing was counted since the last dump. */
+    public void dumpIfChanged() {
+        if (getTotal() != lastTotal)
+            dump();
+    }
+
+    /**
+     * Writes the metrics into the directory of the overworld save.
+     *
+     * @return The directory that was written to, or null if there was none or writing failed.
+     */
+    public File dump() {
+        World world = DimensionManager.getWorld(0);
+        if (world == null)
+            return null;
+        File dir = world.getSaveHandler().getWorldDirectory();
+        try {
+            dump(dir, System.currentTimeMillis());
+            lastTotal = getTotal();
+            return dir;
+        } catch (IOException e) {
+            logger.warn("Could not write generation metrics to " + dir, e);
+            return null;
+        }
+    }
+
+    public static void dump(File dir, long time) throws IOException {
+        List<GenerationMetrics> all = GenerationMetrics.getAll();
+        RejectReason[] reasons = RejectReason.values();
+        PlanStage[] stages = PlanStage.values();
+
+        File csvFile = new File(dir, CSV_FILE);
+        String header = getCsvHeader();
+        boolean writeHeader = !csvFile.exists();
+        if (!writeHeader && !header.equals(readFirstLine(csvFile))) {
+            // Rows with other columns would not line up with the header
+            File oldFile = new File(dir, CSV_FILE.replace(".csv", "." + time + ".csv"));
+            if (!csvFile.renameTo(oldFile))
+                throw new IOException("Could not rename " + csvFile + " to " + oldFile);
+            writeHeader = true;
+        }
+        PrintWriter csv = new PrintWriter(new BufferedWriter(new FileWriter(csvFile, true)));
+        try {
+            if (writeHeader)
+                csv.println(header);
+            for (GenerationMetrics metrics : all) {
+                csv.print(time + "," + metrics.module + "," + metrics.getAttempts() + ","
+                        + metrics.getSuccesses() + "," + metrics.getPlanNanos() / 1000000 + ","
+                        + metrics.getBuildNanos() / 1000000 + "," + metrics.getBlocksPlaced()
+                        + "," + metrics.getChunksTouched());
+                for (RejectReason reason : reasons)
+                    csv.print("," + metrics.getRejections(reason));
+                for (PlanStage stage : stages)
+                    csv.print("," + metrics.getStageEntries(stage) + ","
+                            + metrics.getStageRejections(stage) + ","
+                            + metrics.getStageNanos(stage) / 1000000);
+                csv.print("," + metrics.getPathIntsAllocated() + "," + metrics.getPathIntsReused());
+                csv.print("," + metrics.getStreetSeeds() + "," + metrics.getStreetsPlanned());
+                csv.println();
+            }
+        } finally {
+            csv.close();
+        }
+
+        PrintWriter json =
+                new PrintWriter(new BufferedWriter(new FileWriter(new File(dir, JSON_FILE))));
+        try {
+            json.println("{");
+            json.println("  \"time\": " + time + ",");
+            json.print("  \"modules\": {");
+            for (int m = 0; m < all.size(); m++) {
+                GenerationMetrics metrics = all.get(m);
+                json.println(m == 0 ? "" : ",");
+                json.println("    \"" + metrics.module + "\": {");
+                json.println("      \"attempts\": " + metrics.getAttempts() + ",");
+                json.println("      \"successes\": " + metrics.getSuccesses() + ",");
+                json.println("      \"planNanos\": " + metrics.getPlanNanos() + ",");
+                json.println("      \"buildNanos\": " + metrics.getBuildNanos() + ",");
+                json.println("      \"blocksPlaced\": " + metrics.getBlocksPlaced() + ",");
+                json.println("      \"chunksTouched\": " + metrics.getChunksTouched() + ",");
+                json.println("      \"pathIntsAllocated\": " + metrics.getPathIntsAllocated()
+                        + ",");
+                json.println("      \"pathIntsReused\": " + metrics.getPathIntsReused() + ",");
+                json.println("      \"streetSeeds\": " + metrics.getStreetSeeds() + ",");
+                json.println("      \"streetsPlanned\": " + metrics.getStreetsPlanned() + ",");
+                json.print("      \"rejections\": {");
+                boolean first = true;
+                for (RejectReason reason : reasons) {
+                    long count = metrics.getRejections(reason);
+                    if (count == 0)
+                        continue;
+                    json.print((first ? "" : ",") + "\n        \"" + reason.name() + "\": " + count);
+                    first = false;
+                }
+                json.println(first ? "}," : "\n      },");
+                json.print("      \"stages\": {");
+                first = true;
+                for (PlanStage stage : stages) {
+                    if (metrics.getStageEntries(stage) == 0)
+                        continue;
+                    json.print((first ? "" : ",") + "\n        \"" + stage.name() + "\": {"
+                            + "\"entered\": " + metrics.getStageEntries(stage)
+                            + ", \"rejected\": " + metrics.getStageRejections(stage)
+                            + ", \"nanos\": " + metrics.getStageNanos(stage) + "}");
+                    first = false;
+                }
+                json.println(first ? "}" : "\n      }");
+                json.print("    }");
+            }
+            json.println(all.isEmpty() ? "}" : "\n  }");
+            json.println("}");
+        } finally {
+            json.close();
+        }
+    }
+
+    /* The first line of the CSV file, naming its columns */
+    public static String getCsvHeader() {
+        StringBuilder header =
+                new StringBuilder("time,module,attempts,successes,plan_ms,build_ms,blocks,chunks");
+        for (RejectReason reason : RejectReason.values())
+            header.append(',').append(reason.name());
+        for (PlanStage stage : PlanStage.values())
+            header.append(',').append(stage.name()).append("_entered,").append(stage.name())
+                    .append("_rejected,").append(stage.name()).append("_ms");
+        header.append(",path_ints_allocated,path_ints_reused,street_seeds,streets_planned");
+        return header.toString();
+    }
+
+    private static String readFirstLine(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            return reader.readLine();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static long getTotal() {
+        long total = 0;
+        for (GenerationMetrics metrics : GenerationMetrics.getAll())
+            total += metrics.getAttempts() + metrics.getBlocksPlaced();
+        return total;
+    }
+}
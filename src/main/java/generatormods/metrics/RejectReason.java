@@ -0,0 +1,76 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.metrics;
+
+import generatormods.buildings.BuildingWall;
+
+/**
+ * Why a builder gave up on a site. Counted per module by GenerationMetrics.
+ */
+public enum RejectReason {
+    NO_STYLE("no style or rule for the biome"),
+    TOO_CLOSE_TO_CITY("too close to another city"),
+    CITY_BUILT_DURING_PLANNING("another city was built during planning"),
+    WALL_OBSTRUCTED("wall obstructed"),
+    WALL_UNDERWATER("wall ran into water"),
+    WALL_TOO_STEEP_DOWN("wall too steep downwards"),
+    WALL_TOO_STEEP_UP("wall too steep upwards"),
+    WALL_HIT_WALL("wall ran into another wall"),
+    WALL_CANNOT_EXPLORE("wall could not explore further"),
+    WALL_TOO_SHORT("wall too short"),
+    SIDE_TOO_SHORT("city side too short"),
+    UNEVEN_CORNERS("city corners too far from the mean height"),
+    PREEXISTING_CONSTRUCTION("found previous construction"),
+    TOO_MUCH_WATER("too much water"),
+    TOO_STRAIGHT("wall not curvy enough"),
+    CA_DIED("automaton died out too early"),
+    CA_OSCILLATION("automaton oscillated too early"),
+    UNEVEN_GROUND("ground too uneven"),
+    LAYOUT_NOT_CLEAR("layout not clear"),
+    OBSTRUCTED_FRAME("frame obstructed"),
+    NO_ROOM_FOR_CAVERN("no room for a cavern"),
+    OVERLAPS_STRUCTURE("overlaps an earlier structure"),
+    BLUEPRINT_CHANGED("site changed since its blueprint was planned");
+
+    public final String description;
+
+    private RejectReason(String description) {
+        this.description = description;
+    }
+
+    /* The reason a wall that came up short stopped at */
+    public static RejectReason forWallFail(BuildingWall.FailType failCode) {
+        switch (failCode) {
+            case OBSTRUCTED:
+                return WALL_OBSTRUCTED;
+            case UNDERWATER:
+                return WALL_UNDERWATER;
+            case TOOSTEEPDOWN:
+                return WALL_TOO_STEEP_DOWN;
+            case TOOSTEEPUP:
+                return WALL_TOO_STEEP_UP;
+            case HITWALL:
+                return WALL_HIT_WALL;
+            case CANNOTEXPLORE:
+                return WALL_CANNOT_EXPLORE;
+            default:
+                return WALL_TOO_SHORT;
+        }
+    }
+}
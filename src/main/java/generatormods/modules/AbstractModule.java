@@ -18,11 +18,13 @@
  */
 package generatormods.modules;
 
-import generatormods.util.WorldUtil;
+import generatormods.builders.AbstractBuilder;
+import generatormods.metrics.GenerationMetrics;
+import generatormods.planning.PlanningPipeline;
+import generatormods.world.WorldContext;
 import cpw.mods.fml.common.IWorldGenerator;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
@@ -40,14 +42,16 @@ import org.apache.logging.log4j.Logger;
  */
 public abstract class AbstractModule implements IWorldGenerator {
 	public Logger logger;
+    /* What this module's builders did, see /genstats */
+    public final GenerationMetrics metrics;
     private boolean isDisabled = false;
-	private List<World> currentWorld = new ArrayList<World>();
     protected File configDir;
     protected File jarFile;
     protected List<Integer> allowedDimensions;
 
     public AbstractModule(String parentModName, File configDir, File jarFile) {
         this.logger = LogManager.getLogger(parentModName + "." + toString());
+        this.metrics = GenerationMetrics.forModule(toString());
         this.configDir = configDir;
         this.jarFile = jarFile;
     }
@@ -69,32 +73,29 @@ public abstract class AbstractModule implements IWorldGenerator {
 	abstract public void generate(World world, Random random, int i, int k);
 
 	public void updateWorldExplored(World world) {
-		if (isNewWorld(world)) {
+        if (WorldContext.forWorld(world).startSurvey(toString())) {
             logger.info("Starting to survey {} for generation...",
                     world.provider.getDimensionName());
 		}
 	}
 
-	protected boolean isNewWorld(World world) {
-		if (currentWorld.isEmpty()) {
-			currentWorld.add(world);
-			return true;
-		} else if (currentWorld.contains(world)) {
-			return false;
-		} else {
-            File newdir = WorldUtil.getWorldSaveDir(world);
-			for (World w : currentWorld) {
-				//check the filename in case we changed of dimension
-                File olddir = WorldUtil.getWorldSaveDir(w);
-				if (newdir != null && olddir != null && olddir.compareTo(newdir) != 0) {
-					// new world has definitely been created.
-					currentWorld.add(world);
-					return true;
-				}
-			}
-			return false;
-		}
-	}
+    /**
+     * FML hands the same Random to every IWorldGenerator, so a builder that is planned off the
+     * server thread needs one of its own.
+     */
+    protected static Random getBuilderRandom(Random random, boolean planOffThread) {
+        if (planOffThread && PlanningPipeline.instance != null)
+            return new Random(random.nextLong());
+        return random;
+    }
+
+    /* Runs the builder, or hands it to the PlanningPipeline if it is to be planned off thread. */
+    protected static void runBuilder(AbstractBuilder builder, boolean planOffThread) {
+        if (planOffThread && PlanningPipeline.instance != null)
+            PlanningPipeline.instance.submit(builder);
+        else
+            builder.run();
+    }
 
     protected void disable(String reason) {
         disable(reason, null);
@@ -60,8 +60,15 @@ public class CARuins extends AbstractModule {
 
 	@Override
 	public final void generate(World world, Random random, int i, int k) {
-        if (random.nextFloat() < config.getGlobalFrequency())
-            (new CARuinsBuilder(world, random, i, k, logger, config)).run();
+        if (random.nextFloat() < config.getGlobalFrequency()) {
+            CARuinsBuilder builder =
+                    new CARuinsBuilder(world, getBuilderRandom(random, config.getPlanOffThread()),
+                            i, k, logger, config);
+            builder.setPlacementMode(config.getPlacementMode(), config.getTickBudgetMillis());
+            builder.setRelightMode(config.getRelightMode());
+            builder.setMetrics(metrics);
+            runBuilder(builder, config.getPlanOffThread());
+        }
 	}
 
 	@Override
@@ -68,10 +68,17 @@ public class GreatWall extends AbstractModule {
 
 	@Override
 	public final void generate(World world, Random random, int i, int k) {
-        if (random.nextFloat() < config.getGlobalFrequency())
-            (new GreatWallBuilder(world, random, i, k, config.getTriesPerChunk(),
-                    config.getGlobalFrequency(), logger, config.getChestConfigs(), wallStyles,
-                    config.getCurveBias())).run();
+        if (random.nextFloat() < config.getGlobalFrequency()) {
+            GreatWallBuilder builder =
+                    new GreatWallBuilder(world, getBuilderRandom(random,
+                            config.getPlanOffThread()), i, k, config.getTriesPerChunk(),
+                            config.getGlobalFrequency(), logger, config.getChestConfigs(),
+                            wallStyles, config.getCurveBias());
+            builder.setPlacementMode(config.getPlacementMode(), config.getTickBudgetMillis());
+            builder.setRelightMode(config.getRelightMode());
+            builder.setMetrics(metrics);
+            runBuilder(builder, config.getPlanOffThread());
+        }
 	}
 
 	@Override
@@ -27,7 +27,6 @@ import generatormods.walledcity.CityDataManager;
 import generatormods.walledcity.WalledCityChatHandler;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -64,11 +63,15 @@ public class WalledCity extends AbstractModule {
                 && cityDataManager.isCitySeparated(world, i, k, world.provider.dimensionId)
                 && random.nextFloat() < config.getGlobalFrequency()) {
             WalledCityBuilder wcb =
-                    new WalledCityBuilder(world, random, i, k, config.getTriesPerChunk(),
+                    new WalledCityBuilder(world, getBuilderRandom(random,
+                            config.getPlanOffThread()), i, k, config.getTriesPerChunk(),
                             config.getGlobalFrequency(), logger, config.getChestConfigs(),
                             chatHandler, cityDataManager, surfaceCityStyles,
                             config.getRejectOnPreexistingArtifacts());
-            wcb.run();
+            wcb.setPlacementMode(config.getPlacementMode(), config.getTickBudgetMillis());
+            wcb.setRelightMode(config.getRelightMode());
+            wcb.setMetrics(metrics);
+            runBuilder(wcb, config.getPlanOffThread());
         }
         if (undergroundCityStyles.size() > 0 && cityDataManager.isCitySeparated(world, i, k, CITY_TYPE_UNDERGROUND)
                 && random.nextFloat() < config.getUndergroundGlobalFrequency()) {
@@ -85,6 +88,9 @@ public class WalledCity extends AbstractModule {
             int minSpawnHeight = MAX_FOG_HEIGHT + UndergroundCityBuilder.MAX_DIAM / 2 - 8;
             if (minSpawnHeight <= maxSpawnHeight)
                 wgt.setSpawnHeight(minSpawnHeight, maxSpawnHeight, false);
+            wgt.setPlacementMode(config.getPlacementMode(), config.getTickBudgetMillis());
+            wgt.setRelightMode(config.getRelightMode());
+            wgt.setMetrics(metrics);
             wgt.run();
         }
     }
@@ -145,10 +151,6 @@ public class WalledCity extends AbstractModule {
 	@Override
 	public void updateWorldExplored(World world) {
 		super.updateWorldExplored(world);
-		try {
-            cityDataManager.updateWorldExplored(world);
-		} catch (IOException e) {
-            logger.warn(e);
-		}
+        cityDataManager.updateWorldExplored(world);
 	}
 }
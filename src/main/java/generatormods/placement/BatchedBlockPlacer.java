@@ -0,0 +1,164 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.Entity;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+
+/**
+ * Records every write of a builder per chunk, and writes each chunk in one go with the
+ * ChunkBatchWriter once the builder is done. This saves the cost of World.setBlock() for every
+ * block, and sends each changed chunk to the clients once.
+ * <p>
+ * Reads see the recorded writes, so Buildings behave as if their blocks were already placed. Tile
+ * entities and entities are placed after all of the blocks of their chunk.
+ */
+public class BatchedBlockPlacer extends WorldBlockPlacer {
+    private final Map<Long, PendingChunk> batches = new LinkedHashMap<Long, PendingChunk>();
+    private final List<Entity> entities = new ArrayList<Entity>();
+
+    public BatchedBlockPlacer(World world) {
+        super(world);
+    }
+
+    @Override
+    public boolean setBlock(int i, int j, int k, Block block, int meta, int flags) {
+        PendingChunk batch = getBatch(i, j, k, true);
+        if (batch == null)
+            return false;
+        batch.addBlock(i, j, k, block, meta, flags & PendingChunk.FLAGS_MASK);
+        return true;
+    }
+
+    @Override
+    public boolean setBlockNoLighting(int i, int j, int k, Block block, int meta, int flags) {
+        PendingChunk batch = getBatch(i, j, k, true);
+        if (batch == null)
+            return false;
+        batch.addBlock(i, j, k, block, meta, (flags & PendingChunk.FLAGS_MASK)
+                | PendingChunk.OP_NO_LIGHTING);
+        return true;
+    }
+
+    @Override
+    public boolean setBlockMetadata(int i, int j, int k, int meta, int flags) {
+        PendingChunk batch = getBatch(i, j, k, true);
+        if (batch == null)
+            return false;
+        batch.addBlock(i, j, k, getBlock(i, j, k), meta, (flags & PendingChunk.FLAGS_MASK)
+                | PendingChunk.OP_META_ONLY);
+        return true;
+    }
+
+    @Override
+    public void spawnEntity(Entity entity) {
+        entities.add(entity);
+    }
+
+    /*
+     * Writes all recorded chunks, and only then runs the block callbacks, so that blocks see their
+     * neighbors in other chunks. Then places the tile entities and entities.
+     */
+    @Override
+    public void finish() {
+        ChunkBatchWriter writer = new ChunkBatchWriter(world);
+        for (PendingChunk batch : batches.values())
+            batch.writeBlocks(writer);
+        writer.finish();
+        for (PendingChunk batch : batches.values())
+            batch.placeTileEntitiesAndEntities(world);
+        batches.clear();
+        for (Entity entity : entities)
+            spawnEntity(world, entity);
+        entities.clear();
+    }
+
+    @Override
+    public boolean readsFromWorld() {
+        return false;
+    }
+
+    @Override
+    public Block getBlock(int i, int j, int k) {
+        PendingChunk batch = getBatch(i, j, k, false);
+        if (batch != null) {
+            Block block = batch.getBlock(i, j, k);
+            if (block != null)
+                return block;
+        }
+        return super.getBlock(i, j, k);
+    }
+
+    @Override
+    public int getBlockMetadata(int i, int j, int k) {
+        PendingChunk batch = getBatch(i, j, k, false);
+        if (batch != null && batch.getBlock(i, j, k) != null)
+            return batch.getBlockMetadata(i, j, k);
+        return super.getBlockMetadata(i, j, k);
+    }
+
+    /**
+     * For recorded blocks, returns a tile entity that is not in the world yet. It is placed along
+     * with the blocks of its chunk.
+     */
+    @Override
+    public TileEntity getTileEntity(int i, int j, int k) {
+        PendingChunk batch = getBatch(i, j, k, false);
+        Block block = batch == null ? null : batch.getBlock(i, j, k);
+        if (block == null)
+            return super.getTileEntity(i, j, k);
+        TileEntity tileEntity = batch.getTileEntity(i, j, k);
+        int meta = batch.getBlockMetadata(i, j, k);
+        if (tileEntity == null && block.hasTileEntity(meta)) {
+            tileEntity = block.createTileEntity(world, meta);
+            if (tileEntity != null) {
+                tileEntity.xCoord = i;
+                tileEntity.yCoord = j;
+                tileEntity.zCoord = k;
+                batch.setTileEntity(i, j, k, tileEntity);
+            }
+        }
+        return tileEntity;
+    }
+
+    /* The number of chunks that have recorded writes. */
+    public int getChunkCount() {
+        return batches.size();
+    }
+
+    private PendingChunk getBatch(int i, int j, int k, boolean create) {
+        if (j < 0 || j > 255 || i < -30000000 || k < -30000000 || i >= 30000000
+                || k >= 30000000)
+            return null;
+        long key = PendingChunkPlacements.chunkKey(i >> 4, k >> 4);
+        PendingChunk batch = batches.get(key);
+        if (batch == null && create) {
+            batch = new PendingChunk(i >> 4, k >> 4);
+            batches.put(key, batch);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,121 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import cpw.mods.fml.common.eventhandler.SubscribeEvent;
+import cpw.mods.fml.common.gameevent.TickEvent;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import net.minecraftforge.event.world.WorldEvent;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs IBuildJobs on the server thread, a few milliseconds per tick, so that placing a large
+ * structure does not freeze the server. These are the operation logs of QueuedBlockPlacers and the
+ * RelightJobs that follow them. Jobs run one at a time in the order they were submitted. If the
+ * running job finishes before its budget for the tick is used up, the next job gets the rest.
+ * <p>
+ * It has to be registered with the FML event bus (tick events) and the Forge event bus (world
+ * events).
+ */
+public class BuildExecutor {
+    public static BuildExecutor instance;
+
+    private final Logger logger;
+    private final LinkedList<IBuildJob> queued = new LinkedList<IBuildJob>();
+    private IBuildJob running;
+
+    public BuildExecutor(String parentModName) {
+        this.logger = LogManager.getLogger(parentModName + ".BuildExecutor");
+    }
+
+    public void submit(IBuildJob job) {
+        queued.add(job);
+        logger.debug("Queued build job with {} operations, {} jobs queued", job.getTotalOperations(),
+                queued.size());
+    }
+
+    public int getQueuedJobCount() {
+        return queued.size();
+    }
+
+    public int getRunningJobCount() {
+        return running == null ? 0 : 1;
+    }
+
+    /* The number of operations left in the running and queued jobs. */
+    public long getRemainingOperations() {
+        long remaining = running == null ? 0 : running.getRemainingOperations();
+        for (IBuildJob job : queued)
+            remaining += job.getRemainingOperations();
+        return remaining;
+    }
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END)
+            return;
+        long tickStart = System.nanoTime();
+        while (true) {
+            if (running == null) {
+                running = queued.poll();
+                if (running == null)
+                    return;
+            }
+            long deadline = tickStart + running.getTickBudgetMillis() * 1000000L;
+            if (System.nanoTime() >= deadline || !running.runUntil(deadline))
+                return;
+            logger.debug("Finished build job of {} operations over {} ticks",
+                    running.getTotalOperations(), running.getTicks());
+            running = null;
+        }
+    }
+
+    /* Drops the jobs of a world that is unloaded, since their blocks cannot be placed anymore. */
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        if (running != null && running.getWorld() == event.world) {
+            logger.warn("Dropping build job with {} operations left, world was unloaded",
+                    running.getRemainingOperations());
+            running = null;
+        }
+        for (Iterator<IBuildJob> it = queued.iterator(); it.hasNext();) {
+            IBuildJob job = it.next();
+            if (job.getWorld() == event.world) {
+                logger.warn("Dropping queued build job with {} operations, world was unloaded",
+                        job.getRemainingOperations());
+                it.remove();
+            }
+        }
+    }
+
+    /* Places everything that is still queued, without a time budget. Used when the server stops. */
+    public void finishAll() {
+        if (running != null)
+            running.runUntil(Long.MAX_VALUE);
+        running = null;
+        for (IBuildJob job : queued)
+            job.runUntil(Long.MAX_VALUE);
+        queued.clear();
+    }
+}
@@ -0,0 +1,232 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+/**
+ * Writes batches of block writes straight into the chunks' ExtendedBlockStorage, instead of going
+ * through World.setBlock() for every block.
+ * <p>
+ * The writes to a chunk are applied section by section, keeping the order of writes to the same
+ * position, and the height map is fixed for the columns that were written above the old top. Once
+ * every chunk has been written, finish() makes a single pass over each chunk that runs the block
+ * callbacks, updates lighting for the writes that asked for it and notifies neighbors, and then
+ * sends the changed sections of each chunk to the watching players in a single packet. The
+ * callbacks run for every write, in the order World.setBlock() would have run them, so a block
+ * that a later write to the same position replaced still gets its onBlockAdded() and breakBlock().
+ * <p>
+ * Blocks with tile entities, before or after the write, go through Chunk.func_150807_a() as they
+ * would with World.setBlock(), so that tile entities are created and removed the usual way.
+ * <p>
+ * Positions and writes are packed as in PendingChunk.
+ */
+public class ChunkBatchWriter {
+    private final World world;
+    private final List<Batch> written = new ArrayList<Batch>();
+
+    public ChunkBatchWriter(World world) {
+        this.world = world;
+    }
+
+    /**
+     * Writes the first size writes into the chunk. The arrays must not change until finish() is
+     * called.
+     *
+     * @return The number of writes that changed a block.
+     */
+    public int write(int chunkX, int chunkZ, int[] positions, int[] ops, int size) {
+        if (size == 0)
+            return 0;
+        Chunk chunk = world.getChunkFromChunkCoords(chunkX, chunkZ);
+        ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+        Batch batch = new Batch(chunk, positions, ops, size);
+        /* The columns that were written at or above the top of the height map */
+        boolean[] topChanged = new boolean[256];
+        boolean anyTopChanged = false;
+        int changes = 0;
+        for (int n : batch.order) {
+            int x = positions[n] & 0xf, z = (positions[n] >> 4) & 0xf, j = positions[n] >>> 8;
+            int column = (z << 4) | x;
+            int op = ops[n];
+            int meta = (op >> 4) & 0xf;
+            ExtendedBlockStorage section = storage[j >> 4];
+            Block oldBlock = section == null ? Blocks.air : section.getBlockByExtId(x, j & 0xf, z);
+            int oldMeta = section == null ? 0 : section.getExtBlockMetadata(x, j & 0xf, z);
+            if ((op & PendingChunk.OP_META_ONLY) != 0) {
+                // like Chunk.setBlockMetadata()
+                if (section == null || oldMeta == meta)
+                    continue;
+                section.setExtBlockMetadata(x, j & 0xf, z, meta);
+                if (oldBlock.hasTileEntity(meta)) {
+                    TileEntity tileEntity = chunk.func_150806_e(x, j, z);
+                    if (tileEntity != null) {
+                        tileEntity.updateContainingBlockInfo();
+                        tileEntity.blockMetadata = meta;
+                    }
+                }
+            } else {
+                Block block = Block.getBlockById(op >>> 8);
+                if (oldBlock == block && oldMeta == meta)
+                    continue;
+                if (oldBlock.hasTileEntity(oldMeta) || block.hasTileEntity(meta)) {
+                    if (!chunk.func_150807_a(x, j, z, block, meta))
+                        continue;
+                } else {
+                    if (section == null) {
+                        if (block == Blocks.air)
+                            continue;
+                        section = storage[j >> 4] =
+                                new ExtendedBlockStorage(j >> 4 << 4, !world.provider.hasNoSky);
+                    }
+                    section.func_150818_a(x, j & 0xf, z, block);
+                    section.setExtBlockMetadata(x, j & 0xf, z, meta);
+                    batch.direct[n] = true;
+                    if (j >= chunk.precipitationHeightMap[column] - 1)
+                        chunk.precipitationHeightMap[column] = -999;
+                    if (j >= chunk.heightMap[column] - 1) {
+                        topChanged[column] = true;
+                        anyTopChanged = true;
+                    }
+                }
+            }
+            batch.previous[n] = oldBlock;
+            batch.previousMeta[n] = oldMeta;
+            if ((op & 2) != 0)
+                batch.syncSections |= 1 << (j >> 4);
+            changes++;
+        }
+        if (changes == 0)
+            return 0;
+        chunk.setChunkModified();
+        if (anyTopChanged)
+            updateHeightMap(chunk, topChanged);
+        written.add(batch);
+        return changes;
+    }
+
+    /**
+     * Runs the block callbacks, lighting updates and neighbor updates for everything written so
+     * far, now that all of the blocks are in place, and sends the changed chunks to the clients.
+     */
+    public void finish() {
+        for (Batch batch : written) {
+            Chunk chunk = batch.chunk;
+            int baseI = chunk.xPosition << 4, baseK = chunk.zPosition << 4;
+            for (int n : batch.order) {
+                Block previous = batch.previous[n];
+                if (previous == null)
+                    continue;
+                int pos = batch.positions[n], op = batch.ops[n];
+                int i = baseI + (pos & 0xf), j = pos >>> 8, k = baseK + ((pos >> 4) & 0xf);
+                Block block = Block.getBlockById(op >>> 8);
+                if (batch.direct[n]) {
+                    previous.breakBlock(world, i, j, k, previous, batch.previousMeta[n]);
+                    block.onBlockAdded(world, i, j, k);
+                }
+                if ((op & (PendingChunk.OP_NO_LIGHTING | PendingChunk.OP_META_ONLY)) == 0)
+                    world.func_147451_t(i, j, k);
+                if ((op & 1) != 0) {
+                    world.notifyBlockChange(i, j, k, previous);
+                    if (block.hasComparatorInputOverride())
+                        world.func_147453_f(i, j, k, block);
+                }
+            }
+        }
+        WorldPlayerChunkMap players = new WorldPlayerChunkMap(world);
+        for (Batch batch : written) {
+            if (batch.syncSections != 0)
+                players.sendSections(batch.chunk, batch.syncSections);
+        }
+        written.clear();
+    }
+
+    /*
+     * Orders the writes by section, keeping the order of the writes within each section, so that
+     * writes to the same position stay in order.
+     */
+    private static int[] sortBySection(int[] positions, int size) {
+        int[] starts = new int[17];
+        for (int n = 0; n < size; n++)
+            starts[(positions[n] >>> 12) + 1]++;
+        for (int s = 1; s < starts.length; s++)
+            starts[s] += starts[s - 1];
+        int[] order = new int[size];
+        for (int n = 0; n < size; n++)
+            order[starts[positions[n] >>> 12]++] = n;
+        return order;
+    }
+
+    /* Finds the new top of the marked columns, the same way Chunk.generateHeightMap() does. */
+    private static void updateHeightMap(Chunk chunk, boolean[] columns) {
+        ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+        for (int column = 0; column < 256; column++) {
+            if (!columns[column])
+                continue;
+            int x = column & 0xf, z = column >> 4;
+            int top = 0;
+            for (int j = storage.length * 16 - 1; j >= 0; j--) {
+                ExtendedBlockStorage section = storage[j >> 4];
+                if (section == null || section.isEmpty()) {
+                    j &= ~0xf;
+                    continue;
+                }
+                if (chunk.func_150808_b(x, j, z) > 0) {
+                    top = j + 1;
+                    break;
+                }
+            }
+            chunk.heightMap[column] = top;
+        }
+        int minimum = Integer.MAX_VALUE;
+        for (int height : chunk.heightMap)
+            minimum = Math.min(minimum, height);
+        chunk.heightMapMinimum = minimum;
+    }
+
+    /* What write() did to one chunk, for finish() */
+    private static class Batch {
+        final Chunk chunk;
+        final int[] positions, ops, order;
+        /* The block that each write replaced, or null if the write did not change anything */
+        final Block[] previous;
+        final int[] previousMeta;
+        /* Whether the write went straight into the block storage */
+        final boolean[] direct;
+        int syncSections = 0;
+
+        Batch(Chunk chunk, int[] positions, int[] ops, int size) {
+            this.chunk = chunk;
+            this.positions = positions;
+            this.ops = ops;
+            order = sortBySection(positions, size);
+            previous = new Block[size];
+            previousMeta = new int[size];
+            direct = new boolean[size];
+        }
+    }
+}
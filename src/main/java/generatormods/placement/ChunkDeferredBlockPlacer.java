@@ -0,0 +1,205 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.Entity;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.MathHelper;
+import net.minecraft.world.World;
+
+/**
+ * Places blocks into chunks that are already populated right away, and records writes to all other
+ * chunks in PendingChunks. Those are applied by the PendingChunkHandler once their chunk is
+ * populated, the same way that vanilla only builds the parts of a structure that lie in the chunk
+ * being populated.
+ * <p>
+ * Once a chunk has pending writes, all further writes to it are recorded as well, so that they are
+ * applied in order.
+ * <p>
+ * Behind a RelightingBlockPlacer, the chunks with pending writes are marked to be relit when they
+ * are applied, see setRelightDeferred().
+ */
+public class ChunkDeferredBlockPlacer extends WorldBlockPlacer {
+    private final PendingChunkPlacements placements;
+    /* The PendingChunks that this placer has written to. */
+    private final Map<Long, PendingChunk> deferred = new HashMap<Long, PendingChunk>();
+    /* Whether writes without lighting are relit by the builder, rather than never */
+    private boolean relightDeferred = false;
+
+    public ChunkDeferredBlockPlacer(World world) {
+        super(world);
+        placements = PendingChunkPlacements.forWorld(world);
+    }
+
+    @Override
+    public boolean setBlock(int i, int j, int k, Block block, int meta, int flags) {
+        PendingChunk pendingChunk = getPendingForWrite(i, j, k);
+        if (pendingChunk == null)
+            return super.setBlock(i, j, k, block, meta, flags);
+        pendingChunk.addBlock(i, j, k, block, meta, flags & PendingChunk.FLAGS_MASK);
+        return true;
+    }
+
+    @Override
+    public boolean setBlockNoLighting(int i, int j, int k, Block block, int meta, int flags) {
+        PendingChunk pendingChunk = getPendingForWrite(i, j, k);
+        if (pendingChunk == null)
+            return super.setBlockNoLighting(i, j, k, block, meta, flags);
+        if (relightDeferred)
+            pendingChunk.setRelight();
+        pendingChunk.addBlock(i, j, k, block, meta, (flags & PendingChunk.FLAGS_MASK)
+                | PendingChunk.OP_NO_LIGHTING);
+        return true;
+    }
+
+    /**
+     * Makes the chunks that writes without lighting are recorded in get relit once they are
+     * applied. Set by the RelightingBlockPlacer, whose RelightJob only covers the blocks placed
+     * while the builder runs.
+     */
+    public void setRelightDeferred(boolean relightDeferred) {
+        this.relightDeferred = relightDeferred;
+    }
+
+    @Override
+    public boolean setBlockMetadata(int i, int j, int k, int meta, int flags) {
+        PendingChunk pendingChunk = getPendingForWrite(i, j, k);
+        if (pendingChunk == null)
+            return super.setBlockMetadata(i, j, k, meta, flags);
+        pendingChunk.addBlock(i, j, k, getBlock(i, j, k), meta, (flags & PendingChunk.FLAGS_MASK)
+                | PendingChunk.OP_META_ONLY);
+        return true;
+    }
+
+    @Override
+    public void spawnEntity(Entity entity) {
+        int i = MathHelper.floor_double(entity.posX), k = MathHelper.floor_double(entity.posZ);
+        PendingChunk pendingChunk = getPendingForWrite(i, 0, k);
+        if (pendingChunk == null) {
+            super.spawnEntity(entity);
+            return;
+        }
+        NBTTagCompound entityTag = new NBTTagCompound();
+        if (entity.writeToNBTOptional(entityTag))
+            pendingChunk.addEntity(entityTag);
+    }
+
+    /**
+     * Hands the PendingChunks over to be saved with the world. Chunks that got populated while the
+     * builder was running are applied right away.
+     */
+    @Override
+    public void finish() {
+        for (PendingChunk pendingChunk : deferred.values()) {
+            if (pendingChunk.isEmpty())
+                continue;
+            placements.put(pendingChunk);
+            if (isPopulated(pendingChunk.chunkX, pendingChunk.chunkZ))
+                placements.apply(pendingChunk.chunkX, pendingChunk.chunkZ);
+        }
+        deferred.clear();
+    }
+
+    @Override
+    public boolean readsFromWorld() {
+        return false;
+    }
+
+    @Override
+    public Block getBlock(int i, int j, int k) {
+        PendingChunk pendingChunk = getPending(i, j, k);
+        if (pendingChunk != null) {
+            Block block = pendingChunk.getBlock(i, j, k);
+            if (block != null)
+                return block;
+        }
+        return super.getBlock(i, j, k);
+    }
+
+    @Override
+    public int getBlockMetadata(int i, int j, int k) {
+        PendingChunk pendingChunk = getPending(i, j, k);
+        if (pendingChunk != null && pendingChunk.getBlock(i, j, k) != null)
+            return pendingChunk.getBlockMetadata(i, j, k);
+        return super.getBlockMetadata(i, j, k);
+    }
+
+    /**
+     * For pending blocks, returns a tile entity that is not in the world yet. It is saved with the
+     * PendingChunk and placed along with the block.
+     */
+    @Override
+    public TileEntity getTileEntity(int i, int j, int k) {
+        PendingChunk pendingChunk = getPending(i, j, k);
+        if (pendingChunk == null)
+            return super.getTileEntity(i, j, k);
+        Block block = pendingChunk.getBlock(i, j, k);
+        if (block == null)
+            return super.getTileEntity(i, j, k);
+        TileEntity tileEntity = pendingChunk.getTileEntity(i, j, k);
+        int meta = pendingChunk.getBlockMetadata(i, j, k);
+        if (tileEntity == null && block.hasTileEntity(meta)) {
+            tileEntity = block.createTileEntity(world, meta);
+            if (tileEntity != null) {
+                tileEntity.xCoord = i;
+                tileEntity.yCoord = j;
+                tileEntity.zCoord = k;
+                pendingChunk.setTileEntity(i, j, k, tileEntity);
+            }
+        }
+        return tileEntity;
+    }
+
+    private boolean isPopulated(int chunkX, int chunkZ) {
+        return world.getChunkProvider().chunkExists(chunkX, chunkZ)
+                && world.getChunkFromChunkCoords(chunkX, chunkZ).isTerrainPopulated;
+    }
+
+    /* Returns the PendingChunk for this point if there is one, otherwise null. */
+    private PendingChunk getPending(int i, int j, int k) {
+        if (j < 0 || j > 255)
+            return null;
+        long key = PendingChunkPlacements.chunkKey(i >> 4, k >> 4);
+        PendingChunk pendingChunk = deferred.get(key);
+        if (pendingChunk == null) {
+            pendingChunk = placements.get(i >> 4, k >> 4);
+            if (pendingChunk != null)
+                deferred.put(key, pendingChunk);
+        }
+        return pendingChunk;
+    }
+
+    /*
+     * Returns the PendingChunk that a write to this point has to go to, or null if it can be placed
+     * in the world right away.
+     */
+    private PendingChunk getPendingForWrite(int i, int j, int k) {
+        PendingChunk pendingChunk = getPending(i, j, k);
+        if (pendingChunk == null && j >= 0 && j <= 255 && !isPopulated(i >> 4, k >> 4)) {
+            pendingChunk = new PendingChunk(i >> 4, k >> 4);
+            deferred.put(PendingChunkPlacements.chunkKey(i >> 4, k >> 4), pendingChunk);
+        }
+        return pendingChunk;
+    }
+}
@@ -0,0 +1,67 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import generatormods.metrics.GenerationMetrics;
+
+import net.minecraft.block.Block;
+
+/**
+ * Counts the blocks a builder places, and the chunks they land in, and adds them to the
+ * GenerationMetrics of its module when the builder is finished.
+ */
+public class CountingBlockPlacer extends ForwardingBlockPlacer {
+    private final GenerationMetrics metrics;
+    private DirtyChunkTracker chunks = new DirtyChunkTracker();
+    private long blocks = 0;
+
+    public CountingBlockPlacer(IBlockPlacer target, GenerationMetrics metrics) {
+        super(target);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean setBlock(int i, int j, int k, Block block, int meta, int flags) {
+        blocks++;
+        chunks.markBlock(i, k);
+        return super.setBlock(i, j, k, block, meta, flags);
+    }
+
+    @Override
+    public boolean setBlockNoLighting(int i, int j, int k, Block block, int meta, int flags) {
+        blocks++;
+        chunks.markBlock(i, k);
+        return super.setBlockNoLighting(i, j, k, block, meta, flags);
+    }
+
+    @Override
+    public boolean setBlockMetadata(int i, int j, int k, int meta, int flags) {
+        blocks++;
+        chunks.markBlock(i, k);
+        return super.setBlockMetadata(i, j, k, meta, flags);
+    }
+
+    @Override
+    public void finish() {
+        super.finish();
+        metrics.addPlacement(blocks, chunks.size());
+        blocks = 0;
+        chunks = new DirtyChunkTracker();
+    }
+}
@@ -0,0 +1,78 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Collects the chunks that a builder changed, so that each of them can be sent to the players once
+ * the builder is done, instead of sending every block.
+ */
+public class DirtyChunkTracker {
+    private final Set<Long> dirty = new LinkedHashSet<Long>();
+    /* The last chunk that was marked, since writes come in runs within a chunk */
+    private long lastKey;
+    private boolean hasLast = false;
+
+    public void markBlock(int i, int k) {
+        markChunk(i >> 4, k >> 4);
+    }
+
+    public void markChunk(int chunkX, int chunkZ) {
+        long key = PendingChunkPlacements.chunkKey(chunkX, chunkZ);
+        if (hasLast && key == lastKey)
+            return;
+        dirty.add(key);
+        lastKey = key;
+        hasLast = true;
+    }
+
+    public boolean isDirty(int chunkX, int chunkZ) {
+        return dirty.contains(PendingChunkPlacements.chunkKey(chunkX, chunkZ));
+    }
+
+    /* The number of dirty chunks */
+    public int size() {
+        return dirty.size();
+    }
+
+    /**
+     * Resends every dirty chunk that a player has loaded, in the order they were first changed.
+     * Chunks that no player has loaded are dropped, since players get the whole chunk when they
+     * load it. Afterwards nothing is dirty.
+     *
+     * @return The number of chunks that were resent.
+     */
+    public int flush(IPlayerChunkMap players) {
+        int resent = 0;
+        for (Iterator<Long> it = dirty.iterator(); it.hasNext();) {
+            long key = it.next();
+            int chunkX = (int) key, chunkZ = (int) (key >> 32);
+            if (players.isChunkWatched(chunkX, chunkZ)) {
+                players.resendChunk(chunkX, chunkZ);
+                resent++;
+            }
+            it.remove();
+        }
+        hasLast = false;
+        return resent;
+    }
+}
@@ -0,0 +1,149 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.Entity;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.BiomeGenBase;
+import net.minecraftforge.common.util.ForgeDirection;
+
+/**
+ * Hands everything over to another IBlockPlacer, which can be swapped out. Buildings hold on to the
+ * placer they were created with, so a builder that plans against a TerrainSnapshot gives them one
+ * of these, and points it at the real placer once the plan is ready to be built.
+ */
+public class ForwardingBlockPlacer implements IBlockPlacer {
+    private IBlockPlacer target;
+
+    public ForwardingBlockPlacer(IBlockPlacer target) {
+        this.target = target;
+    }
+
+    public IBlockPlacer getTarget() {
+        return target;
+    }
+
+    public void setTarget(IBlockPlacer target) {
+        this.target = target;
+    }
+
+    @Override
+    public World getWorld() {
+        return target.getWorld();
+    }
+
+    @Override
+    public boolean setBlock(int i, int j, int k, Block block, int meta, int flags) {
+        return target.setBlock(i, j, k, block, meta, flags);
+    }
+
+    @Override
+    public boolean setBlockNoLighting(int i, int j, int k, Block block, int meta, int flags) {
+        return target.setBlockNoLighting(i, j, k, block, meta, flags);
+    }
+
+    @Override
+    public boolean setBlockMetadata(int i, int j, int k, int meta, int flags) {
+        return target.setBlockMetadata(i, j, k, meta, flags);
+    }
+
+    @Override
+    public void spawnEntity(Entity entity) {
+        target.spawnEntity(entity);
+    }
+
+    @Override
+    public int getHeightValue(int i, int k) {
+        return target.getHeightValue(i, k);
+    }
+
+    @Override
+    public int getBiomeId(int i, int k) {
+        return target.getBiomeId(i, k);
+    }
+
+    @Override
+    public boolean isChunkLoaded(int chunkX, int chunkZ) {
+        return target.isChunkLoaded(chunkX, chunkZ);
+    }
+
+    @Override
+    public void finish() {
+        target.finish();
+    }
+
+    @Override
+    public Block getBlock(int i, int j, int k) {
+        return target.getBlock(i, j, k);
+    }
+
+    @Override
+    public int getBlockMetadata(int i, int j, int k) {
+        return target.getBlockMetadata(i, j, k);
+    }
+
+    @Override
+    public TileEntity getTileEntity(int i, int j, int k) {
+        return target.getTileEntity(i, j, k);
+    }
+
+    @Override
+    public boolean isAirBlock(int i, int j, int k) {
+        return target.isAirBlock(i, j, k);
+    }
+
+    @Override
+    public int isBlockProvidingPowerTo(int i, int j, int k, int side) {
+        return target.isBlockProvidingPowerTo(i, j, k, side);
+    }
+
+    @Override
+    public boolean isSideSolid(int i, int j, int k, ForgeDirection side, boolean _default) {
+        return target.isSideSolid(i, j, k, side, _default);
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public int getLightBrightnessForSkyBlocks(int i, int j, int k, int minLight) {
+        return target.getLightBrightnessForSkyBlocks(i, j, k, minLight);
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public BiomeGenBase getBiomeGenForCoords(int i, int k) {
+        return target.getBiomeGenForCoords(i, k);
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public int getHeight() {
+        return target.getHeight();
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public boolean extendedLevelsInChunkCache() {
+        return target.extendedLevelsInChunkCache();
+    }
+}
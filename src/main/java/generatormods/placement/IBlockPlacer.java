@@ -0,0 +1,52 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.Entity;
+import net.minecraft.world.IBlockAccess;
+import net.minecraft.world.World;
+
+/**
+ * Everything a Building writes to the world goes through an IBlockPlacer. Reads of blocks,
+ * metadata and tile entities also go through it, so that a Building sees its own writes even if
+ * the placer has not handed them to the World yet.
+ * <p>
+ * Coordinates are global (i, j, k).
+ */
+public interface IBlockPlacer extends IBlockAccess {
+    /* Returns the World that blocks are ultimately placed into */
+    public World getWorld();
+    /* Places a block, with the same flags as World.setBlock() */
+    public boolean setBlock(int i, int j, int k, Block block, int meta, int flags);
+    /* Places a block without a lighting update, see WorldUtil.setBlockAndMetaNoLighting() */
+    public boolean setBlockNoLighting(int i, int j, int k, Block block, int meta, int flags);
+    /* Changes the metadata of the block at the given point */
+    public boolean setBlockMetadata(int i, int j, int k, int meta, int flags);
+    /* Spawns an entity. Hanging entities are dropped if they have nothing to hang on. */
+    public void spawnEntity(Entity entity);
+    /* Returns the height map value of the column, see Chunk.getHeightValue() */
+    public int getHeightValue(int i, int k);
+    /* Returns the id of the biome of the column, like World.getBiomeGenForCoordsBody() */
+    public int getBiomeId(int i, int k);
+    /* Whether the chunk is loaded, without loading it */
+    public boolean isChunkLoaded(int chunkX, int chunkZ);
+    /* Called by the builder once it has finished all of its writes */
+    public void finish();
+}
@@ -0,0 +1,42 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import net.minecraft.world.World;
+
+/**
+ * Work that the BuildExecutor does on the server thread, a few milliseconds per tick.
+ */
+public interface IBuildJob {
+    /* The World that the job changes */
+    public World getWorld();
+    /* Milliseconds per tick that the job may use */
+    public int getTickBudgetMillis();
+    /* The number of operations that are still left */
+    public int getRemainingOperations();
+    /* The number of operations in the whole job */
+    public int getTotalOperations();
+    /* The number of ticks that the job has been worked on */
+    public int getTicks();
+    /*
+     * Works until the job is done or until System.nanoTime() passes the deadline. Must make some
+     * progress on every call. Returns true once the job is done.
+     */
+    public boolean runUntil(long deadlineNanos);
+}
@@ -0,0 +1,240 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityList;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+
+/**
+ * The writes that builders have made to a single chunk that was not populated yet. They are kept in
+ * the order they were made and applied in one go once the chunk is populated.
+ * <p>
+ * Positions are packed chunk-relative as <code>(j << 8) | (k << 4) | i</code>. Each write is packed
+ * as <code>(blockId << 8) | (meta << 4) | opBits</code>, where the low two opBits are the
+ * World.setBlock() notify flags.
+ */
+public class PendingChunk {
+    /* The World.setBlock() flags that are kept: notify neighbors and send to clients. */
+    public final static int FLAGS_MASK = 0x3;
+    /* The write skips the lighting update. */
+    public final static int OP_NO_LIGHTING = 0x4;
+    /* The write only changes the metadata of the block. */
+    public final static int OP_META_ONLY = 0x8;
+
+    private final static int INITIAL_CAPACITY = 256;
+
+    public final int chunkX, chunkZ;
+    private int[] positions = new int[INITIAL_CAPACITY];
+    private int[] ops = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    /* Index into ops of the most recent write to each position. */
+    private final Map<Integer, Integer> lastWrite = new HashMap<Integer, Integer>();
+    private final Map<Integer, TileEntity> tileEntities = new HashMap<Integer, TileEntity>();
+    private final List<NBTTagCompound> entities = new ArrayList<NBTTagCompound>();
+    /* Whether the chunk is relit once the writes are applied, see PendingChunkPlacements.apply() */
+    private boolean relight = false;
+
+    public PendingChunk(int chunkX, int chunkZ) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+    }
+
+    public static int packPosition(int i, int j, int k) {
+        return (j << 8) | ((k & 0xf) << 4) | (i & 0xf);
+    }
+
+    public void addBlock(int i, int j, int k, Block block, int meta, int opBits) {
+        int pos = packPosition(i, j, k);
+        if ((opBits & OP_META_ONLY) == 0)
+            tileEntities.remove(pos);
+        add(pos, (Block.getIdFromBlock(block) << 8) | ((meta & 0xf) << 4) | (opBits & 0xf));
+    }
+
+    public void addEntity(NBTTagCompound entityTag) {
+        entities.add(entityTag);
+    }
+
+    /* Returns the pending block at this point, or null if nothing was written to it. */
+    public Block getBlock(int i, int j, int k) {
+        Integer index = lastWrite.get(packPosition(i, j, k));
+        return index == null ? null : Block.getBlockById(ops[index] >>> 8);
+    }
+
+    /* Returns the pending metadata at this point. Only valid if getBlock() is not null. */
+    public int getBlockMetadata(int i, int j, int k) {
+        Integer index = lastWrite.get(packPosition(i, j, k));
+        return index == null ? 0 : (ops[index] >> 4) & 0xf;
+    }
+
+    public TileEntity getTileEntity(int i, int j, int k) {
+        return tileEntities.get(packPosition(i, j, k));
+    }
+
+    public void setTileEntity(int i, int j, int k, TileEntity tileEntity) {
+        tileEntities.put(packPosition(i, j, k), tileEntity);
+    }
+
+    /* Marks the chunk to be relit once its writes are applied, for writes without lighting. */
+    public void setRelight() {
+        relight = true;
+    }
+
+    public boolean needsRelight() {
+        return relight;
+    }
+
+    /**
+     * Adds the positions where a light source is placed or removed to the job. Call this before
+     * the writes are applied, while the world still has the old blocks.
+     */
+    public void addLightSources(World world, RelightJob job) {
+        int baseI = chunkX << 4, baseK = chunkZ << 4;
+        for (int n = 0; n < size; n++) {
+            if ((ops[n] & OP_META_ONLY) != 0)
+                continue;
+            int pos = positions[n];
+            int i = baseI + (pos & 0xf), j = pos >>> 8, k = baseK + ((pos >> 4) & 0xf);
+            if (Block.getBlockById(ops[n] >>> 8).getLightValue() > 0
+                    || world.getBlock(i, j, k).getLightValue() > 0)
+                job.addLightSource(i, j, k);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0 && tileEntities.isEmpty() && entities.isEmpty();
+    }
+
+    /* The number of block writes waiting in this chunk. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Applies all pending writes to the world with a ChunkBatchWriter, followed by the tile entities
+     * and then the entities. Afterwards this PendingChunk is empty.
+     */
+    public void apply(World world) {
+        ChunkBatchWriter writer = new ChunkBatchWriter(world);
+        writeBlocks(writer);
+        writer.finish();
+        placeTileEntitiesAndEntities(world);
+    }
+
+    /* Hands the pending block writes to the writer. Keep this chunk until writer.finish(). */
+    public void writeBlocks(ChunkBatchWriter writer) {
+        writer.write(chunkX, chunkZ, positions, ops, size);
+    }
+
+    /**
+     * Places the pending tile entities and entities, once the blocks have been written. Afterwards
+     * this PendingChunk is empty.
+     */
+    public void placeTileEntitiesAndEntities(World world) {
+        int baseI = chunkX << 4, baseK = chunkZ << 4;
+        for (Map.Entry<Integer, TileEntity> entry : tileEntities.entrySet()) {
+            int pos = entry.getKey();
+            int i = baseI + (pos & 0xf), j = pos >>> 8, k = baseK + ((pos >> 4) & 0xf);
+            if (world.getBlock(i, j, k).hasTileEntity(world.getBlockMetadata(i, j, k))) {
+                TileEntity tileEntity = entry.getValue();
+                tileEntity.validate();
+                world.setTileEntity(i, j, k, tileEntity);
+            }
+        }
+        for (NBTTagCompound entityTag : entities) {
+            Entity entity = EntityList.createEntityFromNBT(entityTag, world);
+            if (entity != null)
+                WorldBlockPlacer.spawnEntity(world, entity);
+        }
+        clear();
+    }
+
+    public void clear() {
+        size = 0;
+        relight = false;
+        lastWrite.clear();
+        tileEntities.clear();
+        entities.clear();
+    }
+
+    public void readFromNBT(NBTTagCompound tag) {
+        clear();
+        int[] savedPositions = tag.getIntArray("Positions");
+        int[] savedOps = tag.getIntArray("Ops");
+        for (int n = 0; n < Math.min(savedPositions.length, savedOps.length); n++)
+            add(savedPositions[n], savedOps[n]);
+        NBTTagList tileEntityList = tag.getTagList("TileEntities", 10);
+        for (int n = 0; n < tileEntityList.tagCount(); n++) {
+            TileEntity tileEntity = TileEntity.createAndLoadEntity(tileEntityList.getCompoundTagAt(n));
+            if (tileEntity != null)
+                tileEntities.put(packPosition(tileEntity.xCoord, tileEntity.yCoord,
+                        tileEntity.zCoord), tileEntity);
+        }
+        NBTTagList entityList = tag.getTagList("Entities", 10);
+        for (int n = 0; n < entityList.tagCount(); n++)
+            entities.add(entityList.getCompoundTagAt(n));
+        relight = tag.getBoolean("Relight");
+    }
+
+    public void writeToNBT(NBTTagCompound tag) {
+        tag.setInteger("X", chunkX);
+        tag.setInteger("Z", chunkZ);
+        tag.setIntArray("Positions", Arrays.copyOf(positions, size));
+        tag.setIntArray("Ops", Arrays.copyOf(ops, size));
+        NBTTagList tileEntityList = new NBTTagList();
+        for (TileEntity tileEntity : tileEntities.values()) {
+            NBTTagCompound tileEntityTag = new NBTTagCompound();
+            tileEntity.writeToNBT(tileEntityTag);
+            tileEntityList.appendTag(tileEntityTag);
+        }
+        tag.setTag("TileEntities", tileEntityList);
+        NBTTagList entityList = new NBTTagList();
+        for (NBTTagCompound entityTag : entities)
+            entityList.appendTag(entityTag);
+        tag.setTag("Entities", entityList);
+        tag.setBoolean("Relight", relight);
+    }
+
+    private void add(int pos, int op) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+            ops = Arrays.copyOf(ops, size * 2);
+        }
+        if ((op & OP_META_ONLY) != 0) {
+            // keep the block of the previous write so that reads still see it
+            Integer previous = lastWrite.get(pos);
+            if (previous != null)
+                op = (ops[previous] & ~0xff) | (op & 0xff);
+        }
+        positions[size] = pos;
+        ops[size] = op;
+        lastWrite.put(pos, size);
+        size++;
+    }
+}
@@ -0,0 +1,104 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import cpw.mods.fml.common.IWorldGenerator;
+import cpw.mods.fml.common.eventhandler.SubscribeEvent;
+import cpw.mods.fml.common.gameevent.TickEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Applies PendingChunks. A chunk's pending writes are applied when the chunk is populated (this is
+ * registered as a world generator that runs after the structure generators), or on the next server
+ * tick if the chunk is loaded after it was already populated.
+ * <p>
+ * It has to be registered with both the Forge event bus (chunk and world events) and the FML event
+ * bus (tick events).
+ */
+public class PendingChunkHandler implements IWorldGenerator {
+    public final static int GENERATION_WEIGHT = 3;
+
+    private final Logger logger;
+    private final List<PendingChunkPlacements> ready = new ArrayList<PendingChunkPlacements>();
+
+    public PendingChunkHandler(String parentModName) {
+        this.logger = LogManager.getLogger(parentModName + ".PendingChunks");
+    }
+
+    @Override
+    public void generate(Random random, int chunkX, int chunkZ, World world,
+            IChunkProvider chunkGenerator, IChunkProvider chunkProvider) {
+        if (world.isRemote)
+            return;
+        PendingChunkPlacements placements = PendingChunkPlacements.forWorld(world);
+        if (placements.contains(chunkX, chunkZ)) {
+            int writes = placements.apply(chunkX, chunkZ);
+            logger.debug("Applied {} pending writes to chunk ({},{}) on population", writes,
+                    chunkX, chunkZ);
+        }
+    }
+
+    @SubscribeEvent
+    public void onChunkLoad(ChunkEvent.Load event) {
+        World world = event.world;
+        Chunk chunk = event.getChunk();
+        if (world.isRemote || !chunk.isTerrainPopulated)
+            return;
+        PendingChunkPlacements placements = PendingChunkPlacements.forWorld(world);
+        if (placements.contains(chunk.xPosition, chunk.zPosition)) {
+            // Do not touch the world while it is still loading the chunk
+            placements.markReady(chunk.xPosition, chunk.zPosition);
+            if (!ready.contains(placements))
+                ready.add(placements);
+        }
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        for (int n = ready.size() - 1; n >= 0; n--) {
+            if (ready.get(n).getWorld() == event.world)
+                ready.remove(n);
+        }
+    }
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || ready.isEmpty())
+            return;
+        List<PendingChunkPlacements> toApply = new ArrayList<PendingChunkPlacements>(ready);
+        ready.clear();
+        for (PendingChunkPlacements placements : toApply) {
+            int writes = placements.applyReady();
+            logger.debug("Applied {} pending writes to loaded chunks in {}", writes,
+                    placements.getWorld().provider.getDimensionName());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldSavedData;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * All of the PendingChunks of one dimension. It is stored with the world save (in the dimension's
+ * data folder), so that structures that were planned but not fully placed are finished after a
+ * server restart.
+ */
+public class PendingChunkPlacements extends WorldSavedData {
+    public final static String DATA_NAME = "GeneratorModsPendingChunks";
+    private final static Logger logger = LogManager.getLogger("GeneratorMods.PendingChunks");
+
+    private final Map<Long, PendingChunk> pending = new HashMap<Long, PendingChunk>();
+    /* Chunks with pending writes that were loaded after they had already been populated. */
+    private final List<Long> ready = new ArrayList<Long>();
+    private World world;
+
+    public PendingChunkPlacements(String name) {
+        super(name);
+    }
+
+    /**
+     * Returns the PendingChunkPlacements of the world's dimension, creating it if there is none
+     * yet.
+     */
+    public static PendingChunkPlacements forWorld(World world) {
+        PendingChunkPlacements placements =
+                (PendingChunkPlacements) world.perWorldStorage.loadData(
+                        PendingChunkPlacements.class, DATA_NAME);
+        if (placements == null) {
+            placements = new PendingChunkPlacements(DATA_NAME);
+            world.perWorldStorage.setData(DATA_NAME, placements);
+        }
+        placements.world = world;
+        return placements;
+    }
+
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ);
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public PendingChunk get(int chunkX, int chunkZ) {
+        return pending.get(chunkKey(chunkX, chunkZ));
+    }
+
+    public PendingChunk getOrCreate(int chunkX, int chunkZ) {
+        PendingChunk pendingChunk = get(chunkX, chunkZ);
+        if (pendingChunk == null) {
+            pendingChunk = new PendingChunk(chunkX, chunkZ);
+            put(pendingChunk);
+        }
+        return pendingChunk;
+    }
+
+    public void put(PendingChunk pendingChunk) {
+        pending.put(chunkKey(pendingChunk.chunkX, pendingChunk.chunkZ), pendingChunk);
+        markDirty();
+    }
+
+    public boolean contains(int chunkX, int chunkZ) {
+        return pending.containsKey(chunkKey(chunkX, chunkZ));
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * Applies the pending writes of a chunk, if there are any. The chunk must be populated. If the
+     * writes came from a builder that defers its relighting, the chunk is relit afterwards, since
+     * the builder's own RelightJob ran long before.
+     *
+     * @return the number of block writes that were applied.
+     */
+    public int apply(int chunkX, int chunkZ) {
+        PendingChunk pendingChunk = pending.remove(chunkKey(chunkX, chunkZ));
+        if (pendingChunk == null)
+            return 0;
+        markDirty();
+        int writes = pendingChunk.size();
+        RelightJob relight = null;
+        if (pendingChunk.needsRelight()) {
+            relight = new RelightJob(world, logger);
+            relight.addChunk(chunkX, chunkZ);
+            pendingChunk.addLightSources(world, relight);
+        }
+        pendingChunk.apply(world);
+        if (relight != null) {
+            relight.runUntil(Long.MAX_VALUE);
+            // The chunk was sent before it was relit
+            new WorldPlayerChunkMap(world).resendChunk(chunkX, chunkZ);
+        }
+        return writes;
+    }
+
+    /* Remembers that a chunk with pending writes is loaded and ready to be applied. */
+    public void markReady(int chunkX, int chunkZ) {
+        ready.add(chunkKey(chunkX, chunkZ));
+    }
+
+    /**
+     * Applies all chunks that were marked as ready and are still loaded.
+     *
+     * @return the number of block writes that were applied.
+     */
+    public int applyReady() {
+        int writes = 0;
+        List<Long> readyKeys = new ArrayList<Long>(ready);
+        ready.clear();
+        for (Long key : readyKeys) {
+            PendingChunk pendingChunk = pending.get(key);
+            if (pendingChunk != null
+                    && world.getChunkProvider().chunkExists(pendingChunk.chunkX, pendingChunk.chunkZ))
+                writes += apply(pendingChunk.chunkX, pendingChunk.chunkZ);
+        }
+        return writes;
+    }
+
+    @Override
+    public void readFromNBT(NBTTagCompound tag) {
+        pending.clear();
+        NBTTagList chunkList = tag.getTagList("Chunks", 10);
+        for (int n = 0; n < chunkList.tagCount(); n++) {
+            NBTTagCompound chunkTag = chunkList.getCompoundTagAt(n);
+            PendingChunk pendingChunk =
+                    new PendingChunk(chunkTag.getInteger("X"), chunkTag.getInteger("Z"));
+            pendingChunk.readFromNBT(chunkTag);
+            pending.put(chunkKey(pendingChunk.chunkX, pendingChunk.chunkZ), pendingChunk);
+        }
+    }
+
+    @Override
+    public void writeToNBT(NBTTagCompound tag) {
+        NBTTagList chunkList = new NBTTagList();
+        for (PendingChunk pendingChunk : pending.values()) {
+            if (pendingChunk.isEmpty())
+                continue;
+            NBTTagCompound chunkTag = new NBTTagCompound();
+            pendingChunk.writeToNBT(chunkTag);
+            chunkList.appendTag(chunkTag);
+        }
+        tag.setTag("Chunks", chunkList);
+    }
+}
@@ -0,0 +1,57 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import net.minecraft.world.World;
+
+/**
+ * How a builder places the blocks of the structures it builds.
+ */
+public enum PlacementMode {
+    /* Place every block in the world as soon as it is set. */
+    IMMEDIATE,
+    /* Only place blocks in populated chunks, and save the rest until their chunk is populated. */
+    CHUNK_DEFERRED,
+    /* Record all blocks, then place them over several server ticks (see BuildExecutor). */
+    TICKED,
+    /* Record all blocks, then write them chunk by chunk straight into the chunk storage. */
+    BATCHED;
+
+    public IBlockPlacer createPlacer(World world, int tickBudgetMillis) {
+        switch (this) {
+            case CHUNK_DEFERRED:
+                return new ChunkDeferredBlockPlacer(world);
+            case TICKED:
+                return new QueuedBlockPlacer(world, tickBudgetMillis);
+            case BATCHED:
+                return new BatchedBlockPlacer(world);
+            default:
+                return new WorldBlockPlacer(world);
+        }
+    }
+
+    /* Parses a mode name from a config file, falling back to IMMEDIATE. */
+    public static PlacementMode fromString(String name) {
+        for (PlacementMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name.trim()))
+                return mode;
+        }
+        return IMMEDIATE;
+    }
+}
@@ -0,0 +1,229 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import generatormods.util.WorldUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.Entity;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+
+/**
+ * Records every write of a builder into an operation log instead of placing it. Once the builder is
+ * done, the log is handed to the BuildExecutor, which applies it a few milliseconds per server
+ * tick.
+ * <p>
+ * Reads see the recorded writes, so Buildings behave as if their blocks were already placed. Tile
+ * entities and entities are placed after all of the blocks.
+ */
+public class QueuedBlockPlacer extends WorldBlockPlacer implements IBuildJob {
+    /* How many operations are applied between looks at the clock. */
+    private final static int OPS_PER_CLOCK_CHECK = 64;
+    private final static int INITIAL_CAPACITY = 1024;
+
+    private final int tickBudgetMillis;
+    private int[] is = new int[INITIAL_CAPACITY];
+    private int[] js = new int[INITIAL_CAPACITY];
+    private int[] ks = new int[INITIAL_CAPACITY];
+    /* Packed like PendingChunk: (blockId << 8) | (meta << 4) | opBits */
+    private int[] ops = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    /* Index of the next operation to apply. */
+    private int next = 0;
+    private int ticks = 0;
+    private final Map<Long, Integer> lastWrite = new HashMap<Long, Integer>();
+    private final Map<Long, TileEntity> tileEntities = new HashMap<Long, TileEntity>();
+    private final List<Entity> entities = new ArrayList<Entity>();
+
+    public QueuedBlockPlacer(World world, int tickBudgetMillis) {
+        super(world);
+        this.tickBudgetMillis = tickBudgetMillis;
+    }
+
+    public static long positionKey(int i, int j, int k) {
+        return ((long) (i & 0x3FFFFFF) << 38) | ((long) (k & 0x3FFFFFF) << 12) | (j & 0xFFF);
+    }
+
+    @Override
+    public boolean setBlock(int i, int j, int k, Block block, int meta, int flags) {
+        return add(i, j, k, block, meta, flags & PendingChunk.FLAGS_MASK);
+    }
+
+    @Override
+    public boolean setBlockNoLighting(int i, int j, int k, Block block, int meta, int flags) {
+        return add(i, j, k, block, meta, (flags & PendingChunk.FLAGS_MASK)
+                | PendingChunk.OP_NO_LIGHTING);
+    }
+
+    @Override
+    public boolean setBlockMetadata(int i, int j, int k, int meta, int flags) {
+        return add(i, j, k, getBlock(i, j, k), meta, (flags & PendingChunk.FLAGS_MASK)
+                | PendingChunk.OP_META_ONLY);
+    }
+
+    @Override
+    public void spawnEntity(Entity entity) {
+        entities.add(entity);
+    }
+
+    /* Hands the recorded operations to the BuildExecutor. */
+    @Override
+    public void finish() {
+        if (size == 0 && tileEntities.isEmpty() && entities.isEmpty())
+            return;
+        if (BuildExecutor.instance != null)
+            BuildExecutor.instance.submit(this);
+        else
+            runUntil(Long.MAX_VALUE);
+    }
+
+    @Override
+    public boolean readsFromWorld() {
+        return false;
+    }
+
+    @Override
+    public Block getBlock(int i, int j, int k) {
+        Integer index = lastWrite.get(positionKey(i, j, k));
+        return index == null ? super.getBlock(i, j, k) : Block.getBlockById(ops[index] >>> 8);
+    }
+
+    @Override
+    public int getBlockMetadata(int i, int j, int k) {
+        Integer index = lastWrite.get(positionKey(i, j, k));
+        return index == null ? super.getBlockMetadata(i, j, k) : (ops[index] >> 4) & 0xf;
+    }
+
+    /**
+     * For queued blocks, returns a tile entity that is not in the world yet. It is placed once all
+     * of the blocks have been placed.
+     */
+    @Override
+    public TileEntity getTileEntity(int i, int j, int k) {
+        long key = positionKey(i, j, k);
+        Integer index = lastWrite.get(key);
+        if (index == null)
+            return super.getTileEntity(i, j, k);
+        TileEntity tileEntity = tileEntities.get(key);
+        Block block = Block.getBlockById(ops[index] >>> 8);
+        int meta = (ops[index] >> 4) & 0xf;
+        if (tileEntity == null && block.hasTileEntity(meta)) {
+            tileEntity = block.createTileEntity(world, meta);
+            if (tileEntity != null) {
+                tileEntity.xCoord = i;
+                tileEntity.yCoord = j;
+                tileEntity.zCoord = k;
+                tileEntities.put(key, tileEntity);
+            }
+        }
+        return tileEntity;
+    }
+
+    @Override
+    public int getTickBudgetMillis() {
+        return tickBudgetMillis;
+    }
+
+    /* The number of block operations that still have to be applied. */
+    @Override
+    public int getRemainingOperations() {
+        return size - next;
+    }
+
+    @Override
+    public int getTotalOperations() {
+        return size;
+    }
+
+    /* The number of ticks that this job has been worked on. */
+    @Override
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Applies operations until they are all done or until System.nanoTime() passes the deadline.
+     * At least a few operations are applied on every call, so a job always makes progress.
+     *
+     * @return true once everything has been placed.
+     */
+    @Override
+    public boolean runUntil(long deadlineNanos) {
+        ticks++;
+        while (next < size) {
+            apply(next++);
+            if (next % OPS_PER_CLOCK_CHECK == 0 && System.nanoTime() >= deadlineNanos)
+                return false;
+        }
+        for (TileEntity tileEntity : tileEntities.values()) {
+            int i = tileEntity.xCoord, j = tileEntity.yCoord, k = tileEntity.zCoord;
+            if (world.getBlock(i, j, k).hasTileEntity(world.getBlockMetadata(i, j, k))) {
+                tileEntity.validate();
+                world.setTileEntity(i, j, k, tileEntity);
+            }
+        }
+        for (Entity entity : entities)
+            spawnEntity(world, entity);
+        tileEntities.clear();
+        entities.clear();
+        lastWrite.clear();
+        return true;
+    }
+
+    private void apply(int n) {
+        int op = ops[n];
+        int meta = (op >> 4) & 0xf;
+        int flags = op & PendingChunk.FLAGS_MASK;
+        if ((op & PendingChunk.OP_META_ONLY) != 0)
+            world.setBlockMetadataWithNotify(is[n], js[n], ks[n], meta, flags);
+        else if ((op & PendingChunk.OP_NO_LIGHTING) != 0)
+            WorldUtil.setBlockAndMetaNoLighting(world, is[n], js[n], ks[n],
+                    Block.getBlockById(op >>> 8), meta, flags);
+        else
+            world.setBlock(is[n], js[n], ks[n], Block.getBlockById(op >>> 8), meta, flags);
+    }
+
+    private boolean add(int i, int j, int k, Block block, int meta, int opBits) {
+        if (j < 0 || j > 255)
+            return false;
+        if (size == ops.length) {
+            is = Arrays.copyOf(is, size * 2);
+            js = Arrays.copyOf(js, size * 2);
+            ks = Arrays.copyOf(ks, size * 2);
+            ops = Arrays.copyOf(ops, size * 2);
+        }
+        long key = positionKey(i, j, k);
+        if ((opBits & PendingChunk.OP_META_ONLY) == 0)
+            tileEntities.remove(key);
+        is[size] = i;
+        js[size] = j;
+        ks[size] = k;
+        ops[size] = (Block.getIdFromBlock(block) << 8) | ((meta & 0xf) << 4) | (opBits & 0xf);
+        lastWrite.put(key, size);
+        size++;
+        return true;
+    }
+}
@@ -0,0 +1,154 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import net.minecraft.world.EnumSkyBlock;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Relights the chunks that a builder changed without lighting updates. Each chunk gets its sky
+ * light recomputed once, the way a newly generated chunk does, and the gaps to its neighbors are
+ * rechecked. Then the block light is updated around every light source that was placed or removed.
+ * The relit chunks are sent to the players by the ResyncingBlockPlacer of the builder.
+ * <p>
+ * Logs how long the relighting took once it is done.
+ */
+public class RelightJob implements IBuildJob {
+    private final static int INITIAL_CAPACITY = 64;
+
+    private final World world;
+    private final Logger logger;
+    private int tickBudgetMillis = 0;
+    private final Set<Long> chunkKeys = new LinkedHashSet<Long>();
+    private long[] chunks;
+    private final Set<Long> lightSourceKeys = new HashSet<Long>();
+    private int[] lightSources = new int[INITIAL_CAPACITY * 3];
+    private int lightSourceCount = 0;
+    /* Index of the next operation: first the chunks, then the light sources */
+    private int next = 0;
+    private int ticks = 0;
+    private long nanos = 0;
+
+    public RelightJob(World world, Logger logger) {
+        this.world = world;
+        this.logger = logger;
+    }
+
+    public void addChunk(int chunkX, int chunkZ) {
+        if (chunks == null)
+            chunkKeys.add(PendingChunkPlacements.chunkKey(chunkX, chunkZ));
+    }
+
+    public void addLightSource(int i, int j, int k) {
+        if (chunks != null || !lightSourceKeys.add(QueuedBlockPlacer.positionKey(i, j, k)))
+            return;
+        if (lightSourceCount * 3 == lightSources.length)
+            lightSources = Arrays.copyOf(lightSources, lightSources.length * 2);
+        lightSources[lightSourceCount * 3] = i;
+        lightSources[lightSourceCount * 3 + 1] = j;
+        lightSources[lightSourceCount * 3 + 2] = k;
+        lightSourceCount++;
+    }
+
+    public void setTickBudgetMillis(int tickBudgetMillis) {
+        this.tickBudgetMillis = tickBudgetMillis;
+    }
+
+    @Override
+    public World getWorld() {
+        return world;
+    }
+
+    @Override
+    public int getTickBudgetMillis() {
+        return tickBudgetMillis;
+    }
+
+    @Override
+    public int getRemainingOperations() {
+        return getTotalOperations() - next;
+    }
+
+    @Override
+    public int getTotalOperations() {
+        return chunkKeys.size() + lightSourceCount;
+    }
+
+    @Override
+    public int getTicks() {
+        return ticks;
+    }
+
+    /* Each chunk and each light source is one operation, so this checks the clock every time. */
+    @Override
+    public boolean runUntil(long deadlineNanos) {
+        long start = System.nanoTime();
+        ticks++;
+        if (chunks == null) {
+            chunks = new long[chunkKeys.size()];
+            int n = 0;
+            for (long key : chunkKeys)
+                chunks[n++] = key;
+            lightSourceKeys.clear();
+        }
+        int total = getTotalOperations();
+        while (next < total) {
+            run(next++);
+            if (System.nanoTime() >= deadlineNanos)
+                break;
+        }
+        nanos += System.nanoTime() - start;
+        if (next < total)
+            return false;
+        logger.info("Relit {} chunks and {} light sources in {} ms over {} ticks", chunks.length,
+                lightSourceCount, nanos / 1000000, ticks);
+        return true;
+    }
+
+    private void run(int n) {
+        if (n < chunks.length) {
+            Chunk chunk = getChunk(chunks[n]);
+            if (chunk != null) {
+                chunk.generateSkylightMap();
+                chunk.func_150804_b(false); // rechecks the gaps to the neighbors
+            }
+            return;
+        }
+        n -= chunks.length;
+        int i = lightSources[n * 3], j = lightSources[n * 3 + 1], k = lightSources[n * 3 + 2];
+        if (world.getChunkProvider().chunkExists(i >> 4, k >> 4))
+            world.updateLightByType(EnumSkyBlock.Block, i, j, k);
+    }
+
+    /* The chunk for the key, or null if it has been unloaded since. */
+    private Chunk getChunk(long key) {
+        int chunkX = (int) key, chunkZ = (int) (key >> 32);
+        if (!world.getChunkProvider().chunkExists(chunkX, chunkZ))
+            return null;
+        return world.getChunkFromChunkCoords(chunkX, chunkZ);
+    }
+}
@@ -0,0 +1,54 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * When a builder updates the lighting of the blocks it places.
+ */
+public enum RelightMode {
+    /* Update the lighting with every block that asks for it. */
+    IMMEDIATE,
+    /* Relight every chunk that was changed once the structure has been placed. */
+    DEFERRED,
+    /* Like DEFERRED, but spread the relighting over several server ticks (see BuildExecutor). */
+    DEFERRED_TICKED;
+
+    /* Wraps the placer of a builder so that it defers the lighting updates, if needed. */
+    public IBlockPlacer wrap(IBlockPlacer placer, int tickBudgetMillis, Logger logger) {
+        switch (this) {
+            case DEFERRED:
+                return new RelightingBlockPlacer(placer, false, tickBudgetMillis, logger);
+            case DEFERRED_TICKED:
+                return new RelightingBlockPlacer(placer, true, tickBudgetMillis, logger);
+            default:
+                return placer;
+        }
+    }
+
+    /* Parses a mode name from a config file, falling back to IMMEDIATE. */
+    public static RelightMode fromString(String name) {
+        for (RelightMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name.trim()))
+                return mode;
+        }
+        return IMMEDIATE;
+    }
+}
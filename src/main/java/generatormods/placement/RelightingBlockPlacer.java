@@ -0,0 +1,94 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import net.minecraft.block.Block;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Places every block without updating the lighting, and remembers the chunks it changed and the
+ * light sources it placed or removed. Once the builder is done, a RelightJob relights those chunks
+ * in one go, which is much cheaper than updating the lighting for each block.
+ * <p>
+ * Blocks that a ChunkDeferredBlockPlacer holds back for chunks that are not populated yet are
+ * relit when they are applied instead, see PendingChunkPlacements.apply().
+ */
+public class RelightingBlockPlacer extends ForwardingBlockPlacer {
+    /* Effectively no limit, for relighting that should not be spread over ticks. */
+    private final static int UNLIMITED_BUDGET_MILLIS = Integer.MAX_VALUE;
+
+    private final boolean ticked;
+    private final int tickBudgetMillis;
+    private final Logger logger;
+    private RelightJob job;
+
+    /**
+     * @param ticked Whether to spread the relighting over several ticks.
+     * @param tickBudgetMillis Milliseconds per tick to spend relighting, if ticked.
+     */
+    public RelightingBlockPlacer(IBlockPlacer target, boolean ticked, int tickBudgetMillis,
+            Logger logger) {
+        super(target);
+        this.ticked = ticked;
+        this.tickBudgetMillis = tickBudgetMillis;
+        this.logger = logger;
+        if (target instanceof ChunkDeferredBlockPlacer)
+            ((ChunkDeferredBlockPlacer) target).setRelightDeferred(true);
+    }
+
+    @Override
+    public boolean setBlock(int i, int j, int k, Block block, int meta, int flags) {
+        return setBlockNoLighting(i, j, k, block, meta, flags);
+    }
+
+    @Override
+    public boolean setBlockNoLighting(int i, int j, int k, Block block, int meta, int flags) {
+        if (job == null)
+            job = new RelightJob(getWorld(), logger);
+        job.addChunk(i >> 4, k >> 4);
+        if (block.getLightValue() > 0 || getTarget().getBlock(i, j, k).getLightValue() > 0)
+            job.addLightSource(i, j, k);
+        return super.setBlockNoLighting(i, j, k, block, meta, flags);
+    }
+
+    public boolean isTicked() {
+        return ticked;
+    }
+
+    /**
+     * Finishes the placer this wraps, then relights. The relighting has to wait for blocks that are
+     * placed over several ticks, so it goes to the BuildExecutor behind them.
+     */
+    @Override
+    public void finish() {
+        super.finish();
+        if (job == null)
+            return;
+        RelightJob relight = job;
+        job = null;
+        boolean queued = getTarget() instanceof QueuedBlockPlacer;
+        if ((ticked || queued) && BuildExecutor.instance != null) {
+            relight.setTickBudgetMillis(ticked ? tickBudgetMillis : UNLIMITED_BUDGET_MILLIS);
+            BuildExecutor.instance.submit(relight);
+        } else {
+            relight.runUntil(Long.MAX_VALUE);
+        }
+    }
+}
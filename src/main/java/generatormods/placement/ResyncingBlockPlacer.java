@@ -0,0 +1,143 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import net.minecraft.block.Block;
+import net.minecraft.world.World;
+
+/**
+ * Keeps the writes of a builder from sending a packet per block to the clients, and records the
+ * chunks they change in a DirtyChunkTracker instead. Once everything has been placed, each changed
+ * chunk that a player has loaded is sent to them once, as a whole. Besides saving packets, this
+ * makes sure that clients see every block of a large structure.
+ * <p>
+ * If blocks are still being placed or relit over several ticks when the builder finishes, the
+ * resend goes to the BuildExecutor behind them.
+ */
+public class ResyncingBlockPlacer extends ForwardingBlockPlacer {
+    /* The World.setBlock() flag that sends the change to the clients */
+    private final static int FLAG_SEND_TO_CLIENTS = 2;
+
+    private final IPlayerChunkMap players;
+    private final DirtyChunkTracker tracker = new DirtyChunkTracker();
+
+    public ResyncingBlockPlacer(IBlockPlacer target) {
+        this(target, new WorldPlayerChunkMap(target.getWorld()));
+    }
+
+    public ResyncingBlockPlacer(IBlockPlacer target, IPlayerChunkMap players) {
+        super(target);
+        this.players = players;
+    }
+
+    @Override
+    public boolean setBlock(int i, int j, int k, Block block, int meta, int flags) {
+        tracker.markBlock(i, k);
+        return super.setBlock(i, j, k, block, meta, flags & ~FLAG_SEND_TO_CLIENTS);
+    }
+
+    @Override
+    public boolean setBlockNoLighting(int i, int j, int k, Block block, int meta, int flags) {
+        tracker.markBlock(i, k);
+        return super.setBlockNoLighting(i, j, k, block, meta, flags & ~FLAG_SEND_TO_CLIENTS);
+    }
+
+    @Override
+    public boolean setBlockMetadata(int i, int j, int k, int meta, int flags) {
+        tracker.markBlock(i, k);
+        return super.setBlockMetadata(i, j, k, meta, flags & ~FLAG_SEND_TO_CLIENTS);
+    }
+
+    public DirtyChunkTracker getTracker() {
+        return tracker;
+    }
+
+    @Override
+    public void finish() {
+        super.finish();
+        if (tracker.size() == 0)
+            return;
+        if (placesLater(getTarget()) && BuildExecutor.instance != null)
+            BuildExecutor.instance.submit(new ResyncJob(getWorld(), tracker, players));
+        else
+            tracker.flush(players);
+    }
+
+    /* Whether the placer still has work queued with the BuildExecutor once it is finished */
+    private static boolean placesLater(IBlockPlacer placer) {
+        while (true) {
+            if (placer instanceof QueuedBlockPlacer)
+                return true;
+            if (placer instanceof RelightingBlockPlacer && ((RelightingBlockPlacer) placer).isTicked())
+                return true;
+            if (!(placer instanceof ForwardingBlockPlacer))
+                return false;
+            placer = ((ForwardingBlockPlacer) placer).getTarget();
+        }
+    }
+
+    /* Resends the chunks once the jobs queued before it are done. */
+    private static class ResyncJob implements IBuildJob {
+        private final World world;
+        private final DirtyChunkTracker tracker;
+        private final IPlayerChunkMap players;
+        private final int total;
+        private int ticks = 0;
+
+        ResyncJob(World world, DirtyChunkTracker tracker, IPlayerChunkMap players) {
+            this.world = world;
+            this.tracker = tracker;
+            this.players = players;
+            this.total = tracker.size();
+        }
+
+        @Override
+        public World getWorld() {
+            return world;
+        }
+
+        /* Resending is cheap, so it is done in one go. */
+        @Override
+        public int getTickBudgetMillis() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public int getRemainingOperations() {
+            return tracker.size();
+        }
+
+        @Override
+        public int getTotalOperations() {
+            return total;
+        }
+
+        @Override
+        public int getTicks() {
+            return ticks;
+        }
+
+        @Override
+        public boolean runUntil(long deadlineNanos) {
+            ticks++;
+            tracker.flush(players);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import generatormods.util.WorldUtil;
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityHanging;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.BiomeGenBase;
+import net.minecraftforge.common.util.ForgeDirection;
+
+/**
+ * Places blocks straight into the World as soon as they are set. This is how GeneratorMods has
+ * always built its structures.
+ */
+public class WorldBlockPlacer implements IBlockPlacer {
+    protected final World world;
+
+    public WorldBlockPlacer(World world) {
+        this.world = world;
+    }
+
+    @Override
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Whether every block read goes straight to the World, so that the chunk data can be read
+     * directly instead. Subclasses that hold back some of their writes return false.
+     */
+    public boolean readsFromWorld() {
+        return true;
+    }
+
+    @Override
+    public boolean setBlock(int i, int j, int k, Block block, int meta, int flags) {
+        return world.setBlock(i, j, k, block, meta, flags);
+    }
+
+    @Override
+    public boolean setBlockNoLighting(int i, int j, int k, Block block, int meta, int flags) {
+        return WorldUtil.setBlockAndMetaNoLighting(world, i, j, k, block, meta, flags);
+    }
+
+    @Override
+    public boolean setBlockMetadata(int i, int j, int k, int meta, int flags) {
+        return world.setBlockMetadataWithNotify(i, j, k, meta, flags);
+    }
+
+    @Override
+    public void spawnEntity(Entity entity) {
+        spawnEntity(world, entity);
+    }
+
+    @Override
+    public int getHeightValue(int i, int k) {
+        return world.getChunkFromBlockCoords(i, k).getHeightValue(i & 0xf, k & 0xf);
+    }
+
+    @Override
+    public int getBiomeId(int i, int k) {
+        return world.getBiomeGenForCoordsBody(i, k).biomeID;
+    }
+
+    @Override
+    public boolean isChunkLoaded(int chunkX, int chunkZ) {
+        return world.getChunkProvider().chunkExists(chunkX, chunkZ);
+    }
+
+    @Override
+    public void finish() {}
+
+    @Override
+    public Block getBlock(int i, int j, int k) {
+        return world.getBlock(i, j, k);
+    }
+
+    @Override
+    public int getBlockMetadata(int i, int j, int k) {
+        return world.getBlockMetadata(i, j, k);
+    }
+
+    @Override
+    public TileEntity getTileEntity(int i, int j, int k) {
+        return world.getTileEntity(i, j, k);
+    }
+
+    @Override
+    public boolean isAirBlock(int i, int j, int k) {
+        return getBlock(i, j, k).isAir(this, i, j, k);
+    }
+
+    @Override
+    public int isBlockProvidingPowerTo(int i, int j, int k, int side) {
+        return world.isBlockProvidingPowerTo(i, j, k, side);
+    }
+
+    @Override
+    public boolean isSideSolid(int i, int j, int k, ForgeDirection side, boolean _default) {
+        if (i < -30000000 || k < -30000000 || i >= 30000000 || k >= 30000000)
+            return _default;
+        return getBlock(i, j, k).isSideSolid(this, i, j, k, side);
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public int getLightBrightnessForSkyBlocks(int i, int j, int k, int minLight) {
+        return world.getLightBrightnessForSkyBlocks(i, j, k, minLight);
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public BiomeGenBase getBiomeGenForCoords(int i, int k) {
+        return world.getBiomeGenForCoords(i, k);
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public int getHeight() {
+        return world.getHeight();
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public boolean extendedLevelsInChunkCache() {
+        return world.extendedLevelsInChunkCache();
+    }
+
+    /**
+     * Spawns the entity into the world. Paintings and item frames are only spawned if the block
+     * they hang on is there.
+     */
+    protected static void spawnEntity(World world, Entity entity) {
+        if (entity instanceof EntityHanging && !((EntityHanging) entity).onValidSurface())
+            return;
+        world.spawnEntityInWorld(entity);
+    }
+}
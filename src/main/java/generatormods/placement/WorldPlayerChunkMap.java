@@ -0,0 +1,96 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.placement;
+
+import java.util.List;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.Packet;
+import net.minecraft.network.play.server.S21PacketChunkData;
+import net.minecraft.server.management.PlayerManager;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+
+/**
+ * The players' loaded chunks of a World, from its PlayerManager. On a client World nothing is
+ * watched.
+ */
+public class WorldPlayerChunkMap implements IPlayerChunkMap {
+    /* All 16 sections of a chunk */
+    public final static int ALL_SECTIONS = 0xffff;
+
+    private final World world;
+
+    public WorldPlayerChunkMap(World world) {
+        this.world = world;
+    }
+
+    @Override
+    public boolean isChunkWatched(int chunkX, int chunkZ) {
+        if (!(world instanceof WorldServer))
+            return false;
+        PlayerManager playerManager = ((WorldServer) world).getPlayerManager();
+        for (Object player : world.playerEntities) {
+            if (playerManager.isPlayerWatchingChunk((EntityPlayerMP) player, chunkX, chunkZ))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void resendChunk(int chunkX, int chunkZ) {
+        if (world.getChunkProvider().chunkExists(chunkX, chunkZ))
+            sendSections(world.getChunkFromChunkCoords(chunkX, chunkZ), ALL_SECTIONS);
+    }
+
+    /**
+     * Sends the given sections of the chunk, and the tile entities in them, to the players that have
+     * the chunk loaded. With ALL_SECTIONS, the client replaces its copy of the chunk completely.
+     */
+    @SuppressWarnings("unchecked")
+    public void sendSections(Chunk chunk, int sectionMask) {
+        if (!(world instanceof WorldServer))
+            return;
+        PlayerManager playerManager = ((WorldServer) world).getPlayerManager();
+        Packet chunkPacket = null;
+        List<TileEntity> tileEntities = null;
+        for (Object player : world.playerEntities) {
+            EntityPlayerMP playerMP = (EntityPlayerMP) player;
+            if (!playerManager.isPlayerWatchingChunk(playerMP, chunk.xPosition, chunk.zPosition))
+                continue;
+            if (chunkPacket == null) {
+                chunkPacket =
+                        new S21PacketChunkData(chunk, sectionMask == ALL_SECTIONS, sectionMask);
+                tileEntities = ((WorldServer) world).func_147486_a(chunk.xPosition << 4, 0,
+                        chunk.zPosition << 4, (chunk.xPosition << 4) + 16, 256,
+                        (chunk.zPosition << 4) + 16);
+            }
+            playerMP.playerNetServerHandler.sendPacket(chunkPacket);
+            for (TileEntity tileEntity : tileEntities) {
+                if ((sectionMask & (1 << (tileEntity.yCoord >> 4))) == 0)
+                    continue;
+                Packet tileEntityPacket = tileEntity.getDescriptionPacket();
+                if (tileEntityPacket != null)
+                    playerMP.playerNetServerHandler.sendPacket(tileEntityPacket);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.planning;
+
+import generatormods.buildings.BuildingWall;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+
+/**
+ * What a builder's plan() decided for one site, saved so that the structure can be built later:
+ * the kind of builder (see BlueprintReplayer), the site, the seed that the builder's Random was set
+ * to for the site, and the plan itself as written by AbstractBuilder.writePlan().
+ * <p>
+ * Everything a builder decides comes from its Random, so planning the same site from the same seed
+ * over the same terrain gives the same plan, and building it gives the same blocks. The walls of
+ * the plan are saved with their whole paths, as planned before smoothing, and the ground under the
+ * smoothed paths, see writeWall(). A replay runs plan() from the seed again, but the walls take
+ * their saved paths instead of searching the terrain for new ones and are then smoothed as before,
+ * so only the cheap stages of plan() are repeated. It builds if the plan,
+ * with the ground read again, matches the saved one. The towers, streets and templates that are
+ * picked from the Random while planning and building follow from the seed in the same way.
+ */
+public class Blueprint {
+    public final int id;
+    public final String kind;
+    public final int dimension;
+    public final int i0, j0, k0;
+    public final long seed;
+    private final NBTTagCompound plan;
+
+    public Blueprint(int id, String kind, int dimension, int i0, int j0, int k0, long seed,
+            NBTTagCompound plan) {
+        this.id = id;
+        this.kind = kind;
+        this.dimension = dimension;
+        this.i0 = i0;
+        this.j0 = j0;
+        this.k0 = k0;
+        this.seed = seed;
+        this.plan = plan;
+    }
+
+    /* The same blueprint with another ID */
+    public Blueprint withId(int id) {
+        return new Blueprint(id, kind, dimension, i0, j0, k0, seed, plan);
+    }
+
+    public NBTTagCompound getPlan() {
+        return (NBTTagCompound) plan.copy();
+    }
+
+    /* Whether the plan is the same as the one in this blueprint */
+    public boolean matches(NBTTagCompound other) {
+        return plan.equals(other);
+    }
+
+    public NBTTagCompound writeToNBT() {
+        NBTTagCompound tag = new NBTTagCompound();
+        tag.setInteger("Id", id);
+        tag.setString("Kind", kind);
+        tag.setInteger("Dimension", dimension);
+        tag.setIntArray("Site", new int[] {i0, j0, k0});
+        tag.setLong("Seed", seed);
+        tag.setTag("Plan", plan.copy());
+        return tag;
+    }
+
+    /* Returns null if the tag is not a blueprint */
+    public static Blueprint readFromNBT(NBTTagCompound tag) {
+        int[] site = tag.getIntArray("Site");
+        if (site.length != 3 || !tag.hasKey("Kind"))
+            return null;
+        return new Blueprint(tag.getInteger("Id"), tag.getString("Kind"),
+                tag.getInteger("Dimension"), site[0], site[1], site[2], tag.getLong("Seed"),
+                tag.getCompoundTag("Plan"));
+    }
+
+    /*
+     * Writes the path of a wall as planned, before smoothing, for AbstractBuilder.writePlan(),
+     * including the stretch left for its end tower, and the surface under the middle of the
+     * smoothed wall at each step.
+     */
+    public static NBTTagCompound writeWall(BuildingWall wall) {
+        NBTTagCompound tag = new NBTTagCompound();
+        tag.setIntArray("Start", new int[] {wall.i1, wall.j1, wall.k1});
+        tag.setString("Dir", wall.bDir.name());
+        tag.setString("Style", wall.ws.name);
+        tag.setInteger("Length", wall.bLength);
+        tag.setIntArray("X", wall.getPlannedX());
+        tag.setIntArray("Y", wall.getPlannedY());
+        tag.setIntArray("Ground", wall.getGround());
+        return tag;
+    }
+
+    /*
+     * Returns the wall written by writeWall() that starts where the wall does, heads the same way
+     * in the same style, and fits its maximum length, or null if there is none.
+     */
+    public static NBTTagCompound findWall(NBTTagList walls, BuildingWall wall) {
+        for (int n = 0; n < walls.tagCount(); n++) {
+            NBTTagCompound tag = walls.getCompoundTagAt(n);
+            int[] start = tag.getIntArray("Start");
+            int length = tag.getInteger("Length");
+            int pathLength = tag.getIntArray("X").length;
+            if (start.length == 3 && start[0] == wall.i1 && start[1] == wall.j1
+                    && start[2] == wall.k1 && wall.bDir.name().equals(tag.getString("Dir"))
+                    && wall.ws.name.equals(tag.getString("Style")) && length >= 1
+                    && length <= pathLength && pathLength <= wall.maxLength
+                    && tag.getIntArray("Y").length == pathLength)
+                return tag;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,145 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.planning;
+
+import generatormods.builders.AbstractBuilder;
+import generatormods.builders.CARuinsBuilder;
+import generatormods.builders.GreatWallBuilder;
+import generatormods.builders.UndergroundCityBuilder;
+import generatormods.builders.WalledCityBuilder;
+import generatormods.modules.CARuins;
+import generatormods.modules.GreatWall;
+import generatormods.modules.WalledCity;
+import generatormods.world.WorldContext;
+
+import java.util.Random;
+
+import net.minecraft.world.World;
+
+import static generatormods.util.WorldUtil.IGNORE_WATER;
+import static generatormods.util.WorldUtil.WORLD_MAX_Y;
+import static generatormods.util.WorldUtil.findSurfaceJ;
+
+/**
+ * Plans structures without building them, saving their Blueprints in the world's BlueprintStore,
+ * and builds saved blueprints later. This lets structures be planned in bulk ahead of the players,
+ * and placed when they are wanted.
+ * <p>
+ * A replay makes a new builder of the same kind with the module's current config, and only builds
+ * if it plans the same thing again with the walls on their saved paths, see
+ * AbstractBuilder.replay(). Server thread only.
+ */
+public class BlueprintReplayer {
+    /* The kinds of builders, with the same names as the /build command */
+    public final static String RUIN = "ruin", WALL = "wall", CITY = "city", UNDERGROUND_CITY =
+            "undcity";
+
+    /**
+     * Makes a builder of the given kind for the chunk at (i, k), set up like the module's own.
+     *
+     * @return The builder, or null if the kind is unknown.
+     */
+    public static AbstractBuilder createBuilder(String kind, World world, Random random, int i,
+            int k) {
+        if (RUIN.equalsIgnoreCase(kind)) {
+            CARuins module = CARuins.instance;
+            CARuinsBuilder builder =
+                    new CARuinsBuilder(world, random, i, k, module.logger, module.config);
+            builder.setPlacementMode(module.config.getPlacementMode(),
+                    module.config.getTickBudgetMillis());
+            builder.setRelightMode(module.config.getRelightMode());
+            builder.setMetrics(module.metrics);
+            return builder;
+        } else if (WALL.equalsIgnoreCase(kind)) {
+            GreatWall module = GreatWall.instance;
+            GreatWallBuilder builder =
+                    new GreatWallBuilder(world, random, i, k, 1, 1.0, module.logger,
+                            module.config.getChestConfigs(), module.wallStyles,
+                            module.config.getCurveBias());
+            builder.setPlacementMode(module.config.getPlacementMode(),
+                    module.config.getTickBudgetMillis());
+            builder.setRelightMode(module.config.getRelightMode());
+            builder.setMetrics(module.metrics);
+            return builder;
+        } else if (CITY.equalsIgnoreCase(kind)) {
+            WalledCity module = WalledCity.instance;
+            WalledCityBuilder builder =
+                    new WalledCityBuilder(world, random, i, k, 1, 1.0, module.logger,
+                            module.config.getChestConfigs(), module.chatHandler,
+                            module.cityDataManager, module.surfaceCityStyles,
+                            module.config.getRejectOnPreexistingArtifacts());
+            builder.setPlacementMode(module.config.getPlacementMode(),
+                    module.config.getTickBudgetMillis());
+            builder.setRelightMode(module.config.getRelightMode());
+            builder.setMetrics(module.metrics);
+            return builder;
+        } else if (UNDERGROUND_CITY.equalsIgnoreCase(kind)) {
+            WalledCity module = WalledCity.instance;
+            UndergroundCityBuilder builder =
+                    new UndergroundCityBuilder(world, random, i, k, 1, 1.0, module.logger,
+                            module.config.getChestConfigs(), module.chatHandler,
+                            module.cityDataManager, module.undergroundCityStyles);
+            // 44 at sea level
+            int maxSpawnHeight =
+                    findSurfaceJ(world, i, k, WORLD_MAX_Y, false, IGNORE_WATER)
+                            - UndergroundCityBuilder.MAX_DIAM / 2 - 5;
+            // 34, a pretty thin margin. Too thin for underocean cities?
+            int minSpawnHeight =
+                    WalledCity.MAX_FOG_HEIGHT + UndergroundCityBuilder.MAX_DIAM / 2 - 8;
+            if (minSpawnHeight <= maxSpawnHeight)
+                builder.setSpawnHeight(minSpawnHeight, maxSpawnHeight, false);
+            builder.setPlacementMode(module.config.getPlacementMode(),
+                    module.config.getTickBudgetMillis());
+            builder.setRelightMode(module.config.getRelightMode());
+            builder.setMetrics(module.metrics);
+            return builder;
+        }
+        return null;
+    }
+
+    /**
+     * Plans a structure of the given kind near (i, k) without building it, and saves its
+     * blueprint.
+     *
+     * @return The saved blueprint, or null if no site was planned.
+     */
+    public static Blueprint plan(String kind, World world, int i, int k) {
+        AbstractBuilder builder = createBuilder(kind, world, new Random(), i, k);
+        if (builder == null)
+            return null;
+        builder.setDryRun(true);
+        builder.run();
+        Blueprint blueprint = builder.getBlueprint(kind.toLowerCase());
+        if (blueprint == null)
+            return null;
+        return WorldContext.forWorld(world).getBlueprintStore().add(blueprint);
+    }
+
+    /**
+     * Builds a saved blueprint, and removes it from the store whether or not it could be built.
+     *
+     * @return Whether the structure was built.
+     */
+    public static boolean replay(World world, Blueprint blueprint) {
+        WorldContext.forWorld(world).getBlueprintStore().remove(blueprint.id);
+        AbstractBuilder builder =
+                createBuilder(blueprint.kind, world, new Random(), blueprint.i0, blueprint.k0);
+        return builder != null && builder.replay(blueprint);
+    }
+}
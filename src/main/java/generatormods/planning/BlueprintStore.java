@@ -0,0 +1,104 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.planning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldSavedData;
+
+/**
+ * The Blueprints that were planned in one dimension but not built yet, stored with the world save
+ * (in the dimension's data folder). See BlueprintReplayer.
+ */
+public class BlueprintStore extends WorldSavedData {
+    public final static String DATA_NAME = "GeneratorModsBlueprints";
+
+    private final Map<Integer, Blueprint> blueprints = new TreeMap<Integer, Blueprint>();
+    private int nextId = 1;
+
+    public BlueprintStore(String name) {
+        super(name);
+    }
+
+    /* Returns the BlueprintStore of the world's dimension, creating it if there is none yet. */
+    public static BlueprintStore forWorld(World world) {
+        BlueprintStore store =
+                (BlueprintStore) world.perWorldStorage.loadData(BlueprintStore.class, DATA_NAME);
+        if (store == null) {
+            store = new BlueprintStore(DATA_NAME);
+            world.perWorldStorage.setData(DATA_NAME, store);
+        }
+        return store;
+    }
+
+    /* Stores the blueprint under a new ID, and returns it with that ID */
+    public synchronized Blueprint add(Blueprint blueprint) {
+        Blueprint added = blueprint.withId(nextId++);
+        blueprints.put(added.id, added);
+        markDirty();
+        return added;
+    }
+
+    public synchronized Blueprint get(int id) {
+        return blueprints.get(id);
+    }
+
+    public synchronized Blueprint remove(int id) {
+        Blueprint removed = blueprints.remove(id);
+        if (removed != null)
+            markDirty();
+        return removed;
+    }
+
+    /* All of the blueprints, oldest first */
+    public synchronized List<Blueprint> getAll() {
+        return new ArrayList<Blueprint>(blueprints.values());
+    }
+
+    public synchronized int size() {
+        return blueprints.size();
+    }
+
+    @Override
+    public synchronized void readFromNBT(NBTTagCompound tag) {
+        blueprints.clear();
+        NBTTagList list = tag.getTagList("Blueprints", 10);
+        for (int n = 0; n < list.tagCount(); n++) {
+            Blueprint blueprint = Blueprint.readFromNBT(list.getCompoundTagAt(n));
+            if (blueprint != null)
+                blueprints.put(blueprint.id, blueprint);
+        }
+        nextId = Math.max(tag.getInteger("NextId"), 1);
+    }
+
+    @Override
+    public synchronized void writeToNBT(NBTTagCompound tag) {
+        NBTTagList list = new NBTTagList();
+        for (Blueprint blueprint : blueprints.values())
+            list.appendTag(blueprint.writeToNBT());
+        tag.setTag("Blueprints", list);
+        tag.setInteger("NextId", nextId);
+    }
+}
@@ -0,0 +1,199 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.planning;
+
+import generatormods.placement.IBlockPlacer;
+import generatormods.util.build.BlockProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+
+/**
+ * Classifies the blocks of the columns that a wall plan looks at, so that the plan and all of its
+ * backtracking branches read each block from the placer only once. The classification is what
+ * BuildingWall.plan() asks about a block: whether it is wallable, water, or an artificial wall
+ * block that is not desert sandstone.
+ * <p>
+ * Each column remembers a window of heights around the first height asked for, as runs of blocks
+ * with the same classification, and grows the window when asked about a height outside of it.
+ * Nothing is forgotten, so an instance is only good for as long as no blocks are placed, which
+ * is the case while a wall is being planned.
+ */
+public class ColumnProfiles {
+    public final static int WALLABLE = 1, WATER = 2, ARTIFICIAL_WALL = 4;
+    /* The window read for a new column, around the first height asked for */
+    private final static int WINDOW_BELOW = 4, WINDOW_ABOVE = 12;
+    /* How far the window grows at least when asked about a height outside of it */
+    private final static int WINDOW_STEP = 8;
+    private final static int CLASS_BITS = 3, CLASS_MASK = (1 << CLASS_BITS) - 1;
+
+    private final IBlockPlacer placer;
+    private final Map<Long, Column> columns = new HashMap<Long, Column>();
+    /* Most lookups ask about the same column as the one before */
+    private Column lastColumn;
+    private int lastI, lastK;
+    private int lookups, blocksRead;
+
+    public ColumnProfiles(IBlockPlacer placer) {
+        this.placer = placer;
+    }
+
+    /**
+     * Returns the classification of the block at the given point, a combination of WALLABLE, WATER
+     * and ARTIFICIAL_WALL.
+     */
+    public int get(int i, int j, int k) {
+        lookups++;
+        if (j < 0 || j > 255)
+            return classify(placer.getBlock(i, j, k));
+        Column column;
+        if (lastColumn != null && lastI == i && lastK == k)
+            column = lastColumn;
+        else {
+            Long key = ((long) i << 32) | (k & 0xFFFFFFFFL);
+            column = columns.get(key);
+            if (column == null) {
+                column = new Column();
+                read(column, i, k, Math.max(0, j - WINDOW_BELOW), Math.min(256, j + WINDOW_ABOVE));
+                columns.put(key, column);
+            }
+            lastColumn = column;
+            lastI = i;
+            lastK = k;
+        }
+        if (j < column.minJ)
+            read(column, i, k, Math.max(0, Math.min(j, column.minJ - WINDOW_STEP)), column.minJ);
+        else if (j >= column.maxJ)
+            read(column, i, k, column.maxJ,
+                    Math.min(256, Math.max(j + 1, column.maxJ + WINDOW_STEP)));
+        return column.get(j);
+    }
+
+    public boolean isWallable(int i, int j, int k) {
+        return (get(i, j, k) & WALLABLE) != 0;
+    }
+
+    public boolean isWater(int i, int j, int k) {
+        return (get(i, j, k) & WATER) != 0;
+    }
+
+    /* The number of columns remembered */
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    /* The number of times get() was asked */
+    public int getLookupCount() {
+        return lookups;
+    }
+
+    /* The number of blocks read from the placer */
+    public int getBlocksRead() {
+        return blocksRead;
+    }
+
+    /* Reads and classifies the heights [fromJ, toJ) of the column, next to its current window. */
+    private void read(Column column, int i, int k, int fromJ, int toJ) {
+        int[] classes = new int[toJ - fromJ];
+        /* Sandstone needs the two blocks above it, see Building.isArtificialWallBlock() */
+        Block above2 = getBlock(i, toJ + 1, k), above1 = getBlock(i, toJ, k);
+        for (int j = toJ - 1; j >= fromJ; j--) {
+            Block block = getBlock(i, j, k);
+            int profile = classify(block);
+            if (block == Blocks.sandstone && (above1 == Blocks.sand || above2 == Blocks.sand))
+                profile &= ~ARTIFICIAL_WALL;
+            classes[j - fromJ] = profile;
+            above2 = above1;
+            above1 = block;
+        }
+        column.add(fromJ, classes);
+    }
+
+    private Block getBlock(int i, int j, int k) {
+        blocksRead++;
+        return placer.getBlock(i, j, k);
+    }
+
+    private static int classify(Block block) {
+        int flags = BlockProperties.getFlags(block);
+        int profile = 0;
+        if ((flags & BlockProperties.WALLABLE) != 0)
+            profile |= WALLABLE;
+        if ((flags & BlockProperties.WATER) != 0)
+            profile |= WATER;
+        if ((flags & BlockProperties.ARTIFICIAL) != 0)
+            profile |= ARTIFICIAL_WALL;
+        return profile;
+    }
+
+    /**
+     * The window [minJ, maxJ) of a column, as runs of equal classification. Each run is packed into
+     * an int as its lowest height and its classification.
+     */
+    private static class Column {
+        int minJ, maxJ;
+        int[] runs = new int[4];
+        int runCount;
+
+        int get(int j) {
+            int low = 0, high = runCount - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (runs[mid] >> CLASS_BITS <= j)
+                    low = mid;
+                else
+                    high = mid - 1;
+            }
+            return runs[low] & CLASS_MASK;
+        }
+
+        /* Adds the classes of [fromJ, fromJ + classes.length), right below or above the window */
+        void add(int fromJ, int[] classes) {
+            int[] added = new int[classes.length];
+            int addedCount = 0;
+            for (int n = 0; n < classes.length; n++)
+                if (addedCount == 0 || (added[addedCount - 1] & CLASS_MASK) != classes[n])
+                    added[addedCount++] = (fromJ + n) << CLASS_BITS | classes[n];
+            if (runCount == 0) {
+                minJ = fromJ;
+                maxJ = fromJ + classes.length;
+            }
+            int[] merged = new int[Math.max(runs.length, runCount + addedCount)];
+            if (fromJ < minJ) {
+                /* Below the window, the lowest run of the window may continue a run added here */
+                System.arraycopy(added, 0, merged, 0, addedCount);
+                int from = (runs[0] & CLASS_MASK) == (added[addedCount - 1] & CLASS_MASK) ? 1 : 0;
+                System.arraycopy(runs, from, merged, addedCount, runCount - from);
+                runCount += addedCount - from;
+                minJ = fromJ;
+            } else {
+                System.arraycopy(runs, 0, merged, 0, runCount);
+                int from = runCount > 0
+                        && (runs[runCount - 1] & CLASS_MASK) == (added[0] & CLASS_MASK) ? 1 : 0;
+                System.arraycopy(added, from, merged, runCount, addedCount - from);
+                runCount += addedCount - from;
+                maxJ = fromJ + classes.length;
+            }
+            runs = merged;
+        }
+    }
+}
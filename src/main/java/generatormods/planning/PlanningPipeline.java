@@ -0,0 +1,239 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.planning;
+
+import generatormods.builders.AbstractBuilder;
+import generatormods.util.exceptions.MissingChunkException;
+import cpw.mods.fml.common.eventhandler.SubscribeEvent;
+import cpw.mods.fml.common.gameevent.TickEvent;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.minecraftforge.event.world.WorldEvent;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Plans structures on worker threads, and builds them on the server thread.
+ * <p>
+ * When a builder is submitted, the chunks around it are copied into a TerrainSnapshot on the server
+ * thread. A worker then runs AbstractBuilder.planSite() against that snapshot. Once it is done, the
+ * builder is handed back to the server thread at the end of a tick, where
+ * AbstractBuilder.buildPlanned() places the structure with the builder's usual placer.
+ * <p>
+ * If the planning needs a chunk that is not in the snapshot, the chunks around it are loaded on the
+ * server thread and the planning starts over, with the builder's Random reset so that it makes the
+ * same choices again. After MAX_ATTEMPTS tries, or if the planning throws an exception, the builder
+ * is run on the server thread like it would have been without the pipeline. If it throws an Error,
+ * such as a StackOverflowError, the structure is dropped.
+ * <p>
+ * It has to be registered with the FML event bus (tick events) and the Forge event bus (world
+ * events).
+ */
+public class PlanningPipeline {
+    public final static int MAX_ATTEMPTS = 8;
+    /* How many chunks around a missing chunk get added to the snapshot */
+    private final static int MISSING_CHUNK_RADIUS = 2;
+    /* Upper limit on the radius of the first snapshot, it only holds loaded chunks anyway */
+    private final static int MAX_SNAPSHOT_RADIUS = 12;
+    public static PlanningPipeline instance;
+
+    private final Logger logger;
+    private final int threads;
+    private ExecutorService executor;
+    /* Jobs that have been submitted, but not built yet. Only used on the server thread. */
+    private final LinkedList<Job> jobs = new LinkedList<Job>();
+    /* Jobs that the workers are done with */
+    private final Queue<Job> planned = new ConcurrentLinkedQueue<Job>();
+
+    public PlanningPipeline(String parentModName, int threads) {
+        this.logger = LogManager.getLogger(parentModName + ".Planning");
+        this.threads = threads;
+    }
+
+    /**
+     * Plans the builder off the server thread, and builds it once it is planned. The builder must
+     * have a Random of its own. Must be called on the server thread.
+     */
+    public void submit(AbstractBuilder builder) {
+        int radius = Math.min(builder.getPlanningChunkRadius(), MAX_SNAPSHOT_RADIUS);
+        TerrainSnapshot snapshot =
+                TerrainSnapshot.capture(builder.world, builder.chunkI >> 4, builder.chunkK >> 4,
+                        radius);
+        Job job = new Job(builder, builder.random.nextLong(), snapshot);
+        jobs.add(job);
+        getExecutor().execute(job);
+        logger.debug("Planning {} with a snapshot of {} chunks, {} jobs in progress",
+                builder.getClass().getSimpleName(), snapshot.size(), jobs.size());
+    }
+
+    /* The number of builders that have been submitted, but not built yet. */
+    public int getJobCount() {
+        return jobs.size();
+    }
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END)
+            return;
+        for (Job job = planned.poll(); job != null; job = planned.poll()) {
+            // Jobs for unloaded worlds were removed
+            if (jobs.remove(job))
+                commit(job, true);
+        }
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        if (event.world.isRemote)
+            return;
+        Iterator<Job> itr = jobs.iterator();
+        while (itr.hasNext()) {
+            if (itr.next().builder.world == event.world) {
+                itr.remove();
+                logger.warn("Dropping a structure that was still being planned, its world was unloaded");
+            }
+        }
+    }
+
+    /**
+     * Waits for the workers to finish, and builds everything they planned. Called when the server
+     * stops. The workers are started again by the next submit().
+     */
+    public void finishAll() {
+        if (executor == null)
+            return;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS))
+                logger.warn("Timed out waiting for structures to be planned");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        for (Job job = planned.poll(); job != null; job = planned.poll()) {
+            if (jobs.remove(job))
+                commit(job, false);
+        }
+        if (!jobs.isEmpty())
+            logger.warn("Dropping {} structures that were still being planned", jobs.size());
+        jobs.clear();
+    }
+
+    private void commit(Job job, boolean canRetry) {
+        AbstractBuilder builder = job.builder;
+        if (job.missingChunk != null) {
+            if (canRetry && ++job.attempts < MAX_ATTEMPTS) {
+                job.snapshot = job.snapshot.withChunks(job.missingChunk.chunkX,
+                        job.missingChunk.chunkZ, MISSING_CHUNK_RADIUS);
+                job.missingChunk = null;
+                jobs.add(job);
+                getExecutor().execute(job);
+                return;
+            }
+            logger.debug("Planning {} on the server thread after {} attempts",
+                    builder.getClass().getSimpleName(), job.attempts);
+            runOnServerThread(job);
+        } else if (job.error instanceof Error) {
+            logger.error("Planning " + builder.getClass().getSimpleName()
+                    + " failed, dropping the structure", job.error);
+            builder.endPlanning();
+            builder.finishJob();
+        } else if (job.error != null) {
+            logger.warn("Planning " + builder.getClass().getSimpleName()
+                    + " failed, trying again on the server thread", job.error);
+            runOnServerThread(job);
+        } else {
+            builder.endPlanning();
+            if (job.success)
+                builder.buildPlanned();
+            builder.finishJob();
+        }
+    }
+
+    private void runOnServerThread(Job job) {
+        job.builder.endPlanning();
+        job.builder.random.setSeed(job.seed);
+        job.builder.run();
+    }
+
+    private ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread =
+                            new Thread(runnable, "GeneratorMods Planner #"
+                                    + count.incrementAndGet());
+                    // Never keep the server from shutting down
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * A builder on its way through the pipeline. The server thread and a worker take turns with it,
+     * handing it over through the executor and the planned queue.
+     */
+    private class Job implements Runnable {
+        final AbstractBuilder builder;
+        final long seed;
+        TerrainSnapshot snapshot;
+        int attempts = 0;
+        boolean success;
+        MissingChunkException missingChunk;
+        Throwable error;
+
+        Job(AbstractBuilder builder, long seed, TerrainSnapshot snapshot) {
+            this.builder = builder;
+            this.seed = seed;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void run() {
+            try {
+                builder.random.setSeed(seed);
+                builder.beginPlanning(new SnapshotBlockPlacer(snapshot));
+                success = builder.planSite();
+            } catch (MissingChunkException e) {
+                missingChunk = e;
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                // Always hand the job back, or it would never be built nor finished
+                planned.add(this);
+            }
+        }
+    }
+}
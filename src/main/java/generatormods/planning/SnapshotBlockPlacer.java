@@ -0,0 +1,160 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.planning;
+
+import generatormods.placement.IBlockPlacer;
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.Entity;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.BiomeGenBase;
+import net.minecraftforge.common.util.ForgeDirection;
+
+/**
+ * A read-only IBlockPlacer over a TerrainSnapshot, for planning structures off the server thread.
+ * Any attempt to place something throws an UnsupportedOperationException, and there are no tile
+ * entities.
+ * <p>
+ * Each planning job should use its own SnapshotBlockPlacer, as it remembers the last chunk it read
+ * from.
+ */
+public class SnapshotBlockPlacer implements IBlockPlacer {
+    private final TerrainSnapshot snapshot;
+    private TerrainSnapshot.ChunkData lastChunk;
+
+    public SnapshotBlockPlacer(TerrainSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public TerrainSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public World getWorld() {
+        return snapshot.getWorld();
+    }
+
+    @Override
+    public boolean setBlock(int i, int j, int k, Block block, int meta, int flags) {
+        throw new UnsupportedOperationException("Cannot place blocks while planning");
+    }
+
+    @Override
+    public boolean setBlockNoLighting(int i, int j, int k, Block block, int meta, int flags) {
+        throw new UnsupportedOperationException("Cannot place blocks while planning");
+    }
+
+    @Override
+    public boolean setBlockMetadata(int i, int j, int k, int meta, int flags) {
+        throw new UnsupportedOperationException("Cannot place blocks while planning");
+    }
+
+    @Override
+    public void spawnEntity(Entity entity) {
+        throw new UnsupportedOperationException("Cannot spawn entities while planning");
+    }
+
+    @Override
+    public int getHeightValue(int i, int k) {
+        return getChunk(i, k).getHeightValue(i & 0xf, k & 0xf);
+    }
+
+    @Override
+    public int getBiomeId(int i, int k) {
+        return getChunk(i, k).getBiomeId(i & 0xf, k & 0xf);
+    }
+
+    /* Whether the chunk is part of the snapshot */
+    @Override
+    public boolean isChunkLoaded(int chunkX, int chunkZ) {
+        return snapshot.contains(chunkX, chunkZ);
+    }
+
+    @Override
+    public void finish() {}
+
+    @Override
+    public Block getBlock(int i, int j, int k) {
+        return Block.getBlockById(getChunk(i, k).getBlockId(i & 0xf, j, k & 0xf));
+    }
+
+    @Override
+    public int getBlockMetadata(int i, int j, int k) {
+        return getChunk(i, k).getBlockMetadata(i & 0xf, j, k & 0xf);
+    }
+
+    @Override
+    public TileEntity getTileEntity(int i, int j, int k) {
+        return null;
+    }
+
+    @Override
+    public boolean isAirBlock(int i, int j, int k) {
+        return getBlock(i, j, k).isAir(this, i, j, k);
+    }
+
+    @Override
+    public int isBlockProvidingPowerTo(int i, int j, int k, int side) {
+        return 0;
+    }
+
+    @Override
+    public boolean isSideSolid(int i, int j, int k, ForgeDirection side, boolean _default) {
+        if (i < -30000000 || k < -30000000 || i >= 30000000 || k >= 30000000)
+            return _default;
+        return getBlock(i, j, k).isSideSolid(this, i, j, k, side);
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public int getLightBrightnessForSkyBlocks(int i, int j, int k, int minLight) {
+        return 0;
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public BiomeGenBase getBiomeGenForCoords(int i, int k) {
+        return BiomeGenBase.getBiome(getBiomeId(i, k));
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public int getHeight() {
+        return 256;
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public boolean extendedLevelsInChunkCache() {
+        return false;
+    }
+
+    private TerrainSnapshot.ChunkData getChunk(int i, int k) {
+        TerrainSnapshot.ChunkData chunk = lastChunk;
+        if (chunk == null || chunk.chunkX != i >> 4 || chunk.chunkZ != k >> 4) {
+            chunk = snapshot.getChunk(i >> 4, k >> 4);
+            lastChunk = chunk;
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,198 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.planning;
+
+import generatormods.placement.ForwardingBlockPlacer;
+import generatormods.placement.IBlockPlacer;
+import generatormods.util.WorldUtil;
+import generatormods.util.build.BlockProperties;
+
+import java.util.Arrays;
+
+import net.minecraft.block.Block;
+
+import static generatormods.util.WorldUtil.HIT_WATER;
+import static generatormods.util.WorldUtil.IGNORE_WATER;
+import static generatormods.util.WorldUtil.WORLD_MAX_Y;
+
+/**
+ * Remembers surface heights and biomes for a single builder, so that asking about the same column
+ * again does not have to search down through the blocks again. It sits in front of the builder's
+ * real placer, and forgets a column whenever a block is placed in it.
+ * <p>
+ * Only columns within the bounds set by setBounds() are remembered, in one page of primitive arrays
+ * per chunk. For each column and each way of treating walls and water, the page holds the height
+ * of the first block that a search from the top of the column stops at, and how deep the water is
+ * if that block is water. Together, these answer findSurfaceJ() for any starting height at or above
+ * that block, and for any water buffer.
+ */
+public class TerrainProbe extends ForwardingBlockPlacer {
+    /* Limits the memory used for the page table */
+    private final static int MAX_CHUNK_RADIUS = 64;
+    private final static int UNKNOWN = Integer.MIN_VALUE;
+    /* wallIsSurface, and whether water is ignored */
+    private final static int VARIANTS = 4;
+    private final static int MAX_WATER_DEPTH = 127;
+
+    private int minChunkX, minChunkZ, size;
+    private Page[] pages;
+
+    public TerrainProbe(IBlockPlacer target) {
+        super(target);
+    }
+
+    /**
+     * Sets the chunks for which columns are remembered, and forgets everything.
+     */
+    public void setBounds(int centerChunkX, int centerChunkZ, int chunkRadius) {
+        chunkRadius = Math.min(chunkRadius, MAX_CHUNK_RADIUS);
+        minChunkX = centerChunkX - chunkRadius;
+        minChunkZ = centerChunkZ - chunkRadius;
+        size = 2 * chunkRadius + 1;
+        pages = new Page[size * size];
+    }
+
+    /* Forgets everything, for when the blocks may have changed behind the probe's back. */
+    public void clear() {
+        if (pages != null)
+            Arrays.fill(pages, null);
+    }
+
+    /* Forgets the surface of the column. */
+    public void invalidate(int i, int k) {
+        Page page = getPage(i, k, false);
+        if (page != null) {
+            int column = column(i, k);
+            for (int v = 0; v < VARIANTS; v++)
+                page.hitJ[v * 256 + column] = UNKNOWN;
+        }
+    }
+
+    /**
+     * Same as WorldUtil.findSurfaceJ(), but remembers the answer.
+     */
+    public int findSurfaceJ(int i, int k, int jinit, boolean wallIsSurface, int waterSurfaceBuffer) {
+        Page page = getPage(i, k, true);
+        if (page == null)
+            return WorldUtil.findSurfaceJ(getTarget(), i, k, jinit, wallIsSurface,
+                    waterSurfaceBuffer);
+        boolean ignoreWater = waterSurfaceBuffer == IGNORE_WATER;
+        int index = (wallIsSurface ? 2 : 0) * 256 + (ignoreWater ? 256 : 0) + column(i, k);
+        if (page.hitJ[index] == UNKNOWN)
+            probeColumn(page, index, i, k, wallIsSurface, ignoreWater);
+        int hitJ = page.hitJ[index];
+        if (getWorld().provider.isHellWorld)
+            return hitJ; // does not depend on anything but the column
+        if (hitJ > jinit) // the search would start below the block we know about
+            return WorldUtil.findSurfaceJ(getTarget(), i, k, jinit, wallIsSurface,
+                    waterSurfaceBuffer);
+        int waterDepth = page.waterDepth[index];
+        if (hitJ < 0 || waterDepth == 0)
+            return hitJ;
+        if (waterSurfaceBuffer < waterDepth)
+            return HIT_WATER;
+        Block below = getTarget().getBlock(i, hitJ - waterSurfaceBuffer, k);
+        return BlockProperties.isWater(below) ? HIT_WATER : hitJ;
+    }
+
+    @Override
+    public int getBiomeId(int i, int k) {
+        Page page = getPage(i, k, true);
+        if (page == null)
+            return super.getBiomeId(i, k);
+        int column = column(i, k);
+        if (page.biomes[column] == UNKNOWN)
+            page.biomes[column] = super.getBiomeId(i, k);
+        return page.biomes[column];
+    }
+
+    @Override
+    public void setTarget(IBlockPlacer target) {
+        super.setTarget(target);
+        clear();
+    }
+
+    @Override
+    public boolean setBlock(int i, int j, int k, Block block, int meta, int flags) {
+        invalidate(i, k);
+        return super.setBlock(i, j, k, block, meta, flags);
+    }
+
+    @Override
+    public boolean setBlockNoLighting(int i, int j, int k, Block block, int meta, int flags) {
+        invalidate(i, k);
+        return super.setBlockNoLighting(i, j, k, block, meta, flags);
+    }
+
+    /*
+     * Searches the column from the top with WorldUtil.findSurfaceJ(), and stores the height of the
+     * block it stops at.
+     */
+    private void probeColumn(Page page, int index, int i, int k, boolean wallIsSurface,
+            boolean ignoreWater) {
+        IBlockPlacer target = getTarget();
+        page.waterDepth[index] = 0;
+        if (getWorld().provider.isHellWorld) {
+            page.hitJ[index] = WorldUtil.findSurfaceJ(target, i, k, WORLD_MAX_Y, wallIsSurface,
+                    ignoreWater ? IGNORE_WATER : 0);
+            return;
+        }
+        // With a buffer this deep the search stops at the first water block instead of HIT_WATER
+        int hitJ = WorldUtil.findSurfaceJ(target, i, k, WORLD_MAX_Y, wallIsSurface,
+                ignoreWater ? IGNORE_WATER : WORLD_MAX_Y + 1);
+        if (!ignoreWater && hitJ >= 0 && BlockProperties.isWater(target.getBlock(i, hitJ, k))) {
+            int depth = 1;
+            while (depth < MAX_WATER_DEPTH && hitJ - depth >= 0
+                    && BlockProperties.isWater(target.getBlock(i, hitJ - depth, k)))
+                depth++;
+            page.waterDepth[index] = (byte) depth;
+        }
+        page.hitJ[index] = hitJ;
+    }
+
+    private Page getPage(int i, int k, boolean create) {
+        if (pages == null)
+            return null;
+        int x = (i >> 4) - minChunkX, z = (k >> 4) - minChunkZ;
+        if (x < 0 || z < 0 || x >= size || z >= size)
+            return null;
+        Page page = pages[x * size + z];
+        if (page == null && create) {
+            page = new Page();
+            pages[x * size + z] = page;
+        }
+        return page;
+    }
+
+    private static int column(int i, int k) {
+        return ((k & 0xf) << 4) | (i & 0xf);
+    }
+
+    /* What is known about the columns of one chunk */
+    private static final class Page {
+        final int[] hitJ = new int[VARIANTS * 256];
+        final byte[] waterDepth = new byte[VARIANTS * 256];
+        final int[] biomes = new int[256];
+
+        Page() {
+            Arrays.fill(hitJ, UNKNOWN);
+            Arrays.fill(biomes, UNKNOWN);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.planning;
+
+import generatormods.util.exceptions.MissingChunkException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.WorldChunkManager;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.chunk.NibbleArray;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+/**
+ * A copy of the blocks, height map and biomes of a set of chunks. It is taken on the server thread
+ * and never changes afterwards, so it can be read from any thread.
+ * <p>
+ * Reading a point in a chunk that was not copied throws a MissingChunkException. Only the server
+ * thread may load chunks, so the planning has to be restarted with a snapshot that was extended by
+ * withChunks().
+ */
+public final class TerrainSnapshot {
+    private final World world;
+    private final Map<Long, ChunkData> chunks;
+
+    private TerrainSnapshot(World world, Map<Long, ChunkData> chunks) {
+        this.world = world;
+        this.chunks = Collections.unmodifiableMap(chunks);
+    }
+
+    /**
+     * Copies the chunks within chunkRadius of the given chunk that are loaded. The given chunk itself
+     * is always copied, and loaded or generated if need be.
+     */
+    public static TerrainSnapshot capture(World world, int chunkX, int chunkZ, int chunkRadius) {
+        Map<Long, ChunkData> chunks = new HashMap<Long, ChunkData>();
+        IChunkProvider provider = world.getChunkProvider();
+        for (int cx = chunkX - chunkRadius; cx <= chunkX + chunkRadius; cx++) {
+            for (int cz = chunkZ - chunkRadius; cz <= chunkZ + chunkRadius; cz++) {
+                if (provider.chunkExists(cx, cz) || (cx == chunkX && cz == chunkZ))
+                    chunks.put(ChunkCoordIntPair.chunkXZ2Int(cx, cz),
+                            new ChunkData(world, world.getChunkFromChunkCoords(cx, cz)));
+            }
+        }
+        return new TerrainSnapshot(world, chunks);
+    }
+
+    /**
+     * Returns a snapshot with all the chunks of this one, plus the chunks within chunkRadius of the
+     * given chunk. Those are loaded or generated if need be, so this must be called on the server
+     * thread.
+     */
+    public TerrainSnapshot withChunks(int chunkX, int chunkZ, int chunkRadius) {
+        Map<Long, ChunkData> extended = new HashMap<Long, ChunkData>(chunks);
+        for (int cx = chunkX - chunkRadius; cx <= chunkX + chunkRadius; cx++) {
+            for (int cz = chunkZ - chunkRadius; cz <= chunkZ + chunkRadius; cz++) {
+                long key = ChunkCoordIntPair.chunkXZ2Int(cx, cz);
+                if (!extended.containsKey(key))
+                    extended.put(key, new ChunkData(world, world.getChunkFromChunkCoords(cx, cz)));
+            }
+        }
+        return new TerrainSnapshot(world, extended);
+    }
+
+    /*
+     * The World that this is a snapshot of. Off the server thread, only use it for things that do
+     * not change, like the provider.
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    public boolean contains(int chunkX, int chunkZ) {
+        return chunks.containsKey(ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ));
+    }
+
+    /* The number of chunks in this snapshot. */
+    public int size() {
+        return chunks.size();
+    }
+
+    ChunkData getChunk(int chunkX, int chunkZ) {
+        ChunkData chunk = chunks.get(ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ));
+        if (chunk == null)
+            throw new MissingChunkException(chunkX, chunkZ);
+        return chunk;
+    }
+
+    /**
+     * The copied arrays of a single chunk. Blocks are indexed the same way as in
+     * ExtendedBlockStorage, by (y << 8) | (z << 4) | x within a section.
+     */
+    static final class ChunkData {
+        final int chunkX, chunkZ;
+        /* Null for empty sections */
+        private final byte[][] blockLSB = new byte[16][];
+        private final byte[][] blockMSB = new byte[16][];
+        private final byte[][] metadata = new byte[16][];
+        private final int[] heightMap;
+        private final byte[] biomes = new byte[256];
+
+        ChunkData(World world, Chunk chunk) {
+            chunkX = chunk.xPosition;
+            chunkZ = chunk.zPosition;
+            ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+            for (int s = 0; s < storage.length && s < 16; s++) {
+                if (storage[s] == null || storage[s].isEmpty())
+                    continue;
+                blockLSB[s] = storage[s].getBlockLSBArray().clone();
+                NibbleArray msb = storage[s].getBlockMSBArray();
+                if (msb != null)
+                    blockMSB[s] = msb.data.clone();
+                metadata[s] = storage[s].getMetadataArray().data.clone();
+            }
+            heightMap = chunk.heightMap.clone();
+            // Asking for the biome fills in the ones the chunk has not looked up yet
+            WorldChunkManager chunkManager = world.getWorldChunkManager();
+            for (int z = 0; z < 16; z++)
+                for (int x = 0; x < 16; x++)
+                    biomes[(z << 4) | x] =
+                            (byte) chunk.getBiomeGenForWorldCoords(x, z, chunkManager).biomeID;
+        }
+
+        /* Returns the block id of the given point, with x and z within the chunk */
+        int getBlockId(int x, int y, int z) {
+            if (y < 0 || y > 255 || blockLSB[y >> 4] == null)
+                return 0;
+            int index = ((y & 0xf) << 8) | (z << 4) | x;
+            int id = blockLSB[y >> 4][index] & 0xff;
+            if (blockMSB[y >> 4] != null)
+                id |= nibble(blockMSB[y >> 4], index) << 8;
+            return id;
+        }
+
+        int getBlockMetadata(int x, int y, int z) {
+            if (y < 0 || y > 255 || metadata[y >> 4] == null)
+                return 0;
+            return nibble(metadata[y >> 4], ((y & 0xf) << 8) | (z << 4) | x);
+        }
+
+        int getHeightValue(int x, int z) {
+            return heightMap[(z << 4) | x];
+        }
+
+        int getBiomeId(int x, int z) {
+            return biomes[(z << 4) | x] & 0xff;
+        }
+
+        private static int nibble(byte[] data, int index) {
+            return (index & 1) == 0 ? data[index >> 1] & 0xf : (data[index >> 1] >> 4) & 0xf;
+        }
+    }
+}
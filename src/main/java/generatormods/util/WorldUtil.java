@@ -18,6 +18,9 @@
  */
 package generatormods.util;
 
+import generatormods.placement.ForwardingBlockPlacer;
+import generatormods.placement.IBlockPlacer;
+import generatormods.placement.WorldBlockPlacer;
 import generatormods.util.build.BlockProperties;
 
 import java.io.File;
@@ -27,6 +30,8 @@ import net.minecraft.init.Blocks;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.storage.AnvilChunkLoader;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.NibbleArray;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 import net.minecraft.world.storage.ISaveHandler;
 
 /**
@@ -66,30 +71,134 @@ public class WorldUtil {
      */
     public static int findSurfaceJ(World world, int i, int k, int jinit, boolean wallIsSurface,
             int waterSurfaceBuffer) {
+        return findSurfaceJ(new WorldBlockPlacer(world), i, k, jinit, wallIsSurface,
+                waterSurfaceBuffer);
+    }
+
+    /**
+     * Same as findSurfaceJ(IBlockPlacer, ...), but reads the block ids straight out of the chunk's
+     * ExtendedBlockStorage. Sections that hold nothing but air are skipped 16 blocks at a time, and
+     * the flags of each block id come straight from the BlockProperties table.
+     * <p>
+     * Gives exactly the same answers as findSurfaceJ(IBlockPlacer, ...) for the chunk's column.
+     *
+     * @param chunk The chunk that (i, k) lies in
+     * @param isHellWorld Whether to use the search for the Nether
+     */
+    public static int findSurfaceJ(Chunk chunk, boolean isHellWorld, int i, int k, int jinit,
+            boolean wallIsSurface, int waterSurfaceBuffer) {
+        ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+        int x = i & 0xf, z = k & 0xf;
+        if (isHellWorld) {// the Nether
+            int jmax = (int) (WORLD_MAX_Y * 0.5);
+            if ((i % 2 == 1) ^ (k % 2 == 1)) {
+                int j = jmax;
+                for (; j > -1; j--) {
+                    ExtendedBlockStorage section = storage[j >> 4];
+                    if (section == null || section.isEmpty()
+                            || section.getBlockByExtId(x, j & 0xf, z).isAir(chunk.worldObj, i, j, k))
+                        break;
+                }
+                for (; j > -1; j--) {
+                    ExtendedBlockStorage section = storage[j >> 4];
+                    if (section == null || section.isEmpty()) {
+                        // Air is wallable, go on to the top of the section below
+                        j &= ~0xf;
+                        continue;
+                    }
+                    int flags = BlockProperties.getFlagsById(getBlockId(section, x, j & 0xf, z));
+                    if ((flags & BlockProperties.WALLABLE) == 0)
+                        return j;
+                }
+            } else {
+                for (int j = 0; j <= jmax; j++) {
+                    ExtendedBlockStorage section = storage[j >> 4];
+                    if (section == null || section.isEmpty()
+                            || section.getBlockByExtId(x, j & 0xf, z).isAir(chunk.worldObj, i, j, k))
+                        return j;
+                }
+            }
+            return -1;
+        }
+        // other dimensions
+        int j = Math.min(jinit, chunk.getHeightValue(x, z));
+        // Above the top of the world is air, which the search passes through
+        if (j > WORLD_MAX_Y)
+            j = WORLD_MAX_Y;
+        while (j >= 0) {
+            ExtendedBlockStorage section = storage[j >> 4];
+            if (section == null || section.isEmpty()) {
+                // Only air, which is wallable and not water
+                j = (j & ~0xf) - 1;
+                continue;
+            }
+            int flags = BlockProperties.getFlagsById(getBlockId(section, x, j & 0xf, z));
+            // See findSurfaceJ(IBlockPlacer, ...) for what these mean
+            if ((flags & BlockProperties.WALLABLE) == 0
+                    && (wallIsSurface || (flags & BlockProperties.ARTIFICIAL) == 0))
+                return j;
+            if (waterSurfaceBuffer != IGNORE_WATER && (flags & BlockProperties.WATER) != 0) {
+                int below = getBlockId(storage, x, j - waterSurfaceBuffer, z);
+                return (BlockProperties.getFlagsById(below) & BlockProperties.WATER) != 0 ? HIT_WATER
+                        : j;
+            }
+            j--;
+        }
+        return -1;
+    }
+
+    /* The id of a block in a chunk's block storage array, air outside of it */
+    private static int getBlockId(ExtendedBlockStorage[] storage, int x, int j, int z) {
+        if (j < 0 || j >> 4 >= storage.length || storage[j >> 4] == null)
+            return 0;
+        return getBlockId(storage[j >> 4], x, j & 0xf, z);
+    }
+
+    /* Like ExtendedBlockStorage.getBlockByExtId(), without looking up the Block */
+    private static int getBlockId(ExtendedBlockStorage section, int x, int y, int z) {
+        int id = section.getBlockLSBArray()[(y << 8) | (z << 4) | x] & 0xff;
+        NibbleArray msb = section.getBlockMSBArray();
+        return msb == null ? id : id | (msb.get(x, y, z) << 8);
+    }
+
+    /**
+     * Same as findSurfaceJ(World, ...), but reads the blocks through the given placer, so that it
+     * also works against a TerrainSnapshot or a placer that has not placed all of its blocks yet.
+     * Placers that read straight from the world take the faster findSurfaceJ(Chunk, ...).
+     */
+    public static int findSurfaceJ(IBlockPlacer placer, int i, int k, int jinit,
+            boolean wallIsSurface, int waterSurfaceBuffer) {
+        while (placer instanceof ForwardingBlockPlacer)
+            placer = ((ForwardingBlockPlacer) placer).getTarget();
+        if (placer instanceof WorldBlockPlacer && ((WorldBlockPlacer) placer).readsFromWorld()
+                && i >= -30000000 && k >= -30000000 && i < 30000000 && k < 30000000) {
+            World world = placer.getWorld();
+            return findSurfaceJ(world.getChunkFromBlockCoords(i, k), world.provider.isHellWorld, i,
+                    k, jinit, wallIsSurface, waterSurfaceBuffer);
+        }
         Block blockId;
         // if(world.getChunkProvider().chunkExists(i>>4, k>>4))
         {
-            if (world.provider.isHellWorld) {// the Nether
+            if (placer.getWorld().provider.isHellWorld) {// the Nether
                 if ((i % 2 == 1) ^ (k % 2 == 1)) {
                     for (int j = (int) (WORLD_MAX_Y * 0.5); j > -1; j--) {
-                        if (world.isAirBlock(i, j, k))
+                        if (placer.isAirBlock(i, j, k))
                             for (; j > -1; j--)
-                                if (!BlockProperties.get(world.getBlock(i, j, k)).isWallable)
+                                if (!BlockProperties.isWallable(placer.getBlock(i, j, k)))
                                     return j;
                     }
                 } else {
                     for (int j = 0; j <= (int) (WORLD_MAX_Y * 0.5); j++)
-                        if (world.isAirBlock(i, j, k))
+                        if (placer.isAirBlock(i, j, k))
                             return j;
                 }
                 return -1;
             } else { // other dimensions
-                int minecraftHeight =
-                        world.getChunkFromBlockCoords(i, k).getHeightValue(i & 0xf, k & 0xf);
+                int minecraftHeight = placer.getHeightValue(i, k);
                 if (minecraftHeight < jinit)
                     jinit = minecraftHeight;
                 for (int j = jinit; j >= 0; j--) {
-                    blockId = world.getBlock(i, j, k);
+                    blockId = placer.getBlock(i, j, k);
                     /*
                      * This will return the current coordinate when the the current block is not
                      * wallable (wallables are blocks that can be replaced with walls, like water,
@@ -98,16 +207,16 @@ public class WorldUtil {
                      * return when the current block is not wallable, but wallIsSurface is set to
                      * true.
                      */
-                    if (!BlockProperties.get(blockId).isWallable
-                            && (wallIsSurface || !BlockProperties.get(blockId).isArtificial))
+                    if (!BlockProperties.isWallable(blockId)
+                            && (wallIsSurface || !BlockProperties.isArtificial(blockId)))
                         return j;
                     /*
                      * If we aren't ignoring water entirely, and the current block is water, then
                      * return HIT_WATER if j - waterSurfaceBuffer is water, or return j (because
                      * there is less than waterSurfaceBuffer below our current point.
                      */
-                    if (waterSurfaceBuffer != IGNORE_WATER && BlockProperties.get(blockId).isWater)
-                        return BlockProperties.get(world.getBlock(i, j - waterSurfaceBuffer, k)).isWater ? HIT_WATER
+                    if (waterSurfaceBuffer != IGNORE_WATER && BlockProperties.isWater(blockId))
+                        return BlockProperties.isWater(placer.getBlock(i, j - waterSurfaceBuffer, k)) ? HIT_WATER
                                 : j;
                     /* Otherwise, continue on down. */
                 }
@@ -174,20 +283,20 @@ public class WorldUtil {
      * <li>Otherwise, fill with the same type of block as the existing starting point.</li>
      * </ul>
      */
-    public static void fillDown(int[] lowPt, int jtop, World world) {
-        while (BlockProperties.get(world.getBlock(lowPt[0], lowPt[1], lowPt[2])).isArtificial)
+    public static void fillDown(int[] lowPt, int jtop, IBlockPlacer placer) {
+        while (BlockProperties.isArtificial(placer.getBlock(lowPt[0], lowPt[1], lowPt[2])))
             lowPt[1]--;
-        Block oldSurfaceBlockId = world.getBlock(lowPt[0], lowPt[1], lowPt[2]);
-        if (BlockProperties.get(oldSurfaceBlockId).isOre)
+        Block oldSurfaceBlockId = placer.getBlock(lowPt[0], lowPt[1], lowPt[2]);
+        if (BlockProperties.isOre(oldSurfaceBlockId))
             oldSurfaceBlockId = Blocks.stone;
         if (oldSurfaceBlockId == Blocks.dirt
                 || (lowPt[1] <= SEA_LEVEL && oldSurfaceBlockId == Blocks.sand))
             oldSurfaceBlockId = Blocks.grass;
         if (oldSurfaceBlockId == Blocks.air)
-            oldSurfaceBlockId = world.provider.isHellWorld ? Blocks.netherrack : Blocks.grass;
+            oldSurfaceBlockId = placer.getWorld().provider.isHellWorld ? Blocks.netherrack : Blocks.grass;
         Block fillBlockId = oldSurfaceBlockId == Blocks.grass ? Blocks.dirt : oldSurfaceBlockId;
         for (; lowPt[1] <= jtop; lowPt[1]++)
-            setBlockAndMetaNoLighting(world, lowPt[0], lowPt[1], lowPt[2],
+            placer.setBlockNoLighting(lowPt[0], lowPt[1], lowPt[2],
                     lowPt[1] == jtop ? oldSurfaceBlockId : fillBlockId, 0, 2);
     }
 
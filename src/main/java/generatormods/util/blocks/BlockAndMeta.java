@@ -114,7 +114,7 @@ public class BlockAndMeta {
     }
 
     public BlockAndMeta toStep() {
-        if (!BlockProperties.get(block).isArtificial)
+        if (!BlockProperties.isArtificial(block))
             return this;
         if (block == Blocks.sandstone) {
             return new BlockAndMeta(Blocks.stone_slab, 1);
@@ -187,7 +187,7 @@ public class BlockAndMeta {
         if (metadata < 0 || metadata >= 16)
             return "All Minecraft meta values should be between 0 and 15";
         String fail = blockID.getUnlocalizedName() + " meta value should be between";
-        if (BlockProperties.get(blockID).isStair)
+        if (BlockProperties.isStair(blockID))
             return metadata < 8 ? null : fail + " 0 and 7";
         // orientation metas
         if (blockID == Blocks.rail) {
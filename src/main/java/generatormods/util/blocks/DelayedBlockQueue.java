@@ -0,0 +1,150 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.util.blocks;
+
+import java.util.Arrays;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+
+/**
+ * The blocks that a Building places after everything else, such as torches, stairs and fluids,
+ * kept in parallel primitive arrays so that adding a block allocates nothing once the arrays have
+ * grown to the size of the building.
+ * <p>
+ * Positions are packed into a long, with 26 bits each for i and k and 12 bits for j. Blocks are
+ * kept by their registry id.
+ */
+public class DelayedBlockQueue {
+    private final static int INITIAL_CAPACITY = 64;
+    /* Chunk offsets from the first block that still sort correctly */
+    private final static int CHUNK_OFFSET_BITS = 12;
+    private final static int CHUNK_OFFSET_MASK = (1 << CHUNK_OFFSET_BITS) - 1;
+    private final static int INDEX_BITS = 31;
+
+    private long[] positions = new long[INITIAL_CAPACITY];
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] metas = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    /* Scratch space for sortByChunk(), kept between calls */
+    private long[] keys = new long[0];
+    private long[] sortedPositions = new long[0];
+    private int[] sortedIds = new int[0];
+    private int[] sortedMetas = new int[0];
+
+    public static long packPosition(int i, int j, int k) {
+        return ((long) (i & 0x3FFFFFF) << 38) | ((long) (k & 0x3FFFFFF) << 12) | (j & 0xFFF);
+    }
+
+    public void add(int i, int j, int k, Block block, int meta) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+            metas = Arrays.copyOf(metas, size * 2);
+        }
+        positions[size] = packPosition(i, j, k);
+        ids[size] = Block.getIdFromBlock(block);
+        metas[size] = meta;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int getI(int n) {
+        return (int) (positions[n] >> 38);
+    }
+
+    public int getJ(int n) {
+        return (int) (positions[n] & 0xFFF);
+    }
+
+    public int getK(int n) {
+        return (int) (positions[n] << 26 >> 38);
+    }
+
+    public Block getBlock(int n) {
+        return Block.getBlockById(ids[n]);
+    }
+
+    public int getMeta(int n) {
+        return metas[n];
+    }
+
+    /**
+     * Orders the blocks by chunk, and by section within each chunk, so that placing them touches
+     * one chunk section after the other. Blocks in the same section keep the order they were added
+     * in, so later blocks still replace earlier ones at the same position.
+     * <p>
+     * Only plain air and glowstone are moved. Stairs, vines, torches, fluids and the other delayed
+     * blocks look at their neighbors when they are placed, which may be delayed blocks themselves,
+     * so they keep their place in the queue, and blocks are only reordered between two of them.
+     */
+    public void sortByChunk() {
+        if (size < 2)
+            return;
+        if (keys.length < size) {
+            keys = new long[positions.length];
+            sortedPositions = new long[positions.length];
+            sortedIds = new int[positions.length];
+            sortedMetas = new int[positions.length];
+        }
+        int airId = Block.getIdFromBlock(Blocks.air);
+        int glowstoneId = Block.getIdFromBlock(Blocks.glowstone);
+        int baseChunkX = getI(0) >> 4, baseChunkZ = getK(0) >> 4;
+        int runStart = 0;
+        for (int n = 0; n <= size; n++) {
+            if (n < size && ((ids[n] == airId && metas[n] == 0) || ids[n] == glowstoneId)) {
+                long chunkX = ((getI(n) >> 4) - baseChunkX) & CHUNK_OFFSET_MASK;
+                long chunkZ = ((getK(n) >> 4) - baseChunkZ) & CHUNK_OFFSET_MASK;
+                long section = (getJ(n) >> 4) & 0xF;
+                keys[n] = (chunkX << (INDEX_BITS + 4 + CHUNK_OFFSET_BITS))
+                        | (chunkZ << (INDEX_BITS + 4)) | (section << INDEX_BITS) | n;
+                continue;
+            }
+            // Sort the blocks since the last one that stays in place
+            Arrays.sort(keys, runStart, n);
+            for (int m = runStart; m < n; m++)
+                copySorted(m, (int) (keys[m] & ((1L << INDEX_BITS) - 1)));
+            if (n < size)
+                copySorted(n, n);
+            runStart = n + 1;
+        }
+        long[] swapPositions = positions;
+        positions = sortedPositions;
+        sortedPositions = swapPositions;
+        int[] swap = ids;
+        ids = sortedIds;
+        sortedIds = swap;
+        swap = metas;
+        metas = sortedMetas;
+        sortedMetas = swap;
+    }
+
+    private void copySorted(int to, int from) {
+        sortedPositions[to] = positions[from];
+        sortedIds[to] = ids[from];
+        sortedMetas[to] = metas[from];
+    }
+}
@@ -18,7 +18,7 @@
  */
 package generatormods.util.build;
 
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import net.minecraft.block.*;
@@ -28,52 +28,185 @@ import net.minecraft.init.Blocks;
 import net.minecraftforge.common.IPlantable;
 import net.minecraftforge.common.IShearable;
 
+/**
+ * The properties of blocks that the builders care about, packed as bits of an int.
+ * <p>
+ * The flags are kept in a table indexed by block id. It is filled by buildTable() once all mods
+ * have registered their blocks, and again when the server starts, since FML may give blocks
+ * different ids for each save. Looking up flags takes no lock and allocates nothing, so it is safe
+ * on the planning threads. Blocks that were not registered when the table was built have their
+ * flags computed on first use.
+ * <p>
+ * buildTable() also maps every registered Block to its flags, so that getFlags() takes a single
+ * lookup instead of going through the block registry twice.
+ */
 public class BlockProperties {
-    private final static Map<Block,BlockProperties> props = new HashMap<Block, BlockProperties>();
+    public final static int WATER = 0x1;
+    public final static int STAIR = 0x2;
+    public final static int DOOR = 0x4;
+    public final static int TREE = 0x8;
+    public final static int FLOWING = 0x10;
+    public final static int WALLABLE = 0x20;
+    public final static int ORE = 0x40;
+    public final static int GROUND = 0x80;
+    public final static int ARTIFICIAL = 0x100;
+    public final static int LIGHT = 0x200;
+    public final static int LOADED = 0x400;
+    public final static int DELAYED = 0x800;
+    /* Set in every entry of the table that has been computed, so that 0 means unknown. */
+    private final static int KNOWN = 0x80000000;
+    /* Block ids in 1.7.10 have 12 bits. */
+    public final static int MAX_BLOCK_ID = 4096;
+
+    /*
+     * Entries are only ever set to the flags of the block with that id, so a thread that sees an
+     * old entry at worst computes the flags again.
+     */
+    private final static int[] table = new int[MAX_BLOCK_ID];
+    /* Replaced as a whole by buildTable(), never changed once it is published */
+    private static volatile Map<Block, Integer> flagsByBlock = new IdentityHashMap<Block, Integer>();
+
     /**
      * All the studied block properties
      */
     public final boolean isWater,isStair,isDoor,isTree,isFlowing,isWallable,isOre,isGround,isArtificial,isLight,isLoaded,isDelayed;
 
     /**
-     * Build the properties for the given block and store them into the internal map
+     * Build the properties for the given block. Prefer the static accessors, which do not allocate.
      * @param block
      */
     public BlockProperties(Block block){
+        int flags = getFlags(block);
+        isWater = (flags & WATER) != 0;
+        isStair = (flags & STAIR) != 0;
+        isDoor = (flags & DOOR) != 0;
+        isTree = (flags & TREE) != 0;
+        isFlowing = (flags & FLOWING) != 0;
+        isWallable = (flags & WALLABLE) != 0;
+        isOre = (flags & ORE) != 0;
+        isGround = (flags & GROUND) != 0;
+        isArtificial = (flags & ARTIFICIAL) != 0;
+        isLight = (flags & LIGHT) != 0;
+        isLoaded = (flags & LOADED) != 0;
+        isDelayed = (flags & DELAYED) != 0;
+    }
+
+    /**
+     * Computes the flags of every registered block. Call once all blocks are registered, and again
+     * whenever the block ids may have changed.
+     */
+    public static void buildTable() {
+        for (int id = 0; id < MAX_BLOCK_ID; id++)
+            table[id] = 0;
+        Map<Block, Integer> byBlock = new IdentityHashMap<Block, Integer>();
+        for (Object o : Block.blockRegistry) {
+            Block block = (Block) o;
+            int id = Block.getIdFromBlock(block);
+            if (id >= 0 && id < MAX_BLOCK_ID) {
+                int flags = computeFlags(block);
+                table[id] = flags | KNOWN;
+                byBlock.put(block, flags);
+            }
+        }
+        flagsByBlock = byBlock;
+    }
+
+    /* The flags of the block with the given id, as stored in chunks. */
+    public static int getFlagsById(int blockId) {
+        if (blockId < 0 || blockId >= MAX_BLOCK_ID)
+            return computeFlags(Blocks.air);
+        int flags = table[blockId];
+        if (flags == 0) {
+            Block block = Block.getBlockById(blockId);
+            flags = computeFlags(block == null ? Blocks.air : block) | KNOWN;
+            table[blockId] = flags;
+        }
+        return flags & ~KNOWN;
+    }
+
+    public static int getFlags(Block block) {
+        Integer flags = flagsByBlock.get(block);
+        if (flags != null)
+            return flags;
+        int id = Block.getIdFromBlock(block);
+        if (id < 0 || id >= MAX_BLOCK_ID || Block.getBlockById(id) != block)
+            return computeFlags(block); // not registered
+        return getFlagsById(id);
+    }
+
+    public static boolean isWater(Block block) {
+        return (getFlags(block) & WATER) != 0;
+    }
+
+    public static boolean isStair(Block block) {
+        return (getFlags(block) & STAIR) != 0;
+    }
+
+    public static boolean isDoor(Block block) {
+        return (getFlags(block) & DOOR) != 0;
+    }
+
+    public static boolean isTree(Block block) {
+        return (getFlags(block) & TREE) != 0;
+    }
+
+    public static boolean isFlowing(Block block) {
+        return (getFlags(block) & FLOWING) != 0;
+    }
+
+    public static boolean isWallable(Block block) {
+        return (getFlags(block) & WALLABLE) != 0;
+    }
+
+    public static boolean isOre(Block block) {
+        return (getFlags(block) & ORE) != 0;
+    }
+
+    public static boolean isGround(Block block) {
+        return (getFlags(block) & GROUND) != 0;
+    }
+
+    public static boolean isArtificial(Block block) {
+        return (getFlags(block) & ARTIFICIAL) != 0;
+    }
+
+    public static boolean isLight(Block block) {
+        return (getFlags(block) & LIGHT) != 0;
+    }
+
+    public static boolean isLoaded(Block block) {
+        return (getFlags(block) & LOADED) != 0;
+    }
+
+    public static boolean isDelayed(Block block) {
+        return (getFlags(block) & DELAYED) != 0;
+    }
+
+    private static int computeFlags(Block block) {
         // Lava is considered to NOT be a liquid, and is therefore not
         // wallable. This is so we can build cities on the lava surface.
-        isWater = block.getMaterial() == Material.water || block == Blocks.ice;
-        isStair = block instanceof BlockStairs;
-        isDoor = block instanceof BlockDoor;
-        isTree = block instanceof BlockLog || block instanceof IShearable || block instanceof BlockSnow;
-        isFlowing = isWater ||  block.getMaterial() == Material.lava || block instanceof BlockDynamicLiquid || block instanceof BlockFalling;
-        isWallable = isWater || block instanceof BlockAir || isTree || block instanceof BlockWeb || block instanceof BlockPumpkin
+        boolean isWater = block.getMaterial() == Material.water || block == Blocks.ice;
+        boolean isStair = block instanceof BlockStairs;
+        boolean isDoor = block instanceof BlockDoor;
+        boolean isTree = block instanceof BlockLog || block instanceof IShearable || block instanceof BlockSnow;
+        boolean isFlowing = isWater ||  block.getMaterial() == Material.lava || block instanceof BlockDynamicLiquid || block instanceof BlockFalling;
+        boolean isWallable = isWater || block instanceof BlockAir || isTree || block instanceof BlockWeb || block instanceof BlockPumpkin
                 || block instanceof BlockMelon || block instanceof BlockHugeMushroom || block instanceof IPlantable;
-        isOre = block == Blocks.clay || block instanceof BlockRedstoneOre || block instanceof BlockOre;
-        isGround = block == Blocks.stone || block instanceof BlockDirt || block instanceof BlockGrass
+        boolean isOre = block == Blocks.clay || block instanceof BlockRedstoneOre || block instanceof BlockOre;
+        boolean isGround = block == Blocks.stone || block instanceof BlockDirt || block instanceof BlockGrass
                 || block instanceof BlockGravel || block instanceof BlockSand || block instanceof BlockNetherrack || block instanceof BlockSoulSand || block instanceof BlockMycelium;
         // Define by what it is not. Not IS_WALLABLE and not a naturally
         // occurring solid block (obsidian/bedrock are exceptions)
-        isArtificial = !(isWallable || isOre || isGround);
-        isLight = block instanceof BlockTorch || block instanceof BlockGlowstone;
-        isDelayed = isStair || isFlowing || isLight || block == Blocks.air || block instanceof BlockLever || block instanceof BlockSign
+        boolean isArtificial = !(isWallable || isOre || isGround);
+        boolean isLight = block instanceof BlockTorch || block instanceof BlockGlowstone;
+        boolean isDelayed = isStair || isFlowing || isLight || block == Blocks.air || block instanceof BlockLever || block instanceof BlockSign
                 || block instanceof BlockFire || block instanceof BlockButton || block instanceof BlockVine || block instanceof BlockRedstoneWire || block instanceof BlockDispenser
                 || block instanceof BlockFurnace;
         // Define by what it is not.
-        isLoaded = !(isWallable || isFlowing || block instanceof BlockTorch || block instanceof BlockLadder);
-        props.put(block, this);
-    }
-
-    /**
-     * Retrieve the properties for the given block
-     * @param block
-     * @return
-     */
-    public static BlockProperties get(Block block){
-        BlockProperties p = props.get(block);
-        if(p!=null){
-            return p;
-        }
-        return new BlockProperties(block);
+        boolean isLoaded = !(isWallable || isFlowing || block instanceof BlockTorch || block instanceof BlockLadder);
+        return (isWater ? WATER : 0) | (isStair ? STAIR : 0) | (isDoor ? DOOR : 0)
+                | (isTree ? TREE : 0) | (isFlowing ? FLOWING : 0) | (isWallable ? WALLABLE : 0)
+                | (isOre ? ORE : 0) | (isGround ? GROUND : 0) | (isArtificial ? ARTIFICIAL : 0)
+                | (isLight ? LIGHT : 0) | (isLoaded ? LOADED : 0) | (isDelayed ? DELAYED : 0);
     }
 }
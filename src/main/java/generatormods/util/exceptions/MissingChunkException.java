@@ -0,0 +1,35 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.util.exceptions;
+
+/**
+ * Thrown when something reads a point of a TerrainSnapshot that lies in a chunk that was not
+ * copied into the snapshot.
+ */
+public class MissingChunkException extends RuntimeException {
+    public static final long serialVersionUID = 1;
+
+    public final int chunkX, chunkZ;
+
+    public MissingChunkException(int chunkX, int chunkZ) {
+        super("Chunk (" + chunkX + "," + chunkZ + ") is not part of the terrain snapshot");
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+    }
+}
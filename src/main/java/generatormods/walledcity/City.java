@@ -0,0 +1,97 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.walledcity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.minecraft.village.Village;
+import net.minecraft.village.VillageDoorInfo;
+import net.minecraft.world.World;
+
+/**
+ * A city that is being built. The builder gets it from CityDataManager.addCity() once it has
+ * settled on a site, and the Buildings of the city add their doors to it. Once the city is built,
+ * createVillages() turns the doors into villages in one go.
+ * <p>
+ * A city that fails while being built is simply dropped along with its doors.
+ */
+public class City {
+    /* The doors are split into villages by columns of 1 << VILLAGE_SHIFT blocks */
+    private final static int VILLAGE_SHIFT = 6;
+    /* x, y, z, inside x and inside z of a door */
+    private final static int DOOR_SIZE = 5;
+
+    public final int cityType;
+    public final int centerI, centerK;
+    private int[] doors = new int[DOOR_SIZE * 32];
+    private int doorCount = 0;
+
+    public City(int cityType, int centerI, int centerK) {
+        this.cityType = cityType;
+        this.centerI = centerI;
+        this.centerK = centerK;
+    }
+
+    /* Adds a door, with the direction that its inside is in, see VillageDoorInfo */
+    public void addDoor(int i, int j, int k, int insideI, int insideK) {
+        if (doors.length < (doorCount + 1) * DOOR_SIZE)
+            doors = Arrays.copyOf(doors, doors.length * 2);
+        int n = doorCount * DOOR_SIZE;
+        doors[n] = i;
+        doors[n + 1] = j;
+        doors[n + 2] = k;
+        doors[n + 3] = insideI;
+        doors[n + 4] = insideK;
+        doorCount++;
+    }
+
+    public int getDoorCount() {
+        return doorCount;
+    }
+
+    /**
+     * Adds a Village to the world for every 64 by 64 column of the city that has doors.
+     * Keeping the villages small keeps them close to vanilla ones for the villagers, and a Village
+     * rescans all of its doors every time one is added.
+     *
+     * @return The number of villages added.
+     */
+    @SuppressWarnings("unchecked")
+    public int createVillages(World world) {
+        if (doorCount == 0 || world.provider.dimensionId == 1 || world.villageCollectionObj == null)
+            return 0;
+        Map<Long, Village> villages = new HashMap<Long, Village>();
+        for (int n = 0; n < doorCount * DOOR_SIZE; n += DOOR_SIZE) {
+            long key = ((long) (doors[n] >> VILLAGE_SHIFT) << 32)
+                    | ((doors[n + 2] >> VILLAGE_SHIFT) & 0xFFFFFFFFL);
+            Village village = villages.get(key);
+            if (village == null) {
+                village = new Village(world);
+                villages.put(key, village);
+            }
+            village.addVillageDoorInfo(new VillageDoorInfo(doors[n], doors[n + 1], doors[n + 2],
+                    doors[n + 3], doors[n + 4], 0));
+        }
+        world.villageCollectionObj.getVillageList().addAll(villages.values());
+        doorCount = 0;
+        return villages.size();
+    }
+}
@@ -0,0 +1,90 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.walledcity;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The locations of one type of city in one world, hashed into square cells as wide as the minimum
+ * separation between those cities. Any city that is closer than the separation to a point lies in
+ * the cell of the point or one of its 8 neighbours, so a separation check only looks at those.
+ * <p>
+ * Cities are added on the server thread, but may be queried while planning off thread.
+ */
+public class CityLocationGrid {
+    private final int separation;
+    private final int cellSize;
+    private final Map<Long, List<int[]>> cells = new ConcurrentHashMap<Long, List<int[]>>();
+    private volatile int size = 0;
+
+    /* separation is the Manhattan distance that cities have to be apart */
+    public CityLocationGrid(int separation) {
+        this.separation = separation;
+        this.cellSize = Math.max(1, separation);
+    }
+
+    public int getSeparation() {
+        return separation;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public synchronized void add(int i, int k) {
+        long key = cellKey(cell(i), cell(k));
+        List<int[]> cell = cells.get(key);
+        if (cell == null) {
+            cell = new CopyOnWriteArrayList<int[]>();
+            cells.put(key, cell);
+        }
+        cell.add(new int[] {i, k});
+        size++;
+    }
+
+    /* Whether no city is closer than the separation, by Manhattan distance, to the point */
+    public boolean isSeparated(int i, int k) {
+        if (separation <= 0 || size == 0)
+            return true;
+        int cellI = cell(i), cellK = cell(k);
+        for (int di = -1; di <= 1; di++) {
+            for (int dk = -1; dk <= 1; dk++) {
+                List<int[]> cell = cells.get(cellKey(cellI + di, cellK + dk));
+                if (cell == null)
+                    continue;
+                for (int[] location : cell)
+                    if (Math.abs(location[0] - i) + Math.abs(location[1] - k) < separation)
+                        return false;
+            }
+        }
+        return true;
+    }
+
+    /* Rounds down, unlike division */
+    private int cell(int coord) {
+        return coord >= 0 ? coord / cellSize : -((-(coord + 1)) / cellSize) - 1;
+    }
+
+    private static long cellKey(int cellI, int cellK) {
+        return ((long) cellI << 32) | (cellK & 0xFFFFFFFFL);
+    }
+}
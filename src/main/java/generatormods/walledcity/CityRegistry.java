@@ -0,0 +1,329 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.walledcity;
+
+import generatormods.world.WorldContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldSavedData;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The locations of all cities of one type in one dimension, stored with the world save (in the
+ * dimension's data folder) as one int array of (x, z, city type) triples. Each CityShard has one.
+ * <p>
+ * Since the data is only written when the world is saved, every city is also appended to a log
+ * next to it as soon as it is added. Once the world has been saved, the log is moved over to a
+ * second log (with the extension .old), since the save itself may still have been cut off. That
+ * one is deleted when a later load finds the saved data intact. Both logs are replayed when the
+ * registry is loaded, so a crash before or during a save does not lose any cities.
+ * <p>
+ * Cities used to be kept in a WalledCities.txt per dimension, whose cities of the registry's type
+ * are imported the first time the registry is loaded.
+ */
+public class CityRegistry extends WorldSavedData {
+    public final static String DATA_NAME = "GeneratorModsCities";
+    /* The file that cities used to be kept in, prefixed with the dimension name */
+    public final static String TEXT_FILE = "WalledCities.txt";
+    /* x, z and city type */
+    private final static int LOG_ENTRY_SIZE = 12;
+
+    private int[] locations = new int[48];
+    private int size = 0;
+    private boolean importedText = false;
+    /* Set when the registry was read from its saved data, which means that the last save finished */
+    private boolean readFromSave = false;
+    private File logFile, savedLogFile;
+    private DataOutputStream log;
+    private Logger logger;
+
+    public CityRegistry(String name) {
+        super(name);
+    }
+
+    /**
+     * Returns the CityRegistry for the type of city in the world's dimension, creating it if there
+     * is none yet. Cities left in the log, or in an old WalledCities.txt, are added to it.
+     */
+    public static CityRegistry forWorld(WorldContext context, int cityType, Logger logger) {
+        World world = context.getWorld();
+        String name = DATA_NAME + cityType;
+        CityRegistry registry =
+                (CityRegistry) world.perWorldStorage.loadData(CityRegistry.class, name);
+        if (registry == null) {
+            registry = new CityRegistry(name);
+            world.perWorldStorage.setData(name, registry);
+        }
+        registry.logger = logger;
+        File saveDir = context.getSaveDir();
+        if (saveDir != null) {
+            registry.openLog(new File(new File(saveDir, "data"), name + ".log"));
+            if (!registry.importedText)
+                registry.importText(new File(saveDir, world.provider.getDimensionName()
+                        + TEXT_FILE), cityType);
+        }
+        return registry;
+    }
+
+    /* The number of cities */
+    public synchronized int size() {
+        return size;
+    }
+
+    /* Returns the (x, z, city type) of the nth city, in the order they were added. */
+    public synchronized int[] get(int n) {
+        return new int[] {locations[3 * n], locations[3 * n + 1], locations[3 * n + 2]};
+    }
+
+    /* Adds a city, and logs it right away. */
+    public synchronized void add(int x, int z, int cityType) {
+        append(x, z, cityType);
+        if (log != null) {
+            try {
+                log.writeInt(x);
+                log.writeInt(z);
+                log.writeInt(cityType);
+                log.flush();
+            } catch (IOException e) {
+                warn("Could not log new city to " + logFile, e);
+            }
+        }
+        markDirty();
+    }
+
+    /**
+     * Starts logging to the given file. Cities that are in it, or in the log of earlier saves next
+     * to it, but not in the registry yet are added first; they were added after the last save that
+     * finished.
+     */
+    public synchronized void openLog(File file) {
+        closeLog();
+        logFile = file;
+        savedLogFile = new File(file.getPath() + ".old");
+        Set<String> known = new HashSet<String>();
+        for (int n = 0; n < size; n++)
+            known.add(key(locations[3 * n], locations[3 * n + 1], locations[3 * n + 2]));
+        int recovered = replay(savedLogFile, known);
+        // The saved data was intact, and had everything that was moved to the old log
+        if (readFromSave && recovered == 0)
+            savedLogFile.delete();
+        readFromSave = false;
+        recovered += replay(file, known);
+        if (recovered > 0)
+            markDirty();
+        // Whole cities only, the last one may have been cut off by a crash
+        long logLength = file.length() / LOG_ENTRY_SIZE * LOG_ENTRY_SIZE;
+        RandomAccessFile raf = null;
+        try {
+            file.getParentFile().mkdirs();
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(logLength);
+            raf.close();
+            raf = null;
+            log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        } catch (IOException e) {
+            warn("Could not open city log " + file, e);
+            log = null;
+        } finally {
+            try {
+                if (raf != null)
+                    raf.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Moves the log over to the old log and starts a new one, once the world has been saved with
+     * everything in it. The old log is kept until the save is known to be intact.
+     */
+    public synchronized void onSaved() {
+        if (isDirty() || log == null || logFile.length() == 0)
+            return;
+        closeLog();
+        DataInputStream in = null;
+        RandomAccessFile out = null;
+        try {
+            byte[] entries = new byte[(int) (logFile.length() / LOG_ENTRY_SIZE * LOG_ENTRY_SIZE)];
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+            in.readFully(entries);
+            // Whole cities only, as the old log may end in a city cut off by a crash
+            out = new RandomAccessFile(savedLogFile, "rw");
+            long end = out.length() / LOG_ENTRY_SIZE * LOG_ENTRY_SIZE;
+            out.setLength(end);
+            out.seek(end);
+            out.write(entries);
+            out.getFD().sync();
+        } catch (IOException e) {
+            warn("Could not move city log " + logFile + " to " + savedLogFile, e);
+            // Keep everything in the current log instead
+            openLog(logFile);
+            return;
+        } finally {
+            try {
+                if (in != null)
+                    in.close();
+                if (out != null)
+                    out.close();
+            } catch (IOException e) {
+            }
+        }
+        try {
+            log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile)));
+        } catch (IOException e) {
+            warn("Could not empty city log " + logFile, e);
+            log = null;
+        }
+    }
+
+    public synchronized void closeLog() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+            }
+            log = null;
+        }
+    }
+
+    /**
+     * Adds the cities of the given type in a WalledCities.txt, as written by earlier versions, if
+     * it exists. This is only done once per registry. The cities are not logged; if the world is not
+     * saved afterwards, they are imported again.
+     */
+    public synchronized void importText(File file, int cityType) {
+        if (importedText)
+            return;
+        importedText = true;
+        markDirty();
+        if (!file.exists())
+            return;
+        int imported = 0;
+        BufferedReader br = null;
+        try {
+            br = new BufferedReader(new FileReader(file));
+            for (String read = br.readLine(); read != null; read = br.readLine()) {
+                String[] split = read.split(",");
+                if (split.length == 3) {
+                    try {
+                        if (Integer.parseInt(split[2].trim()) == cityType) {
+                            append(Integer.parseInt(split[0].trim()),
+                                    Integer.parseInt(split[1].trim()), cityType);
+                            imported++;
+                        }
+                    } catch (NumberFormatException e) {
+                    }
+                }
+            }
+        } catch (IOException e) {
+            warn("Could not import cities from " + file, e);
+        } finally {
+            try {
+                if (br != null)
+                    br.close();
+            } catch (IOException e) {
+            }
+        }
+        if (logger != null)
+            logger.info("Imported {} cities from {}", imported, file);
+    }
+
+    @Override
+    public synchronized void readFromNBT(NBTTagCompound tag) {
+        int[] saved = tag.getIntArray("Locations");
+        size = saved.length / 3;
+        locations = Arrays.copyOf(saved, Math.max(48, size * 3));
+        importedText = tag.getBoolean("ImportedText");
+        readFromSave = true;
+    }
+
+    @Override
+    public synchronized void writeToNBT(NBTTagCompound tag) {
+        tag.setIntArray("Locations", Arrays.copyOf(locations, size * 3));
+        tag.setBoolean("ImportedText", importedText);
+    }
+
+    private void append(int x, int z, int cityType) {
+        if (3 * size == locations.length)
+            locations = Arrays.copyOf(locations, locations.length * 2);
+        locations[3 * size] = x;
+        locations[3 * size + 1] = z;
+        locations[3 * size + 2] = cityType;
+        size++;
+    }
+
+    /*
+     * Adds the cities in the log file that are not known yet, and returns how many there were.
+     * Only whole cities are read; the last one may have been cut off by a crash.
+     */
+    private int replay(File file, Set<String> known) {
+        long logLength = file.length() / LOG_ENTRY_SIZE * LOG_ENTRY_SIZE;
+        if (logLength == 0)
+            return 0;
+        int replayed = 0;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            for (long read = 0; read < logLength; read += LOG_ENTRY_SIZE) {
+                int x = in.readInt(), z = in.readInt(), cityType = in.readInt();
+                if (known.add(key(x, z, cityType))) {
+                    append(x, z, cityType);
+                    replayed++;
+                }
+            }
+        } catch (IOException e) {
+            warn("Could not read city log " + file, e);
+        } finally {
+            try {
+                if (in != null)
+                    in.close();
+            } catch (IOException e) {
+            }
+        }
+        if (replayed > 0 && logger != null)
+            logger.info("Recovered {} cities from {}", replayed, file);
+        return replayed;
+    }
+
+    private static String key(int x, int z, int cityType) {
+        return x + "," + z + "," + cityType;
+    }
+
+    private void warn(String message, IOException e) {
+        if (logger != null)
+            logger.warn(message, e);
+    }
+}
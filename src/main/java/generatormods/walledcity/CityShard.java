@@ -0,0 +1,74 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.walledcity;
+
+import generatormods.world.IWorldResource;
+import generatormods.world.WorldContext;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The cities of one type in one dimension: a CityLocationGrid for separation checks, and the
+ * CityRegistry that they are saved in. Shards do not share any state, so checks and additions in
+ * different dimensions or for different types of city never wait on each other. Each shard is kept
+ * in the WorldContext of its dimension.
+ * <p>
+ * Shards are created and added to on the server thread, but may be queried from any thread.
+ */
+public class CityShard implements IWorldResource {
+    public final int dimension;
+    public final int cityType;
+    private final CityLocationGrid grid;
+    private final CityRegistry registry;
+
+    /* Loads the cities of the shard from the world's save. */
+    public CityShard(WorldContext context, int cityType, int separation, Logger logger) {
+        this.dimension = context.dimension;
+        this.cityType = cityType;
+        this.grid = new CityLocationGrid(separation);
+        this.registry = CityRegistry.forWorld(context, cityType, logger);
+        for (int n = 0; n < registry.size(); n++) {
+            int[] location = registry.get(n);
+            grid.add(location[0], location[1]);
+        }
+    }
+
+    public boolean isSeparated(int i, int k) {
+        return grid.isSeparated(i, k);
+    }
+
+    public synchronized void add(int x, int z) {
+        grid.add(x, z);
+        registry.add(x, z, cityType);
+    }
+
+    public int size() {
+        return grid.size();
+    }
+
+    @Override
+    public void onWorldSaved() {
+        registry.onSaved();
+    }
+
+    @Override
+    public void release() {
+        registry.closeLog();
+    }
+}
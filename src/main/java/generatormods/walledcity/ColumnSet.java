@@ -0,0 +1,129 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.walledcity;
+
+import java.util.Random;
+
+/**
+ * A set of the columns of a width by length box from (minI, minK), one bit per column, with the
+ * lookups and the uniform pick that EnclosureMask and FreeCellSampler share.
+ * <p>
+ * Columns are indexed by (i - minI) * length + (k - minK).
+ */
+public class ColumnSet {
+    public final int minI, minK, width, length;
+    private final long[] bits;
+    private int size;
+
+    protected ColumnSet(int minI, int minK, int width, int length) {
+        this.minI = minI;
+        this.minK = minK;
+        this.width = Math.max(width, 0);
+        this.length = Math.max(length, 0);
+        bits = new long[(this.width * this.length + 63) >> 6];
+    }
+
+    /* The number of columns in the set */
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int i, int k) {
+        int index = indexOf(i, k);
+        return index >= 0 && (bits[index >> 6] & (1L << index)) != 0;
+    }
+
+    /* The index of the column, or -1 if it is outside of the box */
+    public int indexOf(int i, int k) {
+        int a = i - minI, b = k - minK;
+        if (a < 0 || b < 0 || a >= width || b >= length)
+            return -1;
+        return a * length + b;
+    }
+
+    public int getI(int index) {
+        return minI + index / length;
+    }
+
+    public int getK(int index) {
+        return minK + index % length;
+    }
+
+    /**
+     * Returns the first index of a column in the set, starting at the given index, or -1 if there
+     * is none. Iterate with next(0), next(index + 1), ..., and get the columns with getI() and
+     * getK().
+     */
+    public int next(int index) {
+        if (index >= width * length)
+            return -1;
+        int n = index >> 6;
+        long word = bits[n] & (-1L << index);
+        while (word == 0) {
+            if (++n == bits.length)
+                return -1;
+            word = bits[n];
+        }
+        return (n << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /* Returns the index of a random column in the set, or -1 if there is none. */
+    public int pick(Random random) {
+        if (size == 0)
+            return -1;
+        int skip = random.nextInt(size);
+        for (int n = 0; n < bits.length; n++) {
+            int count = Long.bitCount(bits[n]);
+            if (skip < count) {
+                long word = bits[n];
+                for (; skip > 0; skip--)
+                    word &= word - 1;
+                return (n << 6) + Long.numberOfTrailingZeros(word);
+            }
+            skip -= count;
+        }
+        return -1;
+    }
+
+    /* Adds every column of the box */
+    protected void addAll() {
+        int cells = width * length;
+        for (int n = 0; n < bits.length; n++)
+            bits[n] = -1L;
+        if ((cells & 63) != 0)
+            bits[bits.length - 1] = (1L << (cells & 63)) - 1;
+        size = cells;
+    }
+
+    protected void addIndex(int index) {
+        long bit = 1L << index;
+        if ((bits[index >> 6] & bit) == 0) {
+            bits[index >> 6] |= bit;
+            size++;
+        }
+    }
+
+    protected void removeIndex(int index) {
+        long bit = 1L << index;
+        if ((bits[index >> 6] & bit) != 0) {
+            bits[index >> 6] &= ~bit;
+            size--;
+        }
+    }
+}
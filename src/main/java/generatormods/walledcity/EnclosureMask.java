@@ -0,0 +1,94 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.walledcity;
+
+import generatormods.buildings.BuildingWall;
+
+/**
+ * The columns of a box that are inside all of the walls of a city, one bit per column. A column is
+ * inside if it is not to the x hand of any wall, see BuildingWall.ptIsToXHand().
+ * <p>
+ * The mask is rasterised a row at a time: along a row that crosses a wall, the columns outside it
+ * are one run, so each wall clears a run per row instead of being asked about every column.
+ */
+public class EnclosureMask extends ColumnSet {
+    /**
+     * Rasterises the interior of the walls over the width by length box from (minI, minK).
+     *
+     * @param buffer How far inside of the walls columns have to be, as for ptIsToXHand().
+     */
+    public EnclosureMask(BuildingWall[] walls, int buffer, int minI, int minK, int width,
+            int length) {
+        super(minI, minK, width, length);
+        addAll();
+        for (BuildingWall wall : walls)
+            clearOutside(wall, buffer);
+    }
+
+    private void clearOutside(BuildingWall wall, int buffer) {
+        wall.setCursor(0);
+        // Local x and z are linear in i and k, with one of them along the rows
+        int x0 = wall.getX(new int[] {minI, 0, minK}), z0 = wall.getZ(new int[] {minI, 0, minK});
+        int xI = wall.getX(new int[] {minI + 1, 0, minK}) - x0;
+        int xK = wall.getX(new int[] {minI, 0, minK + 1}) - x0;
+        int zI = wall.getZ(new int[] {minI + 1, 0, minK}) - z0;
+        int zK = wall.getZ(new int[] {minI, 0, minK + 1}) - z0;
+        if (zI != 0) {
+            // Rows of constant i, along k
+            for (int a = 0; a < width; a++) {
+                int limit = wall.getXHandLimit(z0 + zI * a, buffer) - (x0 + xI * a);
+                clearRun(a * length, 1, length, limit, xK);
+            }
+        } else {
+            // Rows of constant k, along i
+            for (int b = 0; b < length; b++) {
+                int limit = wall.getXHandLimit(z0 + zK * b, buffer) - (x0 + xK * b);
+                clearRun(b, length, width, limit, xI);
+            }
+        }
+    }
+
+    /*
+     * Clears the columns of a row whose x, which is step * c for the cth column, is at least the
+     * limit.
+     */
+    private void clearRun(int start, int stride, int count, int limit, int step) {
+        int from, to;
+        if (step > 0) {
+            // step * c >= limit
+            from = Math.max(0, ceilDiv(limit, step));
+            to = count;
+        } else {
+            // -step * c <= -limit
+            from = 0;
+            to = Math.min(count, floorDiv(-limit, -step) + 1);
+        }
+        for (int c = from; c < to; c++)
+            removeIndex(start + c * stride);
+    }
+
+    private static int floorDiv(int a, int b) {
+        int q = a / b;
+        return (a % b != 0 && (a < 0) != (b < 0)) ? q - 1 : q;
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return -floorDiv(-a, b);
+    }
+}
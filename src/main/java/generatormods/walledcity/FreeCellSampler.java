@@ -0,0 +1,55 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.walledcity;
+
+/**
+ * The columns of an EnclosureMask that nothing has claimed yet, for picking street seeds. Columns
+ * are removed as the layout claims them, so that a pick never lands on an avenue, tower or street.
+ */
+public class FreeCellSampler extends ColumnSet {
+    /**
+     * Starts with the columns that are inside and still EMPTY in the layout.
+     *
+     * @param layoutI The i of the layout's x = 0.
+     * @param layoutK The k of the layout's z = 0.
+     */
+    public FreeCellSampler(EnclosureMask interior, LayoutGrid layout, int layoutI, int layoutK) {
+        super(interior.minI, interior.minK, interior.width, interior.length);
+        for (int n = interior.next(0); n >= 0; n = interior.next(n + 1)) {
+            if (layout.get(interior.getI(n) - layoutI, interior.getK(n) - layoutK)
+                    == LayoutCode.EMPTY)
+                addIndex(n);
+        }
+    }
+
+    public void remove(int i, int k) {
+        remove(i, k, i, k);
+    }
+
+    /* Removes the columns of the rectangle between the corners, inclusive */
+    public void remove(int i1, int k1, int i2, int k2) {
+        int minA = Math.max(Math.min(i1, i2) - minI, 0);
+        int maxA = Math.min(Math.max(i1, i2) - minI, width - 1);
+        int minB = Math.max(Math.min(k1, k2) - minK, 0);
+        int maxB = Math.min(Math.max(k1, k2) - minK, length - 1);
+        for (int a = minA; a <= maxA; a++)
+            for (int b = minB; b <= maxB; b++)
+                removeIndex(a * length + b);
+    }
+}
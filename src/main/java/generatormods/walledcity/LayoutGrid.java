@@ -0,0 +1,177 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.walledcity;
+
+import java.util.Arrays;
+
+/**
+ * The LayoutCodes of a city, one per column in a width by length grid of local (x, z)
+ * coordinates, packed 16 to a long.
+ * <p>
+ * For every attempted code, a bitset marks the cells that the code cannot override, so whether a
+ * rectangle is clear takes one AND per 8 by 8 tile that it covers. Attempted codes that are blocked
+ * by the same present codes share a bitset. EMPTY is blocked by every cell, so it needs none. The
+ * grid takes 7 bits per cell.
+ * <p>
+ * Cells outside of the grid are always clear, and writes to them are ignored.
+ */
+public class LayoutGrid {
+    private final static LayoutCode[] CODES = LayoutCode.values();
+    /* Blocked by every present code, including EMPTY */
+    private final static int ALL_BLOCKERS = (1 << CODES.length) - 1;
+    /* For every attempted code, the index of the bitset of cells it cannot override, or -1 */
+    private final static int[] SET_FOR_CODE = new int[CODES.length];
+    /* For every bitset, a bit for each present code (by ordinal) that it marks */
+    private final static int[] SET_BLOCKERS;
+    /* The bits of the first row of a tile */
+    private final static long TILE_ROW = 0xFFL;
+    /* The lowest bit of every row of a tile */
+    private final static long TILE_COLUMN = 0x0101010101010101L;
+
+    static {
+        int[] blockers = new int[CODES.length];
+        int sets = 0;
+        for (LayoutCode code : CODES) {
+            int mask = 0;
+            for (LayoutCode present : CODES)
+                if (!code.canOverride(present))
+                    mask |= 1 << present.ordinal();
+            if (mask == ALL_BLOCKERS) {
+                SET_FOR_CODE[code.ordinal()] = -1;
+                continue;
+            }
+            int set = 0;
+            while (set < sets && blockers[set] != mask)
+                set++;
+            if (set == sets)
+                blockers[sets++] = mask;
+            SET_FOR_CODE[code.ordinal()] = set;
+        }
+        SET_BLOCKERS = Arrays.copyOf(blockers, sets);
+    }
+
+    public final int width, length;
+    /* 4 bits per cell, by x * length + z */
+    private final long[] cells;
+    /* The number of 8 by 8 tiles along z */
+    private final int tilesZ;
+    /*
+     * One long per tile, by (x >> 3) * tilesZ + (z >> 3), with bit ((x & 7) << 3) | (z & 7) set for
+     * the blocked cells
+     */
+    private final long[][] blocked;
+
+    /* Creates a grid of EMPTY cells, which relies on EMPTY being the first code */
+    public LayoutGrid(int width, int length) {
+        this.width = Math.max(width, 0);
+        this.length = Math.max(length, 0);
+        cells = new long[(this.width * this.length + 15) >> 4];
+        tilesZ = (this.length + 7) >> 3;
+        int emptyBit = 1 << LayoutCode.EMPTY.ordinal();
+        blocked = new long[SET_BLOCKERS.length][((this.width + 7) >> 3) * tilesZ];
+        for (int s = 0; s < blocked.length; s++) {
+            if ((SET_BLOCKERS[s] & emptyBit) != 0)
+                fill(blocked[s], 0, 0, this.width - 1, this.length - 1, true);
+        }
+    }
+
+    public LayoutCode get(int x, int z) {
+        if (!contains(x, z))
+            return LayoutCode.EMPTY;
+        int index = x * length + z;
+        return CODES[(int) (cells[index >> 4] >>> ((index & 15) << 2)) & 0xF];
+    }
+
+    public void set(int x, int z, LayoutCode code) {
+        if (contains(x, z))
+            set(x, z, x, z, code);
+    }
+
+    /* Sets the cells of the rectangle between the corners, inclusive */
+    public void set(int x1, int z1, int x2, int z2, LayoutCode code) {
+        int minX = Math.max(Math.min(x1, x2), 0), maxX = Math.min(Math.max(x1, x2), width - 1);
+        int minZ = Math.max(Math.min(z1, z2), 0), maxZ = Math.min(Math.max(z1, z2), length - 1);
+        if (minX > maxX || minZ > maxZ)
+            return;
+        for (int x = minX; x <= maxX; x++) {
+            for (int index = x * length + minZ; index <= x * length + maxZ; index++) {
+                int shift = (index & 15) << 2;
+                cells[index >> 4] =
+                        (cells[index >> 4] & ~(0xFL << shift)) | ((long) code.ordinal() << shift);
+            }
+        }
+        for (int s = 0; s < blocked.length; s++) {
+            boolean isBlocker = ((SET_BLOCKERS[s] >> code.ordinal()) & 1) != 0;
+            fill(blocked[s], minX, minZ, maxX, maxZ, isBlocker);
+        }
+    }
+
+    /* Whether the code can override the cell */
+    public boolean isClear(int x, int z, LayoutCode code) {
+        return !contains(x, z) || code.canOverride(get(x, z));
+    }
+
+    /* Whether the code can override every cell of the rectangle between the corners, inclusive */
+    public boolean isClear(int x1, int z1, int x2, int z2, LayoutCode code) {
+        int minX = Math.max(Math.min(x1, x2), 0), maxX = Math.min(Math.max(x1, x2), width - 1);
+        int minZ = Math.max(Math.min(z1, z2), 0), maxZ = Math.min(Math.max(z1, z2), length - 1);
+        if (minX > maxX || minZ > maxZ)
+            return true;
+        int set = SET_FOR_CODE[code.ordinal()];
+        if (set < 0)
+            return false;
+        long[] tiles = blocked[set];
+        for (int tileX = minX >> 3; tileX <= maxX >> 3; tileX++) {
+            long rows = rowMask(tileX, minX, maxX);
+            for (int tileZ = minZ >> 3; tileZ <= maxZ >> 3; tileZ++) {
+                if ((tiles[tileX * tilesZ + tileZ] & rows & columnMask(tileZ, minZ, maxZ)) != 0)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean contains(int x, int z) {
+        return x >= 0 && z >= 0 && x < width && z < length;
+    }
+
+    /* Sets or clears the bits of the rectangle, which must lie in the grid */
+    private void fill(long[] tiles, int minX, int minZ, int maxX, int maxZ, boolean value) {
+        for (int tileX = minX >> 3; tileX <= maxX >> 3; tileX++) {
+            long rows = rowMask(tileX, minX, maxX);
+            for (int tileZ = minZ >> 3; tileZ <= maxZ >> 3; tileZ++) {
+                long mask = rows & columnMask(tileZ, minZ, maxZ);
+                int index = tileX * tilesZ + tileZ;
+                tiles[index] = value ? tiles[index] | mask : tiles[index] & ~mask;
+            }
+        }
+    }
+
+    /* The bits of the rows of the tile that lie between minX and maxX */
+    private static long rowMask(int tileX, int minX, int maxX) {
+        int from = Math.max(minX - (tileX << 3), 0), to = Math.min(maxX - (tileX << 3), 7);
+        return (-1L << (from << 3)) & (-1L >>> ((7 - to) << 3));
+    }
+
+    /* The bits of the columns of the tile that lie between minZ and maxZ */
+    private static long columnMask(int tileZ, int minZ, int maxZ) {
+        int from = Math.max(minZ - (tileZ << 3), 0), to = Math.min(maxZ - (tileZ << 3), 7);
+        return ((TILE_ROW << from) & (TILE_ROW >>> (7 - to))) * TILE_COLUMN;
+    }
+}
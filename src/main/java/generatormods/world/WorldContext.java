@@ -0,0 +1,146 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.world;
+
+import generatormods.catalog.StructureCatalog;
+import generatormods.planning.BlueprintStore;
+import generatormods.util.WorldUtil;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.minecraft.world.World;
+
+/**
+ * What the mod keeps about one loaded world (dimension): its save folder, StructureCatalog and
+ * BlueprintStore, which modules have started generating in it, and the IWorldResources of the
+ * modules. The contexts are kept by dimension ID, created when the world is loaded and released
+ * when it is unloaded (see WorldContextHandler), so nothing keeps an unloaded World around.
+ * <p>
+ * Contexts are created on the server thread. getIfLoaded() may be called from any thread.
+ */
+public class WorldContext {
+    private final static Map<Integer, WorldContext> contexts =
+            new ConcurrentHashMap<Integer, WorldContext>();
+
+    public final int dimension;
+    private volatile World world;
+    private final File saveDir;
+    private StructureCatalog catalog;
+    private BlueprintStore blueprints;
+    private final Set<String> surveyedBy =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Map<String, IWorldResource> resources =
+            new ConcurrentHashMap<String, IWorldResource>();
+
+    private WorldContext(World world) {
+        this.dimension = world.provider.dimensionId;
+        this.world = world;
+        this.saveDir = WorldUtil.getWorldSaveDir(world);
+    }
+
+    /* Returns the context of the world, creating it if there is none yet. Server thread only. */
+    public static WorldContext forWorld(World world) {
+        WorldContext context = contexts.get(world.provider.dimensionId);
+        if (context != null && context.world == world)
+            return context;
+        // A world of the same dimension that was not unloaded properly
+        if (context != null)
+            context.release();
+        context = new WorldContext(world);
+        contexts.put(context.dimension, context);
+        return context;
+    }
+
+    /* Returns the context of the world, or null if there is none. */
+    public static WorldContext getIfLoaded(World world) {
+        WorldContext context = contexts.get(world.provider.dimensionId);
+        return context != null && context.world == world ? context : null;
+    }
+
+    /* Releases the context of the world, if it has one. */
+    public static void release(World world) {
+        WorldContext context = getIfLoaded(world);
+        if (context != null) {
+            contexts.remove(context.dimension);
+            context.release();
+        }
+    }
+
+    /* The number of loaded contexts */
+    public static int size() {
+        return contexts.size();
+    }
+
+    /* The world, or null once the context was released */
+    public World getWorld() {
+        return world;
+    }
+
+    /* The folder the world's chunks are saved in, or null if it is not saved. */
+    public File getSaveDir() {
+        return saveDir;
+    }
+
+    public synchronized StructureCatalog getStructureCatalog() {
+        if (catalog == null)
+            catalog = StructureCatalog.forWorld(world);
+        return catalog;
+    }
+
+    public synchronized BlueprintStore getBlueprintStore() {
+        if (blueprints == null)
+            blueprints = BlueprintStore.forWorld(world);
+        return blueprints;
+    }
+
+    /* Returns true the first time that the module starts to generate in the world. */
+    public boolean startSurvey(String module) {
+        return surveyedBy.add(module);
+    }
+
+    public IWorldResource getResource(String key) {
+        return resources.get(key);
+    }
+
+    /* Keeps the resource until the world is unloaded, releasing the one it replaces. */
+    public void putResource(String key, IWorldResource resource) {
+        IWorldResource old = resources.put(key, resource);
+        if (old != null && old != resource)
+            old.release();
+    }
+
+    void onSaved() {
+        for (IWorldResource resource : resources.values())
+            resource.onWorldSaved();
+    }
+
+    private void release() {
+        for (IWorldResource resource : resources.values())
+            resource.release();
+        resources.clear();
+        surveyedBy.clear();
+        catalog = null;
+        blueprints = null;
+        world = null;
+    }
+}
@@ -16,37 +16,36 @@
  * You should have received a copy of the GNU Lesser General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-package generatormods.util.blocks;
+package generatormods.world;
 
-import net.minecraft.block.Block;
+import cpw.mods.fml.common.eventhandler.SubscribeEvent;
 
-import org.apache.commons.lang3.builder.HashCodeBuilder;
+import net.minecraftforge.event.world.WorldEvent;
 
 /**
- * Sub-type of BlockAndMeta that represents a block placed in the world.
+ * Creates and releases the WorldContexts as worlds are loaded and unloaded, and tells their
+ * resources when the world was saved. It has to be registered with the Forge event bus (world
+ * events).
  */
-public class PlacedBlock extends BlockAndMeta {
-    public final int x, y, z;
-    public PlacedBlock(Block block, int meta, int[] data) {
-        super(block, meta);
-        this.x = data[0];
-        this.y = data[1];
-        this.z = data[2];
+public class WorldContextHandler {
+    @SubscribeEvent
+    public void onWorldLoad(WorldEvent.Load event) {
+        if (!event.world.isRemote)
+            WorldContext.forWorld(event.world);
     }
 
-    @Override
-    public boolean equals(Object obj){
-        if(!super.equals(obj))
-            return false;
-        if(!(obj instanceof PlacedBlock))
-            return false;
-        PlacedBlock other = (PlacedBlock) obj;
-        return this.x == other.x && this.y == other.y && this.z == other.z;
+    @SubscribeEvent
+    public void onWorldSave(WorldEvent.Save event) {
+        if (event.world.isRemote)
+            return;
+        WorldContext context = WorldContext.getIfLoaded(event.world);
+        if (context != null)
+            context.onSaved();
     }
 
-    @Override
-    public int hashCode(){
-        return new HashCodeBuilder().append(getMeta()).append(getBlock()).append(x).append(y)
-                .append(z).toHashCode();
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        if (!event.world.isRemote)
+            WorldContext.release(event.world);
     }
 }
@@ -0,0 +1,235 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.buildings.BuildingWall;
+import generatormods.buildings.BuildingWall.FailType;
+import generatormods.buildings.IBuildingConfig;
+import generatormods.config.templates.TemplateTML;
+import generatormods.config.templates.TemplateWall;
+import generatormods.placement.WorldBlockPlacer;
+import generatormods.util.build.Dir;
+import generatormods.util.build.Handedness;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Random;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Plans walls with BuildingWall's beam search, and compares them with the walls that plan() plans
+ * by backtracking over the same terrain.
+ */
+public class BeamPlanTests {
+    private final static String WALL_STYLE =
+            "src/main/resources/templates/greatwall/StonebrickWall.tml";
+    private final static int MAX_LENGTH = 200;
+    /* How far from the start of the walls the obstacles are */
+    private final static int OBSTACLE_DISTANCE = 40;
+    private static TemplateWall ws;
+    private static Logger logger;
+
+    /* Terrain that is solid below height(), with blocks above it given by above() */
+    private abstract static class Terrain extends WorldBlockPlacer {
+        Terrain() {
+            super(null);
+        }
+
+        abstract int height(int i, int k);
+
+        Block above(int i, int j, int k) {
+            return Blocks.air;
+        }
+
+        @Override
+        public Block getBlock(int i, int j, int k) {
+            int h = height(i, k);
+            if (j < h - 1)
+                return Blocks.stone;
+            if (j < h)
+                return Blocks.grass;
+            return above(i, j, k);
+        }
+    }
+
+    /* Rolling hills without water, trees or anything else that makes a wall fail */
+    private final static Terrain HILLS = new Terrain() {
+        @Override
+        int height(int i, int k) {
+            return 68 + (int) (5 * Math.sin(i * 0.07) + 4 * Math.cos(k * 0.05));
+        }
+    };
+
+    /* Flat ground, with a step up of one block every 16 blocks along the diagonal */
+    private final static Terrain TERRACES = new Terrain() {
+        @Override
+        int height(int i, int k) {
+            return 70 + ((i + k) >> 4);
+        }
+    };
+
+    /* Ground that falls by a block every four blocks away from the origin */
+    private final static Terrain SLOPE = new Terrain() {
+        @Override
+        int height(int i, int k) {
+            return 100 - distance(i, k) / 4;
+        }
+    };
+
+    /* Flat ground, ringed by a cobblestone wall that goes deep enough for walls dug in */
+    private final static Terrain WALLED = new Terrain() {
+        @Override
+        int height(int i, int k) {
+            return 70;
+        }
+
+        @Override
+        public Block getBlock(int i, int j, int k) {
+            int d = distance(i, k);
+            if (d >= OBSTACLE_DISTANCE && d < OBSTACLE_DISTANCE + 3 && j >= 40 && j < 110)
+                return Blocks.cobblestone;
+            return super.getBlock(i, j, k);
+        }
+    };
+
+    /* Flat ground, in a lake that is too deep to wall */
+    private final static Terrain LAKE = new Terrain() {
+        @Override
+        int height(int i, int k) {
+            return distance(i, k) >= OBSTACLE_DISTANCE ? 60 : 70;
+        }
+
+        @Override
+        Block above(int i, int j, int k) {
+            return distance(i, k) >= OBSTACLE_DISTANCE && j < 100 ? Blocks.water : Blocks.air;
+        }
+    };
+
+    @BeforeClass
+    public static void beforeAll() throws Exception {
+        Bootstrap.func_151354_b();
+        logger = LogManager.getLogger("BeamPlanTests");
+        ws = new TemplateWall(new File(WALL_STYLE), new HashMap<String, TemplateTML>(), logger);
+    }
+
+    @Test
+    public void testPathTakesUnitSteps() {
+        for (int beamWidth : new int[] {1, 4, 16}) {
+            for (Dir dir : Dir.values()) {
+                BuildingWall wall = plan(HILLS, beamWidth, dir, BuildingWall.NO_MIN_J);
+                String name = "beam " + beamWidth + " " + dir;
+                assertTrue(name + " planned " + wall.bLength, wall.bLength > MAX_LENGTH / 2);
+                assertEquals(0, wall.xArray[0]);
+                assertEquals(0, wall.yArray[0]);
+                for (int n = 1; n < wall.bLength; n++) {
+                    int dx = Math.abs(wall.xArray[n] - wall.xArray[n - 1]);
+                    int dy = Math.abs(wall.yArray[n] - wall.yArray[n - 1]);
+                    assertTrue(name + " at " + n, dx + dy <= 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMinJIsRespected() {
+        BuildingWall free = plan(SLOPE, 8, Dir.NORTH, BuildingWall.NO_MIN_J);
+        int minJ = free.j1 - 3;
+        // Without minJ the wall follows the slope down
+        assertTrue(free.j1 + lowest(free) < minJ);
+        for (Dir dir : Dir.values()) {
+            BuildingWall wall = plan(SLOPE, 8, dir, minJ);
+            assertTrue(dir + " planned " + wall.bLength, wall.bLength > 1);
+            assertTrue(dir.toString(), wall.j1 + lowest(wall) >= minJ);
+        }
+    }
+
+    @Test
+    public void testStopsAtWallLikePlan() {
+        compareStop(WALLED, FailType.HITWALL);
+    }
+
+    @Test
+    public void testStopsUnderwaterLikePlan() {
+        compareStop(LAKE, FailType.UNDERWATER);
+    }
+
+    @Test
+    public void testWidthOneMatchesGreedyPath() {
+        for (Dir dir : Dir.values()) {
+            // Nothing makes the wall fail, so plan() never backtracks from the greedy path
+            BuildingWall greedy = plan(TERRACES, 0, dir, BuildingWall.NO_MIN_J);
+            BuildingWall beam = plan(TERRACES, 1, dir, BuildingWall.NO_MIN_J);
+            assertEquals(dir.toString(), greedy.bLength, beam.bLength);
+            assertEquals(dir.toString(), greedy.failCode, beam.failCode);
+            for (int n = 0; n < greedy.bLength; n++) {
+                assertEquals(dir + " at " + n, greedy.xArray[n], beam.xArray[n]);
+                assertEquals(dir + " at " + n, greedy.yArray[n], beam.yArray[n]);
+            }
+        }
+    }
+
+    private void compareStop(Terrain terrain, FailType fail) {
+        for (Dir dir : Dir.values()) {
+            BuildingWall planned = plan(terrain, 0, dir, BuildingWall.NO_MIN_J);
+            assertEquals(dir.toString(), fail, planned.failCode);
+            for (int beamWidth : new int[] {1, 4, 16}) {
+                BuildingWall beam = plan(terrain, beamWidth, dir, BuildingWall.NO_MIN_J);
+                assertEquals(dir + " beam " + beamWidth, fail, beam.failCode);
+                assertEquals(dir + " beam " + beamWidth, planned.bLength, beam.bLength);
+            }
+        }
+    }
+
+    /* Plans a wall from the origin, by backtracking if beamWidth is 0 */
+    private static BuildingWall plan(Terrain terrain, int beamWidth, Dir dir, int minJ) {
+        IBuildingConfig config = mock(IBuildingConfig.class);
+        when(config.getBlockPlacer()).thenReturn(terrain);
+        when(config.getRandom()).thenReturn(new Random(1L));
+        when(config.getLogger()).thenReturn(logger);
+        when(config.getBacktrackLength()).thenReturn(9);
+        ws.BeamWidth = beamWidth;
+        BuildingWall wall = new BuildingWall(1, config, ws, dir, Handedness.R_HAND, MAX_LENGTH,
+                false, 0, terrain.height(0, 0), 0).setMinJ(minJ);
+        wall.plan(1, 0, BuildingWall.DEFAULT_LOOKAHEAD, true);
+        return wall;
+    }
+
+    private static int lowest(BuildingWall wall) {
+        int lowest = Integer.MAX_VALUE;
+        for (int n = 0; n < wall.bLength; n++)
+            lowest = Math.min(lowest, wall.yArray[n]);
+        return lowest;
+    }
+
+    /* How far the column is from the origin along either axis */
+    private static int distance(int i, int k) {
+        return Math.max(Math.abs(i), Math.abs(k));
+    }
+}
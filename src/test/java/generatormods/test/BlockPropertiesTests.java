@@ -0,0 +1,80 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.util.build.BlockProperties;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.material.Material;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BlockPropertiesTests {
+    @BeforeClass
+    public static void beforeAll() {
+        Bootstrap.func_151354_b();
+        BlockProperties.buildTable();
+    }
+
+    @Test
+    public void testFlags() {
+        assertTrue(BlockProperties.isWallable(Blocks.air));
+        assertFalse(BlockProperties.isArtificial(Blocks.air));
+        assertTrue(BlockProperties.isWater(Blocks.water));
+        assertTrue(BlockProperties.isWater(Blocks.ice));
+        assertTrue(BlockProperties.isFlowing(Blocks.lava));
+        assertFalse(BlockProperties.isWallable(Blocks.lava));
+        assertTrue(BlockProperties.isGround(Blocks.stone));
+        assertFalse(BlockProperties.isArtificial(Blocks.stone));
+        assertTrue(BlockProperties.isOre(Blocks.iron_ore));
+        assertTrue(BlockProperties.isArtificial(Blocks.planks));
+        assertTrue(BlockProperties.isLoaded(Blocks.planks));
+        assertTrue(BlockProperties.isStair(Blocks.oak_stairs));
+        assertTrue(BlockProperties.isDoor(Blocks.wooden_door));
+        assertTrue(BlockProperties.isTree(Blocks.log));
+        assertTrue(BlockProperties.isLight(Blocks.torch));
+        assertTrue(BlockProperties.isDelayed(Blocks.torch));
+        assertFalse(BlockProperties.isLoaded(Blocks.torch));
+    }
+
+    @Test
+    public void testTableMatchesBlocks() {
+        for (Object o : Block.blockRegistry) {
+            Block block = (Block) o;
+            int flags = BlockProperties.getFlags(block);
+            assertEquals(flags, BlockProperties.getFlagsById(Block.getIdFromBlock(block)));
+            BlockProperties props = new BlockProperties(block);
+            assertEquals(props.isWater, (flags & BlockProperties.WATER) != 0);
+            assertEquals(props.isWallable, (flags & BlockProperties.WALLABLE) != 0);
+            assertEquals(props.isArtificial, (flags & BlockProperties.ARTIFICIAL) != 0);
+        }
+    }
+
+    @Test
+    public void testUnregisteredBlock() {
+        Block block = new Block(Material.water) {};
+        assertTrue(BlockProperties.isWater(block));
+        assertTrue(BlockProperties.isWallable(block));
+    }
+}
@@ -0,0 +1,263 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.builders.GreatWallBuilder;
+import generatormods.builders.WalledCityBuilder;
+import generatormods.config.chests.ChestContentsSpec;
+import generatormods.config.chests.ChestType;
+import generatormods.config.templates.TemplateLoader;
+import generatormods.config.templates.TemplateTML;
+import generatormods.config.templates.TemplateWall;
+import generatormods.planning.Blueprint;
+import generatormods.util.WorldUtil;
+import generatormods.walledcity.CityDataManager;
+import generatormods.walledcity.WalledCityChatHandler;
+import generatormods.world.WorldContext;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.biome.BiomeGenBase;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraft.world.storage.ISaveHandler;
+import net.minecraft.world.storage.MapStorage;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Plans great walls and walled cities over rolling hills, saves their blueprints and replays them,
+ * without building anything.
+ */
+public class BlueprintReplayTests {
+    private final static String WALL_STYLE =
+            "src/main/resources/templates/greatwall/StonebrickWall.tml";
+    private final static int SITE_I = 40, SITE_K = -24;
+    private final static String CITY_STYLE = "CobblestoneCity.tml";
+    private static TemplateWall ws;
+    private static List<TemplateWall> cityStyles;
+    private static Logger logger;
+
+    /* A GreatWallBuilder that only counts how often it is asked to build */
+    private static class DryBuilder extends GreatWallBuilder {
+        int builds;
+
+        DryBuilder(World world, long seed) {
+            super(world, new Random(seed), SITE_I, SITE_K, 1, 1.0, BlueprintReplayTests.logger,
+                    new HashMap<ChestType, ChestContentsSpec>(), Collections.singletonList(ws), 0);
+        }
+
+        @Override
+        public boolean build() {
+            builds++;
+            return true;
+        }
+    }
+
+    /* A WalledCityBuilder that only counts how often it is asked to build */
+    private static class DryCityBuilder extends WalledCityBuilder {
+        int builds;
+
+        DryCityBuilder(World world, long seed) {
+            super(world, new Random(seed), SITE_I, SITE_K, 1, 1.0, BlueprintReplayTests.logger,
+                    new HashMap<ChestType, ChestContentsSpec>(), mock(WalledCityChatHandler.class),
+                    new CityDataManager(BlueprintReplayTests.logger, 500, 500), cityStyles, false);
+        }
+
+        @Override
+        public boolean build() {
+            builds++;
+            return true;
+        }
+    }
+
+    private World world;
+    private final Map<Long, Chunk> chunks = new HashMap<Long, Chunk>();
+    /* How far the terrain is raised, and how many blocks were read from the world */
+    private int raise;
+    /* If not 0, the terrain also rises by a block every this many blocks east and south */
+    private int slope;
+    private int reads;
+
+    @BeforeClass
+    public static void beforeAll() throws Exception {
+        Bootstrap.func_151354_b();
+        logger = LogManager.getLogger("BlueprintReplayTests");
+        ws = new TemplateWall(new File(WALL_STYLE), new HashMap<String, TemplateTML>(), logger);
+        ws.MaxL = 300;
+        cityStyles = new ArrayList<TemplateWall>();
+        TemplateLoader loader =
+                new TemplateLoader(logger, null, new File("src/main/resources/templates"));
+        for (TemplateWall style : loader.loadWallStylesAndStreets("walledcity")) {
+            if (style.name.equals(CITY_STYLE))
+                cityStyles.add(style);
+        }
+        assertEquals(1, cityStyles.size());
+    }
+
+    @Before
+    public void setUp() {
+        world = mock(World.class);
+        world.provider = new WorldProviderSurface();
+        world.provider.dimensionId = 22;
+        world.perWorldStorage = mock(MapStorage.class);
+        when(world.getSaveHandler()).thenReturn(mock(ISaveHandler.class));
+        when(world.getBiomeGenForCoordsBody(anyInt(), anyInt())).thenReturn(BiomeGenBase.plains);
+        IChunkProvider provider = mock(IChunkProvider.class);
+        when(provider.chunkExists(anyInt(), anyInt())).thenReturn(true);
+        when(world.getChunkProvider()).thenReturn(provider);
+        when(world.getChunkFromBlockCoords(anyInt(), anyInt())).thenAnswer(new Answer<Chunk>() {
+            @Override
+            public Chunk answer(InvocationOnMock invocation) {
+                Object[] args = invocation.getArguments();
+                return chunk((Integer) args[0] >> 4, (Integer) args[1] >> 4);
+            }
+        });
+        when(world.getBlock(anyInt(), anyInt(), anyInt())).thenAnswer(new Answer<Block>() {
+            @Override
+            public Block answer(InvocationOnMock invocation) {
+                Object[] args = invocation.getArguments();
+                int i = (Integer) args[0], j = (Integer) args[1], k = (Integer) args[2];
+                reads++;
+                if (j < 0 || j >= WorldUtil.WORLD_MAX_Y)
+                    return Blocks.air;
+                return chunk(i >> 4, k >> 4).getBlock(i & 0xf, j, k & 0xf);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        WorldContext.release(world);
+    }
+
+    @Test
+    public void testSameSiteAndSeedGiveTheSamePlan() {
+        Blueprint first = plan(5L), second = plan(5L);
+        assertEquals(first.seed, second.seed);
+        assertTrue(first.matches(second.getPlan()));
+        assertEquals(2, first.getPlan().getTagList("Walls", 10).tagCount());
+    }
+
+    @Test
+    public void testReplayTakesTheSavedPaths() {
+        Blueprint blueprint = plan(6L);
+        int planReads = reads;
+        reads = 0;
+        DryBuilder builder = new DryBuilder(world, 0L);
+        assertTrue(builder.replay(blueprint));
+        assertEquals(1, builder.builds);
+        // Only the ground under the saved paths is read again, not the columns around them
+        assertTrue(reads + " reads to replay, " + planReads + " to plan", reads < planReads / 4);
+        assertTrue(blueprint.matches(builder.getBlueprint("wall").getPlan()));
+    }
+
+    @Test
+    public void testReplayOverChangedGroundIsRejected() {
+        Blueprint blueprint = plan(7L);
+        raise = 1;
+        chunks.clear();
+        DryBuilder builder = new DryBuilder(world, 0L);
+        assertFalse(builder.replay(blueprint));
+        assertEquals(0, builder.builds);
+    }
+
+    @Test
+    public void testCityReplayOverSlopeMatches() {
+        slope = 24;
+        Blueprint blueprint = null;
+        // Not every seed gives a city that fits, try until one does
+        for (long seed = 1; blueprint == null && seed <= 20; seed++) {
+            DryCityBuilder builder = new DryCityBuilder(world, seed);
+            builder.setDryRun(true);
+            if (builder.generate(SITE_I, height(SITE_I, SITE_K) + 1, SITE_K))
+                blueprint = builder.getBlueprint("walledcity");
+            builder.finishJob();
+        }
+        assertNotNull("no city fit the slope", blueprint);
+        assertEquals(4, blueprint.getPlan().getTagList("Walls", 10).tagCount());
+
+        DryCityBuilder builder = new DryCityBuilder(world, 0L);
+        assertTrue(builder.replay(blueprint));
+        assertEquals(1, builder.builds);
+        assertTrue(blueprint.matches(builder.getBlueprint("walledcity").getPlan()));
+    }
+
+    private Blueprint plan(long seed) {
+        reads = 0;
+        DryBuilder builder = new DryBuilder(world, seed);
+        builder.setDryRun(true);
+        assertTrue(builder.generate(SITE_I, height(SITE_I, SITE_K) + 1, SITE_K));
+        Blueprint blueprint = builder.getBlueprint("wall");
+        builder.finishJob();
+        assertEquals(0, builder.builds);
+        return blueprint;
+    }
+
+    /* Gentle hills, low enough that there is no water */
+    private int height(int i, int k) {
+        int rise = slope == 0 ? 0 : (i + k) / slope;
+        return 70 + raise + rise + (int) (6 * Math.sin(i * 0.05) * Math.cos(k * 0.04));
+    }
+
+    private Chunk chunk(int chunkX, int chunkZ) {
+        Long key = ((long) chunkX << 32) ^ (chunkZ & 0xffffffffL);
+        Chunk chunk = chunks.get(key);
+        if (chunk != null)
+            return chunk;
+        chunk = new Chunk(world, chunkX, chunkZ);
+        ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                int h = height((chunkX << 4) + x, (chunkZ << 4) + z);
+                for (int y = 0; y < h; y++) {
+                    if (storage[y >> 4] == null)
+                        storage[y >> 4] = new ExtendedBlockStorage(y & ~0xf, true);
+                    storage[y >> 4].func_150818_a(x, y & 0xf, z, y == h - 1 ? Blocks.grass
+                            : Blocks.stone);
+                }
+                chunk.heightMap[z << 4 | x] = h;
+            }
+        }
+        chunks.put(key, chunk);
+        return chunk;
+    }
+}
@@ -0,0 +1,81 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.planning.Blueprint;
+import generatormods.planning.BlueprintStore;
+
+import net.minecraft.nbt.NBTTagCompound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BlueprintTests {
+    private static NBTTagCompound plan(int length) {
+        NBTTagCompound plan = new NBTTagCompound();
+        plan.setString("Style", "test");
+        plan.setIntArray("X", new int[length]);
+        return plan;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Blueprint blueprint = new Blueprint(7, "city", -1, 100, 64, -200, 1234567890123L, plan(3));
+        Blueprint read = Blueprint.readFromNBT(blueprint.writeToNBT());
+        assertEquals(7, read.id);
+        assertEquals("city", read.kind);
+        assertEquals(-1, read.dimension);
+        assertEquals(100, read.i0);
+        assertEquals(64, read.j0);
+        assertEquals(-200, read.k0);
+        assertEquals(1234567890123L, read.seed);
+        assertTrue(read.matches(plan(3)));
+        assertFalse(read.matches(plan(4)));
+        assertNull(Blueprint.readFromNBT(new NBTTagCompound()));
+    }
+
+    @Test
+    public void testPlanIsCopied() {
+        NBTTagCompound plan = plan(3);
+        Blueprint blueprint = new Blueprint(1, "wall", 0, 0, 70, 0, 5L, plan);
+        blueprint.getPlan().setString("Style", "changed");
+        assertTrue(blueprint.matches(plan(3)));
+    }
+
+    @Test
+    public void testStore() {
+        BlueprintStore store = new BlueprintStore(BlueprintStore.DATA_NAME);
+        Blueprint first = store.add(new Blueprint(0, "ruin", 0, 1, 2, 3, 4L, plan(1)));
+        Blueprint second = store.add(new Blueprint(0, "wall", 0, 5, 6, 7, 8L, plan(2)));
+        assertEquals(1, first.id);
+        assertEquals(2, second.id);
+        assertSame(first, store.remove(1));
+        assertNull(store.remove(1));
+
+        NBTTagCompound tag = new NBTTagCompound();
+        store.writeToNBT(tag);
+        BlueprintStore read = new BlueprintStore(BlueprintStore.DATA_NAME);
+        read.readFromNBT(tag);
+        assertEquals(1, read.size());
+        assertEquals("wall", read.get(2).kind);
+        // IDs are not handed out twice
+        assertEquals(3, read.add(new Blueprint(0, "city", 0, 0, 0, 0, 0L, plan(0))).id);
+    }
+}
@@ -0,0 +1,143 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.builders.AbstractBuilder;
+import generatormods.config.chests.ChestContentsSpec;
+import generatormods.config.chests.ChestType;
+import generatormods.metrics.GenerationMetrics;
+import generatormods.metrics.PlanStage;
+import generatormods.metrics.RejectReason;
+import generatormods.world.WorldContext;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.storage.ISaveHandler;
+import net.minecraft.world.storage.MapStorage;
+
+import org.apache.logging.log4j.LogManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks that the stages of a builder's plan() and its rejections are counted in the
+ * GenerationMetrics the way WalledCityBuilder uses them.
+ */
+public class BuilderStageTests {
+    /* Goes through every PlanStage in order, and fails the one it is told to */
+    private static class StagedBuilder extends AbstractBuilder {
+        PlanStage failAt;
+
+        StagedBuilder(World world) {
+            super(world, new Random(20L), 0, 0, 1, 1.0, LogManager.getLogger("BuilderStageTests"),
+                    new HashMap<ChestType, ChestContentsSpec>());
+        }
+
+        @Override
+        public boolean plan(int i0, int j0, int k0) {
+            for (PlanStage stage : PlanStage.values()) {
+                long start = System.nanoTime();
+                // so that every stage takes some time
+                while (System.nanoTime() == start)
+                    ;
+                if (!endStage(stage, start, stage != failAt))
+                    return reject(RejectReason.TOO_MUCH_WATER);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean build() {
+            return true;
+        }
+    }
+
+    private World world;
+    private GenerationMetrics metrics;
+    private StagedBuilder builder;
+
+    @Before
+    public void setUp() {
+        world = mock(World.class);
+        world.provider = new WorldProviderSurface();
+        world.provider.dimensionId = 20;
+        world.perWorldStorage = mock(MapStorage.class);
+        when(world.getSaveHandler()).thenReturn(mock(ISaveHandler.class));
+        metrics = GenerationMetrics.forModule("BuilderStageTests");
+        metrics.reset();
+        builder = new StagedBuilder(world);
+        builder.setMetrics(metrics);
+    }
+
+    @After
+    public void tearDown() {
+        WorldContext.release(world);
+    }
+
+    @Test
+    public void testStagesAfterTheFailedOneAreNotEntered() {
+        builder.failAt = PlanStage.WALLS;
+        assertFalse(builder.generate(0, 64, 0));
+        assertEquals(1, metrics.getStageEntries(PlanStage.SURVEY));
+        assertEquals(0, metrics.getStageRejections(PlanStage.SURVEY));
+        assertEquals(1, metrics.getStageEntries(PlanStage.WALLS));
+        assertEquals(1, metrics.getStageRejections(PlanStage.WALLS));
+        assertEquals(0, metrics.getStageEntries(PlanStage.SITE_CHECKS));
+        assertEquals(0, metrics.getStageNanos(PlanStage.SITE_CHECKS));
+        assertTrue(metrics.getStageNanos(PlanStage.SURVEY) > 0);
+        assertTrue(metrics.getStageNanos(PlanStage.WALLS) > 0);
+        assertEquals(1, metrics.getRejections(RejectReason.TOO_MUCH_WATER));
+        assertEquals(1, metrics.getAttempts());
+        assertEquals(0, metrics.getSuccesses());
+    }
+
+    @Test
+    public void testPassedSitesCountEveryStage() {
+        builder.failAt = PlanStage.SITE_CHECKS;
+        builder.generate(0, 64, 0);
+        builder.failAt = null;
+        assertTrue(builder.generate(100, 64, 100));
+        for (PlanStage stage : PlanStage.values()) {
+            assertEquals(stage.name(), 2, metrics.getStageEntries(stage));
+            assertEquals(stage.name(), stage == PlanStage.SITE_CHECKS ? 1 : 0,
+                    metrics.getStageRejections(stage));
+        }
+        assertEquals(1, metrics.getRejections(RejectReason.TOO_MUCH_WATER));
+        assertEquals(2, metrics.getAttempts());
+        assertEquals(1, metrics.getSuccesses());
+    }
+
+    @Test
+    public void testNothingCountedWithoutMetrics() {
+        builder.setMetrics(null);
+        builder.failAt = PlanStage.SURVEY;
+        assertFalse(builder.generate(0, 64, 0));
+        builder.failAt = null;
+        assertTrue(builder.generate(0, 64, 0));
+        assertEquals(0, metrics.getStageEntries(PlanStage.SURVEY));
+        assertEquals(0, metrics.getRejections(RejectReason.TOO_MUCH_WATER));
+    }
+}
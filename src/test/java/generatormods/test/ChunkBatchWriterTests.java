@@ -0,0 +1,122 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.placement.BatchedBlockPlacer;
+import generatormods.placement.PendingChunk;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.chunk.Chunk;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks that the placement modes that record their writes hand them to the ChunkBatchWriter, and
+ * that the writer runs the block callbacks for every write.
+ */
+public class ChunkBatchWriterTests {
+    private World world;
+    private Chunk chunk, eastChunk;
+
+    @BeforeClass
+    public static void beforeAll() {
+        Bootstrap.func_151354_b();
+    }
+
+    @Before
+    public void beforeEach() {
+        world = mock(World.class);
+        world.provider = new WorldProviderSurface();
+        chunk = new Chunk(world, 0, 0);
+        eastChunk = new Chunk(world, 1, 0);
+        when(world.getChunkFromChunkCoords(0, 0)).thenReturn(chunk);
+        when(world.getChunkFromChunkCoords(1, 0)).thenReturn(eastChunk);
+    }
+
+    @Test
+    public void testBatchedPlacerWritesChunksOnFinish() {
+        BatchedBlockPlacer placer = new BatchedBlockPlacer(world);
+        placer.setBlock(3, 70, 5, Blocks.stone, 0, 3);
+        placer.setBlock(17, 64, 2, Blocks.planks, 2, 3);
+        placer.setBlock(17, 64, 2, Blocks.cobblestone, 0, 3);
+        assertEquals(2, placer.getChunkCount());
+        assertEquals(Blocks.stone, placer.getBlock(3, 70, 5));
+        assertEquals(Blocks.air, chunk.getBlock(3, 70, 5));
+
+        placer.finish();
+        assertEquals(Blocks.stone, chunk.getBlock(3, 70, 5));
+        assertEquals(71, chunk.getHeightValue(3, 5));
+        assertEquals(Blocks.cobblestone, eastChunk.getBlock(1, 64, 2));
+        assertEquals(0, eastChunk.getBlockMetadata(1, 64, 2));
+        verify(world, never()).setBlock(anyInt(), anyInt(), anyInt(), any(Block.class), anyInt(),
+                anyInt());
+    }
+
+    @Test
+    public void testPendingChunkAppliesThroughWriter() {
+        PendingChunk pendingChunk = new PendingChunk(0, 0);
+        pendingChunk.addBlock(8, 40, 8, Blocks.glass, 0, 3);
+        pendingChunk.addBlock(8, 41, 8, Blocks.wool, 14, 3);
+        pendingChunk.addBlock(8, 41, 8, Blocks.wool, 3, 3 | PendingChunk.OP_META_ONLY);
+        pendingChunk.apply(world);
+        assertTrue(pendingChunk.isEmpty());
+        assertEquals(Blocks.glass, chunk.getBlock(8, 40, 8));
+        assertEquals(Blocks.wool, chunk.getBlock(8, 41, 8));
+        assertEquals(3, chunk.getBlockMetadata(8, 41, 8));
+        assertEquals(42, chunk.getHeightValue(8, 8));
+    }
+
+    @Test
+    public void testOnBlockAddedForEachOverwrittenBlock() {
+        PendingChunk pendingChunk = new PendingChunk(0, 0);
+        pendingChunk.addBlock(4, 80, 4, Blocks.sand, 0, 3);
+        pendingChunk.addBlock(4, 80, 4, Blocks.gravel, 0, 3);
+        pendingChunk.addBlock(4, 80, 4, Blocks.stone, 0, 3);
+        pendingChunk.apply(world);
+        assertEquals(Blocks.stone, chunk.getBlock(4, 80, 4));
+        // both falling blocks were placed for a moment, and schedule their tick when added
+        verify(world).scheduleBlockUpdate(eq(4), eq(80), eq(4), eq(Blocks.sand), anyInt());
+        verify(world).scheduleBlockUpdate(eq(4), eq(80), eq(4), eq(Blocks.gravel), anyInt());
+        verify(world).notifyBlockChange(4, 80, 4, Blocks.air);
+        verify(world).notifyBlockChange(4, 80, 4, Blocks.sand);
+        verify(world).notifyBlockChange(4, 80, 4, Blocks.gravel);
+    }
+
+    @Test
+    public void testBreakBlockForEachOverwrittenBlock() {
+        // a standing torch, so that BlockTorch.onBlockAdded() leaves it alone
+        when(world.getBlockMetadata(anyInt(), anyInt(), anyInt())).thenReturn(5);
+        PendingChunk pendingChunk = new PendingChunk(0, 0);
+        pendingChunk.addBlock(6, 65, 9, Blocks.redstone_torch, 5, 3);
+        pendingChunk.addBlock(6, 65, 9, Blocks.stone, 0, 3);
+        pendingChunk.apply(world);
+        assertEquals(Blocks.stone, chunk.getBlock(6, 65, 9));
+        // a lit torch notifies the block above it once when added and once when broken
+        verify(world, times(2)).notifyBlocksOfNeighborChange(6, 66, 9, Blocks.redstone_torch);
+    }
+}
@@ -0,0 +1,139 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.placement.DirtyChunkTracker;
+import generatormods.placement.IBlockPlacer;
+import generatormods.placement.IPlayerChunkMap;
+import generatormods.placement.ResyncingBlockPlacer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ChunkResyncTests {
+    /* Stands in for the PlayerManager: a set of watched chunks, and a log of the resent ones */
+    private static class TestPlayerChunkMap implements IPlayerChunkMap {
+        final Set<String> watched = new HashSet<String>();
+        final List<String> resent = new ArrayList<String>();
+
+        void watch(int chunkX, int chunkZ) {
+            watched.add(chunkX + "," + chunkZ);
+        }
+
+        @Override
+        public boolean isChunkWatched(int chunkX, int chunkZ) {
+            return watched.contains(chunkX + "," + chunkZ);
+        }
+
+        @Override
+        public void resendChunk(int chunkX, int chunkZ) {
+            resent.add(chunkX + "," + chunkZ);
+        }
+    }
+
+    TestPlayerChunkMap players;
+
+    @BeforeClass
+    public static void beforeAll() {
+        Bootstrap.func_151354_b();
+    }
+
+    @Before
+    public void beforeEach() {
+        players = new TestPlayerChunkMap();
+    }
+
+    @Test
+    public void testEachDirtyChunkIsResentOnce() {
+        DirtyChunkTracker tracker = new DirtyChunkTracker();
+        players.watch(0, 0);
+        players.watch(-1, 2);
+        for (int i = 0; i < 16; i++)
+            for (int k = 0; k < 16; k++)
+                tracker.markBlock(i, k);
+        tracker.markBlock(-5, 40);
+        tracker.markBlock(3, 3);
+        tracker.markBlock(-16, 47);
+        assertEquals(2, tracker.size());
+        assertTrue(tracker.isDirty(-1, 2));
+
+        assertEquals(2, tracker.flush(players));
+        assertEquals(2, players.resent.size());
+        assertEquals("0,0", players.resent.get(0));
+        assertEquals("-1,2", players.resent.get(1));
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void testUnwatchedChunksAreDropped() {
+        DirtyChunkTracker tracker = new DirtyChunkTracker();
+        players.watch(1, 1);
+        tracker.markChunk(1, 1);
+        tracker.markChunk(2, 1);
+        tracker.markChunk(-30000, 29999);
+
+        assertEquals(1, tracker.flush(players));
+        assertEquals(1, players.resent.size());
+        assertEquals(0, tracker.size());
+        assertFalse(tracker.isDirty(2, 1));
+
+        // The same chunk can get dirty again after a flush
+        tracker.markChunk(1, 1);
+        assertEquals(1, tracker.flush(players));
+        assertEquals(2, players.resent.size());
+    }
+
+    @Test
+    public void testPlacerSendsChunksInsteadOfBlocks() {
+        IBlockPlacer target = mock(IBlockPlacer.class);
+        ResyncingBlockPlacer placer = new ResyncingBlockPlacer(target, players);
+        players.watch(0, 0);
+        players.watch(1, 0);
+        Block block = Blocks.stone;
+
+        placer.setBlock(1, 64, 1, block, 0, 3);
+        placer.setBlockNoLighting(17, 64, 1, block, 2, 2);
+        placer.setBlockMetadata(18, 64, 1, 5, 3);
+        placer.setBlock(40, 64, 1, block, 0, 3);
+        verify(target).setBlock(1, 64, 1, block, 0, 1);
+        verify(target).setBlockNoLighting(17, 64, 1, block, 2, 0);
+        verify(target).setBlockMetadata(18, 64, 1, 5, 1);
+        assertTrue(players.resent.isEmpty());
+
+        placer.finish();
+        verify(target).finish();
+        assertEquals(2, players.resent.size());
+        assertTrue(players.resent.contains("0,0"));
+        assertTrue(players.resent.contains("1,0"));
+        assertEquals(0, placer.getTracker().size());
+    }
+}
@@ -0,0 +1,78 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.walledcity.CityLocationGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CityLocationGridTests {
+    /* The check that CityDataManager used before the grid */
+    private static boolean isSeparatedByScan(List<int[]> cities, int i, int k, int separation) {
+        for (int[] city : cities)
+            if (Math.abs(city[0] - i) + Math.abs(city[1] - k) < separation)
+                return false;
+        return true;
+    }
+
+    @Test
+    public void testMatchesScan() {
+        Random random = new Random(12);
+        for (int separation : new int[] {0, 1, 7, 100, 500}) {
+            CityLocationGrid grid = new CityLocationGrid(separation);
+            List<int[]> cities = new ArrayList<int[]>();
+            for (int n = 0; n < 200; n++) {
+                int i = random.nextInt(20000) - 10000, k = random.nextInt(20000) - 10000;
+                grid.add(i, k);
+                cities.add(new int[] {i, k});
+            }
+            assertEquals(200, grid.size());
+            for (int n = 0; n < 5000; n++) {
+                int[] near = cities.get(random.nextInt(cities.size()));
+                int i = near[0] + random.nextInt(2 * separation + 3) - separation - 1;
+                int k = near[1] + random.nextInt(2 * separation + 3) - separation - 1;
+                assertEquals("separation " + separation + " at " + i + "," + k,
+                        isSeparatedByScan(cities, i, k, separation), grid.isSeparated(i, k));
+            }
+        }
+    }
+
+    @Test
+    public void testExactlyAtSeparation() {
+        CityLocationGrid grid = new CityLocationGrid(10);
+        grid.add(-5, -5);
+        assertFalse(grid.isSeparated(-5, 4));
+        assertTrue(grid.isSeparated(-5, 5));
+        assertFalse(grid.isSeparated(0, -1));
+        assertTrue(grid.isSeparated(0, 0));
+        assertTrue(grid.isSeparated(-15, -5));
+        assertFalse(grid.isSeparated(-14, -5));
+    }
+
+    @Test
+    public void testEmptyGrid() {
+        assertTrue(new CityLocationGrid(500).isSeparated(0, 0));
+    }
+}
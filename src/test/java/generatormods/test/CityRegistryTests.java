@@ -0,0 +1,153 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.walledcity.CityRegistry;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import net.minecraft.nbt.NBTTagCompound;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class CityRegistryTests {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testNBTRoundTrip() {
+        CityRegistry registry = new CityRegistry(CityRegistry.DATA_NAME);
+        for (int n = 0; n < 50000; n++)
+            registry.add(n, -n, n % 2);
+        NBTTagCompound tag = new NBTTagCompound();
+        registry.writeToNBT(tag);
+
+        CityRegistry loaded = new CityRegistry(CityRegistry.DATA_NAME);
+        loaded.readFromNBT(tag);
+        assertEquals(50000, loaded.size());
+        assertArrayEquals(new int[] {49999, -49999, 1}, loaded.get(49999));
+        assertArrayEquals(new int[] {0, 0, 0}, loaded.get(0));
+    }
+
+    @Test
+    public void testLogRecoversCitiesAfterCrash() throws IOException {
+        File log = new File(folder.getRoot(), "data/" + CityRegistry.DATA_NAME + ".log");
+        CityRegistry registry = new CityRegistry(CityRegistry.DATA_NAME);
+        registry.openLog(log);
+        registry.add(100, 200, 0);
+        NBTTagCompound saved = new NBTTagCompound();
+        registry.writeToNBT(saved);
+        registry.add(300, -400, 1);
+        registry.closeLog();
+        // A city cut off halfway through
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(log, true));
+        out.writeInt(7);
+        out.close();
+
+        // Only the first city made it into the save
+        CityRegistry loaded = new CityRegistry(CityRegistry.DATA_NAME);
+        loaded.readFromNBT(saved);
+        loaded.openLog(log);
+        assertEquals(2, loaded.size());
+        assertArrayEquals(new int[] {300, -400, 1}, loaded.get(1));
+        assertTrue(loaded.isDirty());
+        assertEquals(24, log.length());
+
+        loaded.add(5, 6, 0);
+        loaded.setDirty(false);
+        loaded.onSaved();
+        loaded.closeLog();
+        assertEquals(0, log.length());
+        assertEquals(36, new File(log.getPath() + ".old").length());
+    }
+
+    @Test
+    public void testOldLogKeptUntilSaveIsIntact() throws IOException {
+        File log = new File(folder.getRoot(), "data/" + CityRegistry.DATA_NAME + ".log");
+        File oldLog = new File(log.getPath() + ".old");
+        CityRegistry registry = new CityRegistry(CityRegistry.DATA_NAME);
+        registry.openLog(log);
+        registry.add(1, 2, 0);
+        registry.setDirty(false);
+        registry.onSaved();
+        registry.add(3, 4, 0);
+        NBTTagCompound saved = new NBTTagCompound();
+        registry.writeToNBT(saved);
+        registry.setDirty(false);
+        registry.onSaved();
+        registry.add(5, 6, 0);
+        registry.closeLog();
+        assertEquals(24, oldLog.length());
+        assertEquals(12, log.length());
+
+        // The last save was cut off, so there is no saved data to read
+        CityRegistry recovered = new CityRegistry(CityRegistry.DATA_NAME);
+        recovered.openLog(log);
+        recovered.closeLog();
+        assertEquals(3, recovered.size());
+        assertArrayEquals(new int[] {3, 4, 0}, recovered.get(1));
+        assertTrue(recovered.isDirty());
+        assertTrue(oldLog.exists());
+
+        // The saved data is intact, so the old log is not needed any more
+        CityRegistry loaded = new CityRegistry(CityRegistry.DATA_NAME);
+        loaded.readFromNBT(saved);
+        loaded.openLog(log);
+        loaded.closeLog();
+        assertEquals(3, loaded.size());
+        assertFalse(oldLog.exists());
+        assertEquals(12, log.length());
+    }
+
+    @Test
+    public void testImportText() throws IOException {
+        File text = folder.newFile("Overworld" + CityRegistry.TEXT_FILE);
+        PrintWriter writer = new PrintWriter(text);
+        writer.println("City locations in Overworld of : New World");
+        writer.println("10,20,0");
+        writer.println("-30,40,1");
+        writer.println("50,-60,1");
+        writer.close();
+
+        CityRegistry underground = new CityRegistry(CityRegistry.DATA_NAME + 1);
+        underground.importText(text, 1);
+        underground.importText(text, 1);
+        assertEquals(2, underground.size());
+        assertArrayEquals(new int[] {-30, 40, 1}, underground.get(0));
+        assertArrayEquals(new int[] {50, -60, 1}, underground.get(1));
+        CityRegistry surface = new CityRegistry(CityRegistry.DATA_NAME + 0);
+        surface.importText(text, 0);
+        assertEquals(1, surface.size());
+
+        NBTTagCompound tag = new NBTTagCompound();
+        underground.writeToNBT(tag);
+        CityRegistry loaded = new CityRegistry(CityRegistry.DATA_NAME + 1);
+        loaded.readFromNBT(tag);
+        loaded.importText(text, 1);
+        assertEquals(2, loaded.size());
+    }
+}
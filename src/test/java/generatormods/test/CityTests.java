@@ -0,0 +1,120 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.walledcity.City;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import net.minecraft.init.Bootstrap;
+import net.minecraft.village.Village;
+import net.minecraft.village.VillageCollection;
+import net.minecraft.village.VillageDoorInfo;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class CityTests {
+    private final static int DOORS = 2000;
+
+    @BeforeClass
+    public static void beforeAll() {
+        Bootstrap.func_151354_b();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDoorsGrowAndSplitIntoVillageCells() {
+        World world = mockWorld(0);
+        City city = new City(0, 0, 0);
+        Random random = new Random(3L);
+        int[][] added = new int[DOORS][];
+        Set<Long> cells = new HashSet<Long>();
+        for (int n = 0; n < DOORS; n++) {
+            int i = random.nextInt(400) - 200, k = random.nextInt(300) - 150;
+            added[n] = new int[] {i, 60 + random.nextInt(10), k, random.nextInt(3) - 1,
+                    random.nextInt(3) - 1};
+            city.addDoor(added[n][0], added[n][1], added[n][2], added[n][3], added[n][4]);
+            cells.add(cell(i, k));
+        }
+        assertEquals(DOORS, city.getDoorCount());
+
+        assertEquals(cells.size(), city.createVillages(world));
+        assertEquals(0, city.getDoorCount());
+        List<Village> villages = world.villageCollectionObj.getVillageList();
+        assertEquals(cells.size(), villages.size());
+        Set<Long> seen = new HashSet<Long>();
+        int n = 0;
+        for (Village village : villages) {
+            List<VillageDoorInfo> doors = village.getVillageDoorInfoList();
+            assertFalse(doors.isEmpty());
+            long villageCell = cell(doors.get(0).posX, doors.get(0).posZ);
+            assertTrue(seen.add(villageCell));
+            for (VillageDoorInfo door : doors)
+                assertEquals(villageCell, cell(door.posX, door.posZ));
+            n += doors.size();
+        }
+        assertEquals(DOORS, n);
+        // every door was kept through the copies of the buffer
+        for (int[] door : added)
+            assertTrue(hasDoor(villages, door));
+    }
+
+    @Test
+    public void testNoVillagesInTheEnd() {
+        World world = mockWorld(1);
+        City city = new City(0, 0, 0);
+        city.addDoor(1, 64, 1, 1, 0);
+        assertEquals(0, city.createVillages(world));
+        assertEquals(1, city.getDoorCount());
+        assertTrue(world.villageCollectionObj.getVillageList().isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean hasDoor(List<Village> villages, int[] door) {
+        for (Village village : villages) {
+            for (VillageDoorInfo info : (List<VillageDoorInfo>) village.getVillageDoorInfoList()) {
+                if (info.posX == door[0] && info.posY == door[1] && info.posZ == door[2]
+                        && info.insideDirectionX == door[3] && info.insideDirectionZ == door[4])
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static long cell(int i, int k) {
+        return ((long) (i >> 6) << 32) | ((k >> 6) & 0xFFFFFFFFL);
+    }
+
+    private static World mockWorld(int dimension) {
+        World world = mock(World.class);
+        world.provider = new WorldProviderSurface();
+        world.provider.dimensionId = dimension;
+        world.villageCollectionObj = new VillageCollection(world);
+        return world;
+    }
+}
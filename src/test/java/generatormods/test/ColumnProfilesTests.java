@@ -0,0 +1,121 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.placement.WorldBlockPlacer;
+import generatormods.planning.ColumnProfiles;
+import generatormods.util.build.BlockProperties;
+
+import java.util.Random;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares ColumnProfiles against classifying each block as BuildingWall.plan() used to, over
+ * randomized columns asked about in random order.
+ */
+public class ColumnProfilesTests {
+    private static final int COLUMNS = 16;
+    private static Block[] blocks;
+
+    @BeforeClass
+    public static void beforeAll() {
+        Bootstrap.func_151354_b();
+        blocks = new Block[] {Blocks.air, Blocks.stone, Blocks.dirt, Blocks.grass, Blocks.sand,
+                Blocks.sandstone, Blocks.water, Blocks.ice, Blocks.log, Blocks.planks,
+                Blocks.cobblestone, Blocks.stonebrick, Blocks.glass};
+    }
+
+    @Test
+    public void testMatchesBlockClassification() {
+        Random random = new Random(1L);
+        ColumnPlacer placer = new ColumnPlacer(random);
+        ColumnProfiles profiles = new ColumnProfiles(placer);
+        for (int n = 0; n < 20000; n++) {
+            int i = random.nextInt(COLUMNS), k = random.nextInt(COLUMNS);
+            /* Mostly near the middle, like a wall plan, with some far off and out of the world */
+            int j = random.nextInt(4) == 0 ? random.nextInt(270) - 5 : 100 + random.nextInt(30);
+            assertEquals("block " + i + "," + j + "," + k, expected(placer, i, j, k),
+                    profiles.get(i, j, k));
+        }
+        assertEquals(COLUMNS * COLUMNS, profiles.getColumnCount());
+        assertTrue(profiles.getBlocksRead() < profiles.getLookupCount());
+    }
+
+    @Test
+    public void testGrowsWindowBothWays() {
+        ColumnPlacer placer = new ColumnPlacer(new Random(2L));
+        ColumnProfiles profiles = new ColumnProfiles(placer);
+        for (int j = 128; j < 256; j++)
+            assertEquals(expected(placer, 3, j, 4), profiles.get(3, j, 4));
+        for (int j = 127; j >= 0; j--)
+            assertEquals(expected(placer, 3, j, 4), profiles.get(3, j, 4));
+        for (int j = 0; j < 256; j++)
+            assertEquals(expected(placer, 3, j, 4), profiles.get(3, j, 4));
+        assertEquals(1, profiles.getColumnCount());
+    }
+
+    /* The classification that BuildingWall.plan() used to make from single block reads */
+    private static int expected(ColumnPlacer placer, int i, int j, int k) {
+        Block block = placer.getBlock(i, j, k);
+        int profile = 0;
+        if (BlockProperties.isWallable(block))
+            profile |= ColumnProfiles.WALLABLE;
+        if (BlockProperties.isWater(block))
+            profile |= ColumnProfiles.WATER;
+        if (BlockProperties.isArtificial(block)
+                && !(block == Blocks.sandstone && (placer.getBlock(i, j + 1, k) == Blocks.sand
+                        || placer.getBlock(i, j + 2, k) == Blocks.sand)))
+            profile |= ColumnProfiles.ARTIFICIAL_WALL;
+        return profile;
+    }
+
+    /* Columns of short runs of random blocks, so that sandstone often lies under sand */
+    private static class ColumnPlacer extends WorldBlockPlacer {
+        private final Block[][][] columns = new Block[COLUMNS][COLUMNS][256];
+
+        public ColumnPlacer(Random random) {
+            super(null);
+            for (int i = 0; i < COLUMNS; i++) {
+                for (int k = 0; k < COLUMNS; k++) {
+                    Block block = Blocks.air;
+                    for (int j = 0; j < 256; j++) {
+                        if (random.nextInt(4) == 0)
+                            block = blocks[random.nextInt(blocks.length)];
+                        columns[i][k][j] = block;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Block getBlock(int i, int j, int k) {
+            if (j < 0 || j > 255)
+                return Blocks.air;
+            return columns[i][k][j];
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.util.blocks.DelayedBlockQueue;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedList;
+import java.util.Random;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+
+/**
+ * Compares the DelayedBlockQueue with the LinkedList of block objects it replaced, for a flush the
+ * size of a BuildingTower: the interior air, stairs, torches and ladders of a 15x15 tower, about
+ * 9000 delayed blocks. Not a JUnit test, run it by hand with main().
+ * <p>
+ * The flush only sums up the blocks instead of placing them, so that the numbers show the cost of
+ * the queue itself.
+ */
+public class DelayedBlockQueueBenchmark {
+    private final static int BLOCKS = 9000;
+    private final static int WARMUP_ROUNDS = 2000;
+    private final static int ROUNDS = 5000;
+
+    /* What the old queue held for each block */
+    private static class QueuedBlock {
+        final int x, y, z;
+        final Block block;
+        final int meta;
+
+        QueuedBlock(int x, int y, int z, Block block, int meta) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.block = block;
+            this.meta = meta;
+        }
+    }
+
+    private static int[] xs = new int[BLOCKS], ys = new int[BLOCKS], zs = new int[BLOCKS];
+    private static Block[] blocks = new Block[BLOCKS];
+    private static int[] metas = new int[BLOCKS];
+
+    public static void main(String[] args) {
+        Bootstrap.func_151354_b();
+        Random random = new Random(42);
+        Block[] kinds = {Blocks.air, Blocks.air, Blocks.air, Blocks.stone_stairs, Blocks.torch,
+                Blocks.ladder};
+        for (int n = 0; n < BLOCKS; n++) {
+            xs[n] = 1000 + random.nextInt(15);
+            ys[n] = 64 + n / 225;
+            zs[n] = -1000 + random.nextInt(15);
+            blocks[n] = kinds[random.nextInt(kinds.length)];
+            metas[n] = random.nextInt(4);
+        }
+
+        DelayedBlockQueue queue = new DelayedBlockQueue();
+        for (int n = 0; n < WARMUP_ROUNDS; n++) {
+            flushLinkedList();
+            flushQueue(queue);
+        }
+        report("LinkedList", false, queue);
+        report("DelayedBlockQueue", true, queue);
+    }
+
+    private static void report(String name, boolean primitive, DelayedBlockQueue queue) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long sum = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int n = 0; n < ROUNDS; n++)
+            sum += primitive ? flushQueue(queue) : flushLinkedList();
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf("%-18s %8.1f flushes/s %10d bytes/flush (%d)%n", name,
+                ROUNDS * 1e9 / nanos, allocated / ROUNDS, sum);
+    }
+
+    private static long flushLinkedList() {
+        LinkedList<QueuedBlock> list = new LinkedList<QueuedBlock>();
+        for (int n = 0; n < BLOCKS; n++)
+            list.offer(new QueuedBlock(xs[n], ys[n], zs[n], blocks[n], metas[n]));
+        long sum = 0;
+        QueuedBlock block;
+        while ((block = list.poll()) != null)
+            sum += block.x + block.y + block.z + block.meta + block.block.getLightValue();
+        return sum;
+    }
+
+    private static long flushQueue(DelayedBlockQueue queue) {
+        for (int n = 0; n < BLOCKS; n++)
+            queue.add(xs[n], ys[n], zs[n], blocks[n], metas[n]);
+        queue.sortByChunk();
+        long sum = 0;
+        for (int n = 0; n < queue.size(); n++)
+            sum += queue.getI(n) + queue.getJ(n) + queue.getK(n) + queue.getMeta(n)
+                    + queue.getBlock(n).getLightValue();
+        queue.clear();
+        return sum;
+    }
+}
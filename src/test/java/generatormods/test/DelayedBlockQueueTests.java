@@ -0,0 +1,128 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.util.blocks.DelayedBlockQueue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DelayedBlockQueueTests {
+    @BeforeClass
+    public static void beforeAll() {
+        Bootstrap.func_151354_b();
+    }
+
+    @Test
+    public void testPositionsSurvivePacking() {
+        DelayedBlockQueue queue = new DelayedBlockQueue();
+        queue.add(-29999999, 0, 29999999, Blocks.torch, 5);
+        queue.add(15, 255, -16, Blocks.air, 3);
+        assertEquals(2, queue.size());
+        assertEquals(-29999999, queue.getI(0));
+        assertEquals(0, queue.getJ(0));
+        assertEquals(29999999, queue.getK(0));
+        assertEquals(Blocks.torch, queue.getBlock(0));
+        assertEquals(5, queue.getMeta(0));
+        assertEquals(15, queue.getI(1));
+        assertEquals(255, queue.getJ(1));
+        assertEquals(-16, queue.getK(1));
+        assertEquals(Blocks.air, queue.getBlock(1));
+        assertEquals(3, queue.getMeta(1));
+    }
+
+    @Test
+    public void testSortGroupsChunksAndKeepsOrder() {
+        DelayedBlockQueue queue = new DelayedBlockQueue();
+        queue.add(-1, 70, 0, Blocks.air, 0);
+        queue.add(3, 64, 3, Blocks.glowstone, 0);
+        queue.add(20, 64, 3, Blocks.air, 0);
+        queue.add(3, 10, 3, Blocks.glowstone, 0);
+        queue.add(3, 64, 3, Blocks.air, 0);
+        queue.add(-1, 71, 0, Blocks.glowstone, 0);
+        for (int n = 0; n < 100; n++)
+            queue.add(n * 7 - 300, n, n * 3 - 150, Blocks.air, 0);
+        int size = queue.size();
+        queue.sortByChunk();
+        assertEquals(size, queue.size());
+
+        // Blocks of one chunk section are next to each other
+        Set<String> seen = new HashSet<String>();
+        String last = null;
+        int glowstoneAt = -1, airAt = -1;
+        for (int n = 0; n < queue.size(); n++) {
+            String section = (queue.getI(n) >> 4) + "," + (queue.getK(n) >> 4) + ","
+                    + (queue.getJ(n) >> 4);
+            if (!section.equals(last))
+                assertTrue("section " + section + " split up", seen.add(section));
+            last = section;
+            if (queue.getI(n) == 3 && queue.getJ(n) == 64 && queue.getK(n) == 3) {
+                if (queue.getBlock(n) == Blocks.glowstone)
+                    glowstoneAt = n;
+                else
+                    airAt = n;
+            }
+        }
+        // Writes to the same position stay in order
+        assertTrue(glowstoneAt >= 0 && glowstoneAt < airAt);
+
+        queue.clear();
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testNeighborDependentBlocksKeepTheirPlace() {
+        DelayedBlockQueue queue = new DelayedBlockQueue();
+        Block[] pinned = {Blocks.oak_stairs, Blocks.vine, Blocks.torch, Blocks.ladder,
+                Blocks.water, Blocks.air};
+        int[] pinnedAt = new int[pinned.length];
+        for (int p = 0; p < pinned.length; p++) {
+            for (int n = 0; n < 10; n++)
+                queue.add(n * 37 - 150, 60 + p, n * 11, Blocks.air, 0);
+            pinnedAt[p] = queue.size();
+            // air with metadata is a painting, which looks for a wall
+            queue.add(p * 5, 100, 0, pinned[p], pinned[p] == Blocks.air ? 4 : 1);
+        }
+        for (int n = 0; n < 10; n++)
+            queue.add(n * 37 - 150, 70, n * 11, Blocks.air, 0);
+        queue.sortByChunk();
+
+        for (int p = 0; p < pinned.length; p++) {
+            int n = pinnedAt[p];
+            assertEquals(pinned[p], queue.getBlock(n));
+            assertEquals(p * 5, queue.getI(n));
+            // The blocks before it are the ones that were added before it
+            for (int m = 0; m < n; m++) {
+                if (queue.getJ(m) == 100)
+                    assertTrue(queue.getI(m) < p * 5);
+                else
+                    assertTrue(queue.getJ(m) <= 60 + p);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.buildings.BuildingWall;
+import generatormods.buildings.IBuildingConfig;
+import generatormods.config.templates.TemplateTML;
+import generatormods.config.templates.TemplateWall;
+import generatormods.util.build.Dir;
+import generatormods.util.build.Handedness;
+import generatormods.walledcity.EnclosureMask;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Random;
+
+import net.minecraft.init.Bootstrap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Compares EnclosureMask against asking BuildingWall.ptIsToXHand() of every wall for every column,
+ * on walls of random shapes, directions and handedness.
+ */
+public class EnclosureMaskTests {
+    private final static String WALL_STYLE =
+            "src/main/resources/templates/greatwall/StonebrickWall.tml";
+    private final static int ROUNDS = 200;
+    private static TemplateWall ws;
+    private static IBuildingConfig config;
+
+    @BeforeClass
+    public static void beforeAll() throws Exception {
+        Bootstrap.func_151354_b();
+        Logger logger = LogManager.getLogger("EnclosureMaskTests");
+        ws = new TemplateWall(new File(WALL_STYLE), new HashMap<String, TemplateTML>(), logger);
+        config = mock(IBuildingConfig.class);
+        when(config.getRandom()).thenReturn(new Random(1L));
+        when(config.getLogger()).thenReturn(logger);
+        when(config.getBacktrackLength()).thenReturn(9);
+    }
+
+    @Test
+    public void testMatchesPtIsToXHand() {
+        Random random = new Random(19L);
+        for (int round = 0; round < ROUNDS; round++) {
+            int minI = random.nextInt(200) - 100, minK = random.nextInt(200) - 100;
+            int width = 1 + random.nextInt(60), length = 1 + random.nextInt(60);
+            int buffer = random.nextInt(9) - 4;
+            ws.TowerXOffset = random.nextInt(5) - 2;
+            BuildingWall[] walls = new BuildingWall[1 + random.nextInt(4)];
+            for (int w = 0; w < walls.length; w++)
+                walls[w] = randomWall(random, w, minI, minK, width, length);
+
+            EnclosureMask mask = new EnclosureMask(walls, buffer, minI, minK, width, length);
+            int inside = 0;
+            for (int i = minI - 2; i < minI + width + 2; i++) {
+                for (int k = minK - 2; k < minK + length + 2; k++) {
+                    boolean expected = i >= minI && k >= minK && i < minI + width
+                            && k < minK + length;
+                    for (BuildingWall wall : walls)
+                        expected &= !wall.ptIsToXHand(new int[] {i, 64, k}, buffer);
+                    assertEquals("round " + round + " at " + i + "," + k, expected,
+                            mask.contains(i, k));
+                    if (expected)
+                        inside++;
+                }
+            }
+            assertEquals(inside, mask.size());
+            int counted = 0;
+            for (int index = mask.next(0); index >= 0; index = mask.next(index + 1)) {
+                assertTrue(mask.contains(mask.getI(index), mask.getK(index)));
+                counted++;
+            }
+            assertEquals(inside, counted);
+        }
+    }
+
+    /*
+     * A wall from somewhere around the box, whose local x wanders by at most one per step like a
+     * planned wall. Sometimes it is shorter than the box, so that the ends are used.
+     */
+    private static BuildingWall randomWall(Random random, int id, int minI, int minK, int width,
+            int length) {
+        int i = minI + random.nextInt(width + 20) - 10, k = minK + random.nextInt(length + 20) - 10;
+        int maxLength = 1 + random.nextInt(100);
+        BuildingWall wall = new BuildingWall(id, config, ws, Dir.values()[random.nextInt(4)],
+                random.nextBoolean() ? Handedness.R_HAND : Handedness.L_HAND, maxLength, false, i,
+                64, k);
+        wall.bLength = maxLength;
+        for (int n = 1; n < maxLength; n++)
+            wall.xArray[n] = wall.xArray[n - 1] + random.nextInt(3) - 1;
+        return wall;
+    }
+}
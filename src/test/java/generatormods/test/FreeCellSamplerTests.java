@@ -0,0 +1,81 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.buildings.BuildingWall;
+import generatormods.walledcity.EnclosureMask;
+import generatormods.walledcity.FreeCellSampler;
+import generatormods.walledcity.LayoutCode;
+import generatormods.walledcity.LayoutGrid;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FreeCellSamplerTests {
+    /* A 30 by 20 box from (100, -50) with no walls, so every column is inside */
+    private static EnclosureMask box() {
+        return new EnclosureMask(new BuildingWall[0], 0, 100, -50, 30, 20);
+    }
+
+    @Test
+    public void testStartsWithEmptyCells() {
+        LayoutGrid layout = new LayoutGrid(40, 40);
+        // The layout starts at (95, -55), so its (5, 5) is the box's first column
+        layout.set(5, 5, 9, 9, LayoutCode.TOWER);
+        layout.set(20, 10, 20, 30, LayoutCode.AVENUE);
+        FreeCellSampler seeds = new FreeCellSampler(box(), layout, 95, -55);
+        assertEquals(30 * 20 - 25 - 15, seeds.size());
+        assertFalse(seeds.contains(100, -50));
+        assertFalse(seeds.contains(115, -40));
+        assertTrue(seeds.contains(105, -50));
+        assertTrue(seeds.contains(129, -31));
+        assertFalse(seeds.contains(130, -31));
+    }
+
+    @Test
+    public void testPicksOnlyFreeCells() {
+        FreeCellSampler seeds = new FreeCellSampler(box(), new LayoutGrid(0, 0), 0, 0);
+        seeds.remove(90, -60, 119, -41);
+        seeds.remove(125, -35);
+        seeds.remove(125, -35);
+        assertEquals(30 * 20 - 20 * 10 - 1, seeds.size());
+        Random random = new Random(21);
+        for (int n = 0; n < 2000; n++) {
+            int index = seeds.pick(random);
+            int i = seeds.getI(index), k = seeds.getK(index);
+            assertTrue(seeds.contains(i, k));
+            assertFalse(i < 120 && k < -40);
+        }
+    }
+
+    @Test
+    public void testRunsOut() {
+        FreeCellSampler seeds = new FreeCellSampler(box(), new LayoutGrid(0, 0), 0, 0);
+        Random random = new Random(3);
+        for (int n = 30 * 20; n > 0; n--) {
+            assertEquals(n, seeds.size());
+            int index = seeds.pick(random);
+            seeds.remove(seeds.getI(index), seeds.getK(index));
+        }
+        assertEquals(-1, seeds.pick(random));
+    }
+}
@@ -0,0 +1,156 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.buildings.BuildingWall;
+import generatormods.metrics.GenerationMetrics;
+import generatormods.metrics.MetricsDumper;
+import generatormods.metrics.RejectReason;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class GenerationMetricsTests {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GenerationMetrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = GenerationMetrics.forModule("TestModule");
+        metrics.reset();
+    }
+
+    @Test
+    public void testForModuleReturnsSameInstance() {
+        assertSame(metrics, GenerationMetrics.forModule("TestModule"));
+        assertTrue(GenerationMetrics.getAll().contains(metrics));
+    }
+
+    @Test
+    public void testCountsAndReset() {
+        metrics.addPlan(100);
+        metrics.addPlan(50);
+        metrics.addBuild(1000, true);
+        metrics.addBuild(10, false);
+        metrics.addPlacement(500, 3);
+        metrics.addPathBuffers(640, 128);
+        metrics.addStreets(10, 4);
+        metrics.reject(RejectReason.TOO_MUCH_WATER);
+        metrics.reject(RejectReason.forWallFail(BuildingWall.FailType.UNDERWATER));
+        metrics.reject(RejectReason.forWallFail(BuildingWall.FailType.MAXLENGTH));
+
+        assertEquals(2, metrics.getAttempts());
+        assertEquals(1, metrics.getSuccesses());
+        assertEquals(150, metrics.getPlanNanos());
+        assertEquals(1010, metrics.getBuildNanos());
+        assertEquals(500, metrics.getBlocksPlaced());
+        assertEquals(3, metrics.getChunksTouched());
+        assertEquals(640, metrics.getPathIntsAllocated());
+        assertEquals(128, metrics.getPathIntsReused());
+        assertEquals(10, metrics.getStreetSeeds());
+        assertEquals(4, metrics.getStreetsPlanned());
+        assertEquals(1, metrics.getRejections(RejectReason.TOO_MUCH_WATER));
+        assertEquals(1, metrics.getRejections(RejectReason.WALL_UNDERWATER));
+        assertEquals(1, metrics.getRejections(RejectReason.WALL_TOO_SHORT));
+
+        metrics.reset();
+        assertEquals(0, metrics.getAttempts());
+        assertEquals(0, metrics.getBlocksPlaced());
+        assertEquals(0, metrics.getPathIntsAllocated());
+        assertEquals(0, metrics.getStreetSeeds());
+        assertEquals(0, metrics.getRejections(RejectReason.TOO_MUCH_WATER));
+    }
+
+    @Test
+    public void testDumpAppendsCsvAndOverwritesJson() throws IOException {
+        File dir = folder.getRoot();
+        metrics.addPlan(2000000);
+        metrics.reject(RejectReason.TOO_CLOSE_TO_CITY);
+        MetricsDumper.dump(dir, 1);
+        MetricsDumper.dump(dir, 2);
+
+        List<String> csv = readLines(new File(dir, MetricsDumper.CSV_FILE));
+        assertTrue(csv.get(0).startsWith("time,module,attempts"));
+        int rows = 0;
+        for (String line : csv) {
+            if (line.contains(",TestModule,")) {
+                String time = rows == 0 ? "1" : "2";
+                assertTrue(line.startsWith(time + ",TestModule,1,0,2,"));
+                rows++;
+            }
+        }
+        assertEquals(2, rows);
+
+        StringBuilder json = new StringBuilder();
+        for (String line : readLines(new File(dir, MetricsDumper.JSON_FILE)))
+            json.append(line.trim());
+        assertTrue(json.toString().startsWith("{\"time\": 2,"));
+        assertTrue(json.toString().contains(
+                "\"TestModule\": {\"attempts\": 1,\"successes\": 0,\"planNanos\": 2000000,"));
+        assertTrue(json.toString().contains("\"rejections\": {\"TOO_CLOSE_TO_CITY\": 1}"));
+    }
+
+    @Test
+    public void testDumpStartsNewCsvWhenColumnsChange() throws IOException {
+        File dir = folder.getRoot();
+        File csvFile = new File(dir, MetricsDumper.CSV_FILE);
+        PrintWriter old = new PrintWriter(csvFile);
+        old.println("time,module,attempts,successes,plan_ms,build_ms,blocks,chunks,NO_STYLE");
+        old.println("1,TestModule,1,0,2,0,0,0,0");
+        old.close();
+        metrics.addPlan(1000000);
+        MetricsDumper.dump(dir, 5);
+        MetricsDumper.dump(dir, 6);
+
+        List<String> moved = readLines(new File(dir, "GeneratorModsStats.5.csv"));
+        assertEquals(2, moved.size());
+        assertTrue(moved.get(0).endsWith(",chunks,NO_STYLE"));
+        List<String> csv = readLines(csvFile);
+        assertEquals(MetricsDumper.getCsvHeader(), csv.get(0));
+        String[] columns = csv.get(0).split(",");
+        for (String line : csv)
+            assertEquals(columns.length, line.split(",", -1).length);
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+                lines.add(line);
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,156 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.buildings.BuildingDoubleWall;
+import generatormods.buildings.IBuildingConfig;
+import generatormods.buildings.PathBuffers;
+import generatormods.config.templates.TemplateTML;
+import generatormods.config.templates.TemplateWall;
+import generatormods.placement.WorldBlockPlacer;
+import generatormods.util.build.Dir;
+import generatormods.util.build.Handedness;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Random;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Times the planning of a 1000 long great wall, both halves of a BuildingDoubleWall, over rough
+ * hills with lakes and trees, once by backtracking and once for each beam width. Each is run with
+ * walls allocating their paths at full length, and with pooled PathBuffers. Not a JUnit test, run
+ * it by hand with main() from the project directory.
+ * <p>
+ * Along with the time, it counts the blocks that the plan reads from the placer, and the bytes
+ * allocated, which is what the garbage collector has to clean up after. With debug logging,
+ * BuildingWall.plan() also logs how many lookups those reads answered.
+ */
+public class GreatWallPlanBenchmark {
+    private final static String WALL_STYLE =
+            "src/main/resources/templates/greatwall/StonebrickWall.tml";
+    private final static int WARMUP_ROUNDS = 20;
+    private final static int ROUNDS = 50;
+    private final static int SEA_LEVEL = 62;
+    /* 0 plans by backtracking */
+    private final static int[] BEAM_WIDTHS = {0, 4, 16, 64};
+
+    public static void main(String[] args) throws Exception {
+        Bootstrap.func_151354_b();
+        Logger logger = LogManager.getLogger("GreatWallPlanBenchmark");
+        TemplateWall ws = new TemplateWall(new File(WALL_STYLE),
+                new HashMap<String, TemplateTML>(), logger);
+        ws.MaxL = 1000;
+        RoughTerrain terrain = new RoughTerrain();
+        Random random = new Random();
+        IBuildingConfig config = mock(IBuildingConfig.class);
+        when(config.getBlockPlacer()).thenReturn(terrain);
+        when(config.getRandom()).thenReturn(random);
+        when(config.getLogger()).thenReturn(logger);
+        when(config.getBacktrackLength()).thenReturn(9);
+
+        for (int beamWidth : BEAM_WIDTHS) {
+            for (boolean pooled : new boolean[] {false, true}) {
+                ws.BeamWidth = beamWidth;
+                PathBuffers buffers = pooled ? new PathBuffers() : null;
+                when(config.getPathBuffers()).thenReturn(buffers);
+                for (int n = 0; n < WARMUP_ROUNDS; n++)
+                    plan(config, ws, random, n);
+                report((beamWidth == 0 ? "backtracking" : "beam " + beamWidth)
+                        + (pooled ? ", pooled" : ""), config, ws, random, terrain);
+            }
+        }
+    }
+
+    private static void report(String name, IBuildingConfig config, TemplateWall ws,
+            Random random, RoughTerrain terrain) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long length = 0;
+        terrain.reads = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int n = 0; n < ROUNDS; n++)
+            length += plan(config, ws, random, n);
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf("%-20s %8.2f ms/plan %8d blocks read/plan %10d bytes/plan %6d long%n",
+                name, nanos / 1e6 / ROUNDS, terrain.reads / ROUNDS, allocated / ROUNDS,
+                length / ROUNDS);
+    }
+
+    /* Plans a wall starting on the surface at a spot picked by the round, returns its length */
+    private static int plan(IBuildingConfig config, TemplateWall ws, Random random, int round) {
+        random.setSeed(round);
+        int i = 97 * round, k = -61 * round;
+        int[] pt = {i, RoughTerrain.height(i, k), k};
+        BuildingDoubleWall dw = new BuildingDoubleWall(round, config, ws,
+                Dir.values()[round & 3], Handedness.R_HAND, pt);
+        int length = dw.plan() ? dw.wall1.bLength + dw.wall2.bLength : 0;
+        /* The end of the job */
+        if (config.getPathBuffers() != null)
+            config.getPathBuffers().release();
+        return length;
+    }
+
+    /*
+     * Hills of a few sizes on top of each other, with water up to sea level and a tree trunk here
+     * and there. Computed on every read, which costs about the same as a chunk lookup.
+     */
+    private static class RoughTerrain extends WorldBlockPlacer {
+        long reads;
+
+        RoughTerrain() {
+            super(null);
+        }
+
+        static int height(int i, int k) {
+            int noise = ((i * 73856093) ^ (k * 19349663)) >>> 28;
+            return 66 + (int) (14 * Math.sin(i * 0.037) * Math.cos(k * 0.029) + 5
+                    * Math.sin((i - k) * 0.11)) + (noise & 3);
+        }
+
+        @Override
+        public Block getBlock(int i, int j, int k) {
+            reads++;
+            int h = height(i, k);
+            if (j < h - 4)
+                return Blocks.stone;
+            if (j < h - 1)
+                return Blocks.dirt;
+            if (j < h)
+                return h <= SEA_LEVEL ? Blocks.sand : Blocks.grass;
+            if (j <= SEA_LEVEL)
+                return Blocks.water;
+            if (j < h + 5 && ((i * 31 + k * 17) & 127) == 0)
+                return Blocks.log;
+            return Blocks.air;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.walledcity.LayoutCode;
+import generatormods.walledcity.LayoutGrid;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LayoutGridTests {
+    /* The check that WalledCityBuilder used before the grid */
+    private static boolean isClearByScan(LayoutCode[][] layout, int x1, int z1, int x2, int z2,
+            LayoutCode code) {
+        for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++)
+            for (int z = Math.min(z1, z2); z <= Math.max(z1, z2); z++)
+                if (x >= 0 && z >= 0 && x < layout.length && z < layout[0].length)
+                    if (!code.canOverride(layout[x][z]))
+                        return false;
+        return true;
+    }
+
+    @Test
+    public void testStartsEmpty() {
+        LayoutGrid grid = new LayoutGrid(37, 21);
+        assertEquals(LayoutCode.EMPTY, grid.get(36, 20));
+        assertTrue(grid.isClear(0, 0, 36, 20, LayoutCode.STREET));
+        // EMPTY cannot override anything, not even EMPTY
+        assertFalse(grid.isClear(5, 5, 5, 5, LayoutCode.EMPTY));
+        assertTrue(grid.isClear(-10, -10, -1, -1, LayoutCode.EMPTY));
+    }
+
+    @Test
+    public void testMatchesScan() {
+        Random random = new Random(18);
+        LayoutCode[] codes = LayoutCode.values();
+        int width = 61, length = 43;
+        LayoutGrid grid = new LayoutGrid(width, length);
+        LayoutCode[][] layout = new LayoutCode[width][length];
+        for (LayoutCode[] row : layout)
+            Arrays.fill(row, LayoutCode.EMPTY);
+        for (int round = 0; round < 300; round++) {
+            int x1 = random.nextInt(width + 10) - 5, z1 = random.nextInt(length + 10) - 5;
+            int x2 = x1 + random.nextInt(12) - 6, z2 = z1 + random.nextInt(12) - 6;
+            LayoutCode code = codes[1 + random.nextInt(codes.length - 1)];
+            grid.set(x1, z1, x2, z2, code);
+            for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++)
+                for (int z = Math.min(z1, z2); z <= Math.max(z1, z2); z++)
+                    if (x >= 0 && z >= 0 && x < width && z < length)
+                        layout[x][z] = code;
+            for (int query = 0; query < 50; query++) {
+                int qx1 = random.nextInt(width + 10) - 5, qz1 = random.nextInt(length + 10) - 5;
+                int qx2 = qx1 + random.nextInt(30) - 15, qz2 = qz1 + random.nextInt(30) - 15;
+                LayoutCode attempted = codes[random.nextInt(codes.length)];
+                assertEquals(isClearByScan(layout, qx1, qz1, qx2, qz2, attempted),
+                        grid.isClear(qx1, qz1, qx2, qz2, attempted));
+            }
+        }
+        for (int x = 0; x < width; x++)
+            for (int z = 0; z < length; z++)
+                assertEquals(layout[x][z], grid.get(x, z));
+    }
+
+    @Test
+    public void testSingleCellsAcrossTiles() {
+        LayoutGrid grid = new LayoutGrid(20, 9);
+        grid.set(7, 8, LayoutCode.STREET);
+        grid.set(8, 0, LayoutCode.TOWER);
+        assertTrue(grid.isClear(0, 0, 7, 8, LayoutCode.AVENUE));
+        assertTrue(grid.isClear(0, 0, 7, 8, LayoutCode.TOWER));
+        assertFalse(grid.isClear(8, 0, 19, 8, LayoutCode.AVENUE));
+        assertTrue(grid.isClear(9, 0, 19, 8, LayoutCode.AVENUE));
+        assertFalse(grid.isClear(0, 8, 7, 8, LayoutCode.WALL));
+        grid.set(7, 8, LayoutCode.EMPTY);
+        grid.set(8, 0, LayoutCode.EMPTY);
+        assertTrue(grid.isClear(0, 0, 19, 8, LayoutCode.WALL));
+    }
+}
@@ -0,0 +1,182 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.buildings.BuildingWall;
+import generatormods.buildings.IBuildingConfig;
+import generatormods.buildings.PathBuffers;
+import generatormods.config.templates.TemplateTML;
+import generatormods.config.templates.TemplateWall;
+import generatormods.placement.WorldBlockPlacer;
+import generatormods.util.build.Dir;
+import generatormods.util.build.Handedness;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class PathBuffersTests {
+    private final static String WALL_STYLE =
+            "src/main/resources/templates/greatwall/StonebrickWall.tml";
+    private final static int MAX_LENGTH = 400;
+
+    /* Hills with lakes below sea level, so that walls fail and backtrack now and then */
+    private static class Hills extends WorldBlockPlacer {
+        Hills() {
+            super(null);
+        }
+
+        static int height(int i, int k) {
+            return 64 + (int) (9 * Math.sin(i * 0.043) * Math.cos(k * 0.031) + 3
+                    * Math.sin((i + k) * 0.13));
+        }
+
+        @Override
+        public Block getBlock(int i, int j, int k) {
+            int h = height(i, k);
+            if (j < h)
+                return Blocks.stone;
+            return j <= 62 ? Blocks.water : Blocks.air;
+        }
+    }
+
+    /* Each test starts from an empty shared pool */
+    @Before
+    public void setUp() {
+        PathBuffers.clearPool();
+    }
+    @Test
+    public void testLeaseRoundsUpToSizeClass() {
+        PathBuffers buffers = new PathBuffers();
+        assertEquals(PathBuffers.MIN_CAPACITY, buffers.lease(1).length);
+        assertEquals(PathBuffers.MIN_CAPACITY, buffers.lease(PathBuffers.MIN_CAPACITY).length);
+        assertEquals(2 * PathBuffers.MIN_CAPACITY,
+                buffers.lease(PathBuffers.MIN_CAPACITY + 1).length);
+        assertEquals(16 * PathBuffers.MIN_CAPACITY, buffers.lease(1000).length);
+    }
+
+    @Test
+    public void testGivenBackBufferIsReusedEmpty() {
+        PathBuffers buffers = new PathBuffers();
+        int capacity = 32 * PathBuffers.MIN_CAPACITY;
+        int[] buffer = buffers.lease(capacity);
+        buffer[5] = 42;
+        buffers.giveBack(buffer);
+        int[] again = buffers.lease(capacity);
+        assertSame(buffer, again);
+        assertEquals(0, again[5]);
+        assertEquals(capacity, buffers.getReusedInts());
+    }
+
+    @Test
+    public void testGrowKeepsContents() {
+        PathBuffers buffers = new PathBuffers();
+        int[] buffer = buffers.lease(PathBuffers.MIN_CAPACITY);
+        for (int n = 0; n < buffer.length; n++)
+            buffer[n] = n;
+        int[] grown = buffers.grow(buffer, buffer.length + 1);
+        assertTrue(grown.length > buffer.length);
+        for (int n = 0; n < buffer.length; n++)
+            assertEquals(n, grown[n]);
+        assertEquals(0, grown[buffer.length]);
+    }
+
+    @Test
+    public void testOddSizedBuffersAreNotPooled() {
+        PathBuffers buffers = new PathBuffers();
+        int capacity = 16 * PathBuffers.MIN_CAPACITY;
+        buffers.giveBack(new int[capacity - 1]);
+        assertEquals(capacity, buffers.lease(capacity - 1).length);
+        assertEquals(0, buffers.getReusedInts());
+    }
+
+    @Test
+    public void testPooledPlanIsTheSame() throws Exception {
+        TemplateWall ws = loadStyle();
+        for (int beamWidth : new int[] {0, 8}) {
+            ws.BeamWidth = beamWidth;
+            for (Dir dir : Dir.values()) {
+                String name = dir + " beam " + beamWidth;
+                BuildingWall unpooled = plan(ws, dir, null);
+                PathBuffers buffers = new PathBuffers();
+                BuildingWall pooled = plan(ws, dir, buffers);
+                assertEquals(name, unpooled.bLength, pooled.bLength);
+                assertEquals(name, unpooled.failCode, pooled.failCode);
+                for (int n = 0; n < unpooled.bLength; n++) {
+                    assertEquals(name + " at " + n, unpooled.xArray[n], pooled.xArray[n]);
+                    assertEquals(name + " at " + n, unpooled.yArray[n], pooled.yArray[n]);
+                }
+                buffers.release();
+            }
+        }
+    }
+
+    @Test
+    public void testReleaseKeepsThePath() throws Exception {
+        TemplateWall ws = loadStyle();
+        PathBuffers buffers = new PathBuffers();
+        BuildingWall wall = plan(ws, Dir.NORTH, buffers);
+        // Long enough that the buffers were grown past the smallest size
+        assertTrue(wall.bLength > PathBuffers.MIN_CAPACITY);
+        int length = wall.bLength + wall.endBLength;
+        int[] x = Arrays.copyOf(wall.xArray, length), y = Arrays.copyOf(wall.yArray, length);
+        buffers.release();
+        assertArrayEquals(x, wall.xArray);
+        assertArrayEquals(y, wall.yArray);
+        // The buffers the wall held go to the next job, which may write anything to them
+        PathBuffers next = new PathBuffers();
+        for (int n = 0; n < 8; n++)
+            Arrays.fill(next.lease(MAX_LENGTH), -1);
+        assertArrayEquals(x, wall.xArray);
+        assertArrayEquals(y, wall.yArray);
+    }
+
+    private static TemplateWall loadStyle() throws Exception {
+        Bootstrap.func_151354_b();
+        Logger logger = LogManager.getLogger("PathBuffersTests");
+        return new TemplateWall(new File(WALL_STYLE), new HashMap<String, TemplateTML>(), logger);
+    }
+
+    /* Plans a wall from the origin, with pooled buffers unless buffers is null */
+    private static BuildingWall plan(TemplateWall ws, Dir dir, PathBuffers buffers) {
+        IBuildingConfig config = mock(IBuildingConfig.class);
+        when(config.getBlockPlacer()).thenReturn(new Hills());
+        when(config.getRandom()).thenReturn(new Random(1L));
+        when(config.getLogger()).thenReturn(LogManager.getLogger("PathBuffersTests"));
+        when(config.getBacktrackLength()).thenReturn(9);
+        when(config.getPathBuffers()).thenReturn(buffers);
+        BuildingWall wall = new BuildingWall(1, config, ws, dir, Handedness.R_HAND, MAX_LENGTH,
+                true, 0, Hills.height(0, 0), 0);
+        wall.plan(1, 0, BuildingWall.DEFAULT_LOOKAHEAD, true);
+        return wall;
+    }
+}
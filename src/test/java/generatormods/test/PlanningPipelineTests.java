@@ -0,0 +1,143 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.builders.AbstractBuilder;
+import generatormods.config.chests.ChestContentsSpec;
+import generatormods.config.chests.ChestType;
+import generatormods.planning.PlanningPipeline;
+import generatormods.world.WorldContext;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.biome.BiomeGenBase;
+import net.minecraft.world.biome.WorldChunkManager;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraft.world.storage.ISaveHandler;
+import net.minecraft.world.storage.MapStorage;
+
+import org.apache.logging.log4j.LogManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks that every job handed to the PlanningPipeline is finished, however its planning ends.
+ */
+public class PlanningPipelineTests {
+    /* Throws what it is told to from planSite(), and counts the server thread calls */
+    private static class ThrowingBuilder extends AbstractBuilder {
+        final Throwable thrown;
+        int finished = 0, runs = 0;
+
+        ThrowingBuilder(World world, Throwable thrown) {
+            super(world, new Random(3L), 0, 0, 1, 1.0, LogManager
+                    .getLogger("PlanningPipelineTests"), new HashMap<ChestType, ChestContentsSpec>());
+            this.thrown = thrown;
+        }
+
+        @Override
+        public boolean planSite() {
+            if (thrown instanceof Error)
+                throw (Error) thrown;
+            throw (RuntimeException) thrown;
+        }
+
+        @Override
+        public void run() {
+            runs++;
+            finishJob();
+        }
+
+        @Override
+        public void finishJob() {
+            finished++;
+            super.finishJob();
+        }
+
+        @Override
+        public boolean plan(int i0, int j0, int k0) {
+            return false;
+        }
+
+        @Override
+        public boolean build() {
+            return false;
+        }
+    }
+
+    private World world;
+    private PlanningPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        Bootstrap.func_151354_b();
+        world = mock(World.class);
+        world.provider = new WorldProviderSurface();
+        world.provider.dimensionId = 23;
+        world.perWorldStorage = mock(MapStorage.class);
+        when(world.getSaveHandler()).thenReturn(mock(ISaveHandler.class));
+        when(world.getChunkProvider()).thenReturn(mock(IChunkProvider.class));
+        when(world.getWorldChunkManager()).thenReturn(mock(WorldChunkManager.class));
+        // The snapshot only copies the chunk the builder is in, an empty one
+        Chunk chunk = mock(Chunk.class);
+        chunk.heightMap = new int[256];
+        when(chunk.getBlockStorageArray()).thenReturn(new ExtendedBlockStorage[16]);
+        when(chunk.getBiomeGenForWorldCoords(anyInt(), anyInt(), any(WorldChunkManager.class)))
+                .thenReturn(BiomeGenBase.plains);
+        when(world.getChunkFromChunkCoords(anyInt(), anyInt())).thenReturn(chunk);
+        pipeline = new PlanningPipeline("PlanningPipelineTests", 1);
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.finishAll();
+        WorldContext.release(world);
+    }
+
+    @Test
+    public void testErrorDropsTheJob() {
+        ThrowingBuilder builder = new ThrowingBuilder(world, new StackOverflowError());
+        pipeline.submit(builder);
+        assertEquals(1, pipeline.getJobCount());
+        pipeline.finishAll();
+        assertEquals(0, pipeline.getJobCount());
+        assertEquals(1, builder.finished);
+        assertEquals(0, builder.runs);
+    }
+
+    @Test
+    public void testExceptionRunsOnTheServerThread() {
+        ThrowingBuilder builder = new ThrowingBuilder(world, new IllegalStateException());
+        pipeline.submit(builder);
+        pipeline.finishAll();
+        assertEquals(0, pipeline.getJobCount());
+        assertEquals(1, builder.runs);
+        assertEquals(1, builder.finished);
+    }
+}
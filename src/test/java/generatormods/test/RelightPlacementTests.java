@@ -0,0 +1,148 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.placement.BuildExecutor;
+import generatormods.placement.IBlockPlacer;
+import generatormods.placement.PendingChunkPlacements;
+import generatormods.placement.PlacementMode;
+import generatormods.placement.RelightMode;
+
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.EnumSkyBlock;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.storage.MapStorage;
+
+import org.apache.logging.log4j.LogManager;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks that a deferred relight covers the blocks of every PlacementMode, including the ones that
+ * the CHUNK_DEFERRED mode only places once their chunk is populated.
+ */
+public class RelightPlacementTests {
+    private World world;
+    private IChunkProvider provider;
+    /* A populated chunk, and one far enough away to be generated later */
+    private Chunk near, far;
+
+    @BeforeClass
+    public static void beforeAll() {
+        Bootstrap.func_151354_b();
+        BuildExecutor.instance = null;
+    }
+
+    @Before
+    public void beforeEach() {
+        world = mock(World.class);
+        world.provider = new WorldProviderSurface();
+        world.perWorldStorage = new MapStorage(null);
+        provider = mock(IChunkProvider.class);
+        when(world.getChunkProvider()).thenReturn(provider);
+        when(world.getBlock(anyInt(), anyInt(), anyInt())).thenReturn(Blocks.air);
+        near = spy(new Chunk(world, 0, 0));
+        near.isTerrainPopulated = true;
+        far = spy(new Chunk(world, 5, 5));
+        when(world.getChunkFromChunkCoords(0, 0)).thenReturn(near);
+        when(world.getChunkFromChunkCoords(5, 5)).thenReturn(far);
+        when(provider.chunkExists(0, 0)).thenReturn(true);
+    }
+
+    @Test
+    public void testImmediateIsRelit() {
+        populateFar();
+        place(PlacementMode.IMMEDIATE);
+        assertBothRelit();
+    }
+
+    @Test
+    public void testTickedIsRelit() {
+        populateFar();
+        place(PlacementMode.TICKED);
+        assertBothRelit();
+    }
+
+    @Test
+    public void testBatchedIsRelit() {
+        populateFar();
+        place(PlacementMode.BATCHED);
+        assertBothRelit();
+    }
+
+    @Test
+    public void testChunkDeferredIsRelitWhenApplied() {
+        place(PlacementMode.CHUNK_DEFERRED);
+        verify(world).updateLightByType(EnumSkyBlock.Block, 3, 64, 3);
+        verify(near).generateSkylightMap();
+        verify(world, never()).updateLightByType(EnumSkyBlock.Block, 83, 64, 83);
+        verify(far, never()).generateSkylightMap();
+
+        populateFar();
+        PendingChunkPlacements placements = PendingChunkPlacements.forWorld(world);
+        assertTrue(placements.get(5, 5).needsRelight());
+        assertEquals(1, placements.apply(5, 5));
+        assertEquals(Blocks.glowstone, far.getBlock(3, 64, 3));
+        verify(world).updateLightByType(EnumSkyBlock.Block, 83, 64, 83);
+        verify(far).generateSkylightMap();
+    }
+
+    @Test
+    public void testChunkDeferredWithoutRelightIsLeftAlone() {
+        IBlockPlacer placer = PlacementMode.CHUNK_DEFERRED.createPlacer(world, 5);
+        placer.setBlockNoLighting(83, 64, 83, Blocks.glowstone, 0, 3);
+        placer.finish();
+        populateFar();
+        PendingChunkPlacements placements = PendingChunkPlacements.forWorld(world);
+        assertFalse(placements.get(5, 5).needsRelight());
+        placements.apply(5, 5);
+        verify(world, never()).updateLightByType(any(EnumSkyBlock.class), anyInt(), anyInt(),
+                anyInt());
+    }
+
+    /* Places a light source in each chunk with a deferred relight, and finishes the placer */
+    private void place(PlacementMode mode) {
+        IBlockPlacer placer =
+                RelightMode.DEFERRED.wrap(mode.createPlacer(world, 5), 5,
+                        LogManager.getLogger("RelightPlacementTests"));
+        placer.setBlock(3, 64, 3, Blocks.glowstone, 0, 3);
+        placer.setBlock(83, 64, 83, Blocks.glowstone, 0, 3);
+        placer.finish();
+    }
+
+    private void populateFar() {
+        far.isTerrainPopulated = true;
+        when(provider.chunkExists(5, 5)).thenReturn(true);
+    }
+
+    private void assertBothRelit() {
+        verify(world).updateLightByType(EnumSkyBlock.Block, 3, 64, 3);
+        verify(world).updateLightByType(EnumSkyBlock.Block, 83, 64, 83);
+        verify(near).generateSkylightMap();
+        verify(far).generateSkylightMap();
+    }
+}
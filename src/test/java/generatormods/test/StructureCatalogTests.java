@@ -0,0 +1,128 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.catalog.StructureCatalog;
+import generatormods.catalog.StructureRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.minecraft.nbt.NBTTagCompound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StructureCatalogTests {
+    private static int[] box(int minI, int minJ, int minK, int maxI, int maxJ, int maxK) {
+        return new int[] {minI, minJ, minK, maxI, maxJ, maxK};
+    }
+
+    private static int[] randomBox(Random random) {
+        int i = random.nextInt(4000) - 2000, j = random.nextInt(100);
+        int k = random.nextInt(4000) - 2000;
+        return box(i, j, k, i + random.nextInt(300), j + random.nextInt(40),
+                k + random.nextInt(300));
+    }
+
+    /* The check without the grid */
+    private static boolean overlapsByScan(List<int[]> boxes, int[] query) {
+        for (int[] box : boxes) {
+            boolean overlaps = true;
+            for (int n = 0; n < 3; n++)
+                if (box[n] > query[n + 3] || box[n + 3] < query[n])
+                    overlaps = false;
+            if (overlaps)
+                return true;
+        }
+        return false;
+    }
+
+    @Test
+    public void testOverlapsMatchesScan() {
+        Random random = new Random(15);
+        StructureCatalog catalog = new StructureCatalog(StructureCatalog.DATA_NAME);
+        List<int[]> boxes = new ArrayList<int[]>();
+        for (int n = 0; n < 200; n++) {
+            int[] box = randomBox(random);
+            catalog.add("Test", "style", box);
+            boxes.add(box);
+        }
+        assertEquals(200, catalog.size());
+        for (int n = 0; n < 5000; n++) {
+            int[] query = randomBox(random);
+            assertEquals(overlapsByScan(boxes, query), catalog.overlaps(query));
+        }
+    }
+
+    @Test
+    public void testSegmentsLeaveGaps() {
+        StructureCatalog catalog = new StructureCatalog(StructureCatalog.DATA_NAME);
+        // An L shaped wall, the corner of the L's bounds is not covered
+        catalog.add("GreatWall", "style", box(0, 60, 0, 400, 70, 6), box(0, 60, 0, 6, 70, 400));
+        assertTrue(catalog.contains(200, 65, 3));
+        assertTrue(catalog.contains(3, 65, 300));
+        assertFalse(catalog.contains(300, 65, 300));
+        assertFalse(catalog.contains(200, 20, 3));
+        assertEquals(1, catalog.findOverlapping(0, 0, 1000, 1000).size());
+        assertTrue(catalog.findOverlapping(100, 100, 399, 399).isEmpty());
+    }
+
+    @Test
+    public void testFindNear() {
+        StructureCatalog catalog = new StructureCatalog(StructureCatalog.DATA_NAME);
+        StructureRecord far = catalog.add("WalledCity", "far", box(300, 60, 0, 400, 70, 100));
+        StructureRecord near = catalog.add("CARuins", "near", box(-50, 60, -10, -20, 70, 10));
+        StructureRecord inside = catalog.add("CARuins", "inside", box(-5, 0, -5, 5, 10, 5));
+        catalog.add("WalledCity", "too far", box(-2000, 60, -2000, -1900, 70, -1900));
+        List<StructureRecord> found = catalog.findNear(0, 0, 512);
+        assertEquals(3, found.size());
+        assertSame(inside, found.get(0));
+        assertSame(near, found.get(1));
+        assertSame(far, found.get(2));
+        assertEquals(0, inside.distanceTo(0, 0));
+        assertEquals(20, near.distanceTo(0, 0));
+        assertEquals(300, far.distanceTo(0, 0));
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        StructureCatalog catalog = new StructureCatalog(StructureCatalog.DATA_NAME);
+        catalog.add("GreatWall", "Wall", box(0, 60, 0, 40, 70, 6), box(40, 60, 0, 46, 70, 40));
+        catalog.add("CARuins", "B3/S23", box(-100, 60, -100, -90, 80, -90));
+        NBTTagCompound tag = new NBTTagCompound();
+        catalog.writeToNBT(tag);
+        StructureCatalog loaded = new StructureCatalog(StructureCatalog.DATA_NAME);
+        loaded.readFromNBT(tag);
+        assertEquals(2, loaded.size());
+        List<StructureRecord> found = loaded.findOverlapping(40, 20, 46, 20);
+        assertEquals(1, found.size());
+        StructureRecord wall = found.get(0);
+        assertEquals(1, wall.id);
+        assertEquals("GreatWall", wall.module);
+        assertEquals("Wall", wall.style);
+        assertEquals(2, wall.getBoxCount());
+        assertArrayEquals(box(0, 60, 0, 46, 70, 40), wall.bounds);
+        assertFalse(loaded.contains(20, 65, 20));
+        // New structures do not reuse IDs
+        assertEquals(3, loaded.add("CARuins", "B3/S23", box(0, 0, 0, 1, 1, 1)).id);
+    }
+}
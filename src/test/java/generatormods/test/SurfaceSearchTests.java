@@ -0,0 +1,150 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.placement.WorldBlockPlacer;
+import generatormods.util.WorldUtil;
+
+import java.util.Random;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Compares the chunk based WorldUtil.findSurfaceJ() against the block by block search over
+ * randomized columns.
+ */
+public class SurfaceSearchTests {
+    private static final int CHUNKS = 40;
+    private static final int[] BUFFERS = {WorldUtil.IGNORE_WATER, 0, 1, 3};
+    private static final int[] JINITS = {WorldUtil.WORLD_MAX_Y, 200, 100, 64, 20, 0, -1};
+    private static Block[] blocks;
+
+    @BeforeClass
+    public static void beforeAll() {
+        Bootstrap.func_151354_b();
+        blocks = new Block[] {Blocks.air, Blocks.stone, Blocks.dirt, Blocks.grass, Blocks.sand,
+                Blocks.water, Blocks.ice, Blocks.log, Blocks.leaves, Blocks.planks,
+                Blocks.cobblestone, Blocks.glass, Blocks.torch, Blocks.netherrack, Blocks.coal_ore};
+    }
+
+    @Test
+    public void testOverworldMatchesBlockSearch() {
+        compareRandomChunks(new Random(1L), false);
+    }
+
+    @Test
+    public void testNetherMatchesBlockSearch() {
+        compareRandomChunks(new Random(2L), true);
+    }
+
+    private void compareRandomChunks(Random random, boolean isHellWorld) {
+        World world = mock(World.class);
+        world.provider = new WorldProviderSurface();
+        world.provider.isHellWorld = isHellWorld;
+        for (int n = 0; n < CHUNKS; n++) {
+            int chunkX = random.nextInt(64) - 32, chunkZ = random.nextInt(64) - 32;
+            Chunk chunk = randomChunk(world, random, chunkX, chunkZ);
+            ChunkPlacer placer = new ChunkPlacer(world, chunk);
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    int i = (chunkX << 4) + x, k = (chunkZ << 4) + z;
+                    for (int jinit : JINITS) {
+                        for (int buffer : BUFFERS) {
+                            for (boolean wallIsSurface : new boolean[] {false, true}) {
+                                int expected = WorldUtil.findSurfaceJ(placer, i, k, jinit,
+                                        wallIsSurface, buffer);
+                                int actual = WorldUtil.findSurfaceJ(chunk, isHellWorld, i, k,
+                                        jinit, wallIsSurface, buffer);
+                                assertEquals("column " + i + "," + k + " from " + jinit
+                                        + " buffer " + buffer + " walls " + wallIsSurface,
+                                        expected, actual);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Fills a chunk with a mix of missing, empty and partly filled sections. Each filled section
+     * draws from a few blocks, so that columns get runs of the same block like real terrain.
+     */
+    private Chunk randomChunk(World world, Random random, int chunkX, int chunkZ) {
+        Chunk chunk = new Chunk(world, chunkX, chunkZ);
+        ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+        for (int s = 0; s < storage.length; s++) {
+            int kind = random.nextInt(4);
+            if (kind == 0)
+                continue;
+            storage[s] = new ExtendedBlockStorage(s << 4, true);
+            if (kind == 1)
+                continue;
+            Block[] mix = new Block[1 + random.nextInt(3)];
+            for (int m = 0; m < mix.length; m++)
+                mix[m] = blocks[random.nextInt(blocks.length)];
+            for (int y = 0; y < 16; y++)
+                for (int x = 0; x < 16; x++)
+                    for (int z = 0; z < 16; z++)
+                        storage[s].func_150818_a(x, y, z, mix[random.nextInt(mix.length)]);
+        }
+        for (int n = 0; n < chunk.heightMap.length; n++)
+            chunk.heightMap[n] = random.nextInt(WorldUtil.WORLD_MAX_Y + 2);
+        return chunk;
+    }
+
+    /* Reads a single chunk block by block, which makes findSurfaceJ() take its generic search */
+    private static class ChunkPlacer extends WorldBlockPlacer {
+        private final Chunk chunk;
+
+        public ChunkPlacer(World world, Chunk chunk) {
+            super(world);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public boolean readsFromWorld() {
+            return false;
+        }
+
+        @Override
+        public Block getBlock(int i, int j, int k) {
+            if (j < 0 || j > WorldUtil.WORLD_MAX_Y)
+                return Blocks.air;
+            return chunk.getBlock(i & 0xf, j, k & 0xf);
+        }
+
+        @Override
+        public int getHeightValue(int i, int k) {
+            return chunk.getHeightValue(i & 0xf, k & 0xf);
+        }
+    }
+}
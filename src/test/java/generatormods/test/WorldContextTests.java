@@ -0,0 +1,123 @@
+/* Source code for the Generator Mods (CARuins, Great Walls, Walled Cities) for the game Minecraft
+ * Copyright (C) 2011-2014 by Noah Whitman (formivore) <wakatakeru@gmail.com>
+ * Copyright (C) 2013-2014 by Olivier Sylvain (GotoLink) <gotolinkminecraft@gmail.com>
+ * Copyright (C) 2014 William (B.J.) Snow Orvis (aetherknight) <aetherknight@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package generatormods.test;
+
+import generatormods.world.IWorldResource;
+import generatormods.world.WorldContext;
+
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.storage.ISaveHandler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class WorldContextTests {
+    /* Counts how often it was released */
+    private static class TestResource implements IWorldResource {
+        int released = 0;
+
+        @Override
+        public void onWorldSaved() {}
+
+        @Override
+        public void release() {
+            released++;
+        }
+    }
+
+    @Test
+    public void testLoadUnloadReload() {
+        World world = mockWorld(7);
+        int loaded = WorldContext.size();
+        WorldContext context = WorldContext.forWorld(world);
+        assertSame(context, WorldContext.forWorld(world));
+        assertSame(context, WorldContext.getIfLoaded(world));
+        assertSame(world, context.getWorld());
+        assertEquals(loaded + 1, WorldContext.size());
+        TestResource resource = new TestResource();
+        context.putResource("test", resource);
+        assertTrue(context.startSurvey("Test"));
+        assertFalse(context.startSurvey("Test"));
+
+        WorldContext.release(world);
+        assertEquals(1, resource.released);
+        assertNull(context.getWorld());
+        assertNull(context.getResource("test"));
+        assertNull(WorldContext.getIfLoaded(world));
+        assertEquals(loaded, WorldContext.size());
+        WorldContext.release(world);
+        assertEquals(1, resource.released);
+
+        World reloaded = mockWorld(7);
+        WorldContext context2 = WorldContext.forWorld(reloaded);
+        assertNotSame(context, context2);
+        assertSame(reloaded, context2.getWorld());
+        assertNull(context2.getResource("test"));
+        assertTrue(context2.startSurvey("Test"));
+        assertNull(WorldContext.getIfLoaded(world));
+        WorldContext.release(reloaded);
+        assertEquals(loaded, WorldContext.size());
+    }
+
+    @Test
+    public void testWorldReplacedWithoutUnload() {
+        World world = mockWorld(8);
+        WorldContext context = WorldContext.forWorld(world);
+        TestResource resource = new TestResource();
+        context.putResource("test", resource);
+
+        World replacement = mockWorld(8);
+        WorldContext context2 = WorldContext.forWorld(replacement);
+        assertNotSame(context, context2);
+        assertEquals(1, resource.released);
+        assertNull(context.getWorld());
+        assertNull(WorldContext.getIfLoaded(world));
+        // Releasing the old world again does not touch the new context
+        WorldContext.release(world);
+        assertSame(context2, WorldContext.getIfLoaded(replacement));
+        WorldContext.release(replacement);
+    }
+
+    @Test
+    public void testReplacedResourceIsReleased() {
+        World world = mockWorld(9);
+        WorldContext context = WorldContext.forWorld(world);
+        TestResource first = new TestResource(), second = new TestResource();
+        context.putResource("test", first);
+        context.putResource("test", first);
+        assertEquals(0, first.released);
+        context.putResource("test", second);
+        assertEquals(1, first.released);
+        assertSame(second, context.getResource("test"));
+        WorldContext.release(world);
+        assertEquals(1, first.released);
+        assertEquals(1, second.released);
+    }
+
+    private static World mockWorld(int dimension) {
+        World world = mock(World.class);
+        world.provider = new WorldProviderSurface();
+        world.provider.dimensionId = dimension;
+        when(world.getSaveHandler()).thenReturn(mock(ISaveHandler.class));
+        return world;
+    }
+}